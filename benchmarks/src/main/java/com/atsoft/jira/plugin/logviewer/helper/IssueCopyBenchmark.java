@@ -0,0 +1,190 @@
+package com.atsoft.jira.plugin.logviewer.helper;
+
+import com.atlassian.jira.bc.issue.IssueService;
+import com.atlassian.jira.issue.CustomFieldManager;
+import com.atlassian.jira.issue.Issue;
+import com.atlassian.jira.issue.IssueInputParameters;
+import com.atlassian.jira.issue.IssueManager;
+import com.atlassian.jira.issue.MutableIssue;
+import com.atlassian.jira.issue.customfields.CustomFieldType;
+import com.atlassian.jira.issue.customfields.option.Option;
+import com.atlassian.jira.issue.fields.CustomField;
+import com.atlassian.jira.issue.fields.OrderableField;
+import com.atlassian.jira.issue.fields.layout.field.FieldLayout;
+import com.atlassian.jira.issue.fields.layout.field.FieldLayoutItem;
+import com.atlassian.jira.issue.fields.layout.field.FieldLayoutManager;
+import com.atlassian.jira.issue.priority.Priority;
+import com.atlassian.jira.mock.component.MockComponentWorker;
+import com.atlassian.jira.project.Project;
+import com.atlassian.jira.project.ProjectManager;
+import com.atlassian.jira.security.JiraAuthenticationContext;
+import com.atlassian.jira.security.PermissionManager;
+import com.atlassian.jira.security.plugin.ProjectPermissionKey;
+import com.atlassian.jira.user.ApplicationUser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * {@link IssueCopyHelper} against mocked Jira managers: a target whose field layout requires
+ * the common system fields and one custom field of each handled type. Mocks are stub-only, so
+ * they do not record the calls of millions of iterations; what is measured is the helper's own
+ * field resolution and population, with and without its cached copy plans.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IssueCopyBenchmark {
+    private static final String TARGET_PROJECT = "TARGET";
+    private static final String ISSUE_TYPE = "10000";
+
+    /** false drops the copy plans before every copy, i.e. resolves the field layout each time. */
+    @Param({ "true", "false" })
+    public boolean cachedPlan;
+
+    private IssueCopyHelper helper;
+    private ApplicationUser user;
+    private List<String> bulkKeys;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        IssueService issueService = stub(IssueService.class);
+        IssueManager issueManager = stub(IssueManager.class);
+        FieldLayoutManager fieldLayoutManager = stub(FieldLayoutManager.class);
+        CustomFieldManager customFieldManager = stub(CustomFieldManager.class);
+        ProjectManager projectManager = stub(ProjectManager.class);
+        PermissionManager permissionManager = stub(PermissionManager.class);
+        // the benchmark user may browse every source issue
+        when(permissionManager.hasPermission(any(ProjectPermissionKey.class), any(Issue.class),
+                any(ApplicationUser.class))).thenReturn(true);
+        new MockComponentWorker()
+                .addMock(IssueService.class, issueService)
+                .addMock(IssueManager.class, issueManager)
+                .addMock(FieldLayoutManager.class, fieldLayoutManager)
+                .addMock(CustomFieldManager.class, customFieldManager)
+                .addMock(ProjectManager.class, projectManager)
+                .addMock(JiraAuthenticationContext.class, stub(JiraAuthenticationContext.class))
+                .addMock(PermissionManager.class, permissionManager)
+                .init();
+
+        Project project = stub(Project.class);
+        when(project.getId()).thenReturn(100L);
+        when(projectManager.getProjectObjByKey(TARGET_PROJECT)).thenReturn(project);
+
+        MutableIssue source = stub(MutableIssue.class);
+        when(source.getSummary()).thenReturn("NullPointerException in LogTailService.poll");
+        when(source.getDescription()).thenReturn("Stack trace attached.\n\tat LogTail.poll(LogTail.java:120)");
+        Priority priority = stub(Priority.class);
+        when(priority.getId()).thenReturn("3");
+        when(source.getPriority()).thenReturn(priority);
+        user = stub(ApplicationUser.class);
+        when(user.getUsername()).thenReturn("admin");
+        when(user.getKey()).thenReturn("admin");
+        when(source.getReporter()).thenReturn(user);
+
+        List<FieldLayoutItem> items = new ArrayList<>();
+        for (String fieldId : new String[] { "summary", "description", "priority", "reporter" }) {
+            items.add(required(fieldId));
+        }
+        Option option = stub(Option.class);
+        when(option.getOptionId()).thenReturn(10100L);
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        Object[][] customFields = {
+                { "select", option },
+                { "multiselect", Arrays.asList(option, option) },
+                { "userpicker", user },
+                { "datepicker", now },
+                { "datetime", now },
+                { "textfield", "free text" },
+        };
+        for (int i = 0; i < customFields.length; i++) {
+            String fieldId = "customfield_" + (10001 + i);
+            items.add(required(fieldId));
+            CustomField cf = stub(CustomField.class);
+            CustomFieldType<?, ?> type = stub(CustomFieldType.class);
+            when(type.getKey()).thenReturn("com.atlassian.jira.plugin.system.customfieldtypes:" + customFields[i][0]);
+            when(cf.getCustomFieldType()).thenReturn(type);
+            when(cf.getId()).thenReturn(fieldId);
+            when(customFieldManager.getCustomFieldObject(fieldId)).thenReturn(cf);
+            when(source.getCustomFieldValue(cf)).thenReturn(customFields[i][1]);
+        }
+        FieldLayout layout = stub(FieldLayout.class);
+        when(layout.getFieldLayoutItems()).thenReturn(items);
+        when(fieldLayoutManager.getFieldLayout(project, ISSUE_TYPE)).thenReturn(layout);
+
+        bulkKeys = new ArrayList<>();
+        for (int i = 1; i <= 50; i++) {
+            bulkKeys.add("SOURCE-" + i);
+            when(issueManager.getIssueObject("SOURCE-" + i)).thenReturn(source);
+        }
+
+        IssueInputParameters params = stub(IssueInputParameters.class);
+        when(params.getActionParameters()).thenReturn(new HashMap<>());
+        when(issueService.newIssueInputParameters()).thenReturn(params);
+        IssueService.CreateValidationResult validation = stub(IssueService.CreateValidationResult.class);
+        when(validation.isValid()).thenReturn(true);
+        when(issueService.validateCreate(any(), any())).thenReturn(validation);
+        MutableIssue created = stub(MutableIssue.class);
+        when(created.getKey()).thenReturn("TARGET-1");
+        IssueService.IssueResult result = stub(IssueService.IssueResult.class);
+        when(result.isValid()).thenReturn(true);
+        when(result.getIssue()).thenReturn(created);
+        when(issueService.create(any(), any())).thenReturn(result);
+
+        helper = new IssueCopyHelper();
+    }
+
+    @Benchmark
+    public Issue copyIssue() {
+        if (!cachedPlan) {
+            helper.clearCopyPlans();
+        }
+        return helper.copyIssue(user, "SOURCE-1", TARGET_PROJECT, ISSUE_TYPE);
+    }
+
+    /** 50 issues through the bulk API, with its prefetch and worker pool. */
+    @Benchmark
+    public IssueCopyReport copyIssues() {
+        if (!cachedPlan) {
+            helper.clearCopyPlans();
+        }
+        return helper.copyIssues(user, bulkKeys, TARGET_PROJECT, ISSUE_TYPE);
+    }
+
+    private static FieldLayoutItem required(String fieldId) {
+        FieldLayoutItem item = stub(FieldLayoutItem.class);
+        OrderableField<?> field = stub(OrderableField.class);
+        when(field.getId()).thenReturn(fieldId);
+        when(item.getOrderableField()).thenReturn(field);
+        when(item.isRequired()).thenReturn(true);
+        return item;
+    }
+
+    private static <T> T stub(Class<T> type) {
+        return mock(type, withSettings().stubOnly());
+    }
+}
@@ -0,0 +1,139 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The path of terminal output from the PTY to the client, as {@link PtyManager} sets it up:
+ * {@link PtyReader} reads and decodes, {@link SessionOutput} encodes into its ring buffer and
+ * an {@link OutputCoalescer} sends frames. The PTY is a stream whose reads never wait for
+ * output and the client a sink that completes every send at once, so the numbers are the cost
+ * of the pipeline itself. Run with {@code -prof gc} for the allocation rate.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PtyOutputBenchmark {
+
+    /** ascii: build output; mixed: colored text with Korean, which takes the multi-byte path. */
+    @Param({ "ascii", "mixed" })
+    public String content;
+
+    private ScheduledExecutorService scheduler;
+    private CountingSink sink;
+    private SessionOutput output;
+    private InputStream pty;
+    private Utf8StreamDecoder decoder;
+    private CharBuffer decoded;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        String line = content.equals("ascii")
+                ? "[INFO] Compiling 42 source files to /home/jira/plugin/target/classes\r\n"
+                : "\u001b[32m2024-05-14 14:32:10\u001b[0m 작업 완료: 이슈 42건 복사됨 \u001b[1mOK\u001b[0m\r\n";
+        byte[] pattern = line.repeat(64).getBytes(StandardCharsets.UTF_8);
+
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        sink = new CountingSink();
+        // no flush window: every append is sent inline, like a busy session
+        output = new SessionOutput(scheduler, 0, LogViewerSettings.OUTPUT_MAX_FRAME_BYTES,
+                LogViewerSettings.OUTPUT_MAX_QUEUED_BYTES, LogViewerSettings.SCROLLBACK_BYTES);
+        output.attach(sink, OverflowPolicy.PAUSE);
+        pty = new RepeatingInputStream(pattern, 4096);
+        decoder = new Utf8StreamDecoder(8192);
+        decoded = CharBuffer.wrap(line.repeat(64));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        output.close();
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * One pass of the loop in {@code PtyReader.drainBlocking()}: a read of the PTY, decoded, queued
+     * and sent. The loop itself runs until the shell exits and then closes the output, so the
+     * benchmark repeats its body instead.
+     */
+    @Benchmark
+    public long readDecodeSend() throws IOException, InterruptedException {
+        output.write(decoder.read(pty));
+        return sink.bytes;
+    }
+
+    /** Only the encode, queue and send part, for already decoded text. */
+    @Benchmark
+    public long encodeSend() throws InterruptedException {
+        output.write(decoded.rewind());
+        return sink.bytes;
+    }
+
+    private static class CountingSink implements OutputCoalescer.FrameSink {
+        long bytes;
+
+        @Override
+        public void send(ByteBuffer frame, Runnable onComplete) {
+            bytes += frame.remaining();
+            onComplete.run();
+        }
+
+        @Override
+        public void sendText(String message, Runnable onComplete) {
+            onComplete.run();
+        }
+    }
+
+    /** A PTY that has {@code chunk} bytes of output ready whenever it is read. */
+    private static class RepeatingInputStream extends InputStream {
+        private final byte[] pattern;
+        private final int chunk;
+        private int position;
+
+        RepeatingInputStream(byte[] pattern, int chunk) {
+            this.pattern = pattern;
+            this.chunk = chunk;
+        }
+
+        @Override
+        public int read() {
+            byte b = pattern[position];
+            position = (position + 1) % pattern.length;
+            return b & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            int count = Math.min(len, chunk);
+            for (int copied = 0; copied < count; ) {
+                int n = Math.min(count - copied, pattern.length - position);
+                System.arraycopy(pattern, position, b, off + copied, n);
+                copied += n;
+                position = (position + n) % pattern.length;
+            }
+            return count;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.atsoft.jira.plugin.logviewer.ws;
+
+import com.atsoft.jira.plugin.logviewer.service.PtyManager;
+import com.atsoft.jira.plugin.logviewer.service.PtySession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jakarta.websocket.RemoteEndpoint;
+import jakarta.websocket.SendHandler;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inbound terminal messages: the text protocol of {@link TerminalWebSocket#onMessage} and the
+ * framed one of {@code /ws/mux}. Both write to a real shell started through
+ * {@link PtyManager}, so a Unix host is needed. The numbers cover queueing the input for the
+ * session's writer thread, which is all the WebSocket thread does; the shell's echo is
+ * discarded by a WebSocket session that completes every send at once.
+ * Input ends with Ctrl-U, so the shell's line never grows.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TerminalInputBenchmark {
+
+    /** keystroke: one typed character; paste: a pasted command line; resize: a window resize. */
+    @Param({ "keystroke", "paste", "resize" })
+    public String input;
+
+    private TerminalWebSocket endpoint;
+    private MuxConnection mux;
+    private Session session;
+    private String message;
+    private ByteBuffer frame;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        session = discardingSession();
+        endpoint = new TerminalWebSocket();
+        endpoint.onOpen(session);
+
+        mux = new MuxConnection(session, null, false);
+        mux.receive(MuxProtocol.encode(1, MuxProtocol.OPEN_TERMINAL, ""));
+
+        if (input.equals("resize")) {
+            message = "resize:120:40";
+            ByteBuffer size = ByteBuffer.allocate(4).putShort((short) 120).putShort((short) 40);
+            frame = MuxProtocol.encode(null, 1, MuxProtocol.RESIZE, size.flip());
+        } else {
+            String typed = input.equals("keystroke") ? "x" : "grep -n 'ERROR' atlassian-jira.log | tail -n 50";
+            message = typed + "\u0015";
+            frame = MuxProtocol.encode(1, MuxProtocol.INPUT, message);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        endpoint.onClose(session);
+        mux.close();
+        // not shutdown(): the next trial in this JVM still needs the manager
+        for (PtySession running : PtyManager.getInstance().getSessions()) {
+            PtyManager.getInstance().kill(running.getId());
+        }
+    }
+
+    @Benchmark
+    public void textMessage() {
+        endpoint.onMessage(message, session);
+    }
+
+    @Benchmark
+    public void muxFrame() {
+        mux.receive(frame.duplicate());
+    }
+
+    private static Session discardingSession() {
+        SendResult ok = new SendResult();
+        RemoteEndpoint.Async remote = (RemoteEndpoint.Async) Proxy.newProxyInstance(
+                TerminalInputBenchmark.class.getClassLoader(), new Class<?>[] { RemoteEndpoint.Async.class },
+                (proxy, method, args) -> {
+                    if (args != null && args.length == 2 && args[1] instanceof SendHandler) {
+                        ((SendHandler) args[1]).onResult(ok);
+                    }
+                    return null;
+                });
+        return (Session) Proxy.newProxyInstance(TerminalInputBenchmark.class.getClassLoader(),
+                new Class<?>[] { Session.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getAsyncRemote":
+                            return remote;
+                        case "getId":
+                            return "benchmark";
+                        case "getRequestParameterMap":
+                            return Collections.emptyMap();
+                        case "isOpen":
+                            return true;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        default:
+                            return null;
+                    }
+                });
+    }
+}
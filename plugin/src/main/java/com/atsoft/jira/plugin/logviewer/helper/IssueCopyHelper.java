@@ -13,42 +13,76 @@ import com.atlassian.jira.issue.fields.layout.field.FieldLayoutItem;
 import com.atlassian.jira.issue.fields.layout.field.FieldLayoutManager;
 import com.atlassian.jira.issue.label.Label;
 import com.atlassian.jira.issue.priority.Priority;
+import com.atlassian.jira.permission.ProjectPermissions;
 import com.atlassian.jira.project.Project;
+import com.atlassian.jira.security.JiraAuthenticationContext;
+import com.atlassian.jira.security.PermissionManager;
 import com.atlassian.jira.user.ApplicationUser;
 import com.atlassian.jira.util.ErrorCollection;
+import com.atsoft.jira.plugin.logviewer.service.LogViewerMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.sql.Timestamp;
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 /**
  * 이슈 복사를 위한 헬퍼 클래스입니다. (시스템 필드 및 커스텀 필드 포함)
  * 가독성과 확장성을 높이기 위해 전략 패턴(Strategy Pattern)을 사용하여 리팩토링되었습니다.
+ * <p>
+ * 대상 프로젝트/이슈 타입별로 필수 필드와 해당 핸들러를 미리 연결한 복사 계획(CopyPlan)을 만들어
+ * 캐시하므로, 같은 대상으로 반복 복사할 때는 필드 구성 조회와 핸들러 검색을 생략합니다.
+ * <p>
+ * 단계별(prefetch, plan, populate, validate, create, total) 및 필드 핸들러별 소요 시간과 사용자별
+ * 복사 건수는 {@link LogViewerMetrics}에 기록됩니다.
  */
 public class IssueCopyHelper {
 
     private static final Logger log = LoggerFactory.getLogger(IssueCopyHelper.class);
     private static final String DATE_FORMAT = "d/MMM/yy";
     private static final String DATETIME_FORMAT = "d/MMM/yy h:mm a";
+    // DateTimeFormatter는 불변 객체이므로 여러 스레드에서 공유할 수 있습니다.
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern(DATE_FORMAT);
+    private static final DateTimeFormatter DATETIME_FORMATTER = DateTimeFormatter.ofPattern(DATETIME_FORMAT);
+    // 필드 레이아웃 외의 변경(커스텀 필드 타입 등)도 반영되도록 계획을 주기적으로 다시 만듭니다.
+    private static final long PLAN_TTL_MILLIS = 10 * 60 * 1000L;
+    private static final int DEFAULT_PARALLELISM = 4;
+    private static final int PREFETCH_BATCH_SIZE = 50;
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
 
     private final IssueService issueService;
     private final IssueManager issueManager;
     private final FieldLayoutManager fieldLayoutManager;
     private final CustomFieldManager customFieldManager;
+    private final JiraAuthenticationContext authenticationContext;
+    private final PermissionManager permissionManager;
+    private final LogViewerMetrics metrics = LogViewerMetrics.getInstance();
 
     private final Map<String, BiConsumer<IssueInputParameters, Issue>> systemFieldHandlers = new HashMap<>();
     private final List<CustomFieldTypeHandler> customFieldTypeHandlers = new ArrayList<>();
+    private final Map<String, CopyPlan> copyPlans = new ConcurrentHashMap<>();
 
     public IssueCopyHelper() {
         this.issueService = ComponentAccessor.getIssueService();
         this.issueManager = ComponentAccessor.getIssueManager();
         this.fieldLayoutManager = ComponentAccessor.getFieldLayoutManager();
         this.customFieldManager = ComponentAccessor.getCustomFieldManager();
+        this.authenticationContext = ComponentAccessor.getJiraAuthenticationContext();
+        this.permissionManager = ComponentAccessor.getPermissionManager();
 
         initializeHandlers();
     }
@@ -91,7 +125,7 @@ public class IssueCopyHelper {
         // --- 커스텀 필드 핸들러 ---
 
         // 1. 단일 선택 (Select List) / 라디오 버튼 (Radio Buttons)
-        customFieldTypeHandlers.add(new CustomFieldTypeHandler(
+        customFieldTypeHandlers.add(new CustomFieldTypeHandler("select",
                 key -> key.endsWith(":select") || key.endsWith(":radiobuttons"),
                 (params, cfId, value) -> {
                     if (value instanceof Option) {
@@ -103,7 +137,7 @@ public class IssueCopyHelper {
                 }));
 
         // 2. 다중 선택 (Multi-Select) / 체크박스 (Checkboxes)
-        customFieldTypeHandlers.add(new CustomFieldTypeHandler(
+        customFieldTypeHandlers.add(new CustomFieldTypeHandler("multiselect",
                 key -> key.endsWith(":multiselect") || key.endsWith(":multicheckboxes"),
                 (params, cfId, value) -> {
                     if (value instanceof Collection) {
@@ -118,7 +152,7 @@ public class IssueCopyHelper {
                 }));
 
         // 3. 사용자 선택 (User Picker)
-        customFieldTypeHandlers.add(new CustomFieldTypeHandler(
+        customFieldTypeHandlers.add(new CustomFieldTypeHandler("userpicker",
                 key -> key.endsWith(":userpicker"),
                 (params, cfId, value) -> {
                     if (value instanceof ApplicationUser) {
@@ -127,7 +161,7 @@ public class IssueCopyHelper {
                 }));
 
         // 4. 다중 사용자 선택 (Multi-User Picker)
-        customFieldTypeHandlers.add(new CustomFieldTypeHandler(
+        customFieldTypeHandlers.add(new CustomFieldTypeHandler("multiuserpicker",
                 key -> key.endsWith(":multiuserpicker"),
                 (params, cfId, value) -> {
                     if (value instanceof Collection) {
@@ -140,25 +174,25 @@ public class IssueCopyHelper {
                 }));
 
         // 5. 날짜 선택 (Date Picker)
-        customFieldTypeHandlers.add(new CustomFieldTypeHandler(
+        customFieldTypeHandlers.add(new CustomFieldTypeHandler("datepicker",
                 key -> key.endsWith(":datepicker"),
                 (params, cfId, value) -> {
-                    if (value instanceof Date || value instanceof Timestamp) {
-                        params.addCustomFieldValue(cfId, new SimpleDateFormat(DATE_FORMAT).format((Date) value));
+                    if (value instanceof Date) {
+                        params.addCustomFieldValue(cfId, formatDate(DATE_FORMATTER, (Date) value));
                     }
                 }));
 
         // 6. 날짜/시간 선택 (DateTime Picker)
-        customFieldTypeHandlers.add(new CustomFieldTypeHandler(
+        customFieldTypeHandlers.add(new CustomFieldTypeHandler("datetime",
                 key -> key.endsWith(":datetime"),
                 (params, cfId, value) -> {
-                    if (value instanceof Date || value instanceof Timestamp) {
-                        params.addCustomFieldValue(cfId, new SimpleDateFormat(DATETIME_FORMAT).format((Date) value));
+                    if (value instanceof Date) {
+                        params.addCustomFieldValue(cfId, formatDate(DATETIME_FORMATTER, (Date) value));
                     }
                 }));
 
         // 기본값 / 텍스트 / 숫자 등 (Catch-all)
-        customFieldTypeHandlers.add(new CustomFieldTypeHandler(
+        customFieldTypeHandlers.add(new CustomFieldTypeHandler("default",
                 key -> true,
                 (params, cfId, value) -> params.addCustomFieldValue(cfId, value.toString())));
     }
@@ -170,13 +204,13 @@ public class IssueCopyHelper {
      * @param sourceIssueKey    원본 이슈 키 (예: "EXT-123")
      * @param targetProjectKey  복사될 대상 프로젝트 키 (예: "CUR-1")
      * @param targetIssueTypeId 대상 이슈 타입 ID (예: "10001" - Task)
-     * @return 생성된 이슈 객체 (실패 시 null)
+     * @return 생성된 이슈 객체 (실패 시, 또는 사용자가 원본 이슈를 볼 수 없으면 null)
      */
     public Issue copyIssue(ApplicationUser user, String sourceIssueKey, String targetProjectKey,
             String targetIssueTypeId) {
 
         // 1. 원본 데이터 조회
-        Issue sourceIssue = issueManager.getIssueObject(sourceIssueKey);
+        Issue sourceIssue = browsableIssue(user, sourceIssueKey);
         Project targetProject = ComponentAccessor.getProjectManager().getProjectObjByKey(targetProjectKey);
 
         if (sourceIssue == null || targetProject == null) {
@@ -184,88 +218,371 @@ public class IssueCopyHelper {
             return null;
         }
 
-        // 2. 파라미터 컨테이너 생성 및 기본 설정
+        // 2~5. 파라미터 설정, 필드 복사, 유효성 검사 및 생성
+        return copy(user, sourceIssueKey, sourceIssue, getCopyPlan(targetProject, targetIssueTypeId))
+                .getTargetIssue();
+    }
+
+    /**
+     * 여러 외부 이슈를 대상 프로젝트로 일괄 복사합니다.
+     * <p>
+     * 대상 프로젝트와 필드 구성(필수 필드, 커스텀 필드)은 한 번만 조회하고, 원본 이슈는
+     * 배치 단위로 미리 병렬 조회한 뒤 이슈별 파라미터 구성, 유효성 검사, 생성을
+     * 제한된 개수의 스레드에서 동시에 수행합니다. 사용자가 볼 수 없는(BROWSE_PROJECTS 권한이 없는)
+     * 원본 이슈는 존재 여부를 드러내지 않도록 없는 이슈와 같이 NOT_FOUND로 보고합니다.
+     * <p>
+     * 호출 스레드가 인터럽트되면 아직 시작하지 않은 복사는 CANCELLED로 보고하고, 이미 생성 중인
+     * 이슈는 끝날 때까지 기다려 실제 결과를 보고합니다. 반환할 때 인터럽트 상태는 유지됩니다.
+     *
+     * @param user              작업을 수행하는 사용자
+     * @param sourceIssueKeys   원본 이슈 키 목록
+     * @param targetProjectKey  복사될 대상 프로젝트 키
+     * @param targetIssueTypeId 대상 이슈 타입 ID
+     * @return 원본 이슈 키 순서대로 정리된 이슈별 결과
+     */
+    public IssueCopyReport copyIssues(ApplicationUser user, Collection<String> sourceIssueKeys,
+            String targetProjectKey, String targetIssueTypeId) {
+        return copyIssues(user, sourceIssueKeys, targetProjectKey, targetIssueTypeId, DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * {@link #copyIssues(ApplicationUser, Collection, String, String)}와 같으며, 동시에 복사할
+     * 최대 이슈 수를 지정합니다.
+     *
+     * @param parallelism 동시 작업 스레드 수 (1 이상)
+     */
+    public IssueCopyReport copyIssues(ApplicationUser user, Collection<String> sourceIssueKeys,
+            String targetProjectKey, String targetIssueTypeId, int parallelism) {
+        return copyIssues(user, sourceIssueKeys, targetProjectKey, targetIssueTypeId, parallelism, result -> { });
+    }
+
+    /**
+     * {@link #copyIssues(ApplicationUser, Collection, String, String, int)}와 같으며, 이슈 하나의 복사가
+     * 끝날 때마다 그 결과를 {@code onResult}로 알립니다. 진행 상황 표시에 사용합니다.
+     *
+     * @param onResult 이슈별 결과를 받는 콜백. 작업 스레드에서 동시에 호출될 수 있습니다.
+     */
+    public IssueCopyReport copyIssues(ApplicationUser user, Collection<String> sourceIssueKeys,
+            String targetProjectKey, String targetIssueTypeId, int parallelism, Consumer<IssueCopyResult> onResult) {
+        long start = System.currentTimeMillis();
+        List<String> keys = new ArrayList<>(sourceIssueKeys);
+        List<IssueCopyResult> results = new ArrayList<>(keys.size());
+
+        // 1. 대상 메타데이터는 이슈마다가 아니라 한 번만 조회
+        Project targetProject = ComponentAccessor.getProjectManager().getProjectObjByKey(targetProjectKey);
+        if (targetProject == null) {
+            log.error("Target project not found: " + targetProjectKey);
+            for (String key : keys) {
+                results.add(notify(onResult, IssueCopyResult.failed(key, IssueCopyResult.Status.NOT_FOUND,
+                        "Target project not found: " + targetProjectKey)));
+            }
+            return new IssueCopyReport(results, System.currentTimeMillis() - start);
+        }
+        if (keys.isEmpty()) {
+            return new IssueCopyReport(results, System.currentTimeMillis() - start);
+        }
+        CopyPlan plan = getCopyPlan(targetProject, targetIssueTypeId);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(parallelism, keys.size())),
+                r -> {
+                    Thread thread = new Thread(r, "issue-copy-" + THREAD_COUNT.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        try {
+            // 2. 원본 이슈를 배치 단위로 미리 조회
+            long prefetchStart = System.nanoTime();
+            Map<String, Issue> sources = prefetch(user, keys, executor);
+            metrics.copyPhase("prefetch", System.nanoTime() - prefetchStart);
+            if (Thread.currentThread().isInterrupted()) {
+                // 조회가 끝나지 않았으므로 없는 이슈와 구별할 수 없음
+                for (String key : keys) {
+                    results.add(notify(onResult, cancelled(key)));
+                }
+                return new IssueCopyReport(results, System.currentTimeMillis() - start);
+            }
+
+            // 3. 이슈별 복사를 동시에 실행
+            List<Future<IssueCopyResult>> futures = new ArrayList<>(keys.size());
+            for (String key : keys) {
+                Issue sourceIssue = sources.get(key);
+                if (sourceIssue == null) {
+                    futures.add(CompletableFuture.completedFuture(notify(onResult, IssueCopyResult.failed(key,
+                            IssueCopyResult.Status.NOT_FOUND, "Source issue not found: " + key))));
+                } else {
+                    futures.add(executor.submit(() -> notify(onResult, copySafely(user, key, sourceIssue, plan))));
+                }
+            }
+
+            // 4. 요청 순서대로 결과 수집
+            boolean interrupted = false;
+            for (int i = 0; i < keys.size(); i++) {
+                while (true) {
+                    try {
+                        results.add(await(keys.get(i), futures.get(i), onResult));
+                        break;
+                    } catch (InterruptedException e) {
+                        // 취소: 시작하지 않은 복사만 취소합니다. 이미 생성 중인 이슈는 중단하면 생성 여부를
+                        // 알 수 없으므로, 끝날 때까지 기다려 실제 결과를 보고합니다.
+                        interrupted = true;
+                        for (Future<IssueCopyResult> future : futures.subList(i, keys.size())) {
+                            future.cancel(false);
+                        }
+                    }
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        IssueCopyReport report = new IssueCopyReport(results, System.currentTimeMillis() - start);
+        log.info("Bulk issue copy to " + targetProjectKey + ": " + report);
+        return report;
+    }
+
+    // 이슈 키로 여러 이슈를 한 번에 조회하는 API가 없으므로, 배치별로 나누어 병렬 조회합니다.
+    private Map<String, Issue> prefetch(ApplicationUser user, List<String> keys, ExecutorService executor) {
+        Map<String, Issue> sources = new ConcurrentHashMap<>();
+        List<Future<?>> batches = new ArrayList<>();
+        for (int from = 0; from < keys.size(); from += PREFETCH_BATCH_SIZE) {
+            List<String> batch = keys.subList(from, Math.min(keys.size(), from + PREFETCH_BATCH_SIZE));
+            batches.add(executor.submit(() -> {
+                for (String key : batch) {
+                    Issue issue = browsableIssue(user, key);
+                    if (issue != null) {
+                        sources.put(key, issue);
+                    }
+                }
+            }));
+        }
+        for (Future<?> batch : batches) {
+            try {
+                batch.get();
+            } catch (ExecutionException e) {
+                // 조회하지 못한 이슈는 NOT_FOUND로 보고됨
+                log.error("Failed to load source issues", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        return sources;
+    }
+
+    // 사용자가 볼 수 없는 이슈는 없는 이슈와 구별하지 않습니다.
+    private Issue browsableIssue(ApplicationUser user, String key) {
+        Issue issue = issueManager.getIssueObject(key);
+        if (issue == null || !permissionManager.hasPermission(ProjectPermissions.BROWSE_PROJECTS, issue, user)) {
+            return null;
+        }
+        return issue;
+    }
+
+    private IssueCopyResult copySafely(ApplicationUser user, String sourceIssueKey, Issue sourceIssue,
+            CopyPlan plan) {
+        try {
+            return copyAsUser(user, sourceIssueKey, sourceIssue, plan);
+        } catch (RuntimeException e) {
+            log.error("Failed to copy issue " + sourceIssueKey, e);
+            return IssueCopyResult.failed(sourceIssueKey, IssueCopyResult.Status.FAILED, String.valueOf(e));
+        }
+    }
+
+    // 콜백의 오류가 복사 결과에 영향을 주지 않도록 합니다.
+    private IssueCopyResult notify(Consumer<IssueCopyResult> onResult, IssueCopyResult result) {
+        try {
+            onResult.accept(result);
+        } catch (RuntimeException e) {
+            log.error("Error in issue copy callback", e);
+        }
+        return result;
+    }
+
+    private IssueCopyResult await(String sourceIssueKey, Future<IssueCopyResult> future,
+            Consumer<IssueCopyResult> onResult) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            log.error("Failed to copy issue " + sourceIssueKey, e.getCause());
+            return IssueCopyResult.failed(sourceIssueKey, IssueCopyResult.Status.FAILED, String.valueOf(e.getCause()));
+        } catch (CancellationException e) {
+            return notify(onResult, cancelled(sourceIssueKey));
+        }
+    }
+
+    private static IssueCopyResult cancelled(String sourceIssueKey) {
+        return IssueCopyResult.failed(sourceIssueKey, IssueCopyResult.Status.CANCELLED, "Cancelled");
+    }
+
+    // 작업 스레드에는 요청 사용자의 인증 정보가 없으므로, 복사하는 동안만 설정합니다.
+    private IssueCopyResult copyAsUser(ApplicationUser user, String sourceIssueKey, Issue sourceIssue,
+            CopyPlan plan) {
+        ApplicationUser previous = authenticationContext.getLoggedInUser();
+        authenticationContext.setLoggedInUser(user);
+        try {
+            return copy(user, sourceIssueKey, sourceIssue, plan);
+        } finally {
+            authenticationContext.setLoggedInUser(previous);
+        }
+    }
+
+    // 성공 여부와 관계없이 이슈 하나의 전체 소요 시간을 사용자별로 기록합니다.
+    private IssueCopyResult copy(ApplicationUser user, String sourceIssueKey, Issue sourceIssue, CopyPlan plan) {
+        long start = System.nanoTime();
+        boolean success = false;
+        try {
+            IssueCopyResult result = createCopy(user, sourceIssueKey, sourceIssue, plan);
+            success = result.isSuccess();
+            return result;
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            metrics.copyPhase("total", elapsed);
+            metrics.issueCopied(user != null ? user.getUsername() : null, success, elapsed);
+        }
+    }
+
+    private IssueCopyResult createCopy(ApplicationUser user, String sourceIssueKey, Issue sourceIssue,
+            CopyPlan plan) {
+        // 파라미터 컨테이너 생성 및 기본 설정
         IssueInputParameters params = issueService.newIssueInputParameters();
-        params.setProjectId(targetProject.getId());
-        params.setIssueTypeId(targetIssueTypeId);
+        params.setProjectId(plan.project.getId());
+        params.setIssueTypeId(plan.issueTypeId);
 
-        // 3. 필수 필드 검사 및 값 복사 (시스템 필드 + 커스텀 필드)
-        populateFields(params, sourceIssue, targetProject, targetIssueTypeId);
+        // 필수 필드 값 복사 (시스템 필드 + 커스텀 필드)
+        long phaseStart = System.nanoTime();
+        populateFields(params, sourceIssue, plan);
 
-        // 4. (옵션) 필수는 아니지만 항상 복사하고 싶은 필드 강제 설정
+        // (옵션) 필수는 아니지만 항상 복사하고 싶은 필드 강제 설정
         // populateFields에서 필수 필드가 아니어서 건너뛰어졌을 수 있지만, 일반적으로 이 필드들은 복사하는 것이 좋습니다.
         if (params.getSummary() == null)
             params.setSummary(sourceIssue.getSummary());
         if (params.getDescription() == null)
             params.setDescription(sourceIssue.getDescription());
+        phaseStart = recordPhase("populate", phaseStart);
 
-        // 5. 유효성 검사 및 생성
+        // 유효성 검사 및 생성
         IssueService.CreateValidationResult validationResult = issueService.validateCreate(user, params);
+        phaseStart = recordPhase("validate", phaseStart);
 
         if (validationResult.isValid()) {
             IssueService.IssueResult createResult = issueService.create(user, validationResult);
+            recordPhase("create", phaseStart);
             if (createResult.isValid()) {
                 log.info("Issue copied successfully: " + createResult.getIssue().getKey());
-                return createResult.getIssue();
+                return IssueCopyResult.copied(sourceIssueKey, createResult.getIssue());
             } else {
                 logErrors(createResult.getErrorCollection());
+                return IssueCopyResult.failed(sourceIssueKey, IssueCopyResult.Status.FAILED,
+                        errorMessages(createResult.getErrorCollection()));
             }
         } else {
             logErrors(validationResult.getErrorCollection());
+            return IssueCopyResult.failed(sourceIssueKey, IssueCopyResult.Status.INVALID,
+                    errorMessages(validationResult.getErrorCollection()));
         }
-
-        return null;
     }
 
-    private void populateFields(IssueInputParameters params, Issue sourceIssue, Project targetProject,
-            String targetIssueTypeId) {
+    /**
+     * 대상 프로젝트/이슈 타입의 복사 계획을 반환합니다. 캐시된 계획은 필드 레이아웃이 바뀌었거나
+     * (Jira는 필드 구성이 변경되면 캐시된 FieldLayout 객체를 새로 만듭니다) 유효 시간이 지나면 다시 만듭니다.
+     */
+    private CopyPlan getCopyPlan(Project targetProject, String targetIssueTypeId) {
+        long start = System.nanoTime();
         FieldLayout fieldLayout = fieldLayoutManager.getFieldLayout(targetProject, targetIssueTypeId);
-        List<FieldLayoutItem> items = fieldLayout.getFieldLayoutItems();
+        String key = targetProject.getId() + ":" + targetIssueTypeId;
+        CopyPlan plan = copyPlans.get(key);
+        if (plan == null || plan.fieldLayout != fieldLayout
+                || System.currentTimeMillis() - plan.compiledAt > PLAN_TTL_MILLIS) {
+            plan = compilePlan(targetProject, targetIssueTypeId, fieldLayout);
+            copyPlans.put(key, plan);
+        }
+        recordPhase("plan", start);
+        return plan;
+    }
 
-        for (FieldLayoutItem item : items) {
-            String fieldId = item.getOrderableField().getId();
+    /**
+     * 캐시된 복사 계획을 모두 버립니다. 필드 구성을 변경한 직후 바로 반영해야 할 때 호출합니다.
+     */
+    public void clearCopyPlans() {
+        copyPlans.clear();
+    }
 
-            // 이미 설정된 필드(Project, IssueType 등)는 패스
-            if (params.getActionParameters().containsKey(fieldId))
-                continue;
+    // 필수 필드마다 값을 복사할 핸들러를 미리 찾아 연결
+    private CopyPlan compilePlan(Project targetProject, String targetIssueTypeId, FieldLayout fieldLayout) {
+        List<FieldCopyStep> steps = new ArrayList<>();
 
+        for (FieldLayoutItem item : fieldLayout.getFieldLayoutItems()) {
             // 필수 필드이거나, 값을 반드시 복사해야 하는 경우 처리
             // (여기서는 '필수'인 경우에만 우선 복사하도록 구현)
-            if (item.isRequired()) {
-                copyField(params, sourceIssue, fieldId);
-            }
-        }
-    }
+            if (!item.isRequired())
+                continue;
 
-    private void copyField(IssueInputParameters params, Issue sourceIssue, String fieldId) {
-        if (systemFieldHandlers.containsKey(fieldId)) {
-            systemFieldHandlers.get(fieldId).accept(params, sourceIssue);
-        } else {
-            copyCustomField(params, sourceIssue, fieldId);
+            String fieldId = item.getOrderableField().getId();
+            BiConsumer<IssueInputParameters, Issue> copier = systemFieldHandlers.get(fieldId);
+            FieldCopyStep step = copier != null
+                    ? new FieldCopyStep(fieldId, fieldId, copier)
+                    : bindCustomField(fieldId);
+            if (step != null)
+                steps.add(step);
         }
+        return new CopyPlan(targetProject, targetIssueTypeId, fieldLayout, steps);
     }
 
-    private void copyCustomField(IssueInputParameters params, Issue sourceIssue, String fieldId) {
+    private FieldCopyStep bindCustomField(String fieldId) {
         if (!fieldId.startsWith("customfield_"))
-            return;
+            return null;
 
         CustomField cf = customFieldManager.getCustomFieldObject(fieldId);
         if (cf == null)
-            return;
-
-        Object value = sourceIssue.getCustomFieldValue(cf);
-        if (value == null)
-            return;
+            return null;
 
         String key = cf.getCustomFieldType().getKey();
+        String cfId = cf.getId();
 
-        // 핸들러를 순회하며 첫 번째로 일치하는 핸들러를 찾아 실행
+        // 첫 번째로 일치하는 핸들러를 연결 (마지막 핸들러는 항상 일치)
         for (CustomFieldTypeHandler handler : customFieldTypeHandlers) {
             if (handler.predicate.test(key)) {
-                handler.copier.accept(params, cf.getId(), value);
-                return;
+                return new FieldCopyStep(fieldId, handler.name, (params, sourceIssue) -> {
+                    Object value = sourceIssue.getCustomFieldValue(cf);
+                    if (value != null)
+                        handler.copier.accept(params, cfId, value);
+                });
             }
         }
+        return null;
+    }
+
+    private void populateFields(IssueInputParameters params, Issue sourceIssue, CopyPlan plan) {
+        for (FieldCopyStep step : plan.steps) {
+            // 이미 설정된 필드(Project, IssueType 등)는 패스
+            if (params.getActionParameters().containsKey(step.fieldId))
+                continue;
+
+            long start = System.nanoTime();
+            step.copier.accept(params, sourceIssue);
+            metrics.copyField(step.handler, System.nanoTime() - start);
+        }
+    }
+
+    // 단계 소요 시간을 기록하고, 다음 단계의 시작 시각을 반환합니다.
+    private long recordPhase(String phase, long start) {
+        long now = System.nanoTime();
+        metrics.copyPhase(phase, now - start);
+        return now;
+    }
+
+    private static String formatDate(DateTimeFormatter formatter, Date date) {
+        // java.sql.Date는 toInstant()를 지원하지 않으므로 epoch millis로 변환
+        return formatter.format(Instant.ofEpochMilli(date.getTime()).atZone(ZoneId.systemDefault()));
+    }
+
+    private List<String> errorMessages(ErrorCollection errors) {
+        List<String> messages = new ArrayList<>(errors.getErrorMessages());
+        errors.getErrors().forEach((field, msg) -> messages.add(field + ": " + msg));
+        return messages;
     }
 
     private void logErrors(ErrorCollection errors) {
@@ -275,12 +592,43 @@ public class IssueCopyHelper {
 
     // --- 내부 헬퍼 클래스/인터페이스 ---
 
+    /** 대상 프로젝트/이슈 타입별 복사 계획: 필수 필드와 각 필드에 연결된 핸들러 */
+    private static class CopyPlan {
+        final Project project;
+        final String issueTypeId;
+        final FieldLayout fieldLayout;
+        final List<FieldCopyStep> steps;
+        final long compiledAt = System.currentTimeMillis();
+
+        CopyPlan(Project project, String issueTypeId, FieldLayout fieldLayout, List<FieldCopyStep> steps) {
+            this.project = project;
+            this.issueTypeId = issueTypeId;
+            this.fieldLayout = fieldLayout;
+            this.steps = steps;
+        }
+    }
+
+    private static class FieldCopyStep {
+        final String fieldId;
+        // 지표에 쓰이는 핸들러 이름: 시스템 필드는 필드 ID, 커스텀 필드는 필드 타입 (select, datepicker 등)
+        final String handler;
+        final BiConsumer<IssueInputParameters, Issue> copier;
+
+        FieldCopyStep(String fieldId, String handler, BiConsumer<IssueInputParameters, Issue> copier) {
+            this.fieldId = fieldId;
+            this.handler = handler;
+            this.copier = copier;
+        }
+    }
+
     private static class CustomFieldTypeHandler {
+        final String name;
         final Predicate<String> predicate;
         final TripleConsumer<IssueInputParameters, String, Object> copier;
 
-        CustomFieldTypeHandler(Predicate<String> predicate,
+        CustomFieldTypeHandler(String name, Predicate<String> predicate,
                 TripleConsumer<IssueInputParameters, String, Object> copier) {
+            this.name = name;
             this.predicate = predicate;
             this.copier = copier;
         }
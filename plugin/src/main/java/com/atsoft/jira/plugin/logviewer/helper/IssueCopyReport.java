@@ -0,0 +1,39 @@
+package com.atsoft.jira.plugin.logviewer.helper;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 일괄 복사 결과 보고서입니다. 결과는 요청한 원본 이슈 키 순서와 같습니다.
+ */
+public class IssueCopyReport {
+    private final List<IssueCopyResult> results;
+    private final long elapsedMillis;
+
+    IssueCopyReport(List<IssueCopyResult> results, long elapsedMillis) {
+        this.results = Collections.unmodifiableList(results);
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    public List<IssueCopyResult> getResults() {
+        return results;
+    }
+
+    public int getSuccessCount() {
+        return (int) results.stream().filter(IssueCopyResult::isSuccess).count();
+    }
+
+    public List<IssueCopyResult> getFailures() {
+        return results.stream().filter(r -> !r.isSuccess()).collect(Collectors.toList());
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return getSuccessCount() + "/" + results.size() + " issues copied in " + elapsedMillis + " ms";
+    }
+}
@@ -0,0 +1,81 @@
+package com.atsoft.jira.plugin.logviewer.helper;
+
+import com.atlassian.jira.issue.Issue;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 일괄 복사({@link IssueCopyHelper#copyIssues})에서 원본 이슈 하나에 대한 결과입니다.
+ */
+public class IssueCopyResult {
+
+    public enum Status {
+        /** 복사 성공 */
+        COPIED,
+        /** 원본 이슈 또는 대상 프로젝트를 찾을 수 없음 */
+        NOT_FOUND,
+        /** 생성 유효성 검사 실패 */
+        INVALID,
+        /** 생성 중 오류 또는 예외 발생 */
+        FAILED,
+        /** 복사를 시작하기 전에 작업이 취소됨 */
+        CANCELLED
+    }
+
+    private final String sourceIssueKey;
+    private final Status status;
+    private final Issue targetIssue;
+    private final List<String> errors;
+
+    private IssueCopyResult(String sourceIssueKey, Status status, Issue targetIssue, List<String> errors) {
+        this.sourceIssueKey = sourceIssueKey;
+        this.status = status;
+        this.targetIssue = targetIssue;
+        this.errors = errors;
+    }
+
+    static IssueCopyResult copied(String sourceIssueKey, Issue targetIssue) {
+        return new IssueCopyResult(sourceIssueKey, Status.COPIED, targetIssue, Collections.emptyList());
+    }
+
+    static IssueCopyResult failed(String sourceIssueKey, Status status, List<String> errors) {
+        return new IssueCopyResult(sourceIssueKey, status, null, Collections.unmodifiableList(errors));
+    }
+
+    static IssueCopyResult failed(String sourceIssueKey, Status status, String error) {
+        return failed(sourceIssueKey, status, Collections.singletonList(error));
+    }
+
+    public String getSourceIssueKey() {
+        return sourceIssueKey;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public boolean isSuccess() {
+        return status == Status.COPIED;
+    }
+
+    /** 생성된 이슈 (실패 시 null) */
+    public Issue getTargetIssue() {
+        return targetIssue;
+    }
+
+    /** 생성된 이슈 키 (실패 시 null) */
+    public String getTargetIssueKey() {
+        return targetIssue != null ? targetIssue.getKey() : null;
+    }
+
+    /** 오류 메시지. 필드 오류는 "필드: 메시지" 형식입니다. */
+    public List<String> getErrors() {
+        return errors;
+    }
+
+    @Override
+    public String toString() {
+        return sourceIssueKey + " -> " + (isSuccess() ? getTargetIssueKey() : status + " " + errors);
+    }
+}
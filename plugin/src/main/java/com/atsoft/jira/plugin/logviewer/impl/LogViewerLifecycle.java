@@ -0,0 +1,46 @@
+package com.atsoft.jira.plugin.logviewer.impl;
+
+import com.atlassian.plugin.spring.scanner.annotation.export.ExportAsService;
+import com.atlassian.sal.api.lifecycle.LifecycleAware;
+import com.atsoft.jira.plugin.logviewer.service.IssueCopyJobService;
+import com.atsoft.jira.plugin.logviewer.service.LogArchiveService;
+import com.atsoft.jira.plugin.logviewer.service.LogIndexService;
+import com.atsoft.jira.plugin.logviewer.service.LogMergeService;
+import com.atsoft.jira.plugin.logviewer.service.LogSearchService;
+import com.atsoft.jira.plugin.logviewer.service.LogTableService;
+import com.atsoft.jira.plugin.logviewer.service.LogViewerMetrics;
+import com.atsoft.jira.plugin.logviewer.service.LogTailService;
+import com.atsoft.jira.plugin.logviewer.service.LogTimelineService;
+import com.atsoft.jira.plugin.logviewer.service.PtyManager;
+
+import jakarta.inject.Named;
+
+/**
+ * Registers the plugin's metrics with JMX and starts counting log entries on start. Releases
+ * terminal sessions, open log files and background threads, cancels issue copy jobs and saves
+ * log indexes and timelines, when the plugin is disabled or uninstalled.
+ */
+@ExportAsService({ LifecycleAware.class })
+@Named("logViewerLifecycle")
+public class LogViewerLifecycle implements LifecycleAware {
+
+    @Override
+    public void onStart() {
+        LogViewerMetrics.getInstance().register();
+        LogTimelineService.getInstance().start();
+    }
+
+    @Override
+    public void onStop() {
+        PtyManager.getInstance().shutdown();
+        LogTailService.getInstance().shutdown();
+        LogIndexService.getInstance().shutdown();
+        LogTimelineService.getInstance().shutdown();
+        LogSearchService.getInstance().shutdown();
+        LogTableService.getInstance().shutdown();
+        LogMergeService.getInstance().shutdown();
+        LogArchiveService.getInstance().shutdown();
+        IssueCopyJobService.getInstance().shutdown();
+        LogViewerMetrics.getInstance().unregister();
+    }
+}
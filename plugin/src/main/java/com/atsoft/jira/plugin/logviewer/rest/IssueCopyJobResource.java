@@ -0,0 +1,156 @@
+package com.atsoft.jira.plugin.logviewer.rest;
+
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.user.ApplicationUser;
+import com.atlassian.plugin.spring.scanner.annotation.imports.ComponentImport;
+import com.atlassian.sal.api.user.UserManager;
+import com.atlassian.sal.api.user.UserProfile;
+import com.atsoft.jira.plugin.logviewer.helper.IssueCopyResult;
+import com.atsoft.jira.plugin.logviewer.service.IssueCopyJob;
+import com.atsoft.jira.plugin.logviewer.service.IssueCopyJobService;
+
+import jakarta.inject.Inject;
+import jakarta.ws.rs.Consumes;
+import jakarta.ws.rs.DELETE;
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.POST;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Bulk issue copies run in the background: {@code /rest/log-viewer/1.0/copy-jobs}. A POST
+ * returns the queued job at once; its progress is polled here or followed over
+ * {@code /ws/mux}. Users see their own jobs, system administrators everyone's.
+ */
+@Path("/copy-jobs")
+@Produces(MediaType.APPLICATION_JSON)
+public class IssueCopyJobResource {
+    private static final int MAX_ISSUES = 1000;
+
+    /** Body of a POST. */
+    public static class CopyJobRequest {
+        public List<String> issueKeys;
+        public String projectKey;
+        public String issueTypeId;
+    }
+
+    private final UserManager userManager;
+
+    @Inject
+    public IssueCopyJobResource(@ComponentImport UserManager userManager) {
+        this.userManager = userManager;
+    }
+
+    @POST
+    @Consumes(MediaType.APPLICATION_JSON)
+    public Response submit(CopyJobRequest request) {
+        ApplicationUser user = requireUser();
+        if (request == null || request.issueKeys == null || request.issueKeys.isEmpty()
+                || request.projectKey == null || request.issueTypeId == null) {
+            throw new WebApplicationException("issueKeys, projectKey and issueTypeId are required",
+                    Response.Status.BAD_REQUEST);
+        }
+        if (request.issueKeys.size() > MAX_ISSUES) {
+            throw new WebApplicationException("At most " + MAX_ISSUES + " issues can be copied at once",
+                    Response.Status.BAD_REQUEST);
+        }
+        try {
+            IssueCopyJob job = IssueCopyJobService.getInstance().submit(user, request.issueKeys,
+                    request.projectKey, request.issueTypeId);
+            return Response.status(Response.Status.ACCEPTED).entity(toMap(job, false)).build();
+        } catch (RejectedExecutionException e) {
+            throw new WebApplicationException(e.getMessage(), Response.Status.SERVICE_UNAVAILABLE);
+        }
+    }
+
+    @GET
+    public List<Map<String, Object>> list() {
+        ApplicationUser user = requireUser();
+        List<Map<String, Object>> jobs = new ArrayList<>();
+        for (IssueCopyJob job : IssueCopyJobService.getInstance().getJobs(user)) {
+            jobs.add(toMap(job, false));
+        }
+        return jobs;
+    }
+
+    /**
+     * A job's progress, with the result of every issue completed so far if {@code results} is set.
+     */
+    @GET
+    @Path("/{id}")
+    public Map<String, Object> get(@PathParam("id") String id,
+            @QueryParam("results") @DefaultValue("true") boolean results) {
+        return toMap(requireJob(id), results);
+    }
+
+    @DELETE
+    @Path("/{id}")
+    public Map<String, Object> cancel(@PathParam("id") String id) {
+        IssueCopyJob job = requireJob(id);
+        IssueCopyJobService.getInstance().cancel(id);
+        return toMap(job, false);
+    }
+
+    // the copies are made as the Jira user of the request
+    private ApplicationUser requireUser() {
+        UserProfile profile = RestAccess.requireUser(userManager);
+        ApplicationUser user = ComponentAccessor.getUserManager().getUserByKey(profile.getUserKey().getStringValue());
+        if (user == null) {
+            throw new WebApplicationException(Response.Status.UNAUTHORIZED);
+        }
+        return user;
+    }
+
+    private IssueCopyJob requireJob(String id) {
+        UserProfile user = RestAccess.requireUser(userManager);
+        IssueCopyJob job = IssueCopyJobService.getInstance().getJob(id);
+        // someone else's job is reported as missing rather than forbidden
+        if (job == null || !job.getUser().getKey().equals(user.getUserKey().getStringValue())
+                && !userManager.isSystemAdmin(user.getUserKey())) {
+            throw new WebApplicationException("No such job: " + id, Response.Status.NOT_FOUND);
+        }
+        return job;
+    }
+
+    private static Map<String, Object> toMap(IssueCopyJob job, boolean includeResults) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("id", job.getId());
+        map.put("owner", job.getUser().getUsername());
+        map.put("state", job.getState().name());
+        map.put("projectKey", job.getTargetProjectKey());
+        map.put("issueTypeId", job.getTargetIssueTypeId());
+        map.put("total", job.getTotal());
+        map.put("completed", job.getCompleted());
+        map.put("succeeded", job.getSucceeded());
+        map.put("createdTime", job.getCreatedTime());
+        map.put("startTime", job.getStartTime());
+        map.put("finishTime", job.getFinishTime());
+        if (job.getError() != null) {
+            map.put("error", job.getError());
+        }
+        if (includeResults) {
+            List<Map<String, Object>> results = new ArrayList<>();
+            for (IssueCopyResult result : job.getResults()) {
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("issueKey", result.getSourceIssueKey());
+                entry.put("status", result.getStatus().name());
+                entry.put("targetIssueKey", result.getTargetIssueKey());
+                entry.put("errors", result.getErrors());
+                results.add(entry);
+            }
+            map.put("results", results);
+        }
+        return map;
+    }
+}
@@ -0,0 +1,190 @@
+package com.atsoft.jira.plugin.logviewer.rest;
+
+import com.atlassian.plugin.spring.scanner.annotation.imports.ComponentImport;
+import com.atlassian.sal.api.user.UserManager;
+import com.atsoft.jira.plugin.logviewer.service.LogFiles;
+import com.atsoft.jira.plugin.logviewer.service.LogFilter;
+import com.atsoft.jira.plugin.logviewer.service.LogHistogram;
+import com.atsoft.jira.plugin.logviewer.service.LogIndexService;
+import com.atsoft.jira.plugin.logviewer.service.LogMergeService;
+import com.atsoft.jira.plugin.logviewer.service.LogPage;
+import com.atsoft.jira.plugin.logviewer.service.LogPosition;
+import com.atsoft.jira.plugin.logviewer.service.LogRecords;
+import com.atsoft.jira.plugin.logviewer.service.LogTableService;
+import com.atsoft.jira.plugin.logviewer.service.LogTailService;
+import com.atsoft.jira.plugin.logviewer.service.LogTimeline;
+import com.atsoft.jira.plugin.logviewer.service.LogTimelineService;
+
+import jakarta.inject.Inject;
+import jakarta.ws.rs.DefaultValue;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.PathParam;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.QueryParam;
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.MediaType;
+import jakarta.ws.rs.core.Response;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * Random access into the log files: {@code /rest/log-viewer/1.0/logs/{file}/...}.
+ */
+@Path("/logs")
+@Produces(MediaType.APPLICATION_JSON)
+public class LogResource {
+    private static final int MAX_PAGE_LINES = 5000;
+    private static final int MAX_PAGE_ENTRIES = 5000;
+
+    private final UserManager userManager;
+
+    @Inject
+    public LogResource(@ComponentImport UserManager userManager) {
+        this.userManager = userManager;
+    }
+
+    @GET
+    public List<String> list() throws IOException {
+        RestAccess.requireSystemAdmin(userManager);
+        return LogTailService.getInstance().listLogFiles();
+    }
+
+    /**
+     * Log files of the Data Center nodes that can be merged by time over {@code /ws/merge}.
+     */
+    @GET
+    @Path("/merged")
+    public List<String> listMerged() throws IOException {
+        RestAccess.requireSystemAdmin(userManager);
+        return LogMergeService.getInstance().listLogFiles();
+    }
+
+    /**
+     * Where a line, or the first entry at or after a time, starts. {@code time} is
+     * {@code yyyy-MM-ddTHH:mm[:ss]} or just {@code HH:mm[:ss]} for the last day in the file.
+     */
+    @GET
+    @Path("/{file}/seek")
+    public LogPosition seek(@PathParam("file") String file, @QueryParam("line") Long line,
+            @QueryParam("time") String time) {
+        RestAccess.requireSystemAdmin(userManager);
+        LogIndexService indexes = LogIndexService.getInstance();
+        try {
+            if (line != null) {
+                return indexes.seekLine(file, line);
+            }
+            if (time == null) {
+                throw new WebApplicationException("line or time is required", Response.Status.BAD_REQUEST);
+            }
+            String value = time.trim().replace(' ', 'T');
+            return value.indexOf('T') >= 0
+                    ? indexes.seekTime(file, LocalDateTime.parse(value))
+                    : indexes.seekTime(file, LocalTime.parse(value));
+        } catch (DateTimeParseException e) {
+            throw new WebApplicationException("Invalid time: " + time, Response.Status.BAD_REQUEST);
+        } catch (IOException e) {
+            throw new WebApplicationException(e.getMessage(), Response.Status.NOT_FOUND);
+        }
+    }
+
+    /**
+     * A page of lines starting at line {@code from}, or ending just before line {@code before}.
+     */
+    @GET
+    @Path("/{file}/lines")
+    public LogPage lines(@PathParam("file") String file, @QueryParam("from") @DefaultValue("0") long from,
+            @QueryParam("before") Long before, @QueryParam("count") @DefaultValue("200") int count) {
+        RestAccess.requireSystemAdmin(userManager);
+        int lines = Math.max(0, Math.min(count, MAX_PAGE_LINES));
+        try {
+            return before != null
+                    ? LogIndexService.getInstance().pageBefore(file, before, lines)
+                    : LogIndexService.getInstance().page(file, from, lines);
+        } catch (IOException e) {
+            throw new WebApplicationException(e.getMessage(), Response.Status.NOT_FOUND);
+        }
+    }
+
+    /**
+     * Entries passing a filter, from the entry at offset {@code from}, or ending just before
+     * offset {@code before}. {@code level} is a comma separated list such as
+     * {@code ERROR,WARN}; {@code logger} matches the logger and those below it, also when
+     * abbreviated; {@code thread} is a thread name prefix; {@code since} and {@code until} are
+     * {@code yyyy-MM-ddTHH:mm[:ss]}.
+     */
+    @GET
+    @Path("/{file}/entries")
+    public LogRecords entries(@PathParam("file") String file, @QueryParam("level") String level,
+            @QueryParam("logger") String logger, @QueryParam("thread") String thread,
+            @QueryParam("since") String since, @QueryParam("until") String until,
+            @QueryParam("from") @DefaultValue("0") long from, @QueryParam("before") Long before,
+            @QueryParam("count") @DefaultValue("200") int count) {
+        RestAccess.requireSystemAdmin(userManager);
+        LogFilter filter;
+        try {
+            filter = new LogFilter(LogFilter.parseLevels(level), logger, thread, time(since), time(until));
+        } catch (IllegalArgumentException e) {
+            throw new WebApplicationException("Invalid level: " + level, Response.Status.BAD_REQUEST);
+        }
+        int entries = Math.max(1, Math.min(count, MAX_PAGE_ENTRIES));
+        try {
+            return before != null
+                    ? LogTableService.getInstance().selectBefore(file, filter, before, entries)
+                    : LogTableService.getInstance().select(file, filter, from, entries);
+        } catch (IOException e) {
+            throw new WebApplicationException(e.getMessage(), Response.Status.NOT_FOUND);
+        }
+    }
+
+    /**
+     * Entries per {@code minute} (the default) or {@code hour}, by level, and the loggers with
+     * the most, from counts kept as the file grows. Without {@code since}, the last day of
+     * minutes or 30 days of hours up to the latest entry; {@code level} and {@code logger}
+     * filter as for {@link #entries}.
+     */
+    @GET
+    @Path("/{file}/timeline")
+    public LogHistogram timeline(@PathParam("file") String file,
+            @QueryParam("resolution") @DefaultValue("minute") String resolution, @QueryParam("level") String level,
+            @QueryParam("logger") String logger, @QueryParam("since") String since,
+            @QueryParam("until") String until) {
+        RestAccess.requireSystemAdmin(userManager);
+        long bucketMillis;
+        if (resolution.equalsIgnoreCase("minute")) {
+            bucketMillis = LogTimeline.MINUTE;
+        } else if (resolution.equalsIgnoreCase("hour")) {
+            bucketMillis = LogTimeline.HOUR;
+        } else {
+            throw new WebApplicationException("Invalid resolution: " + resolution, Response.Status.BAD_REQUEST);
+        }
+        LogFilter filter;
+        try {
+            filter = new LogFilter(LogFilter.parseLevels(level), logger, null, LogFilter.UNBOUNDED,
+                    LogFilter.UNBOUNDED);
+        } catch (IllegalArgumentException e) {
+            throw new WebApplicationException("Invalid level: " + level, Response.Status.BAD_REQUEST);
+        }
+        try {
+            return LogTimelineService.getInstance().histogram(file, time(since), time(until), bucketMillis, filter);
+        } catch (IllegalArgumentException e) {
+            throw new WebApplicationException(e.getMessage(), Response.Status.BAD_REQUEST);
+        } catch (IOException e) {
+            throw new WebApplicationException(e.getMessage(), Response.Status.NOT_FOUND);
+        }
+    }
+
+    private static long time(String value) {
+        if (value == null || value.isBlank()) {
+            return LogFilter.UNBOUNDED;
+        }
+        try {
+            return LogFiles.toMillis(LocalDateTime.parse(value.trim().replace(' ', 'T')));
+        } catch (DateTimeParseException e) {
+            throw new WebApplicationException("Invalid time: " + value, Response.Status.BAD_REQUEST);
+        }
+    }
+}
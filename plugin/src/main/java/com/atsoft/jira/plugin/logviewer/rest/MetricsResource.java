@@ -0,0 +1,121 @@
+package com.atsoft.jira.plugin.logviewer.rest;
+
+import com.atlassian.plugin.spring.scanner.annotation.imports.ComponentImport;
+import com.atlassian.sal.api.user.UserManager;
+import com.atsoft.jira.plugin.logviewer.service.LatencyHistogram;
+import com.atsoft.jira.plugin.logviewer.service.LogViewerMetrics;
+import com.atsoft.jira.plugin.logviewer.service.PtyManager;
+import com.atsoft.jira.plugin.logviewer.service.PtySession;
+import com.atsoft.jira.plugin.logviewer.service.SessionMetrics;
+
+import jakarta.inject.Inject;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What the plugin costs the node it runs on: {@code /rest/log-viewer/1.0/metrics}. The same
+ * figures are available over JMX as {@value LogViewerMetrics#OBJECT_NAME}; this resource adds
+ * the per-session breakdown and full latency distributions. Latencies are in microseconds.
+ */
+@Path("/metrics")
+@Produces(MediaType.APPLICATION_JSON)
+public class MetricsResource {
+    private final UserManager userManager;
+
+    @Inject
+    public MetricsResource(@ComponentImport UserManager userManager) {
+        this.userManager = userManager;
+    }
+
+    @GET
+    public Map<String, Object> get() {
+        RestAccess.requireSystemAdmin(userManager);
+        LogViewerMetrics metrics = LogViewerMetrics.getInstance();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("terminals", terminals(metrics));
+        result.put("sessions", sessions());
+        result.put("copies", copies(metrics));
+        return result;
+    }
+
+    private static Map<String, Object> terminals(LogViewerMetrics metrics) {
+        Map<String, Object> terminals = new LinkedHashMap<>();
+        terminals.put("activeSessions", metrics.getActiveSessions());
+        terminals.put("readerThreads", metrics.getReaderThreads());
+        terminals.put("activeReaders", metrics.getActiveReaders());
+        terminals.put("bytesIn", metrics.getTerminalBytesIn());
+        terminals.put("bytesOut", metrics.getTerminalBytesOut());
+        terminals.put("framesSent", metrics.getFramesSent());
+        terminals.put("framesPerSecond", metrics.getFramesPerSecond());
+        terminals.put("compressedFrameBytes", metrics.getCompressedFrameBytes());
+        terminals.put("compressedFrameBytesSent", metrics.getCompressedFrameBytesSent());
+        terminals.put("queuedBytes", metrics.getQueuedBytes());
+        terminals.put("droppedBytes", metrics.getDroppedBytes());
+        terminals.put("sendLatency", metrics.getSendLatency());
+        terminals.put("reapedSessions", metrics.getReapedSessions());
+        terminals.put("leakedProcesses", metrics.getLeakedProcesses());
+        terminals.put("ptyDescriptors", metrics.getPtyDescriptors());
+        Map<String, Object> shellPool = new LinkedHashMap<>();
+        shellPool.put("idle", metrics.getPooledShells());
+        shellPool.put("hits", metrics.getShellPoolHits());
+        shellPool.put("misses", metrics.getShellPoolMisses());
+        terminals.put("shellPool", shellPool);
+        return terminals;
+    }
+
+    private static List<Map<String, Object>> sessions() {
+        List<Map<String, Object>> sessions = new ArrayList<>();
+        for (PtySession session : PtyManager.getInstance().getSessions()) {
+            SessionMetrics traffic = session.getMetrics();
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("id", session.getId());
+            entry.put("owner", session.getOwner());
+            entry.put("startTime", session.getStartTime());
+            entry.put("viewers", session.getViewerCount());
+            entry.put("lastActivityTime", session.getLastActivityTime());
+            entry.put("detachedSince", session.getDetachedSince());
+            entry.put("fullScreen", session.getScreen() != null && session.getScreen().isFullScreen());
+            entry.put("bytesIn", traffic.getBytesIn());
+            entry.put("bytesOut", traffic.getBytesOut());
+            entry.put("framesSent", traffic.getFramesSent());
+            entry.put("framesPerSecond", traffic.getFramesPerSecond());
+            entry.put("pendingInputBytes", session.getInput().getPendingBytes());
+            entry.put("queuedBytes", session.getOutput().getQueuedBytes());
+            entry.put("droppedBytes", session.getOutput().getDroppedBytes());
+            entry.put("sendLatency", traffic.getSendLatency().toMap());
+            sessions.add(entry);
+        }
+        return sessions;
+    }
+
+    private static Map<String, Object> copies(LogViewerMetrics metrics) {
+        Map<String, Object> copies = new LinkedHashMap<>();
+        copies.put("pendingJobs", metrics.getPendingCopyJobs());
+        copies.put("copied", metrics.getIssuesCopied());
+        copies.put("failed", metrics.getIssueCopyFailures());
+        copies.put("phases", latencies(metrics.getCopyPhases()));
+        copies.put("fieldHandlers", latencies(metrics.getCopyFields()));
+        Map<String, Object> users = new LinkedHashMap<>();
+        metrics.getCopiesByUser().forEach((user, counts) -> {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("copied", counts.getCopied());
+            entry.put("failed", counts.getFailed());
+            entry.put("totalMillis", counts.getTotalMillis());
+            users.put(user, entry);
+        });
+        copies.put("users", users);
+        return copies;
+    }
+
+    private static Map<String, Object> latencies(Map<String, LatencyHistogram> histograms) {
+        Map<String, Object> latencies = new LinkedHashMap<>();
+        histograms.forEach((name, histogram) -> latencies.put(name, histogram.toMap()));
+        return latencies;
+    }
+}
@@ -0,0 +1,33 @@
+package com.atsoft.jira.plugin.logviewer.rest;
+
+import com.atlassian.sal.api.user.UserManager;
+import com.atlassian.sal.api.user.UserProfile;
+
+import jakarta.ws.rs.WebApplicationException;
+import jakarta.ws.rs.core.Response;
+
+/**
+ * Access checks shared by the REST resources. Log files and metrics are for system
+ * administrators only.
+ */
+final class RestAccess {
+
+    private RestAccess() {
+    }
+
+    static UserProfile requireUser(UserManager userManager) {
+        UserProfile user = userManager.getRemoteUser();
+        if (user == null) {
+            throw new WebApplicationException(Response.Status.UNAUTHORIZED);
+        }
+        return user;
+    }
+
+    static UserProfile requireSystemAdmin(UserManager userManager) {
+        UserProfile user = requireUser(userManager);
+        if (!userManager.isSystemAdmin(user.getUserKey())) {
+            throw new WebApplicationException(Response.Status.FORBIDDEN);
+        }
+        return user;
+    }
+}
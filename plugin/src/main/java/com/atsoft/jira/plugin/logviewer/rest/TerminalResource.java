@@ -0,0 +1,45 @@
+package com.atsoft.jira.plugin.logviewer.rest;
+
+import com.atlassian.plugin.spring.scanner.annotation.imports.ComponentImport;
+import com.atlassian.sal.api.user.UserManager;
+import com.atsoft.jira.plugin.logviewer.service.PtyManager;
+import com.atsoft.jira.plugin.logviewer.service.PtySession;
+
+import jakarta.inject.Inject;
+import jakarta.ws.rs.GET;
+import jakarta.ws.rs.Path;
+import jakarta.ws.rs.Produces;
+import jakarta.ws.rs.core.MediaType;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Running terminal sessions, so that others can watch one: {@code /rest/log-viewer/1.0/terminals}.
+ */
+@Path("/terminals")
+@Produces(MediaType.APPLICATION_JSON)
+public class TerminalResource {
+    private final UserManager userManager;
+
+    @Inject
+    public TerminalResource(@ComponentImport UserManager userManager) {
+        this.userManager = userManager;
+    }
+
+    @GET
+    public List<Map<String, Object>> list() {
+        RestAccess.requireSystemAdmin(userManager);
+        List<Map<String, Object>> terminals = new ArrayList<>();
+        for (PtySession session : PtyManager.getInstance().getSessions()) {
+            Map<String, Object> terminal = new LinkedHashMap<>();
+            terminal.put("id", session.getId());
+            terminal.put("owner", session.getOwner());
+            terminal.put("startTime", session.getStartTime());
+            terminal.put("viewers", session.getViewerCount());
+            terminals.add(terminal);
+        }
+        return terminals;
+    }
+}
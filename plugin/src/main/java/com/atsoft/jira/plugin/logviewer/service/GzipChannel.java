@@ -0,0 +1,240 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ * The decompressed content of a gzip file as a read-only {@link FileChannel}, so that the
+ * index, table and search code read archives exactly like plain log files.
+ * <p>
+ * A positional read starts from the nearest {@link GzipIndex} checkpoint before it, or
+ * continues a decoder that stopped at or shortly before the position: reading a range of the
+ * content front to back decompresses it once, and several threads reading different ranges
+ * decompress them in parallel, each with its own decoder.
+ */
+final class GzipChannel extends FileChannel {
+    // idle decoders kept for reads that continue where an earlier one stopped
+    private static final int MAX_IDLE_DECODERS = 8;
+
+    private final FileChannel file;
+    private final GzipIndex index;
+    // guarded by itself, most recently used last
+    private final Deque<GzipDecoder> idle = new ArrayDeque<>();
+    private final Object positionLock = new Object();
+    private long position;
+
+    GzipChannel(FileChannel file, GzipIndex index) {
+        this.file = file;
+        this.index = index;
+    }
+
+    @Override
+    public int read(ByteBuffer dst, long position) throws IOException {
+        ensureOpen();
+        if (position < 0) {
+            throw new IllegalArgumentException("Negative position");
+        }
+        if (position >= index.getSize()) {
+            return -1;
+        }
+        if (!dst.hasRemaining()) {
+            return 0;
+        }
+        // a decoder that failed is dropped
+        GzipDecoder decoder = take(position);
+        decoder.skip(position - decoder.getOutput());
+        byte[] buffer = dst.hasArray() ? dst.array() : new byte[dst.remaining()];
+        int offset = dst.hasArray() ? dst.arrayOffset() + dst.position() : 0;
+        int length = (int) Math.min(dst.remaining(), index.getSize() - position);
+        int total = 0;
+        while (total < length) {
+            int read = decoder.read(buffer, offset + total, length - total);
+            if (read < 0) {
+                break;
+            }
+            total += read;
+        }
+        giveBack(decoder);
+        if (dst.hasArray()) {
+            dst.position(dst.position() + total);
+        } else {
+            dst.put(buffer, 0, total);
+        }
+        return total > 0 ? total : -1;
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        synchronized (positionLock) {
+            int read = read(dst, position);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+    }
+
+    @Override
+    public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+        long total = 0;
+        for (int i = offset; i < offset + length; i++) {
+            int read = read(dsts[i]);
+            if (read < 0) {
+                return total > 0 ? total : -1;
+            }
+            total += read;
+            if (dsts[i].hasRemaining()) {
+                break;
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public long position() throws IOException {
+        ensureOpen();
+        synchronized (positionLock) {
+            return position;
+        }
+    }
+
+    @Override
+    public FileChannel position(long newPosition) throws IOException {
+        ensureOpen();
+        if (newPosition < 0) {
+            throw new IllegalArgumentException("Negative position");
+        }
+        synchronized (positionLock) {
+            position = newPosition;
+        }
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        ensureOpen();
+        return index.getSize();
+    }
+
+    @Override
+    public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(count, 64 * 1024));
+        long transferred = 0;
+        while (transferred < count) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), count - transferred));
+            int read = read(buffer, position + transferred);
+            if (read <= 0) {
+                break;
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                target.write(buffer);
+            }
+            transferred += read;
+        }
+        return transferred;
+    }
+
+    @Override
+    public void force(boolean metaData) {
+        // nothing is written
+    }
+
+    @Override
+    public int write(ByteBuffer src) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long write(ByteBuffer[] srcs, int offset, int length) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public int write(ByteBuffer src, long position) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public FileChannel truncate(long size) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long transferFrom(ReadableByteChannel src, long position, long count) {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public MappedByteBuffer map(MapMode mode, long position, long size) {
+        throw new UnsupportedOperationException("Compressed content cannot be mapped");
+    }
+
+    @Override
+    public FileLock lock(long position, long size, boolean shared) {
+        throw new UnsupportedOperationException("Compressed content cannot be locked");
+    }
+
+    @Override
+    public FileLock tryLock(long position, long size, boolean shared) {
+        throw new UnsupportedOperationException("Compressed content cannot be locked");
+    }
+
+    @Override
+    protected void implCloseChannel() throws IOException {
+        synchronized (idle) {
+            idle.clear();
+        }
+        file.close();
+    }
+
+    // an idle decoder that can continue to the position, or a new one from the nearest checkpoint
+    private GzipDecoder take(long position) throws IOException {
+        synchronized (idle) {
+            GzipDecoder best = null;
+            for (GzipDecoder decoder : idle) {
+                long behind = position - decoder.getOutput();
+                if (behind >= 0 && behind < index.getSpan()
+                        && (best == null || decoder.getOutput() > best.getOutput())) {
+                    best = decoder;
+                }
+            }
+            if (best != null) {
+                idle.remove(best);
+                return best;
+            }
+        }
+        return index.decoderAt(file, position);
+    }
+
+    private void giveBack(GzipDecoder decoder) {
+        synchronized (idle) {
+            if (!isOpen()) {
+                return;
+            }
+            idle.addLast(decoder);
+            Iterator<GzipDecoder> oldest = idle.iterator();
+            while (idle.size() > MAX_IDLE_DECODERS) {
+                oldest.next();
+                oldest.remove();
+            }
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (!isOpen()) {
+            throw new ClosedChannelException();
+        }
+    }
+}
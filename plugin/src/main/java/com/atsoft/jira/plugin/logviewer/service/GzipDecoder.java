@@ -0,0 +1,601 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.ZipException;
+
+/**
+ * Decompresses a gzip file (RFC 1952, any number of members) read through positional reads of
+ * a channel. Unlike {@link java.util.zip.Inflater} it can tell where each DEFLATE block starts
+ * and be started again there: a block start is fully described by its bit offset in the file
+ * and the last 32 KB of output, which is what a {@link GzipIndex} checkpoint stores.
+ * <p>
+ * {@link #read} stops at the end of each block, so a caller looping over it sees every block
+ * start. A file that ends early is treated as ending there, keeping what was decompressed, as
+ * {@code zcat} does. Checksums are verified only when decompressing from the start.
+ */
+final class GzipDecoder {
+    /** Output a block can refer back to. */
+    static final int WINDOW_SIZE = 32 * 1024;
+
+    private static final int WINDOW_MASK = WINDOW_SIZE - 1;
+    private static final int INPUT_BUFFER_SIZE = 64 * 1024;
+
+    private static final int HEADER = 0;
+    private static final int BLOCK_START = 1;
+    private static final int STORED = 2;
+    private static final int HUFFMAN = 3;
+    private static final int TRAILER = 4;
+    private static final int END = 5;
+
+    private static final int[] LENGTH_BASE = {
+        3, 4, 5, 6, 7, 8, 9, 10, 11, 13, 15, 17, 19, 23, 27, 31, 35, 43, 51, 59, 67, 83, 99, 115, 131, 163, 195, 227,
+        258
+    };
+    private static final int[] LENGTH_EXTRA = {
+        0, 0, 0, 0, 0, 0, 0, 0, 1, 1, 1, 1, 2, 2, 2, 2, 3, 3, 3, 3, 4, 4, 4, 4, 5, 5, 5, 5, 0
+    };
+    private static final int[] DISTANCE_BASE = {
+        1, 2, 3, 4, 5, 7, 9, 13, 17, 25, 33, 49, 65, 97, 129, 193, 257, 385, 513, 769, 1025, 1537, 2049, 3073, 4097,
+        6145, 8193, 12289, 16385, 24577
+    };
+    private static final int[] DISTANCE_EXTRA = {
+        0, 0, 0, 0, 1, 1, 2, 2, 3, 3, 4, 4, 5, 5, 6, 6, 7, 7, 8, 8, 9, 9, 10, 10, 11, 11, 12, 12, 13, 13
+    };
+    private static final int[] CODE_LENGTH_ORDER = { 16, 17, 18, 0, 8, 7, 9, 6, 10, 5, 11, 4, 12, 3, 13, 2, 14, 1, 15 };
+
+    private static final Huffman FIXED_LITERALS = new Huffman();
+    private static final Huffman FIXED_DISTANCES = new Huffman();
+
+    static {
+        int[] lengths = new int[288 + 30];
+        for (int i = 0; i < 288; i++) {
+            lengths[i] = i < 144 ? 8 : i < 256 ? 9 : i < 280 ? 7 : 8;
+        }
+        for (int i = 288; i < lengths.length; i++) {
+            lengths[i] = 5;
+        }
+        try {
+            FIXED_LITERALS.build(lengths, 0, 288);
+            FIXED_DISTANCES.build(lengths, 288, 30);
+        } catch (ZipException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final FileChannel channel;
+    private final ByteBuffer input = ByteBuffer.allocate(INPUT_BUFFER_SIZE);
+    // file offset of the next byte to move from input into bits
+    private long inputOffset;
+    private long bits;
+    private int bitCount;
+
+    private final byte[] window = new byte[WINDOW_SIZE];
+    private int windowEnd;
+    // output available to refer back to, up to the window size
+    private int history;
+    private long output;
+
+    private int state;
+    private boolean lastBlock;
+    private boolean firstMember;
+    private boolean truncated;
+    private int storedRemaining;
+    private Huffman literals;
+    private Huffman distances;
+    private Huffman dynamicLiterals;
+    private Huffman dynamicDistances;
+    private int copyLength;
+    private int copyDistance;
+    // null unless decompressing from the start
+    private final CRC32 crc;
+    private long memberOutput;
+
+    /** Starts at the beginning of the file. */
+    GzipDecoder(FileChannel channel) {
+        this.channel = channel;
+        this.crc = new CRC32();
+        this.state = HEADER;
+        this.firstMember = true;
+        input.flip();
+    }
+
+    /**
+     * Starts at the block beginning at {@code bitOffset} of the file, where {@code output}
+     * bytes had been decompressed, the last of them being {@code window}.
+     */
+    GzipDecoder(FileChannel channel, long bitOffset, long output, byte[] window) throws IOException {
+        this.channel = channel;
+        this.crc = null;
+        this.state = BLOCK_START;
+        this.output = output;
+        this.history = Math.min(window.length, WINDOW_SIZE);
+        System.arraycopy(window, window.length - history, this.window, 0, history);
+        this.windowEnd = history & WINDOW_MASK;
+        this.inputOffset = bitOffset >>> 3;
+        input.flip();
+        int skip = (int) (bitOffset & 7);
+        if (skip > 0) {
+            if (!need(skip)) {
+                throw new ZipException("Checkpoint beyond the end of the file");
+            }
+            drop(skip);
+        }
+    }
+
+    /** Bytes decompressed so far. */
+    long getOutput() {
+        return output;
+    }
+
+    /** Where in the file, in bits, the next block starts; valid while {@link #isAtBlockStart}. */
+    long getBitOffset() {
+        return inputOffset * 8 - bitCount;
+    }
+
+    /** True between two blocks of a member, where decompression can be started again. */
+    boolean isAtBlockStart() {
+        return state == BLOCK_START && !lastBlock;
+    }
+
+    /** True if the file ended in the middle of compressed data. */
+    boolean isTruncated() {
+        return truncated;
+    }
+
+    /** The last output, up to {@link #WINDOW_SIZE} bytes, oldest first. */
+    byte[] getWindow() {
+        byte[] copy = new byte[history];
+        int start = (windowEnd - history) & WINDOW_MASK;
+        int first = Math.min(history, WINDOW_SIZE - start);
+        System.arraycopy(window, start, copy, 0, first);
+        System.arraycopy(window, 0, copy, first, history - first);
+        return copy;
+    }
+
+    /**
+     * Decompresses up to {@code length} bytes, stopping early at the end of a block.
+     *
+     * @return the number of bytes, or -1 at the end of the data
+     */
+    int read(byte[] buffer, int offset, int length) throws IOException {
+        int start = offset;
+        int end = offset + length;
+        // output [accounted, offset) is not yet in the checksum and counts
+        int accounted = offset;
+        while (offset < end && state != END) {
+            switch (state) {
+                case HEADER:
+                    state = readHeader() ? BLOCK_START : END;
+                    break;
+                case BLOCK_START:
+                    if (lastBlock) {
+                        state = TRAILER;
+                    } else if (offset > start) {
+                        // let the caller see the block start
+                        end = offset;
+                    } else {
+                        readBlockHeader();
+                    }
+                    break;
+                case STORED:
+                    offset = copyStored(buffer, offset, end);
+                    break;
+                case HUFFMAN:
+                    offset = inflate(buffer, offset, end, accounted);
+                    break;
+                case TRAILER:
+                    account(buffer, accounted, offset);
+                    accounted = offset;
+                    readTrailer();
+                    break;
+                default:
+                    throw new IllegalStateException();
+            }
+        }
+        account(buffer, accounted, offset);
+        return offset == start && state == END ? -1 : offset - start;
+    }
+
+    /** Decompresses and drops {@code count} bytes. */
+    void skip(long count) throws IOException {
+        byte[] scratch = new byte[(int) Math.min(count, INPUT_BUFFER_SIZE)];
+        while (count > 0) {
+            int read = read(scratch, 0, (int) Math.min(count, scratch.length));
+            if (read < 0) {
+                return;
+            }
+            count -= read;
+        }
+    }
+
+    private void account(byte[] buffer, int from, int to) {
+        int count = to - from;
+        if (count <= 0) {
+            return;
+        }
+        if (crc != null) {
+            crc.update(buffer, from, count);
+        }
+        output += count;
+        memberOutput += count;
+        history = Math.min(WINDOW_SIZE, history + count);
+    }
+
+    private boolean readHeader() throws IOException {
+        if (!need(16)) {
+            if (firstMember) {
+                throw new ZipException("Not in gzip format");
+            }
+            return false;
+        }
+        if (peek(16) != 0x8b1f) {
+            if (firstMember) {
+                throw new ZipException("Not in gzip format");
+            }
+            // padding after the last member, as gzip itself ignores
+            return false;
+        }
+        drop(16);
+        int method = byteAt();
+        int flags = byteAt();
+        if (method != 8) {
+            throw new ZipException("Unsupported compression method " + method);
+        }
+        // mtime, extra flags, operating system
+        skipBytes(6);
+        if ((flags & 4) != 0) {
+            skipBytes(byteAt() | byteAt() << 8);
+        }
+        if ((flags & 8) != 0) {
+            skipString();
+        }
+        if ((flags & 16) != 0) {
+            skipString();
+        }
+        if ((flags & 2) != 0) {
+            skipBytes(2);
+        }
+        firstMember = false;
+        lastBlock = false;
+        history = 0;
+        memberOutput = 0;
+        if (crc != null) {
+            crc.reset();
+        }
+        return true;
+    }
+
+    private void readTrailer() throws IOException {
+        drop(bitCount & 7);
+        if (!need(32)) {
+            truncated();
+            return;
+        }
+        long expectedCrc = take(32);
+        if (!need(32)) {
+            truncated();
+            return;
+        }
+        long expectedSize = take(32);
+        if (crc != null && (expectedCrc != crc.getValue() || expectedSize != (memberOutput & 0xFFFFFFFFL))) {
+            throw new ZipException("Corrupt gzip data: checksum mismatch");
+        }
+        state = HEADER;
+    }
+
+    private void readBlockHeader() throws IOException {
+        if (!need(3)) {
+            truncated();
+            return;
+        }
+        lastBlock = take(1) == 1;
+        int type = (int) take(2);
+        if (type == 0) {
+            drop(bitCount & 7);
+            if (!need(32)) {
+                truncated();
+                return;
+            }
+            int length = (int) take(16);
+            int complement = (int) take(16);
+            if (length != (~complement & 0xFFFF)) {
+                throw new ZipException("Invalid stored block length");
+            }
+            storedRemaining = length;
+            state = STORED;
+        } else if (type == 1) {
+            literals = FIXED_LITERALS;
+            distances = FIXED_DISTANCES;
+            state = HUFFMAN;
+        } else if (type == 2) {
+            readDynamicTables();
+        } else {
+            throw new ZipException("Invalid block type");
+        }
+    }
+
+    private void readDynamicTables() throws IOException {
+        if (!need(14)) {
+            truncated();
+            return;
+        }
+        int literalCount = (int) take(5) + 257;
+        int distanceCount = (int) take(5) + 1;
+        int codeLengthCount = (int) take(4) + 4;
+        if (literalCount > 286 || distanceCount > 30) {
+            throw new ZipException("Invalid dynamic block header");
+        }
+        int[] codeLengths = new int[19];
+        for (int i = 0; i < codeLengthCount; i++) {
+            if (!need(3)) {
+                truncated();
+                return;
+            }
+            codeLengths[CODE_LENGTH_ORDER[i]] = (int) take(3);
+        }
+        Huffman codeLengthCode = new Huffman();
+        codeLengthCode.build(codeLengths, 0, 19);
+
+        int[] lengths = new int[literalCount + distanceCount];
+        int i = 0;
+        while (i < lengths.length) {
+            int symbol = decode(codeLengthCode);
+            if (symbol < 0) {
+                truncated();
+                return;
+            }
+            if (symbol < 16) {
+                lengths[i++] = symbol;
+                continue;
+            }
+            int repeat;
+            int value = 0;
+            if (!need(7)) {
+                truncated();
+                return;
+            }
+            if (symbol == 16) {
+                if (i == 0) {
+                    throw new ZipException("Invalid code lengths");
+                }
+                value = lengths[i - 1];
+                repeat = 3 + (int) take(2);
+            } else if (symbol == 17) {
+                repeat = 3 + (int) take(3);
+            } else {
+                repeat = 11 + (int) take(7);
+            }
+            if (i + repeat > lengths.length) {
+                throw new ZipException("Invalid code lengths");
+            }
+            while (repeat-- > 0) {
+                lengths[i++] = value;
+            }
+        }
+        if (lengths[256] == 0) {
+            throw new ZipException("Missing end of block code");
+        }
+        if (dynamicLiterals == null) {
+            dynamicLiterals = new Huffman();
+            dynamicDistances = new Huffman();
+        }
+        dynamicLiterals.build(lengths, 0, literalCount);
+        dynamicDistances.build(lengths, literalCount, distanceCount);
+        literals = dynamicLiterals;
+        distances = dynamicDistances;
+        state = HUFFMAN;
+    }
+
+    private int copyStored(byte[] buffer, int offset, int end) throws IOException {
+        while (offset < end && storedRemaining > 0) {
+            if (!need(8)) {
+                truncated();
+                return offset;
+            }
+            byte value = (byte) take(8);
+            buffer[offset++] = value;
+            window[windowEnd] = value;
+            windowEnd = (windowEnd + 1) & WINDOW_MASK;
+            storedRemaining--;
+        }
+        if (storedRemaining == 0) {
+            state = BLOCK_START;
+        }
+        return offset;
+    }
+
+    private int inflate(byte[] buffer, int offset, int end, int accounted) throws IOException {
+        while (offset < end) {
+            if (copyLength > 0) {
+                int source = (windowEnd - copyDistance) & WINDOW_MASK;
+                int count = Math.min(copyLength, end - offset);
+                copyLength -= count;
+                while (count-- > 0) {
+                    byte value = window[source];
+                    buffer[offset++] = value;
+                    window[windowEnd] = value;
+                    source = (source + 1) & WINDOW_MASK;
+                    windowEnd = (windowEnd + 1) & WINDOW_MASK;
+                }
+                continue;
+            }
+            int symbol = decode(literals);
+            if (symbol < 0) {
+                truncated();
+                return offset;
+            }
+            if (symbol < 256) {
+                buffer[offset++] = (byte) symbol;
+                window[windowEnd] = (byte) symbol;
+                windowEnd = (windowEnd + 1) & WINDOW_MASK;
+                continue;
+            }
+            if (symbol == 256) {
+                state = BLOCK_START;
+                return offset;
+            }
+            symbol -= 257;
+            if (symbol >= LENGTH_BASE.length) {
+                throw new ZipException("Invalid literal/length code");
+            }
+            if (!need(LENGTH_EXTRA[symbol])) {
+                truncated();
+                return offset;
+            }
+            int length = LENGTH_BASE[symbol] + (int) take(LENGTH_EXTRA[symbol]);
+            int distanceSymbol = decode(distances);
+            if (distanceSymbol < 0) {
+                truncated();
+                return offset;
+            }
+            if (distanceSymbol >= DISTANCE_BASE.length) {
+                throw new ZipException("Invalid distance code");
+            }
+            if (!need(DISTANCE_EXTRA[distanceSymbol])) {
+                truncated();
+                return offset;
+            }
+            int distance = DISTANCE_BASE[distanceSymbol] + (int) take(DISTANCE_EXTRA[distanceSymbol]);
+            if (distance > Math.min(WINDOW_SIZE, history + (offset - accounted))) {
+                throw new ZipException("Invalid distance too far back");
+            }
+            copyLength = length;
+            copyDistance = distance;
+        }
+        return offset;
+    }
+
+    private void truncated() {
+        truncated = true;
+        state = END;
+    }
+
+    // the next symbol, or -1 if the file ends before it
+    private int decode(Huffman code) throws IOException {
+        need(code.bits);
+        int entry = code.table[(int) bits & ((1 << code.bits) - 1)];
+        int length = entry & 15;
+        if (length == 0) {
+            if (bitCount < code.bits) {
+                return -1;
+            }
+            throw new ZipException("Invalid Huffman code");
+        }
+        if (length > bitCount) {
+            return -1;
+        }
+        drop(length);
+        return entry >>> 4;
+    }
+
+    // at least count (up to 56) bits in the bit buffer, unless the file ends first
+    private boolean need(int count) throws IOException {
+        while (bitCount < count) {
+            if (!input.hasRemaining()) {
+                input.clear();
+                int read = channel.read(input, inputOffset);
+                input.flip();
+                if (read <= 0) {
+                    return false;
+                }
+            }
+            // as many whole bytes as fit
+            while (bitCount <= 56 && input.hasRemaining()) {
+                bits |= (long) (input.get() & 0xFF) << bitCount;
+                bitCount += 8;
+                inputOffset++;
+            }
+        }
+        return true;
+    }
+
+    private long peek(int count) {
+        return bits & ((1L << count) - 1);
+    }
+
+    private void drop(int count) {
+        bits >>>= count;
+        bitCount -= count;
+    }
+
+    private long take(int count) {
+        long value = peek(count);
+        drop(count);
+        return value;
+    }
+
+    private int byteAt() throws IOException {
+        if (!need(8)) {
+            throw new ZipException("Truncated gzip header");
+        }
+        return (int) take(8);
+    }
+
+    private void skipBytes(int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            byteAt();
+        }
+    }
+
+    private void skipString() throws IOException {
+        while (byteAt() != 0) {
+            // file name or comment
+        }
+    }
+
+    /**
+     * A canonical Huffman code as a table indexed by the next {@code bits} input bits; each
+     * entry is {@code symbol << 4 | code length}, 0 where no code matches.
+     */
+    private static final class Huffman {
+        int[] table = new int[1];
+        int bits;
+
+        void build(int[] lengths, int from, int count) throws ZipException {
+            int[] lengthCounts = new int[16];
+            int maxLength = 0;
+            for (int i = 0; i < count; i++) {
+                int length = lengths[from + i];
+                lengthCounts[length]++;
+                maxLength = Math.max(maxLength, length);
+            }
+            lengthCounts[0] = 0;
+            int left = 1;
+            for (int length = 1; length <= 15; length++) {
+                left = (left << 1) - lengthCounts[length];
+                if (left < 0) {
+                    throw new ZipException("Invalid Huffman code lengths");
+                }
+            }
+            int[] nextCode = new int[16];
+            int code = 0;
+            for (int length = 1; length <= 15; length++) {
+                code = (code + lengthCounts[length - 1]) << 1;
+                nextCode[length] = code;
+            }
+            int size = 1 << maxLength;
+            if (table.length < size) {
+                table = new int[size];
+            } else {
+                Arrays.fill(table, 0, size, 0);
+            }
+            for (int symbol = 0; symbol < count; symbol++) {
+                int length = lengths[from + symbol];
+                if (length == 0) {
+                    continue;
+                }
+                // codes are sent most significant bit first, the table is indexed least first
+                int reversed = Integer.reverse(nextCode[length]++) >>> (32 - length);
+                int entry = symbol << 4 | length;
+                for (int i = reversed; i < size; i += 1 << length) {
+                    table[i] = entry;
+                }
+            }
+            bits = maxLength;
+        }
+    }
+}
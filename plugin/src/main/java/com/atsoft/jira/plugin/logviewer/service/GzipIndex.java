@@ -0,0 +1,245 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Restart points of one gzip file, so that reading from the middle of its content does not
+ * mean decompressing everything before. Every {@code span} bytes of output, at the next block
+ * start, it records a checkpoint: the bit offset of the block in the file, the output before
+ * it and the last 32 KB of that output, which the block may refer back to. Windows are kept
+ * deflated; log text shrinks to a few KB.
+ * <p>
+ * Building the index decompresses the file once; after that the index does not change and may
+ * be shared between threads. The file is identified by its size and a checksum of its first
+ * bytes rather than its name, as rotation renames archives.
+ */
+public class GzipIndex {
+    private static final int FILE_MAGIC = 0x4A4C565A; // "JLVZ"
+    private static final int FILE_VERSION = 1;
+    private static final int FINGERPRINT_BYTES = 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final long span;
+    private final long compressedSize;
+    private final long fingerprint;
+    private long size;
+    private boolean truncated;
+    private long[] bitOffsets = new long[16];
+    private long[] outputs = new long[16];
+    private byte[][] windows = new byte[16][];
+    private int count;
+
+    private GzipIndex(long span, long compressedSize, long fingerprint) {
+        this.span = span;
+        this.compressedSize = compressedSize;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * Decompresses the whole file to index it.
+     *
+     * @param span output between two checkpoints
+     * @throws ZipException if the file is not gzip data or is corrupt
+     */
+    public static GzipIndex build(FileChannel file, long span) throws IOException {
+        if (span <= 0) {
+            throw new IllegalArgumentException("span must be positive");
+        }
+        GzipIndex index = new GzipIndex(span, file.size(), fingerprint(file));
+        GzipDecoder decoder = new GzipDecoder(file);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long next = span;
+        while (decoder.read(buffer, 0, buffer.length) >= 0) {
+            if (decoder.isAtBlockStart() && decoder.getOutput() >= next) {
+                index.add(decoder.getBitOffset(), decoder.getOutput(), deflate(decoder.getWindow()));
+                next = decoder.getOutput() + span;
+            }
+        }
+        index.size = decoder.getOutput();
+        index.truncated = decoder.isTruncated();
+        return index;
+    }
+
+    /** Size and checksum of the first bytes of a gzip file, as a name for its index. */
+    public static String key(FileChannel file) throws IOException {
+        return Long.toHexString(file.size()) + "-" + Long.toHexString(fingerprint(file));
+    }
+
+    /** Whether the index was built from this file. */
+    public boolean matches(FileChannel file) throws IOException {
+        return file.size() == compressedSize && fingerprint(file) == fingerprint;
+    }
+
+    /**
+     * A decoder positioned at the last checkpoint at or before {@code position} of the output;
+     * the caller skips what is left.
+     */
+    GzipDecoder decoderAt(FileChannel file, long position) throws IOException {
+        int checkpoint = floor(position);
+        if (checkpoint < 0) {
+            return new GzipDecoder(file);
+        }
+        return new GzipDecoder(file, bitOffsets[checkpoint], outputs[checkpoint], inflate(windows[checkpoint]));
+    }
+
+    /** Decompressed size. */
+    public long getSize() {
+        return size;
+    }
+
+    /** True if the file ended in the middle of compressed data; its content ends there. */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public long getSpan() {
+        return span;
+    }
+
+    public int getCheckpointCount() {
+        return count;
+    }
+
+    /** Rough heap taken by the checkpoints. */
+    public long getMemoryBytes() {
+        long bytes = count * 16L;
+        for (int i = 0; i < count; i++) {
+            bytes += windows[i].length + 16;
+        }
+        return bytes;
+    }
+
+    /** Writes the index to {@code file}. */
+    public void save(Path file) throws IOException {
+        LogFiles.writeAtomically(file, out -> {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeLong(span);
+            out.writeLong(compressedSize);
+            out.writeLong(fingerprint);
+            out.writeLong(size);
+            out.writeBoolean(truncated);
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                out.writeLong(bitOffsets[i]);
+                out.writeLong(outputs[i]);
+                out.writeInt(windows[i].length);
+                out.write(windows[i]);
+            }
+        });
+    }
+
+    /**
+     * Reads an index written by {@link #save}.
+     *
+     * @return the index, or null if the file does not exist or was written with another format
+     *         or span
+     */
+    public static GzipIndex load(Path file, long span) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION || in.readLong() != span) {
+                return null;
+            }
+            GzipIndex index = new GzipIndex(span, in.readLong(), in.readLong());
+            index.size = in.readLong();
+            index.truncated = in.readBoolean();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                long bitOffset = in.readLong();
+                long output = in.readLong();
+                byte[] window = new byte[in.readInt()];
+                in.readFully(window);
+                index.add(bitOffset, output, window);
+            }
+            return index;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private void add(long bitOffset, long output, byte[] window) {
+        if (count == outputs.length) {
+            int capacity = count * 2;
+            bitOffsets = Arrays.copyOf(bitOffsets, capacity);
+            outputs = Arrays.copyOf(outputs, capacity);
+            windows = Arrays.copyOf(windows, capacity);
+        }
+        bitOffsets[count] = bitOffset;
+        outputs[count] = output;
+        windows[count] = window;
+        count++;
+    }
+
+    // index of the last checkpoint at or before position, -1 if none
+    private int floor(long position) {
+        int low = 0;
+        int high = count - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (outputs[mid] <= position) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    private static long fingerprint(FileChannel file) throws IOException {
+        return LogFiles.checksum(file, (int) Math.min(FINGERPRINT_BYTES, file.size()));
+    }
+
+    private static byte[] deflate(byte[] window) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(window);
+            deflater.finish();
+            byte[] out = new byte[window.length + 64];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == out.length) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                length += deflater.deflate(out, length, out.length - length);
+            }
+            return Arrays.copyOf(out, length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] deflated) throws ZipException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(deflated);
+            byte[] window = new byte[GzipDecoder.WINDOW_SIZE];
+            int length = 0;
+            while (!inflater.finished() && length < window.length) {
+                int read = inflater.inflate(window, length, window.length - length);
+                // an empty window, at the start of a member, finishes without output
+                if (read == 0 && !inflater.finished() && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new ZipException("Corrupt checkpoint window");
+                }
+                length += read;
+            }
+            return Arrays.copyOf(window, length);
+        } catch (DataFormatException e) {
+            throw new ZipException("Corrupt checkpoint window: " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import com.atlassian.jira.user.ApplicationUser;
+import com.atsoft.jira.plugin.logviewer.helper.IssueCopyReport;
+import com.atsoft.jira.plugin.logviewer.helper.IssueCopyResult;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One bulk issue copy submitted to the {@link IssueCopyJobService}. It records the result of
+ * each issue as it completes, so that clients can follow its progress by polling or by
+ * subscribing a {@link Listener}.
+ */
+public class IssueCopyJob {
+
+    public enum State {
+        QUEUED, RUNNING, FINISHED, CANCELLED, FAILED;
+
+        public boolean isDone() {
+            return this != QUEUED && this != RUNNING;
+        }
+    }
+
+    /**
+     * Follows a job. Calls are made one at a time while the job's lock is held, so they must
+     * not block; queue the update for sending instead.
+     */
+    public interface Listener {
+        void onProgress(IssueCopyJob job, IssueCopyResult result);
+
+        /** Called once, when the job finished, was cancelled or failed. */
+        void onFinish(IssueCopyJob job);
+    }
+
+    private final String id;
+    private final long sequence;
+    private final ApplicationUser user;
+    private final List<String> sourceIssueKeys;
+    private final String targetProjectKey;
+    private final String targetIssueTypeId;
+    private final long createdTime = System.currentTimeMillis();
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    // guarded by this
+    private final List<IssueCopyResult> results = new ArrayList<>();
+    private final Set<Listener> listeners = new LinkedHashSet<>();
+    private State state = State.QUEUED;
+    private int succeeded;
+    private long startTime;
+    private long finishTime;
+    private Thread runner;
+    private String error;
+
+    IssueCopyJob(String id, long sequence, ApplicationUser user, List<String> sourceIssueKeys,
+            String targetProjectKey, String targetIssueTypeId) {
+        this.id = id;
+        this.sequence = sequence;
+        this.user = user;
+        this.sourceIssueKeys = Collections.unmodifiableList(new ArrayList<>(sourceIssueKeys));
+        this.targetProjectKey = targetProjectKey;
+        this.targetIssueTypeId = targetIssueTypeId;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /** Orders jobs by submission; unlike the creation time it is unique. */
+    long getSequence() {
+        return sequence;
+    }
+
+    public ApplicationUser getUser() {
+        return user;
+    }
+
+    public List<String> getSourceIssueKeys() {
+        return sourceIssueKeys;
+    }
+
+    public String getTargetProjectKey() {
+        return targetProjectKey;
+    }
+
+    public String getTargetIssueTypeId() {
+        return targetIssueTypeId;
+    }
+
+    public long getCreatedTime() {
+        return createdTime;
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized long getStartTime() {
+        return startTime;
+    }
+
+    public synchronized long getFinishTime() {
+        return finishTime;
+    }
+
+    public int getTotal() {
+        return sourceIssueKeys.size();
+    }
+
+    public synchronized int getCompleted() {
+        return results.size();
+    }
+
+    public synchronized int getSucceeded() {
+        return succeeded;
+    }
+
+    /**
+     * Results so far, in the order the issues completed; once the job is finished, in the
+     * order the keys were submitted.
+     */
+    public synchronized List<IssueCopyResult> getResults() {
+        return new ArrayList<>(results);
+    }
+
+    /** Why the job failed, if it did. */
+    public synchronized String getError() {
+        return error;
+    }
+
+    /**
+     * Waits for the job to finish.
+     *
+     * @return false if it is still queued or running after the timeout
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return finished.await(timeout, unit);
+    }
+
+    /**
+     * Adds a listener. If the job is already done, only its {@link Listener#onFinish} is called.
+     */
+    public synchronized void subscribe(Listener listener) {
+        if (finished.getCount() == 0) {
+            listener.onFinish(this);
+        } else {
+            listeners.add(listener);
+        }
+    }
+
+    public synchronized void unsubscribe(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /** @return false if the job was cancelled before it could start */
+    synchronized boolean start(Thread thread) {
+        if (state != State.QUEUED) {
+            return false;
+        }
+        state = State.RUNNING;
+        startTime = System.currentTimeMillis();
+        runner = thread;
+        return true;
+    }
+
+    synchronized void progress(IssueCopyResult result) {
+        if (state != State.RUNNING) {
+            return;
+        }
+        results.add(result);
+        if (result.isSuccess()) {
+            succeeded++;
+        }
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onProgress(this, result);
+        }
+    }
+
+    synchronized void finish(IssueCopyReport report) {
+        if (state == State.RUNNING) {
+            state = State.FINISHED;
+        }
+        runner = null;
+        results.clear();
+        results.addAll(report.getResults());
+        succeeded = report.getSuccessCount();
+        done();
+    }
+
+    synchronized void fail(Exception e) {
+        if (state == State.RUNNING) {
+            state = State.FAILED;
+        }
+        runner = null;
+        error = String.valueOf(e);
+        done();
+    }
+
+    /**
+     * Cancels the job. A queued job will not start; a running one is interrupted, and the
+     * issues it has not started copying are reported as cancelled. Copies already in progress
+     * are not stopped halfway: they complete and are reported with their actual result.
+     *
+     * @return false if the job was already done
+     */
+    synchronized boolean cancel() {
+        if (state.isDone()) {
+            return false;
+        }
+        boolean queued = state == State.QUEUED;
+        state = State.CANCELLED;
+        if (runner != null) {
+            runner.interrupt();
+        }
+        if (queued) {
+            done();
+        }
+        return true;
+    }
+
+    private void done() {
+        if (finished.getCount() == 0) {
+            return;
+        }
+        finishTime = System.currentTimeMillis();
+        try {
+            for (Listener listener : new ArrayList<>(listeners)) {
+                listener.onFinish(this);
+            }
+        } finally {
+            listeners.clear();
+            finished.countDown();
+        }
+    }
+}
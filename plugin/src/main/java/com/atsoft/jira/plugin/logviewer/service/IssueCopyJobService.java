@@ -0,0 +1,245 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import com.atlassian.jira.user.ApplicationUser;
+import com.atsoft.jira.plugin.logviewer.helper.IssueCopyHelper;
+import com.atsoft.jira.plugin.logviewer.helper.IssueCopyReport;
+import com.atsoft.jira.plugin.logviewer.helper.IssueCopyResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Runs bulk issue copies in the background, so that the request which submits one returns
+ * at once instead of holding an HTTP thread until every issue is created.
+ * <p>
+ * Jobs run on a small pool of their own. Each user has only a limited number of jobs running
+ * at a time; further jobs of that user wait, in order, without taking a thread from others.
+ * Finished jobs are kept for a while so that clients can fetch their results.
+ */
+public class IssueCopyJobService {
+    private static final Logger log = LoggerFactory.getLogger(IssueCopyJobService.class);
+    private static final IssueCopyJobService INSTANCE = new IssueCopyJobService(new HelperCopier(),
+            LogViewerSettings.COPY_JOB_THREADS, LogViewerSettings.COPY_JOBS_PER_USER,
+            LogViewerSettings.COPY_MAX_PENDING_JOBS, LogViewerSettings.COPY_JOB_RETENTION_MINUTES);
+
+    /** Performs one bulk copy; see {@link IssueCopyHelper#copyIssues}. */
+    public interface Copier {
+        IssueCopyReport copy(ApplicationUser user, List<String> sourceIssueKeys, String targetProjectKey,
+                String targetIssueTypeId, Consumer<IssueCopyResult> onResult);
+    }
+
+    // jobs of one user that are running or waiting for their turn
+    private static class UserJobs {
+        int running;
+        final ArrayDeque<IssueCopyJob> waiting = new ArrayDeque<>();
+    }
+
+    private final Copier copier;
+    private final int threads;
+    private final int jobsPerUser;
+    private final int maxPendingJobs;
+    private final long retentionMillis;
+    private final Map<String, IssueCopyJob> jobs = new ConcurrentHashMap<>();
+
+    // guarded by this
+    private final Map<String, UserJobs> users = new HashMap<>();
+    private int pending;
+    private long sequence;
+    private ExecutorService executor;
+
+    public static IssueCopyJobService getInstance() {
+        return INSTANCE;
+    }
+
+    public IssueCopyJobService(Copier copier, int threads, int jobsPerUser, int maxPendingJobs,
+            long retentionMinutes) {
+        this.copier = copier;
+        this.threads = Math.max(1, threads);
+        this.jobsPerUser = Math.max(1, jobsPerUser);
+        this.maxPendingJobs = Math.max(1, maxPendingJobs);
+        this.retentionMillis = TimeUnit.MINUTES.toMillis(retentionMinutes);
+    }
+
+    /**
+     * Queues a bulk copy.
+     *
+     * @throws RejectedExecutionException if too many jobs are queued or running already
+     */
+    public synchronized IssueCopyJob submit(ApplicationUser user, List<String> sourceIssueKeys,
+            String targetProjectKey, String targetIssueTypeId) {
+        purge();
+        if (pending >= maxPendingJobs) {
+            throw new RejectedExecutionException("Too many issue copy jobs, " + pending + " are pending");
+        }
+        IssueCopyJob job = new IssueCopyJob(UUID.randomUUID().toString(), ++sequence, user, sourceIssueKeys,
+                targetProjectKey, targetIssueTypeId);
+        jobs.put(job.getId(), job);
+        pending++;
+        UserJobs userJobs = users.computeIfAbsent(user.getKey(), k -> new UserJobs());
+        if (userJobs.running < jobsPerUser) {
+            start(userJobs, job);
+        } else {
+            userJobs.waiting.add(job);
+        }
+        log.info("Issue copy job " + job.getId() + " of " + user.getUsername() + " queued: "
+                + sourceIssueKeys.size() + " issues to " + targetProjectKey);
+        return job;
+    }
+
+    public IssueCopyJob getJob(String id) {
+        return jobs.get(id);
+    }
+
+    /** The jobs of a user that are pending or have finished recently, newest first. */
+    public List<IssueCopyJob> getJobs(ApplicationUser user) {
+        synchronized (this) {
+            purge();
+        }
+        return jobs.values().stream()
+                .filter(job -> job.getUser().getKey().equals(user.getKey()))
+                .sorted(Comparator.comparingLong(IssueCopyJob::getSequence).reversed())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Cancels a job; see {@link IssueCopyJob#cancel()}.
+     *
+     * @return false if there is no such job or it was done already
+     */
+    public boolean cancel(String id) {
+        IssueCopyJob job = jobs.get(id);
+        if (job == null || !job.cancel()) {
+            return false;
+        }
+        synchronized (this) {
+            UserJobs userJobs = users.get(job.getUser().getKey());
+            if (userJobs != null && userJobs.waiting.remove(job)) {
+                pending--;
+                removeIfIdle(job.getUser().getKey(), userJobs);
+            }
+        }
+        return true;
+    }
+
+    /** Jobs queued or running. */
+    public synchronized int getPendingCount() {
+        return pending;
+    }
+
+    /**
+     * Cancels every pending job and stops the pool.
+     */
+    public synchronized void shutdown() {
+        for (IssueCopyJob job : jobs.values()) {
+            job.cancel();
+        }
+        users.clear();
+        pending = 0;
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    private void start(UserJobs userJobs, IssueCopyJob job) {
+        userJobs.running++;
+        executor().execute(() -> run(job));
+    }
+
+    private void run(IssueCopyJob job) {
+        try {
+            if (job.start(Thread.currentThread())) {
+                IssueCopyReport report = copier.copy(job.getUser(), job.getSourceIssueKeys(),
+                        job.getTargetProjectKey(), job.getTargetIssueTypeId(), job::progress);
+                job.finish(report);
+                log.info("Issue copy job " + job.getId() + " " + job.getState() + ": " + report);
+            }
+        } catch (RuntimeException e) {
+            log.error("Issue copy job " + job.getId() + " failed", e);
+            job.fail(e);
+        } finally {
+            // a cancel may have interrupted this thread; do not carry that over to the next job
+            Thread.interrupted();
+            jobDone(job);
+        }
+    }
+
+    private synchronized void jobDone(IssueCopyJob job) {
+        String userKey = job.getUser().getKey();
+        UserJobs userJobs = users.get(userKey);
+        if (userJobs == null) {
+            // shut down meanwhile
+            return;
+        }
+        pending--;
+        userJobs.running--;
+        IssueCopyJob next = userJobs.waiting.poll();
+        if (next != null && executor != null) {
+            start(userJobs, next);
+        } else {
+            removeIfIdle(userKey, userJobs);
+        }
+    }
+
+    private void removeIfIdle(String userKey, UserJobs userJobs) {
+        if (userJobs.running == 0 && userJobs.waiting.isEmpty()) {
+            users.remove(userKey);
+        }
+    }
+
+    // forgets finished jobs once their results have been kept long enough
+    private void purge() {
+        long now = System.currentTimeMillis();
+        jobs.values().removeIf(job -> job.getState().isDone() && job.getFinishTime() > 0
+                && now - job.getFinishTime() > retentionMillis);
+    }
+
+    private ExecutorService executor() {
+        if (executor == null) {
+            AtomicInteger count = new AtomicInteger();
+            // at most maxPendingJobs are ever handed to the pool, which bounds its queue
+            executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    r -> {
+                        Thread thread = new Thread(r, "jira-log-viewer-copy-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        }
+        return executor;
+    }
+
+    /** Copies with one shared {@link IssueCopyHelper}, so that its copy plans are reused. */
+    private static class HelperCopier implements Copier {
+        private IssueCopyHelper helper;
+
+        @Override
+        public IssueCopyReport copy(ApplicationUser user, List<String> sourceIssueKeys, String targetProjectKey,
+                String targetIssueTypeId, Consumer<IssueCopyResult> onResult) {
+            return helper().copyIssues(user, sourceIssueKeys, targetProjectKey, targetIssueTypeId,
+                    LogViewerSettings.COPY_PARALLELISM, onResult);
+        }
+
+        // created on first use, when Jira's components are available
+        private synchronized IssueCopyHelper helper() {
+            if (helper == null) {
+                helper = new IssueCopyHelper();
+            }
+            return helper;
+        }
+    }
+}
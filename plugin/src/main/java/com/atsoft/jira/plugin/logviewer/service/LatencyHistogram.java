@@ -0,0 +1,99 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency distribution in fixed memory: counts in logarithmic buckets of microseconds, eight
+ * per power of two, so a percentile is off by at most an eighth. Recording is lock-free and
+ * may happen on any thread; a snapshot taken meanwhile is only approximately consistent.
+ */
+public class LatencyHistogram {
+    // 2^SUB_BITS buckets per power of two
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    // longest latency told apart from longer ones, about 25 days
+    private static final long MAX_MICROS = (1L << 41) - 1;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(bucket(MAX_MICROS) + 1);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        long micros = Math.max(0, nanos / 1000);
+        buckets.incrementAndGet(bucket(Math.min(micros, MAX_MICROS)));
+        count.increment();
+        sum.add(micros);
+        max.accumulateAndGet(micros, Math::max);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMeanMicros() {
+        long n = count.sum();
+        return n == 0 ? 0 : sum.sum() / n;
+    }
+
+    public long getMaxMicros() {
+        return max.get();
+    }
+
+    /**
+     * Upper bound of the bucket holding the given fraction of all recorded latencies.
+     *
+     * @param fraction e.g. 0.99 for the 99th percentile
+     * @return microseconds, 0 if nothing was recorded
+     */
+    public long getPercentileMicros(double fraction) {
+        long total = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            total += buckets.get(i);
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * total));
+        long seen = 0;
+        for (int i = 0; i < buckets.length() && total > 0; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), getMaxMicros());
+            }
+        }
+        return 0;
+    }
+
+    /** Count, mean, median, 90th and 99th percentile and maximum, for JMX and REST. */
+    public Map<String, Long> toMap() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        snapshot.put("count", getCount());
+        snapshot.put("meanMicros", getMeanMicros());
+        snapshot.put("p50Micros", getPercentileMicros(0.5));
+        snapshot.put("p90Micros", getPercentileMicros(0.9));
+        snapshot.put("p99Micros", getPercentileMicros(0.99));
+        snapshot.put("maxMicros", getMaxMicros());
+        return snapshot;
+    }
+
+    // values below SUB_BUCKETS get a bucket each, larger ones share by their top SUB_BITS + 1 bits
+    private static int bucket(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        int sub = (int) (micros >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long sub = bucket % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1) << (exponent - SUB_BITS)) - 1;
+    }
+}
@@ -0,0 +1,144 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Opens log files for reading whether they are plain, like {@code atlassian-jira.log.3}, or
+ * gzip archives. An archive is read through its decompressed content, with a
+ * {@link GzipIndex} so that reads from the middle of it start at a nearby checkpoint. The
+ * first use of an archive decompresses it once to build its index, which is then kept in
+ * memory and under the index directory, named after the archive's content so it survives the
+ * archive being renamed by the next rotation.
+ */
+public class LogArchiveService {
+    private static final Logger log = LoggerFactory.getLogger(LogArchiveService.class);
+    private static final LogArchiveService INSTANCE = new LogArchiveService(null,
+            LogViewerSettings.ARCHIVE_SPAN_BYTES);
+
+    private final long span;
+    // by GzipIndex#key; a future while the index is being built, so it is built once
+    private final Map<String, CompletableFuture<GzipIndex>> indexes = new ConcurrentHashMap<>();
+    private Path indexDirectory;
+
+    public static LogArchiveService getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param indexDirectory where indexes are stored; null for the one of {@link LogIndexService}
+     * @param span           output between two checkpoints of an index
+     */
+    public LogArchiveService(Path indexDirectory, long span) {
+        this.indexDirectory = indexDirectory;
+        this.span = span;
+    }
+
+    /** Whether the file is read decompressed. */
+    public static boolean isCompressed(Path path) {
+        return path.getFileName().toString().endsWith(".gz");
+    }
+
+    /**
+     * Opens a log file read-only. For an archive the channel reads its decompressed content,
+     * indexing it first if needed.
+     */
+    public FileChannel open(Path path) throws IOException {
+        FileChannel file = FileChannel.open(path, StandardOpenOption.READ);
+        if (!isCompressed(path)) {
+            return file;
+        }
+        try {
+            return new GzipChannel(file, index(path, file));
+        } catch (IOException | RuntimeException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    public int getIndexCount() {
+        return indexes.size();
+    }
+
+    /** Rough heap taken by the indexes. */
+    public long getMemoryBytes() {
+        long bytes = 0;
+        for (CompletableFuture<GzipIndex> index : indexes.values()) {
+            GzipIndex built = index.getNow(null);
+            if (built != null) {
+                bytes += built.getMemoryBytes();
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Forgets the indexes kept in memory. Called when the plugin is disabled.
+     */
+    public void shutdown() {
+        indexes.clear();
+    }
+
+    private GzipIndex index(Path path, FileChannel file) throws IOException {
+        String key = GzipIndex.key(file);
+        CompletableFuture<GzipIndex> created = new CompletableFuture<>();
+        CompletableFuture<GzipIndex> existing = indexes.putIfAbsent(key, created);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                // the thread building it reported the error
+                throw e.getCause() instanceof IOException ? (IOException) e.getCause()
+                        : new IOException("Cannot index " + path, e.getCause());
+            }
+        }
+        try {
+            GzipIndex index = loadOrBuild(path, key, file);
+            created.complete(index);
+            return index;
+        } catch (IOException | RuntimeException e) {
+            indexes.remove(key, created);
+            created.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private GzipIndex loadOrBuild(Path path, String key, FileChannel file) throws IOException {
+        Path indexFile = getIndexDirectory().resolve(key + ".gzi");
+        try {
+            GzipIndex index = GzipIndex.load(indexFile, span);
+            if (index != null && index.matches(file)) {
+                return index;
+            }
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable index of " + path + ": " + e.getMessage());
+        }
+        long start = System.nanoTime();
+        GzipIndex index = GzipIndex.build(file, span);
+        log.info("Indexed " + path + ": " + index.getSize() + " bytes, " + index.getCheckpointCount()
+                + " checkpoints in " + (System.nanoTime() - start) / 1_000_000 + " ms"
+                + (index.isTruncated() ? ", archive is truncated" : ""));
+        try {
+            index.save(indexFile);
+        } catch (IOException e) {
+            log.warn("Could not save index of " + path, e);
+        }
+        return index;
+    }
+
+    private synchronized Path getIndexDirectory() {
+        if (indexDirectory == null) {
+            indexDirectory = LogIndexService.defaultIndexDirectory();
+        }
+        return indexDirectory;
+    }
+}
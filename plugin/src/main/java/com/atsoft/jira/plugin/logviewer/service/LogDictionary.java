@@ -0,0 +1,110 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Assigns small numbers to the distinct values of a log column such as the logger name, so a
+ * {@link LogTable} stores an {@code int} per entry instead of a string. Values are looked up by
+ * their UTF-8 bytes straight from the read buffer, so encoding a line allocates nothing unless
+ * the value is new. At most {@code maxSize} values are kept; later ones are encoded as
+ * {@link #NONE}. Not thread-safe.
+ */
+public final class LogDictionary {
+    /** Code of a missing value, or of one that did not fit. */
+    public static final int NONE = -1;
+
+    // estimated heap per value besides its bytes: array, string and table slots
+    private static final int ENTRY_OVERHEAD_BYTES = 64;
+
+    private final int maxSize;
+    private byte[][] values = new byte[16][];
+    private int[] hashes = new int[16];
+    private String[] names = new String[16];
+    // open addressing; slots hold code + 1, 0 for empty
+    private int[] table = new int[32];
+    private int size;
+    private long valueBytes;
+
+    public LogDictionary(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * The code of {@code bytes[offset, offset + length)}, adding it if it is new.
+     *
+     * @return the code, or {@link #NONE} if the dictionary is full and the value is not in it
+     */
+    public int encode(byte[] bytes, int offset, int length) {
+        int hash = hash(bytes, offset, length);
+        int mask = table.length - 1;
+        int slot = hash & mask;
+        while (table[slot] != 0) {
+            int code = table[slot] - 1;
+            if (hashes[code] == hash && Arrays.equals(values[code], 0, values[code].length, bytes, offset,
+                    offset + length)) {
+                return code;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (size >= maxSize) {
+            return NONE;
+        }
+        if (size == values.length) {
+            int capacity = size * 2;
+            values = Arrays.copyOf(values, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+            names = Arrays.copyOf(names, capacity);
+        }
+        int code = size++;
+        values[code] = Arrays.copyOfRange(bytes, offset, offset + length);
+        hashes[code] = hash;
+        valueBytes += length;
+        table[slot] = code + 1;
+        if (size * 2 > table.length) {
+            rehash();
+        }
+        return code;
+    }
+
+    /** The value with the given code, or null for {@link #NONE}. */
+    public String decode(int code) {
+        if (code < 0 || code >= size) {
+            return null;
+        }
+        if (names[code] == null) {
+            names[code] = new String(values[code], StandardCharsets.UTF_8);
+        }
+        return names[code];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /** Rough heap taken by the values. */
+    public long getMemoryBytes() {
+        return valueBytes + (long) size * ENTRY_OVERHEAD_BYTES + table.length * 4L;
+    }
+
+    private void rehash() {
+        table = new int[table.length * 2];
+        int mask = table.length - 1;
+        for (int code = 0; code < size; code++) {
+            int slot = hashes[code] & mask;
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = code + 1;
+        }
+    }
+
+    private static int hash(byte[] bytes, int offset, int length) {
+        int hash = 1;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        // spread the low bits used for the slot
+        return hash ^ (hash >>> 16);
+    }
+}
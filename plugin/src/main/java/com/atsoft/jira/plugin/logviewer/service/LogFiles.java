@@ -0,0 +1,225 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Small helpers for reading log files through a {@link FileChannel}, and for writing the
+ * indexes kept of them.
+ */
+public final class LogFiles {
+    private static final int SCAN_BUFFER_SIZE = 8192;
+
+    /** Bytes needed to recognise {@code yyyy-MM-dd HH:mm:ss,SSS} at the start of a line. */
+    public static final int TIMESTAMP_LENGTH = 23;
+
+    /** Like {@link java.util.function.Consumer}, but may fail with an {@link IOException}. */
+    interface IOConsumer<T> {
+        void accept(T value) throws IOException;
+    }
+
+    private LogFiles() {
+    }
+
+    /**
+     * Writes {@code file} through a temporary file next to it, which then replaces it atomically
+     * where the file system allows, so that readers never see it half written.
+     */
+    static void writeAtomically(Path file, IOConsumer<DataOutputStream> content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            content.accept(out);
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Offset of the first line that starts at or after {@code offset}. Returns the file size if
+     * no line starts there.
+     */
+    public static long lineStartAtOrAfter(FileChannel channel, long offset) throws IOException {
+        if (offset <= 0) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        // a line starts at offset if the byte before it is a newline
+        long position = offset - 1;
+        long size = channel.size();
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    /**
+     * Parses the log4j timestamp Jira writes at the start of each entry,
+     * {@code yyyy-MM-dd HH:mm:ss,SSS}, from {@code buffer[offset, offset + length)}. The time
+     * zone suffix is ignored: the result is the wall-clock time as if it were UTC (see
+     * {@link #toMillis(LocalDateTime)}), which is what a user means by "14:32".
+     *
+     * @return the timestamp, or -1 if the bytes do not start with one
+     */
+    public static long parseTimestamp(ByteBuffer buffer, int offset, int length) {
+        if (length < 19) {
+            return -1;
+        }
+        int year = digits(buffer, offset, 4);
+        int month = digits(buffer, offset + 5, 2);
+        int day = digits(buffer, offset + 8, 2);
+        int hour = digits(buffer, offset + 11, 2);
+        int minute = digits(buffer, offset + 14, 2);
+        int second = digits(buffer, offset + 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > 31 || hour < 0 || hour > 23
+                || minute < 0 || minute > 59 || second < 0 || second > 60
+                || buffer.get(offset + 4) != '-' || buffer.get(offset + 7) != '-'
+                || (buffer.get(offset + 10) != ' ' && buffer.get(offset + 10) != 'T')
+                || buffer.get(offset + 13) != ':' || buffer.get(offset + 16) != ':') {
+            return -1;
+        }
+        int millis = 0;
+        if (length >= TIMESTAMP_LENGTH && (buffer.get(offset + 19) == ',' || buffer.get(offset + 19) == '.')) {
+            millis = Math.max(0, digits(buffer, offset + 20, 3));
+        }
+        return ((epochDay(year, month, day) * 24 + hour) * 60 + minute) * 60_000L + second * 1000L + millis;
+    }
+
+    /** Wall-clock time in the representation used by {@link #parseTimestamp}. */
+    public static long toMillis(LocalDateTime time) {
+        return time.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    public static LocalDateTime toLocalDateTime(long millis) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(millis, 1000), Math.floorMod(millis, 1000) * 1_000_000,
+                ZoneOffset.UTC);
+    }
+
+    /**
+     * Reads up to {@code maxLines} complete lines starting at {@code from} (a line start) and
+     * ending before {@code to}. Line terminators are stripped and lines longer than
+     * {@code maxLineBytes} are cut.
+     */
+    public static List<String> readLines(FileChannel channel, long from, long to, int maxLines, int maxLineBytes)
+            throws IOException {
+        List<String> lines = new ArrayList<>();
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        byte[] line = new byte[256];
+        int lineLength = 0;
+        long position = from;
+        while (position < to && lines.size() < maxLines) {
+            buffer.clear();
+            if (to - position < buffer.capacity()) {
+                buffer.limit((int) (to - position));
+            }
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read && lines.size() < maxLines; i++) {
+                byte b = buffer.get(i);
+                if (b == '\n') {
+                    int end = lineLength > 0 && line[lineLength - 1] == '\r' ? lineLength - 1 : lineLength;
+                    lines.add(new String(line, 0, end, StandardCharsets.UTF_8));
+                    lineLength = 0;
+                } else if (lineLength < maxLineBytes) {
+                    if (lineLength == line.length) {
+                        line = Arrays.copyOf(line, Math.min(maxLineBytes, line.length * 2));
+                    }
+                    line[lineLength++] = b;
+                }
+            }
+            position += read;
+        }
+        return lines;
+    }
+
+    /**
+     * Offset of the first newline in {@code [from, to)}, read through {@code buffer}; -1 if
+     * there is none.
+     */
+    static long findNewline(FileChannel channel, ByteBuffer buffer, long from, long to) throws IOException {
+        long position = from;
+        while (position < to) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), to - position));
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i;
+                }
+            }
+            position += read;
+        }
+        return -1;
+    }
+
+    /**
+     * CRC of the first {@code length} bytes of the file, used to tell whether a file was
+     * replaced by another one; -1 if the file is shorter.
+     */
+    public static long checksum(FileChannel channel, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) <= 0) {
+                return -1;
+            }
+        }
+        buffer.flip();
+        CRC32 crc = new CRC32();
+        crc.update(buffer);
+        return crc.getValue();
+    }
+
+    private static int digits(ByteBuffer buffer, int offset, int count) {
+        int value = 0;
+        for (int i = 0; i < count; i++) {
+            int digit = buffer.get(offset + i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    // days since 1970-01-01 in the proleptic Gregorian calendar, without allocating a LocalDate
+    private static long epochDay(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+}
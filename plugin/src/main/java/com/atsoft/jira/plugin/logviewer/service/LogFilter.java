@@ -0,0 +1,149 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Which log entries to show. Each criterion is optional; an entry must meet all that are set.
+ * <ul>
+ * <li>{@code levels}: the entry's level is one of them.</li>
+ * <li>{@code logger}: the logger is the given one or below it, compared name segment by name
+ * segment, where a one-letter segment also matches a segment starting with that letter. So
+ * {@code com.atlassian.jira.index} matches {@code c.a.jira.index.DefaultIndexManager}, the way
+ * Jira abbreviates loggers, and the other way round.</li>
+ * <li>{@code thread}: the thread name starts with it, e.g. {@code http-nio} for requests.</li>
+ * <li>{@code from}, {@code to}: the entry was logged in {@code [from, to)}, both as returned by
+ * {@link LogFiles#parseTimestamp}.</li>
+ * </ul>
+ */
+public final class LogFilter {
+    /** Value of {@code from} or {@code to} when there is no bound. */
+    public static final long UNBOUNDED = -1;
+
+    /** Lets every entry through. */
+    public static final LogFilter ALL = new LogFilter(null, null, null, UNBOUNDED, UNBOUNDED);
+
+    private final Set<LogLevel> levels;
+    private final String logger;
+    private final String thread;
+    private final long from;
+    private final long to;
+
+    /**
+     * @param levels null or empty for any level
+     * @param logger null or empty for any logger
+     * @param thread null or empty for any thread
+     */
+    public LogFilter(Set<LogLevel> levels, String logger, String thread, long from, long to) {
+        this.levels = levels == null || levels.isEmpty() ? null
+                : Collections.unmodifiableSet(EnumSet.copyOf(levels));
+        this.logger = logger == null || logger.isEmpty() ? null : logger;
+        this.thread = thread == null || thread.isEmpty() ? null : thread;
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * Parses a comma separated list of level names such as {@code ERROR,WARN}, in any case.
+     *
+     * @return the levels, or null for a null or blank list
+     * @throws IllegalArgumentException if a name is not a level
+     */
+    public static Set<LogLevel> parseLevels(String list) {
+        if (list == null || list.isBlank()) {
+            return null;
+        }
+        Set<LogLevel> levels = EnumSet.noneOf(LogLevel.class);
+        for (String name : list.split(",")) {
+            if (!name.isBlank()) {
+                levels.add(LogLevel.valueOf(name.trim().toUpperCase(Locale.ROOT)));
+            }
+        }
+        return levels;
+    }
+
+    /** Null if any level passes. */
+    public Set<LogLevel> getLevels() {
+        return levels;
+    }
+
+    public String getLogger() {
+        return logger;
+    }
+
+    public String getThread() {
+        return thread;
+    }
+
+    public long getFrom() {
+        return from;
+    }
+
+    public long getTo() {
+        return to;
+    }
+
+    /** Whether the entry passes, given its fields; {@code level} null if it has none. */
+    public boolean matches(LogLevel level, String threadName, String loggerName, long timestamp) {
+        return matchesLevel(level) && matchesThread(threadName) && matchesLogger(loggerName)
+                && matchesTime(timestamp);
+    }
+
+    public boolean matchesLevel(LogLevel level) {
+        return levels == null || (level != null && levels.contains(level));
+    }
+
+    public boolean matchesTime(long timestamp) {
+        return (from == UNBOUNDED || timestamp >= from) && (to == UNBOUNDED || timestamp < to);
+    }
+
+    public boolean matchesThread(String threadName) {
+        return thread == null || (threadName != null && threadName.startsWith(thread));
+    }
+
+    public boolean matchesLogger(String loggerName) {
+        if (logger == null) {
+            return true;
+        }
+        if (loggerName == null) {
+            return false;
+        }
+        int wanted = 0;
+        int actual = 0;
+        while (wanted < logger.length()) {
+            if (actual >= loggerName.length()) {
+                return false;
+            }
+            int wantedEnd = segmentEnd(logger, wanted);
+            int actualEnd = segmentEnd(loggerName, actual);
+            if (!sameSegment(logger, wanted, wantedEnd, loggerName, actual, actualEnd)) {
+                return false;
+            }
+            wanted = wantedEnd + 1;
+            actual = actualEnd + 1;
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "levels=" + levels + ", logger=" + logger + ", thread=" + thread + ", from=" + from + ", to=" + to;
+    }
+
+    private static int segmentEnd(String name, int start) {
+        int dot = name.indexOf('.', start);
+        return dot < 0 ? name.length() : dot;
+    }
+
+    private static boolean sameSegment(String a, int aStart, int aEnd, String b, int bStart, int bEnd) {
+        int aLength = aEnd - aStart;
+        int bLength = bEnd - bStart;
+        if (aLength == 1 || bLength == 1) {
+            // abbreviated
+            return aLength > 0 && bLength > 0 && a.charAt(aStart) == b.charAt(bStart);
+        }
+        return aLength == bLength && a.regionMatches(aStart, b, bStart, aLength);
+    }
+}
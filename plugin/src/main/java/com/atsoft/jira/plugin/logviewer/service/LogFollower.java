@@ -0,0 +1,212 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * One viewer of a {@link LogTail}: just a position in the file and a frame buffer. It reads
+ * through the tail's shared channel with positional reads and sends one frame at a time, so a
+ * slow viewer falls behind in the file instead of buffering output in memory.
+ * <p>
+ * Control messages {@code log:rotated} and {@code log:truncated} tell the client that the
+ * following output starts at the beginning of a new file.
+ * <p>
+ * With a {@link LogStreamFilter} the follower still reads the whole file, but sends only the
+ * lines the filter selects; the filter can be replaced at any time with {@link #setFilter},
+ * which is marked by a {@code log:filter} control message.
+ */
+public class LogFollower {
+    private static final Logger log = LoggerFactory.getLogger(LogFollower.class);
+
+    private final LogTail tail;
+    private final OutputCoalescer.FrameSink sink;
+    private final ByteBuffer frame;
+    private final Deque<String> controls = new ArrayDeque<>();
+
+    private LogTail.Generation generation;
+    private long position;
+    // null to send the file as it is
+    private LogLineSelector selector;
+    private boolean inFlight;
+    private boolean pumping;
+    private boolean closed;
+
+    LogFollower(LogTail tail, LogTail.Generation generation, long position, LogStreamFilter filter,
+            OutputCoalescer.FrameSink sink, int maxFrameBytes) {
+        this.tail = tail;
+        this.generation = generation;
+        this.position = position;
+        this.selector = selector(filter);
+        this.sink = sink;
+        this.frame = ByteBuffer.allocate(maxFrameBytes);
+    }
+
+    public LogTail getTail() {
+        return tail;
+    }
+
+    /** Position of the next byte to send, in the file currently being read. */
+    public synchronized long getPosition() {
+        return position;
+    }
+
+    /**
+     * Sends whatever became available, unless a frame is still in flight; its completion
+     * continues from there.
+     */
+    public synchronized void wake() {
+        if (!inFlight) {
+            pump();
+        }
+    }
+
+    /** Null if the whole file is sent. */
+    public synchronized LogStreamFilter getFilter() {
+        return selector != null ? selector.getFilter() : null;
+    }
+
+    /**
+     * Replaces the filter. The client first receives {@code log:filter}, then the lines the new
+     * filter selects, starting at most {@code replayBytes} before the current position, so it
+     * can show the recent part of the file filtered the new way.
+     *
+     * @param filter null to send the whole file again
+     */
+    public synchronized void setFilter(LogStreamFilter filter, long replayBytes) {
+        if (closed) {
+            return;
+        }
+        selector = selector(filter);
+        try {
+            // at a line start, so the selector sees whole lines
+            position = LogFiles.lineStartAtOrAfter(generation.channel, Math.max(0, position - replayBytes));
+        } catch (IOException e) {
+            log.error("Error reading log file " + tail.getPath(), e);
+        }
+        controls.add("log:filter");
+        if (!inFlight) {
+            pump();
+        }
+    }
+
+    /**
+     * Replaces the filter with one given as a query string, see {@link LogStreamFilter#parse}.
+     * An invalid one leaves the filter as it is and is answered with
+     * {@code log:invalid-filter:<reason>}.
+     */
+    public synchronized void setFilter(String query, long replayBytes) {
+        LogStreamFilter filter;
+        try {
+            filter = LogStreamFilter.parse(query);
+        } catch (IllegalArgumentException e) {
+            controls.add("log:invalid-filter:" + e.getMessage());
+            if (!inFlight) {
+                pump();
+            }
+            return;
+        }
+        setFilter(filter, replayBytes);
+    }
+
+    synchronized void close() {
+        closed = true;
+        if (generation != null) {
+            generation.release();
+            generation = null;
+        }
+    }
+
+    private void pump() {
+        if (pumping) {
+            // a send completed inline; the loop below continues
+            return;
+        }
+        pumping = true;
+        try {
+            while (!closed && !inFlight && step()) {
+                // keep going while sends complete synchronously
+            }
+        } finally {
+            pumping = false;
+        }
+    }
+
+    /**
+     * Takes the next action.
+     *
+     * @return false if there is nothing to send right now
+     */
+    private boolean step() {
+        if (!controls.isEmpty()) {
+            inFlight = true;
+            sink.sendText(controls.poll(), this::onSent);
+            return true;
+        }
+
+        long size = generation.size();
+        LogTail.Generation latest = tail.current();
+        if (position >= size && latest != null && latest != generation) {
+            // finished the rotated file; continue with the new one
+            generation.release();
+            generation = latest.retain();
+            position = 0;
+            if (selector != null) {
+                selector.reset();
+            }
+            controls.add("log:rotated");
+            return true;
+        }
+        if (size < position) {
+            position = 0;
+            if (selector != null) {
+                selector.reset();
+            }
+            controls.add("log:truncated");
+            return true;
+        }
+        if (position == size) {
+            return false;
+        }
+
+        frame.clear();
+        frame.limit((int) Math.min(frame.capacity(), size - position));
+        try {
+            int read = generation.channel.read(frame, position);
+            if (read <= 0) {
+                return false;
+            }
+            position += read;
+        } catch (IOException e) {
+            log.error("Error reading log file " + tail.getPath(), e);
+            return false;
+        }
+        frame.flip();
+        ByteBuffer output = frame;
+        if (selector != null) {
+            output = selector.select(frame);
+            if (!output.hasRemaining()) {
+                // nothing selected; read on
+                return true;
+            }
+        }
+        inFlight = true;
+        sink.send(output, this::onSent);
+        return true;
+    }
+
+    private static LogLineSelector selector(LogStreamFilter filter) {
+        return filter != null ? new LogLineSelector(filter, LogViewerSettings.PAGE_MAX_LINE_BYTES) : null;
+    }
+
+    private void onSent() {
+        synchronized (this) {
+            inFlight = false;
+            pump();
+        }
+    }
+}
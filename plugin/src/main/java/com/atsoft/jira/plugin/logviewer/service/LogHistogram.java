@@ -0,0 +1,105 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Entry counts of a log file over a time range, read from a {@link LogTimeline}: one bucket per
+ * minute or hour, empty ones included, and the loggers with the most entries in the range.
+ * Times are as returned by {@link LogFiles#parseTimestamp}.
+ */
+public final class LogHistogram {
+
+    /** The entries of one minute or hour. */
+    public static final class Bucket {
+        private final long time;
+        private final long count;
+        private final Map<LogLevel, Long> levels;
+
+        public Bucket(long time, long count, Map<LogLevel, Long> levels) {
+            this.time = time;
+            this.count = count;
+            this.levels = levels;
+        }
+
+        /** Start of the bucket. */
+        public long getTime() {
+            return time;
+        }
+
+        /** Entries passing the filter, with a level or without. */
+        public long getCount() {
+            return count;
+        }
+
+        /** Of those, the ones of each level, leaving out levels with none. */
+        public Map<LogLevel, Long> getLevels() {
+            return levels;
+        }
+    }
+
+    /** Entries of one logger. */
+    public static final class LoggerCount {
+        private final String logger;
+        private final long count;
+
+        public LoggerCount(String logger, long count) {
+            this.logger = logger;
+            this.count = count;
+        }
+
+        public String getLogger() {
+            return logger;
+        }
+
+        public long getCount() {
+            return count;
+        }
+    }
+
+    private final long bucketMillis;
+    private final long from;
+    private final long to;
+    private final long lastTimestamp;
+    private final List<Bucket> buckets;
+    private final List<LoggerCount> loggers;
+
+    public LogHistogram(long bucketMillis, long from, long to, long lastTimestamp, List<Bucket> buckets,
+            List<LoggerCount> loggers) {
+        this.bucketMillis = bucketMillis;
+        this.from = from;
+        this.to = to;
+        this.lastTimestamp = lastTimestamp;
+        this.buckets = buckets;
+        this.loggers = loggers;
+    }
+
+    /** {@link LogTimeline#MINUTE} or {@link LogTimeline#HOUR}. */
+    public long getBucketMillis() {
+        return bucketMillis;
+    }
+
+    /** Start of the first bucket. */
+    public long getFrom() {
+        return from;
+    }
+
+    /** End of the last bucket. */
+    public long getTo() {
+        return to;
+    }
+
+    /** Time of the latest entry counted, or -1 if there is none. */
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    public List<Bucket> getBuckets() {
+        return buckets;
+    }
+
+    /** Loggers with the most entries passing the filter in the range, most first. */
+    public List<LoggerCount> getLoggers() {
+        return loggers;
+    }
+}
@@ -0,0 +1,299 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Sparse index of one log file. Every {@code interval} bytes it records a checkpoint: the
+ * number of the line starting there, its byte offset and the latest timestamp seen up to it.
+ * Seeking to a line or a time is a binary search over the checkpoints followed by a scan of at
+ * most one interval, so a multi-GB file never has to be read from the top.
+ * <p>
+ * The index only covers complete lines and is extended by {@link #update} as the file grows.
+ * If the file was truncated or replaced (the first bytes no longer match), it starts over.
+ */
+public class LogIndex {
+    private static final int FILE_MAGIC = 0x4A4C5649; // "JLVI"
+    private static final int FILE_VERSION = 1;
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+    private static final int FINGERPRINT_BYTES = 1024;
+
+    /** Called for each complete line by {@link #scanLines}; returns false to stop before it. */
+    private interface LineVisitor {
+        boolean visit(long lineStart, long timestamp);
+    }
+
+    private final long interval;
+    // checkpoints; times are a running maximum so they can be binary searched
+    private long[] lines = new long[64];
+    private long[] offsets = new long[64];
+    private long[] times = new long[64];
+    private int count;
+    private long indexedBytes;
+    private long lineCount;
+    private long lastTimestamp = -1;
+    private int fingerprintLength;
+    private long fingerprint;
+    private int unsaved;
+
+    public LogIndex(long interval) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("interval must be positive");
+        }
+        this.interval = interval;
+    }
+
+    /**
+     * Indexes the lines appended since the last update.
+     *
+     * @return true if the index changed
+     */
+    public synchronized boolean update(FileChannel channel) throws IOException {
+        long size = channel.size();
+        boolean reset = false;
+        if (size < indexedBytes
+                || (fingerprintLength > 0 && LogFiles.checksum(channel, fingerprintLength) != fingerprint)) {
+            reset();
+            reset = true;
+        }
+        if (size == indexedBytes) {
+            return reset;
+        }
+        int before = count;
+        long[] state = { lineCount, count == 0 ? -1 : offsets[count - 1] };
+        indexedBytes = scanLines(channel, indexedBytes, size, (lineStart, timestamp) -> {
+            if (timestamp > lastTimestamp) {
+                lastTimestamp = timestamp;
+            }
+            if (state[1] < 0 || lineStart - state[1] >= interval) {
+                add(state[0], lineStart, lastTimestamp);
+                state[1] = lineStart;
+            }
+            state[0]++;
+            return true;
+        });
+        boolean changed = reset || state[0] != lineCount;
+        lineCount = state[0];
+        unsaved += count - before;
+        if (fingerprintLength < FINGERPRINT_BYTES && indexedBytes > fingerprintLength) {
+            fingerprintLength = (int) Math.min(FINGERPRINT_BYTES, indexedBytes);
+            fingerprint = LogFiles.checksum(channel, fingerprintLength);
+        }
+        return changed;
+    }
+
+    /**
+     * Where line {@code line} starts. Lines past the indexed part of the file resolve to its end.
+     */
+    public synchronized LogPosition seekLine(FileChannel channel, long line) throws IOException {
+        if (line >= lineCount) {
+            return new LogPosition(lineCount, indexedBytes);
+        }
+        if (line <= 0) {
+            return new LogPosition(0, 0);
+        }
+        int checkpoint = floor(lines, line);
+        long[] current = { lines[checkpoint] };
+        long offset = scanLines(channel, offsets[checkpoint], indexedBytes,
+                (lineStart, timestamp) -> current[0]++ < line);
+        return new LogPosition(line, offset);
+    }
+
+    /**
+     * The first line stamped at or after {@code timestamp} (see {@link LogFiles#parseTimestamp}),
+     * or the end of the indexed part of the file if there is none.
+     */
+    public synchronized LogPosition seekTime(FileChannel channel, long timestamp) throws IOException {
+        if (count == 0 || times[0] >= timestamp) {
+            return new LogPosition(0, 0);
+        }
+        // last checkpoint before which every line is older than the timestamp
+        int checkpoint = floor(times, timestamp - 1);
+        long[] current = { lines[checkpoint] };
+        long offset = scanLines(channel, offsets[checkpoint], indexedBytes, (lineStart, stamp) -> {
+            if (stamp >= timestamp) {
+                return false;
+            }
+            current[0]++;
+            return true;
+        });
+        return new LogPosition(current[0], offset);
+    }
+
+    /**
+     * Reads up to {@code maxLines} lines starting at line {@code fromLine}.
+     */
+    public LogPage page(FileChannel channel, long fromLine, int maxLines, int maxLineBytes) throws IOException {
+        LogPosition start;
+        long end;
+        long total;
+        synchronized (this) {
+            start = seekLine(channel, Math.max(0, fromLine));
+            end = indexedBytes;
+            total = lineCount;
+        }
+        return new LogPage(start.getLine(), start.getOffset(),
+                LogFiles.readLines(channel, start.getOffset(), end, maxLines, maxLineBytes), total);
+    }
+
+    public synchronized long getLineCount() {
+        return lineCount;
+    }
+
+    public synchronized long getIndexedBytes() {
+        return indexedBytes;
+    }
+
+    /** Latest timestamp in the indexed part of the file, or -1 if none was found. */
+    public synchronized long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    public synchronized int getCheckpointCount() {
+        return count;
+    }
+
+    /** Checkpoints added since the index was last saved or loaded. */
+    public synchronized int getUnsavedCount() {
+        return unsaved;
+    }
+
+    /** Writes the index to {@code file}. */
+    public synchronized void save(Path file) throws IOException {
+        LogFiles.writeAtomically(file, out -> {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeLong(interval);
+            out.writeLong(indexedBytes);
+            out.writeLong(lineCount);
+            out.writeLong(lastTimestamp);
+            out.writeInt(fingerprintLength);
+            out.writeLong(fingerprint);
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                out.writeLong(lines[i]);
+                out.writeLong(offsets[i]);
+                out.writeLong(times[i]);
+            }
+        });
+        unsaved = 0;
+    }
+
+    /**
+     * Reads an index written by {@link #save}.
+     *
+     * @return the index, or null if the file does not exist or was written with another format
+     *         or interval
+     */
+    public static LogIndex load(Path file, long interval) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION || in.readLong() != interval) {
+                return null;
+            }
+            LogIndex index = new LogIndex(interval);
+            index.indexedBytes = in.readLong();
+            index.lineCount = in.readLong();
+            index.lastTimestamp = in.readLong();
+            index.fingerprintLength = in.readInt();
+            index.fingerprint = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                index.add(in.readLong(), in.readLong(), in.readLong());
+            }
+            return index;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private void reset() {
+        count = 0;
+        indexedBytes = 0;
+        lineCount = 0;
+        lastTimestamp = -1;
+        fingerprintLength = 0;
+        fingerprint = 0;
+        unsaved = 0;
+    }
+
+    private void add(long line, long offset, long time) {
+        if (count == lines.length) {
+            int capacity = count * 2;
+            lines = Arrays.copyOf(lines, capacity);
+            offsets = Arrays.copyOf(offsets, capacity);
+            times = Arrays.copyOf(times, capacity);
+        }
+        lines[count] = line;
+        offsets[count] = offset;
+        times[count] = time;
+        count++;
+    }
+
+    // index of the last checkpoint whose value is <= key; values are non-decreasing
+    private int floor(long[] values, long key) {
+        int low = 0;
+        int high = count - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (values[mid] <= key) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Visits the complete lines in {@code [from, to)}, {@code from} being a line start.
+     *
+     * @return the offset of the line the visitor stopped at, or the end of the last complete line
+     */
+    private static long scanLines(FileChannel channel, long from, long to, LineVisitor visitor) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        ByteBuffer head = null;
+        long lineStart = from;
+        long position = from;
+        while (position < to) {
+            buffer.clear();
+            if (to - position < buffer.capacity()) {
+                buffer.limit((int) (to - position));
+            }
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) != '\n') {
+                    continue;
+                }
+                long timestamp;
+                int headStart = (int) (lineStart - position);
+                if (headStart >= 0) {
+                    timestamp = LogFiles.parseTimestamp(buffer, headStart, i - headStart);
+                } else {
+                    // the line started in an earlier buffer
+                    if (head == null) {
+                        head = ByteBuffer.allocate(LogFiles.TIMESTAMP_LENGTH);
+                    }
+                    head.clear();
+                    int length = channel.read(head, lineStart);
+                    timestamp = LogFiles.parseTimestamp(head, 0, Math.max(0, length));
+                }
+                if (!visitor.visit(lineStart, timestamp)) {
+                    return lineStart;
+                }
+                lineStart = position + i + 1;
+            }
+            position += read;
+        }
+        return lineStart;
+    }
+}
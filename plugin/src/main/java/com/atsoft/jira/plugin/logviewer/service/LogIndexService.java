@@ -0,0 +1,165 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.config.util.JiraHome;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps a {@link LogIndex} per log file, brought up to date on each use and persisted under
+ * Jira's data directory so a restart does not mean reading every log file again.
+ */
+public class LogIndexService {
+    private static final Logger log = LoggerFactory.getLogger(LogIndexService.class);
+    private static final LogIndexService INSTANCE = new LogIndexService(LogTailService.getInstance(), null);
+
+    // checkpoints added before an index is written out; everything else is written on shutdown
+    private static final int SAVE_THRESHOLD = 1024;
+
+    private final LogTailService logs;
+    private final Map<Path, LogIndex> indexes = new ConcurrentHashMap<>();
+    private Path indexDirectory;
+
+    public static LogIndexService getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param logs           resolves log file names
+     * @param indexDirectory where indexes are stored; null for the configured or default directory
+     */
+    public LogIndexService(LogTailService logs, Path indexDirectory) {
+        this.logs = logs;
+        this.indexDirectory = indexDirectory;
+    }
+
+    public LogPosition seekLine(String fileName, long line) throws IOException {
+        Path path = logs.resolve(fileName);
+        try (FileChannel channel = logs.open(path)) {
+            return update(path, channel).seekLine(channel, line);
+        }
+    }
+
+    /**
+     * The first line logged at or after {@code time}.
+     */
+    public LogPosition seekTime(String fileName, LocalDateTime time) throws IOException {
+        Path path = logs.resolve(fileName);
+        try (FileChannel channel = logs.open(path)) {
+            return update(path, channel).seekTime(channel, LogFiles.toMillis(time));
+        }
+    }
+
+    /**
+     * The first line logged at or after {@code time} on the last day the file has entries for.
+     */
+    public LogPosition seekTime(String fileName, LocalTime time) throws IOException {
+        Path path = logs.resolve(fileName);
+        try (FileChannel channel = logs.open(path)) {
+            LogIndex index = update(path, channel);
+            long last = index.getLastTimestamp();
+            LocalDate day = last < 0 ? LocalDate.now() : LogFiles.toLocalDateTime(last).toLocalDate();
+            return index.seekTime(channel, LogFiles.toMillis(day.atTime(time)));
+        }
+    }
+
+    /**
+     * Up to {@code maxLines} lines starting at line {@code fromLine}.
+     */
+    public LogPage page(String fileName, long fromLine, int maxLines) throws IOException {
+        Path path = logs.resolve(fileName);
+        try (FileChannel channel = logs.open(path)) {
+            return update(path, channel).page(channel, fromLine, maxLines, LogViewerSettings.PAGE_MAX_LINE_BYTES);
+        }
+    }
+
+    /**
+     * Up to {@code maxLines} lines ending just before line {@code beforeLine}.
+     */
+    public LogPage pageBefore(String fileName, long beforeLine, int maxLines) throws IOException {
+        Path path = logs.resolve(fileName);
+        try (FileChannel channel = logs.open(path)) {
+            LogIndex index = update(path, channel);
+            long end = Math.min(beforeLine, index.getLineCount());
+            long from = Math.max(0, end - maxLines);
+            return index.page(channel, from, (int) (end - from), LogViewerSettings.PAGE_MAX_LINE_BYTES);
+        }
+    }
+
+    /**
+     * Writes every index with unsaved checkpoints. Called when the plugin is disabled.
+     */
+    public void shutdown() {
+        for (Map.Entry<Path, LogIndex> entry : new ArrayList<>(indexes.entrySet())) {
+            if (entry.getValue().getUnsavedCount() > 0) {
+                save(entry.getKey(), entry.getValue());
+            }
+        }
+        indexes.clear();
+    }
+
+    public int getIndexCount() {
+        return indexes.size();
+    }
+
+    private LogIndex update(Path path, FileChannel channel) throws IOException {
+        LogIndex index = indexes.computeIfAbsent(path, this::load);
+        index.update(channel);
+        if (index.getUnsavedCount() >= SAVE_THRESHOLD) {
+            save(path, index);
+        }
+        return index;
+    }
+
+    private LogIndex load(Path path) {
+        long interval = LogViewerSettings.INDEX_INTERVAL_BYTES;
+        try {
+            LogIndex index = LogIndex.load(indexFile(path), interval);
+            if (index != null) {
+                return index;
+            }
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable index of " + path + ": " + e.getMessage());
+        }
+        return new LogIndex(interval);
+    }
+
+    private void save(Path path, LogIndex index) {
+        try {
+            index.save(indexFile(path));
+        } catch (IOException e) {
+            log.warn("Could not save index of " + path, e);
+        }
+    }
+
+    private Path indexFile(Path logFile) {
+        return getIndexDirectory().resolve(logFile.getFileName() + ".idx");
+    }
+
+    private synchronized Path getIndexDirectory() {
+        if (indexDirectory == null) {
+            indexDirectory = defaultIndexDirectory();
+        }
+        return indexDirectory;
+    }
+
+    /** {@link LogViewerSettings#INDEX_DIRECTORY}, or its default under Jira's data directory. */
+    static Path defaultIndexDirectory() {
+        String configured = LogViewerSettings.INDEX_DIRECTORY;
+        return configured != null
+                ? Paths.get(configured)
+                : ComponentAccessor.getComponent(JiraHome.class).getDataDirectory().toPath()
+                        .resolve("jira-log-viewer").resolve("index");
+    }
+}
@@ -0,0 +1,37 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+/**
+ * Severity of a log entry, as written by log4j.
+ */
+public enum LogLevel {
+    TRACE, DEBUG, INFO, WARN, ERROR, FATAL;
+
+    private static final LogLevel[] VALUES = values();
+
+    /** The level with the given {@link #ordinal()}, or null for a negative code. */
+    public static LogLevel of(int code) {
+        return code < 0 ? null : VALUES[code];
+    }
+
+    /**
+     * Recognises a level name in {@code bytes[offset, offset + length)}.
+     *
+     * @return the level, or null if the bytes are not one
+     */
+    public static LogLevel parse(byte[] bytes, int offset, int length) {
+        for (LogLevel level : VALUES) {
+            String name = level.name();
+            if (name.length() != length) {
+                continue;
+            }
+            int i = 0;
+            while (i < length && bytes[offset + i] == name.charAt(i)) {
+                i++;
+            }
+            if (i == length) {
+                return level;
+            }
+        }
+        return null;
+    }
+}
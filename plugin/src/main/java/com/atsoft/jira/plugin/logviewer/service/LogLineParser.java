@@ -0,0 +1,175 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Finds the fields of a log line in place, without copying it: the layouts Jira and most log4j
+ * setups use, {@code %d %t %p ... [%c] %m} and {@code %d %p [%t] %c - %m}. After {@link #parse}
+ * the fields are given as ranges of the buffer's array; a range is empty if the line has no
+ * such field. One parser is reused line after line by a single thread.
+ */
+final class LogLineParser {
+    // the fields are near the start of a line; the rest is message
+    private static final int HEAD_BYTES = 1024;
+    private static final byte[] URL_SUFFIX = " url: ".getBytes(StandardCharsets.US_ASCII);
+
+    private long timestamp;
+    private LogLevel level;
+    private int threadStart;
+    private int threadEnd;
+    private int loggerStart;
+    private int loggerEnd;
+    private int messageStart;
+
+    /**
+     * Parses the line in {@code buffer[start, end)}, a heap buffer, without its terminator.
+     *
+     * @return false if the line does not start with a timestamp, so it continues the entry
+     *         before and has no fields
+     */
+    boolean parse(ByteBuffer buffer, int start, int end) {
+        timestamp = LogFiles.parseTimestamp(buffer, start, end - start);
+        level = null;
+        threadStart = threadEnd = loggerStart = loggerEnd = start;
+        messageStart = start;
+        if (timestamp < 0) {
+            return false;
+        }
+        byte[] bytes = buffer.array();
+        end = Math.min(end, start + HEAD_BYTES);
+        if (end > start && bytes[end - 1] == '\r') {
+            end--;
+        }
+        // the rest of the timestamp: milliseconds and zone
+        int p = start + 19;
+        while (p < end && bytes[p] != ' ') {
+            p++;
+        }
+        int fieldsStart = skipSpaces(bytes, p, end);
+        int levelStart = fieldsStart;
+        int levelEnd = fieldsStart;
+        while (levelStart < end) {
+            levelEnd = tokenEnd(bytes, levelStart, end);
+            level = LogLevel.parse(bytes, levelStart, levelEnd - levelStart);
+            if (level != null) {
+                break;
+            }
+            levelStart = skipSpaces(bytes, levelEnd, end);
+        }
+        messageStart = fieldsStart;
+        if (level == null) {
+            return true;
+        }
+        int fieldsEnd = trimEnd(bytes, fieldsStart, levelStart);
+        p = skipSpaces(bytes, levelEnd, end);
+        if (fieldsEnd > fieldsStart) {
+            // %d %t %p ... [%c] %m; Jira adds the request URL to the names of request threads
+            int url = indexOf(bytes, fieldsStart, fieldsEnd, URL_SUFFIX);
+            threadStart = fieldsStart;
+            threadEnd = url < 0 ? fieldsEnd : url;
+            messageStart = p;
+            while (p < end) {
+                int tokenEnd = tokenEnd(bytes, p, end);
+                if (tokenEnd - p > 2 && bytes[p] == '[' && bytes[tokenEnd - 1] == ']') {
+                    loggerStart = p + 1;
+                    loggerEnd = tokenEnd - 1;
+                    messageStart = skipSpaces(bytes, tokenEnd, end);
+                    break;
+                }
+                p = skipSpaces(bytes, tokenEnd, end);
+            }
+        } else {
+            // %d %p [%t] %c - %m
+            int bracketStart = p;
+            if (p < end && bytes[p] == '[') {
+                int close = indexOf(bytes, p, end, new byte[] { ']' });
+                if (close > p) {
+                    threadStart = p + 1;
+                    threadEnd = close;
+                    p = skipSpaces(bytes, close + 1, end);
+                }
+            }
+            int tokenEnd = tokenEnd(bytes, p, end);
+            if (tokenEnd > p && p > bracketStart) {
+                loggerStart = p;
+                loggerEnd = tokenEnd;
+                p = skipSpaces(bytes, tokenEnd, end);
+                if (p + 1 < end && bytes[p] == '-' && bytes[p + 1] == ' ') {
+                    p += 2;
+                }
+            }
+            messageStart = p;
+        }
+        return true;
+    }
+
+    /** As returned by {@link LogFiles#parseTimestamp}; -1 for a continuation line. */
+    long getTimestamp() {
+        return timestamp;
+    }
+
+    /** Null if the line has no level. */
+    LogLevel getLevel() {
+        return level;
+    }
+
+    int getThreadStart() {
+        return threadStart;
+    }
+
+    int getThreadEnd() {
+        return threadEnd;
+    }
+
+    boolean hasThread() {
+        return threadEnd > threadStart;
+    }
+
+    int getLoggerStart() {
+        return loggerStart;
+    }
+
+    int getLoggerEnd() {
+        return loggerEnd;
+    }
+
+    boolean hasLogger() {
+        return loggerEnd > loggerStart;
+    }
+
+    int getMessageStart() {
+        return messageStart;
+    }
+
+    private static int skipSpaces(byte[] bytes, int from, int end) {
+        while (from < end && bytes[from] == ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    private static int tokenEnd(byte[] bytes, int from, int end) {
+        while (from < end && bytes[from] != ' ') {
+            from++;
+        }
+        return from;
+    }
+
+    private static int trimEnd(byte[] bytes, int start, int end) {
+        while (end > start && bytes[end - 1] == ' ') {
+            end--;
+        }
+        return end;
+    }
+
+    private static int indexOf(byte[] bytes, int from, int end, byte[] pattern) {
+        for (int i = from; i + pattern.length <= end; i++) {
+            if (Arrays.equals(bytes, i, i + pattern.length, pattern, 0, pattern.length)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,150 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Applies a {@link LogStreamFilter} to a followed file as it is read: takes the file's bytes in
+ * chunks of any size and gives back the selected lines, so only those are framed and sent.
+ * Lines are decided when complete; the incomplete one at the end of a chunk waits for the
+ * next. A line longer than {@code maxLineBytes} is cut. Where lines were left out between two
+ * groups of context, a {@code --} line separates them, as {@code grep} does.
+ */
+final class LogLineSelector {
+    private static final byte[] SEPARATOR = "--\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] NEWLINE = { '\n' };
+
+    private final LogStreamFilter filter;
+    private final LogFilter fields;
+    private final boolean anyEntry;
+    private final LogLineParser parser = new LogLineParser();
+    private final ByteBuffer line;
+    // the last lines left out, up to the context before the next match
+    private final Deque<byte[]> before = new ArrayDeque<>();
+    private ByteBuffer output = ByteBuffer.allocate(8192);
+    private boolean entryMatches;
+    private int after;
+    private boolean skipped;
+    private boolean selectedAny;
+
+    LogLineSelector(LogStreamFilter filter, int maxLineBytes) {
+        this.filter = filter;
+        this.fields = filter.getFields();
+        this.anyEntry = fields.getLevels() == null && fields.getLogger() == null && fields.getThread() == null
+                && fields.getFrom() == LogFilter.UNBOUNDED && fields.getTo() == LogFilter.UNBOUNDED;
+        this.line = ByteBuffer.allocate(maxLineBytes);
+        this.entryMatches = anyEntry;
+    }
+
+    LogStreamFilter getFilter() {
+        return filter;
+    }
+
+    /**
+     * Takes the bytes remaining in {@code chunk}, a heap buffer.
+     *
+     * @return the selected lines, ready to send; valid until the next call
+     */
+    ByteBuffer select(ByteBuffer chunk) {
+        output.clear();
+        byte[] bytes = chunk.array();
+        int start = chunk.arrayOffset() + chunk.position();
+        int end = chunk.arrayOffset() + chunk.limit();
+        for (int i = start; i < end; i++) {
+            if (bytes[i] == '\n') {
+                append(bytes, start, i - start);
+                endLine();
+                start = i + 1;
+            }
+        }
+        append(bytes, start, end - start);
+        chunk.position(chunk.limit());
+        output.flip();
+        return output;
+    }
+
+    /** Forgets the incomplete line and the context, for a file starting over. */
+    void reset() {
+        line.clear();
+        before.clear();
+        entryMatches = anyEntry;
+        after = 0;
+        skipped = false;
+        selectedAny = false;
+    }
+
+    private void append(byte[] bytes, int from, int length) {
+        // the rest of a line longer than the buffer is dropped
+        line.put(bytes, from, Math.min(length, line.remaining()));
+    }
+
+    private void endLine() {
+        int length = line.position();
+        if (parser.parse(line, 0, length)) {
+            entryMatches = anyEntry || fields.matches(parser.getLevel(), thread(), logger(), parser.getTimestamp());
+        }
+        if (entryMatches && (filter.getPattern() == null || filter.getPattern().matcher(text(length)).find())) {
+            if (skipped && selectedAny && filter.getContextLines() > 0) {
+                write(SEPARATOR, 0, SEPARATOR.length);
+            }
+            for (byte[] context : before) {
+                write(context, 0, context.length);
+            }
+            before.clear();
+            writeLine(length);
+            after = filter.getContextLines();
+            skipped = false;
+            selectedAny = true;
+        } else if (after > 0) {
+            writeLine(length);
+            after--;
+        } else if (filter.getContextLines() > 0) {
+            if (before.size() == filter.getContextLines()) {
+                before.poll();
+                skipped = true;
+            }
+            byte[] copy = new byte[length + 1];
+            System.arraycopy(line.array(), 0, copy, 0, length);
+            copy[length] = '\n';
+            before.add(copy);
+        } else {
+            skipped = true;
+        }
+        line.clear();
+    }
+
+    private String thread() {
+        return fields.getThread() == null || !parser.hasThread() ? null
+                : new String(line.array(), parser.getThreadStart(), parser.getThreadEnd() - parser.getThreadStart(),
+                        StandardCharsets.UTF_8);
+    }
+
+    private String logger() {
+        return fields.getLogger() == null || !parser.hasLogger() ? null
+                : new String(line.array(), parser.getLoggerStart(), parser.getLoggerEnd() - parser.getLoggerStart(),
+                        StandardCharsets.UTF_8);
+    }
+
+    private String text(int length) {
+        if (length > 0 && line.get(length - 1) == '\r') {
+            length--;
+        }
+        return new String(line.array(), 0, length, StandardCharsets.UTF_8);
+    }
+
+    private void writeLine(int length) {
+        write(line.array(), 0, length);
+        write(NEWLINE, 0, 1);
+    }
+
+    private void write(byte[] bytes, int from, int length) {
+        if (output.remaining() < length) {
+            ByteBuffer grown = ByteBuffer.allocate(Math.max(output.capacity() * 2, output.position() + length));
+            output.flip();
+            output = grown.put(output);
+        }
+        output.put(bytes, from, length);
+    }
+}
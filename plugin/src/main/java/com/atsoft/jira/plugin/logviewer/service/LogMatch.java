@@ -0,0 +1,44 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import java.util.List;
+
+/**
+ * A line found by a {@link LogSearch}, with the lines around it. Context lines may overlap
+ * those of a neighbouring match.
+ */
+public final class LogMatch {
+    private final long line;
+    private final long offset;
+    private final String text;
+    private final List<String> before;
+    private final List<String> after;
+
+    public LogMatch(long line, long offset, String text, List<String> before, List<String> after) {
+        this.line = line;
+        this.offset = offset;
+        this.text = text;
+        this.before = before;
+        this.after = after;
+    }
+
+    /** Zero-based line number. */
+    public long getLine() {
+        return line;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public List<String> getBefore() {
+        return before;
+    }
+
+    public List<String> getAfter() {
+        return after;
+    }
+}
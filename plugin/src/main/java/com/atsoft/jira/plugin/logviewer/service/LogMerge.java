@@ -0,0 +1,350 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.PriorityQueue;
+
+/**
+ * One log file of several Jira Data Center nodes, read as a single stream ordered by entry
+ * timestamp with each line tagged with its node. A k-way merge: each node has a cursor holding
+ * its next line, and a heap hands out the earliest entry; the lines after an entry's first,
+ * such as a stack trace, follow it before any other node's. Memory is a read buffer and one
+ * line per node, however large the files.
+ * <p>
+ * When following, a node at the end of its file holds back entries later than its last one,
+ * as it may still write one that sorts before them; once it has been quiet for
+ * {@code lagMillis}, it no longer does, so an idle node does not stall the others.
+ */
+public class LogMerge implements Closeable {
+
+    /** Receives the merged lines, one at a time. */
+    public interface Listener {
+        void onLine(String node, String text);
+
+        /**
+         * Called by {@link LogMergeService} after the lines of one read. The next read follows
+         * once {@code onDelivered} has run, which may be later and on another thread.
+         */
+        default void onBatch(Runnable onDelivered) {
+            onDelivered.run();
+        }
+
+        /**
+         * Called once by {@link LogMergeService} when the merge reached the end of the files,
+         * was closed or failed.
+         *
+         * @param error what failed, or null
+         */
+        default void onFinish(Exception error) {
+        }
+    }
+
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    // below this, a time seek scans lines instead of bisecting further
+    private static final long SEEK_SCAN_BYTES = 256 * 1024;
+
+    private final List<Cursor> cursors = new ArrayList<>();
+    private final LogArchiveService archives;
+    private final boolean follow;
+    private final long lagMillis;
+    // cursors holding a line, earliest first; those at the end of their file are not in it
+    private final PriorityQueue<Cursor> heap = new PriorityQueue<>(Comparator
+            .comparingLong((Cursor cursor) -> cursor.timestamp)
+            .thenComparing(cursor -> cursor.lineTimestamped)
+            .thenComparingInt(cursor -> cursor.index));
+    private boolean closed;
+
+    /**
+     * @param since     timestamp of the first entry wanted, or {@link LogFilter#UNBOUNDED}
+     * @param tailBytes without {@code since}, how much of the end of each file to start with
+     * @param follow    whether to wait for output appended to the files rather than end with them
+     */
+    LogMerge(List<String> nodes, List<Path> paths, LogArchiveService archives, long since, long tailBytes,
+            boolean follow, long lagMillis, int maxLineBytes) throws IOException {
+        this.archives = archives;
+        this.follow = follow;
+        this.lagMillis = lagMillis;
+        try {
+            for (int i = 0; i < nodes.size(); i++) {
+                Cursor cursor = new Cursor(i, nodes.get(i), paths.get(i), maxLineBytes);
+                cursors.add(cursor);
+                cursor.open();
+                long size = cursor.channel.size();
+                cursor.seek(since != LogFilter.UNBOUNDED ? seekTime(cursor, since)
+                        : LogFiles.lineStartAtOrAfter(cursor.channel, Math.max(0, size - tailBytes)));
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    public List<String> getNodes() {
+        List<String> nodes = new ArrayList<>();
+        for (Cursor cursor : cursors) {
+            nodes.add(cursor.node);
+        }
+        return Collections.unmodifiableList(nodes);
+    }
+
+    public boolean isFollowing() {
+        return follow;
+    }
+
+    /**
+     * Passes up to {@code maxLines} merged lines to the listener.
+     *
+     * @param now the current time, against which quiet nodes are timed
+     * @return the number of lines passed; 0 if none is ready yet, or at the end
+     */
+    public synchronized int read(Listener listener, int maxLines, long now) throws IOException {
+        if (closed) {
+            return 0;
+        }
+        for (Cursor cursor : cursors) {
+            if (!cursor.hasLine && !cursor.ended && cursor.advance(now)) {
+                heap.add(cursor);
+            }
+        }
+        int count = 0;
+        while (count < maxLines) {
+            Cursor next = heap.peek();
+            if (next == null || isHeldBack(next, now)) {
+                break;
+            }
+            heap.poll();
+            // the entry and the lines that belong to it
+            do {
+                listener.onLine(next.node, next.text());
+                next.lastTimestamp = next.timestamp;
+                count++;
+            } while (next.advance(now) && !next.lineTimestamped && count < maxLines);
+            if (next.hasLine) {
+                heap.add(next);
+            }
+        }
+        return count;
+    }
+
+    /** True once every file has been read to its end; never when following. */
+    public synchronized boolean isDone() {
+        if (closed) {
+            return true;
+        }
+        for (Cursor cursor : cursors) {
+            if (!cursor.ended) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        heap.clear();
+        for (Cursor cursor : cursors) {
+            cursor.closeChannel();
+        }
+    }
+
+    // whether a node at the end of its file may still write an entry that sorts before this line
+    private boolean isHeldBack(Cursor next, long now) {
+        for (Cursor cursor : cursors) {
+            if (cursor.idle && next.timestamp > cursor.lastTimestamp
+                    && now - cursor.idleSince < lagMillis) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // offset of the first entry at or after timestamp, bisecting the file on entry timestamps
+    private static long seekTime(Cursor cursor, long timestamp) throws IOException {
+        long low = 0;
+        long high = cursor.channel.size();
+        // the first such entry starts in [low, high], or there is none and it is the end
+        while (high - low > SEEK_SCAN_BYTES) {
+            long mid = (low + high) >>> 1;
+            cursor.seek(LogFiles.lineStartAtOrAfter(cursor.channel, mid));
+            if (cursor.nextEntry() && cursor.timestamp < timestamp) {
+                low = cursor.lineOffset + 1;
+            } else {
+                high = mid;
+            }
+        }
+        cursor.seek(LogFiles.lineStartAtOrAfter(cursor.channel, low));
+        while (cursor.nextEntry()) {
+            if (cursor.timestamp >= timestamp) {
+                return cursor.lineOffset;
+            }
+        }
+        return cursor.channel.size();
+    }
+
+    private final class Cursor {
+        final int index;
+        final String node;
+        final Path path;
+        final ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        final ByteBuffer line;
+        FileChannel channel;
+        Object fileKey;
+        // file offset of the end of what has been read into the buffer
+        long position;
+        // the line being read: where it starts, and whether its newline has been seen
+        long lineOffset;
+        boolean lineStarted;
+        boolean hasLine;
+        boolean lineTimestamped;
+        // of the current line: its own, or for a line inside an entry the entry's
+        long timestamp = Long.MIN_VALUE;
+        long lastTimestamp = Long.MIN_VALUE;
+        // at the end of a followed file since idleSince
+        boolean idle;
+        long idleSince;
+        boolean ended;
+
+        Cursor(int index, String node, Path path, int maxLineBytes) {
+            this.index = index;
+            this.node = node;
+            this.path = path;
+            this.line = ByteBuffer.allocate(maxLineBytes);
+        }
+
+        void open() throws IOException {
+            channel = archives.open(path);
+            fileKey = LogArchiveService.isCompressed(path) ? null
+                    : Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+        }
+
+        void seek(long offset) {
+            position = offset;
+            buffer.clear().flip();
+            line.clear();
+            lineStarted = false;
+            hasLine = false;
+            timestamp = Long.MIN_VALUE;
+        }
+
+        /**
+         * Reads the next line, if a complete one is there; at the end of the file it notes when
+         * the node went quiet, or when not following, that it has ended.
+         */
+        boolean advance(long now) throws IOException {
+            long entryTimestamp = timestamp;
+            if (readLine()) {
+                long own = LogFiles.parseTimestamp(line, 0, line.position());
+                lineTimestamped = own >= 0;
+                timestamp = lineTimestamped ? own : entryTimestamp;
+                idle = false;
+                return true;
+            }
+            if (!follow) {
+                ended = true;
+            } else if (reopenIfReplaced()) {
+                return advance(now);
+            } else if (!idle) {
+                idle = true;
+                idleSince = now;
+            }
+            return false;
+        }
+
+        // skips to the next line with a timestamp, for seeking
+        boolean nextEntry() throws IOException {
+            while (readLine()) {
+                long own = LogFiles.parseTimestamp(line, 0, line.position());
+                if (own >= 0) {
+                    timestamp = own;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        // the line into line, its end past the buffer dropped; false if no complete line is there
+        private boolean readLine() throws IOException {
+            if (hasLine) {
+                line.clear();
+                lineStarted = false;
+                hasLine = false;
+            }
+            while (true) {
+                if (!lineStarted) {
+                    lineOffset = position - buffer.remaining();
+                    lineStarted = true;
+                }
+                while (buffer.hasRemaining()) {
+                    byte b = buffer.get();
+                    if (b == '\n') {
+                        return hasLine = true;
+                    }
+                    if (line.hasRemaining()) {
+                        line.put(b);
+                    }
+                }
+                buffer.clear();
+                int read = channel.read(buffer, position);
+                buffer.flip();
+                if (read <= 0) {
+                    // the last line of a file that is not followed needs no newline
+                    return hasLine = !follow && (line.position() > 0 || position > lineOffset);
+                }
+                position += read;
+            }
+        }
+
+        String text() {
+            int length = line.position();
+            if (length > 0 && line.get(length - 1) == '\r') {
+                length--;
+            }
+            return new String(line.array(), 0, length, StandardCharsets.UTF_8);
+        }
+
+        // a rotated or truncated file is read again from its start
+        private boolean reopenIfReplaced() throws IOException {
+            if (fileKey == null && LogArchiveService.isCompressed(path)) {
+                return false;
+            }
+            BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (NoSuchFileException e) {
+                // between rename and re-creation during rotation
+                return false;
+            }
+            boolean rotated = attributes.fileKey() != null && !Objects.equals(attributes.fileKey(), fileKey);
+            if (!rotated && attributes.size() >= position) {
+                return false;
+            }
+            closeChannel();
+            open();
+            seek(0);
+            return true;
+        }
+
+        void closeChannel() {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Merges the logs of the nodes of a Data Center cluster; see {@link LogMerge}. The node log
+ * directories are configured with {@link LogViewerSettings#NODE_LOG_DIRECTORIES} and
+ * {@link LogViewerSettings#NODES_DIRECTORY}, and are typically locally mounted copies; without
+ * either, the local log directory is the only node. Running merges are read by a small pool,
+ * a batch of lines at a time.
+ */
+public class LogMergeService {
+    private static final Logger log = LoggerFactory.getLogger(LogMergeService.class);
+    private static final LogMergeService INSTANCE = new LogMergeService(null, LogArchiveService.getInstance());
+    private static final int BATCH_LINES = 500;
+
+    private final LogArchiveService archives;
+    private final Set<LogMerge> running = ConcurrentHashMap.newKeySet();
+    private Map<String, Path> nodeDirectories;
+    private ScheduledExecutorService executor;
+
+    public static LogMergeService getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param nodeDirectories log directory of each node, in the order lines of the same time are
+     *                        merged; null to use the configured ones
+     */
+    public LogMergeService(Map<String, Path> nodeDirectories, LogArchiveService archives) {
+        this.nodeDirectories = nodeDirectories != null ? Collections.unmodifiableMap(new LinkedHashMap<>(
+                nodeDirectories)) : null;
+        this.archives = archives;
+    }
+
+    /** Log directory of each node, by node name. */
+    public synchronized Map<String, Path> getNodeDirectories() throws IOException {
+        if (nodeDirectories == null) {
+            nodeDirectories = Collections.unmodifiableMap(configuredNodes());
+        }
+        return nodeDirectories;
+    }
+
+    /**
+     * Log files that can be merged: those of any node, by name.
+     */
+    public List<String> listLogFiles() throws IOException {
+        Set<String> names = new TreeSet<>();
+        for (Path directory : getNodeDirectories().values()) {
+            if (!Files.isDirectory(directory)) {
+                continue;
+            }
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.log*")) {
+                for (Path file : files) {
+                    if (Files.isRegularFile(file)) {
+                        names.add(file.getFileName().toString());
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(names);
+    }
+
+    /**
+     * Opens a log file of every node that has it for merging.
+     *
+     * @param since  timestamp of the first entry wanted, or {@link LogFilter#UNBOUNDED} for the
+     *               start of the files, or when following, their last
+     *               {@link LogViewerSettings#TAIL_INITIAL_BYTES}
+     * @param follow whether the merge waits for more output at the end of the files
+     */
+    public LogMerge open(String fileName, long since, boolean follow) throws IOException {
+        List<String> nodes = new ArrayList<>();
+        List<Path> paths = new ArrayList<>();
+        for (Map.Entry<String, Path> node : getNodeDirectories().entrySet()) {
+            Path directory = node.getValue();
+            Path path = directory.resolve(fileName).normalize();
+            if (fileName.isEmpty() || !directory.normalize().equals(path.getParent())) {
+                throw new IOException("Not a log file: " + fileName);
+            }
+            if (Files.isRegularFile(path)) {
+                nodes.add(node.getKey());
+                paths.add(path);
+            }
+        }
+        if (nodes.isEmpty()) {
+            throw new IOException("No node has log file " + fileName);
+        }
+        return new LogMerge(nodes, paths, archives, since, follow ? LogViewerSettings.TAIL_INITIAL_BYTES
+                : Long.MAX_VALUE, follow, LogViewerSettings.MERGE_LAG_MILLIS, LogViewerSettings.PAGE_MAX_LINE_BYTES);
+    }
+
+    /**
+     * Reads a merge in the background, passing its lines to the listener until it is done,
+     * closed or fails; then closes it. When following, the files are checked for more output
+     * every {@link LogViewerSettings#TAIL_POLL_MILLIS}. The listener is called from one thread
+     * at a time, and a listener that is slow to deliver its batches slows the merge down
+     * without holding up the pool.
+     */
+    public void start(LogMerge merge, LogMerge.Listener listener) {
+        running.add(merge);
+        schedule(merge, listener, 0);
+    }
+
+    public int getRunningCount() {
+        return running.size();
+    }
+
+    /**
+     * Closes running merges and stops the pool. Called when the plugin is disabled.
+     */
+    public synchronized void shutdown() {
+        new ArrayList<>(running).forEach(LogMerge::close);
+        running.clear();
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    private void step(LogMerge merge, LogMerge.Listener listener) {
+        try {
+            int read = merge.read(listener, BATCH_LINES, System.currentTimeMillis());
+            if (read > 0) {
+                // the next step waits until the batch is delivered
+                listener.onBatch(() -> next(merge, listener, read));
+                return;
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Merge of " + merge.getNodes() + " failed: " + e.getMessage());
+            finish(merge, listener, e);
+            return;
+        }
+        next(merge, listener, 0);
+    }
+
+    private void next(LogMerge merge, LogMerge.Listener listener, int read) {
+        if (merge.isDone()) {
+            finish(merge, listener, null);
+        } else {
+            schedule(merge, listener, read == BATCH_LINES ? 0 : LogViewerSettings.TAIL_POLL_MILLIS);
+        }
+    }
+
+    private void finish(LogMerge merge, LogMerge.Listener listener, Exception error) {
+        running.remove(merge);
+        merge.close();
+        listener.onFinish(error);
+    }
+
+    private synchronized void schedule(LogMerge merge, LogMerge.Listener listener, long delayMillis) {
+        if (!running.contains(merge)) {
+            return;
+        }
+        if (executor == null) {
+            executor = Executors.newScheduledThreadPool(Math.max(1, LogViewerSettings.MERGE_THREADS), r -> {
+                Thread thread = new Thread(r, "jira-log-viewer-merge");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        try {
+            executor.schedule(() -> step(merge, listener), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            running.remove(merge);
+            merge.close();
+        }
+    }
+
+    // node=dir entries, then the node directories of NODES_DIRECTORY, else the local log directory
+    private static Map<String, Path> configuredNodes() throws IOException {
+        Map<String, Path> nodes = new LinkedHashMap<>();
+        String configured = LogViewerSettings.NODE_LOG_DIRECTORIES;
+        if (configured != null) {
+            for (String entry : configured.split(",")) {
+                entry = entry.trim();
+                if (entry.isEmpty()) {
+                    continue;
+                }
+                int equals = entry.indexOf('=');
+                Path directory = Paths.get(entry.substring(equals + 1).trim());
+                nodes.put(equals > 0 ? entry.substring(0, equals).trim() : nodeName(directory), directory);
+            }
+        }
+        if (LogViewerSettings.NODES_DIRECTORY != null) {
+            Map<String, Path> found = new TreeMap<>();
+            try (DirectoryStream<Path> directories = Files.newDirectoryStream(Paths.get(
+                    LogViewerSettings.NODES_DIRECTORY), Files::isDirectory)) {
+                for (Path directory : directories) {
+                    // a copy of a node's local home keeps its logs under log/
+                    Path logs = directory.resolve("log");
+                    found.put(directory.getFileName().toString(), Files.isDirectory(logs) ? logs : directory);
+                }
+            }
+            found.forEach(nodes::putIfAbsent);
+        }
+        if (nodes.isEmpty()) {
+            nodes.put("local", LogTailService.getInstance().getLogDirectory());
+        }
+        return nodes;
+    }
+
+    // the directory's name, or its parent's for the log directory of a home
+    private static String nodeName(Path directory) {
+        Path name = directory.getFileName();
+        if (name != null && name.toString().equals("log") && directory.getParent() != null
+                && directory.getParent().getFileName() != null) {
+            return directory.getParent().getFileName().toString();
+        }
+        return name != null ? name.toString() : directory.toString();
+    }
+}
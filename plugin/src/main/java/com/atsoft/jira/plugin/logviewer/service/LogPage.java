@@ -0,0 +1,37 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import java.util.List;
+
+/**
+ * A run of consecutive lines read from a log file through its {@link LogIndex}.
+ */
+public final class LogPage {
+    private final long firstLine;
+    private final long startOffset;
+    private final List<String> lines;
+    private final long lineCount;
+
+    public LogPage(long firstLine, long startOffset, List<String> lines, long lineCount) {
+        this.firstLine = firstLine;
+        this.startOffset = startOffset;
+        this.lines = lines;
+        this.lineCount = lineCount;
+    }
+
+    public long getFirstLine() {
+        return firstLine;
+    }
+
+    public long getStartOffset() {
+        return startOffset;
+    }
+
+    public List<String> getLines() {
+        return lines;
+    }
+
+    /** Complete lines in the file when the page was read. */
+    public long getLineCount() {
+        return lineCount;
+    }
+}
@@ -0,0 +1,27 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+/**
+ * A line of a log file: its zero-based number and the byte offset it starts at.
+ */
+public final class LogPosition {
+    private final long line;
+    private final long offset;
+
+    public LogPosition(long line, long offset) {
+        this.line = line;
+        this.offset = offset;
+    }
+
+    public long getLine() {
+        return line;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    @Override
+    public String toString() {
+        return "line " + line + " @ " + offset;
+    }
+}
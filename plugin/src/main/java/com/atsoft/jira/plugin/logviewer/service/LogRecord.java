@@ -0,0 +1,57 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+/**
+ * A log entry found through a {@link LogTable}: the fields parsed from its first line and that
+ * line's message. Stack trace lines following the entry are not included.
+ */
+public final class LogRecord {
+    private final long line;
+    private final long offset;
+    private final long timestamp;
+    private final LogLevel level;
+    private final String thread;
+    private final String logger;
+    private final String message;
+
+    public LogRecord(long line, long offset, long timestamp, LogLevel level, String thread, String logger,
+            String message) {
+        this.line = line;
+        this.offset = offset;
+        this.timestamp = timestamp;
+        this.level = level;
+        this.thread = thread;
+        this.logger = logger;
+        this.message = message;
+    }
+
+    /** Zero-based line number of the entry's first line. */
+    public long getLine() {
+        return line;
+    }
+
+    public long getOffset() {
+        return offset;
+    }
+
+    /** As returned by {@link LogFiles#parseTimestamp}. */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /** Null if the entry has no level. */
+    public LogLevel getLevel() {
+        return level;
+    }
+
+    public String getThread() {
+        return thread;
+    }
+
+    public String getLogger() {
+        return logger;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+}
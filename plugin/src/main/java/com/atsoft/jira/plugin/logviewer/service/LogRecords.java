@@ -0,0 +1,42 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import java.util.List;
+
+/**
+ * Entries selected from a {@link LogTable}, in file order.
+ */
+public final class LogRecords {
+    private final List<LogRecord> records;
+    private final long nextOffset;
+    private final long firstOffset;
+    private final long recordCount;
+
+    public LogRecords(List<LogRecord> records, long nextOffset, long firstOffset, long recordCount) {
+        this.records = records;
+        this.nextOffset = nextOffset;
+        this.firstOffset = firstOffset;
+        this.recordCount = recordCount;
+    }
+
+    public List<LogRecord> getRecords() {
+        return records;
+    }
+
+    /**
+     * Where to continue for the next page: after the last entry when reading forwards, before
+     * the first when reading backwards; -1 if the table has nothing more.
+     */
+    public long getNextOffset() {
+        return nextOffset;
+    }
+
+    /** Offset of the oldest entry the table holds; older ones fell out of its memory budget. */
+    public long getFirstOffset() {
+        return firstOffset;
+    }
+
+    /** Entries the table holds, matching or not. */
+    public long getRecordCount() {
+        return recordCount;
+    }
+}
@@ -0,0 +1,457 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * One regular expression search through a log file. The file is split into line-aligned
+ * segments which are scanned in parallel on a fork/join pool; matches are handed to the
+ * {@link Listener} strictly in file order, as soon as every segment before theirs is done.
+ * <p>
+ * Only a window of segments is scanned ahead of the one being reported, so a search that
+ * reaches its result limit or is cancelled stops reading the file almost immediately.
+ * <p>
+ * Matches are delivered one at a time and outside the search's lock, so a listener may pass
+ * them on to a slow client without holding up the pool. While more than
+ * {@link #MAX_QUEUED_MATCHES} wait for delivery, no further segments are scanned.
+ */
+public class LogSearch {
+
+    /** Receives the results of a search. Calls are made one at a time, in file order. */
+    public interface Listener {
+        /**
+         * Receives the next match. The one after it follows once {@code onDelivered} has run,
+         * which may be later and on another thread.
+         */
+        void onMatch(LogMatch match, Runnable onDelivered);
+
+        /**
+         * Called once, after the last match was delivered, when the search completed, reached
+         * its limit or failed; or right away when it was cancelled.
+         */
+        void onFinish(LogSearch search);
+    }
+
+    static final int MAX_QUEUED_MATCHES = 1000;
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final long size;
+    private final Pattern pattern;
+    private final int maxResults;
+    private final int contextLines;
+    private final long segmentBytes;
+    private final int window;
+    private final int maxLineBytes;
+    private final ForkJoinPool pool;
+    private final Listener listener;
+    private final CountDownLatch finished = new CountDownLatch(1);
+
+    // guarded by this
+    private final ArrayDeque<Segment> pending = new ArrayDeque<>();
+    private final ArrayDeque<String> carry = new ArrayDeque<>();
+    // found, in file order, and not yet handed to the listener
+    private final ArrayDeque<LogMatch> queued = new ArrayDeque<>();
+    private long nextStart;
+    private long baseLine;
+    private int running;
+    private int matchCount;
+    private boolean limitReached;
+    private boolean complete;
+    private Exception error;
+    // a match was handed to the listener and not acknowledged yet
+    private boolean inFlight;
+    // a thread is handing matches to the listener
+    private boolean delivering;
+    private boolean notified;
+
+    // no more segments are scanned
+    private volatile boolean stopped;
+
+    LogSearch(FileChannel channel, Pattern pattern, int maxResults, int contextLines, long segmentBytes,
+            int maxLineBytes, ForkJoinPool pool, Listener listener) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        this.pattern = pattern;
+        this.maxResults = maxResults;
+        this.contextLines = contextLines;
+        this.segmentBytes = segmentBytes;
+        this.window = Math.max(2, pool.getParallelism() * 2);
+        this.maxLineBytes = maxLineBytes;
+        this.pool = pool;
+        this.listener = listener;
+    }
+
+    void start() {
+        synchronized (this) {
+            fill();
+            if (pending.isEmpty() && !stopped) {
+                complete = true;
+                stop();
+            }
+        }
+        deliver();
+    }
+
+    /**
+     * Stops the search and drops the matches not delivered yet. Segments being scanned notice
+     * within one read; the listener's {@link Listener#onFinish} is called if it was not
+     * already.
+     */
+    public void cancel() {
+        synchronized (this) {
+            if (notified) {
+                return;
+            }
+            if (!stopped) {
+                stop();
+            }
+            queued.clear();
+            notified = true;
+        }
+        notifyFinish();
+    }
+
+    /**
+     * Waits for the search to finish.
+     *
+     * @return false if it is still running after the timeout
+     */
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        return finished.await(timeout, unit);
+    }
+
+    public boolean isDone() {
+        return finished.getCount() == 0;
+    }
+
+    public synchronized int getMatchCount() {
+        return matchCount;
+    }
+
+    /** True if the search stopped because it found {@code maxResults} matches. */
+    public synchronized boolean isLimitReached() {
+        return limitReached;
+    }
+
+    /** True if the whole file was searched. */
+    public synchronized boolean isComplete() {
+        return complete;
+    }
+
+    /** The error that ended the search, if any. */
+    public synchronized Exception getError() {
+        return error;
+    }
+
+    // submits segments until the window is full, the file is covered or enough matches wait
+    private void fill() {
+        while (!stopped && pending.size() < window && nextStart < size && queued.size() < MAX_QUEUED_MATCHES) {
+            long end;
+            try {
+                end = Math.min(size, LogFiles.lineStartAtOrAfter(channel, nextStart + segmentBytes));
+            } catch (IOException e) {
+                fail(e);
+                return;
+            }
+            Segment segment = new Segment(nextStart, end);
+            nextStart = end;
+            pending.add(segment);
+            running++;
+            pool.execute(segment);
+        }
+    }
+
+    private synchronized void segmentDone(Segment segment) {
+        running--;
+        if (segment.error != null) {
+            fail(segment.error);
+        }
+        // report every segment that is done and has no unfinished segment before it
+        while (!stopped && !pending.isEmpty() && pending.peek().done) {
+            report(pending.poll());
+        }
+        if (stopped) {
+            closeIfIdle();
+            return;
+        }
+        fill();
+        if (pending.isEmpty() && nextStart >= size) {
+            complete = true;
+            stop();
+        }
+    }
+
+    // hands the queued matches to the listener one by one, then tells it the search is over
+    private void deliver() {
+        synchronized (this) {
+            if (delivering) {
+                return;
+            }
+            delivering = true;
+        }
+        while (true) {
+            LogMatch match;
+            synchronized (this) {
+                match = inFlight ? null : queued.poll();
+                if (match == null) {
+                    delivering = false;
+                    if (inFlight || !stopped || notified) {
+                        return;
+                    }
+                    notified = true;
+                } else {
+                    inFlight = true;
+                    // there may be room for more now
+                    fill();
+                }
+            }
+            if (match == null) {
+                notifyFinish();
+                return;
+            }
+            listener.onMatch(match, this::delivered);
+        }
+    }
+
+    private void delivered() {
+        synchronized (this) {
+            inFlight = false;
+        }
+        deliver();
+    }
+
+    private void report(Segment segment) {
+        List<String> previous = new ArrayList<>(carry);
+        for (LogMatch match : segment.matches) {
+            List<String> before = match.getBefore();
+            if (before.size() < contextLines && match.getLine() < contextLines && !previous.isEmpty()) {
+                // the match is near the start of the segment; its context is in earlier ones
+                int missing = Math.min(contextLines - before.size(), previous.size());
+                List<String> joined = new ArrayList<>(previous.subList(previous.size() - missing, previous.size()));
+                joined.addAll(before);
+                before = joined;
+            }
+            matchCount++;
+            queued.add(new LogMatch(baseLine + match.getLine(), match.getOffset(), match.getText(), before,
+                    match.getAfter()));
+            if (matchCount >= maxResults) {
+                limitReached = true;
+                stop();
+                return;
+            }
+        }
+        baseLine += segment.lineCount;
+        for (String line : segment.tail) {
+            if (carry.size() == contextLines) {
+                carry.poll();
+            }
+            carry.add(line);
+        }
+    }
+
+    private void fail(Exception e) {
+        if (error == null) {
+            error = e;
+        }
+        if (!stopped) {
+            stop();
+        }
+    }
+
+    // the listener hears of it once the matches found so far are delivered
+    private void stop() {
+        stopped = true;
+        pending.clear();
+        closeIfIdle();
+    }
+
+    private void notifyFinish() {
+        try {
+            listener.onFinish(this);
+        } finally {
+            finished.countDown();
+        }
+    }
+
+    private void closeIfIdle() {
+        if (running == 0 && channel.isOpen()) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    /**
+     * Scans the lines starting in {@code [start, end)}. Line numbers of its matches are relative
+     * to the segment; lines after {@code end} are only read as context of a match before it.
+     */
+    private class Segment extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final long start;
+        final long end;
+        final List<LogMatch> matches = new ArrayList<>();
+        List<String> tail = Collections.emptyList();
+        long lineCount;
+        volatile boolean done;
+        Exception error;
+
+        // line starts of the last contextLines lines, for before-context and the tail
+        private final long[] recent = new long[contextLines + 1];
+        private final ArrayDeque<LogMatch> awaitingAfter = new ArrayDeque<>();
+        private final Matcher matcher = pattern.matcher("");
+        private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        private CharBuffer chars = CharBuffer.allocate(256);
+
+        Segment(long start, long end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                scan();
+            } catch (IOException | RuntimeException e) {
+                error = e;
+            } finally {
+                done = true;
+                segmentDone(this);
+                deliver();
+            }
+        }
+
+        private void scan() throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+            byte[] line = new byte[256];
+            int lineLength = 0;
+            long lineStart = start;
+            long position = start;
+            scan:
+            while (position < size && !stopped) {
+                buffer.clear();
+                if (size - position < buffer.capacity()) {
+                    buffer.limit((int) (size - position));
+                }
+                int read = channel.read(buffer, position);
+                if (read <= 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    byte b = buffer.get(i);
+                    if (b != '\n') {
+                        if (lineLength < maxLineBytes) {
+                            if (lineLength == line.length) {
+                                line = Arrays.copyOf(line, Math.min(maxLineBytes, line.length * 2));
+                            }
+                            line[lineLength++] = b;
+                        }
+                        continue;
+                    }
+                    if (!line(lineStart, line, lineLength)) {
+                        lineStart = size;
+                        break scan;
+                    }
+                    lineLength = 0;
+                    lineStart = position + i + 1;
+                }
+                position += read;
+            }
+            if (lineStart < size && !stopped) {
+                // last line of the file, not terminated yet
+                line(lineStart, line, lineLength);
+            }
+            if (!stopped) {
+                finishTail();
+            }
+        }
+
+        // returns false once the segment and the context of its matches are complete
+        private boolean line(long lineStart, byte[] line, int length) throws IOException {
+            if (length > 0 && line[length - 1] == '\r') {
+                length--;
+            }
+            if (lineStart >= end) {
+                if (awaitingAfter.isEmpty()) {
+                    return false;
+                }
+                addAfter(new String(line, 0, length, StandardCharsets.UTF_8));
+                return true;
+            }
+            String text = null;
+            if (!awaitingAfter.isEmpty()) {
+                text = new String(line, 0, length, StandardCharsets.UTF_8);
+                addAfter(text);
+            }
+            if (matches.size() < maxResults && find(line, length)) {
+                if (text == null) {
+                    text = new String(line, 0, length, StandardCharsets.UTF_8);
+                }
+                int count = (int) Math.min(contextLines, lineCount);
+                List<String> before = count == 0 ? Collections.emptyList()
+                        : LogFiles.readLines(channel, recent[(int) ((lineCount - count) % recent.length)], lineStart,
+                                count, maxLineBytes);
+                LogMatch match = new LogMatch(lineCount, lineStart, text, before,
+                        contextLines == 0 ? Collections.emptyList() : new ArrayList<>(contextLines));
+                matches.add(match);
+                if (contextLines > 0) {
+                    awaitingAfter.add(match);
+                }
+            }
+            recent[(int) (lineCount % recent.length)] = lineStart;
+            lineCount++;
+            // a segment with maxResults matches is as far as the search can get
+            return matches.size() < maxResults || !awaitingAfter.isEmpty();
+        }
+
+        private void addAfter(String text) {
+            for (LogMatch match : awaitingAfter) {
+                match.getAfter().add(text);
+            }
+            while (!awaitingAfter.isEmpty() && awaitingAfter.peek().getAfter().size() >= contextLines) {
+                awaitingAfter.poll();
+            }
+        }
+
+        private boolean find(byte[] line, int length) {
+            if (chars.capacity() < length) {
+                chars = CharBuffer.allocate(Math.max(length, chars.capacity() * 2));
+            }
+            chars.clear();
+            decoder.reset();
+            decoder.decode(ByteBuffer.wrap(line, 0, length), chars, true);
+            decoder.flush(chars);
+            chars.flip();
+            return matcher.reset(chars).find();
+        }
+
+        private void finishTail() throws IOException {
+            int count = (int) Math.min(contextLines, lineCount);
+            if (count > 0) {
+                tail = LogFiles.readLines(channel, recent[(int) ((lineCount - count) % recent.length)], end, count,
+                        maxLineBytes);
+            }
+        }
+    }
+}
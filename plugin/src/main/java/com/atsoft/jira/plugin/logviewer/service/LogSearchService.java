@@ -0,0 +1,165 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * Runs {@link LogSearch}es over the log files on a fork/join pool of its own, so a search
+ * neither competes with Jira for the common pool nor is limited to a single core.
+ */
+public class LogSearchService {
+    private static final LogSearchService INSTANCE = new LogSearchService(LogTailService.getInstance(),
+            LogViewerSettings.SEARCH_THREADS, LogViewerSettings.SEARCH_SEGMENT_BYTES);
+
+    private final LogTailService logs;
+    private final int parallelism;
+    private final long segmentBytes;
+    private final Set<LogSearch> running = ConcurrentHashMap.newKeySet();
+    private ForkJoinPool pool;
+
+    public static LogSearchService getInstance() {
+        return INSTANCE;
+    }
+
+    public LogSearchService(LogTailService logs, int parallelism, long segmentBytes) {
+        this.logs = logs;
+        this.parallelism = Math.max(1, parallelism);
+        this.segmentBytes = segmentBytes;
+    }
+
+    /**
+     * Starts searching a log file. Matches are passed to the listener in file order until the
+     * file has been searched, {@code maxResults} lines matched or the search is cancelled.
+     *
+     * @param contextLines lines of context included before and after each match
+     */
+    public LogSearch search(String fileName, Pattern pattern, int maxResults, int contextLines,
+            LogSearch.Listener listener) throws IOException {
+        checkLimits(maxResults, contextLines);
+        return start(logs.open(logs.resolve(fileName)), pattern, maxResults, contextLines, listener);
+    }
+
+    /**
+     * Searches several log files at once, such as a log and its rotated archives, each like
+     * {@link #search} and with its own {@code maxResults}. Archives are opened in parallel on
+     * the search pool, so those not indexed yet are decompressed side by side rather than one
+     * after the other. Each file's matches go to the listener {@code listeners} returns for its
+     * name; listeners of different files are called concurrently.
+     */
+    public List<LogSearch> search(List<String> fileNames, Pattern pattern, int maxResults, int contextLines,
+            Function<String, LogSearch.Listener> listeners) throws IOException {
+        checkLimits(maxResults, contextLines);
+        List<Path> paths = new ArrayList<>();
+        for (String fileName : fileNames) {
+            paths.add(logs.resolve(fileName));
+        }
+        List<ForkJoinTask<FileChannel>> opening = new ArrayList<>();
+        for (Path path : paths) {
+            opening.add(pool().submit(() -> logs.open(path)));
+        }
+        List<FileChannel> channels = new ArrayList<>();
+        Exception failure = null;
+        for (ForkJoinTask<FileChannel> task : opening) {
+            try {
+                channels.add(task.get());
+            } catch (ExecutionException e) {
+                failure = failure != null ? failure : e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = failure != null ? failure : e;
+            }
+        }
+        if (failure != null) {
+            for (FileChannel channel : channels) {
+                channel.close();
+            }
+            Throwable cause = failure instanceof ExecutionException ? failure.getCause() : failure;
+            throw cause instanceof IOException ? (IOException) cause : new IOException("Cannot open log files", cause);
+        }
+        List<LogSearch> searches = new ArrayList<>();
+        try {
+            for (int i = 0; i < channels.size(); i++) {
+                searches.add(start(channels.get(i), pattern, maxResults, contextLines,
+                        listeners.apply(fileNames.get(i))));
+            }
+        } catch (IOException | RuntimeException e) {
+            searches.forEach(LogSearch::cancel);
+            // the one that failed may be closed already, which does no harm
+            for (int i = searches.size(); i < channels.size(); i++) {
+                channels.get(i).close();
+            }
+            throw e;
+        }
+        return searches;
+    }
+
+    private static void checkLimits(int maxResults, int contextLines) {
+        if (maxResults <= 0 || contextLines < 0) {
+            throw new IllegalArgumentException("maxResults must be positive and contextLines not negative");
+        }
+    }
+
+    private LogSearch start(FileChannel channel, Pattern pattern, int maxResults, int contextLines,
+            LogSearch.Listener listener) throws IOException {
+        LogSearch search;
+        try {
+            search = new LogSearch(channel, pattern, maxResults, contextLines, segmentBytes,
+                    LogViewerSettings.PAGE_MAX_LINE_BYTES, pool(), new LogSearch.Listener() {
+                        @Override
+                        public void onMatch(LogMatch match, Runnable onDelivered) {
+                            listener.onMatch(match, onDelivered);
+                        }
+
+                        @Override
+                        public void onFinish(LogSearch search) {
+                            running.remove(search);
+                            listener.onFinish(search);
+                        }
+                    });
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        running.add(search);
+        search.start();
+        return search;
+    }
+
+    public int getRunningCount() {
+        return running.size();
+    }
+
+    /**
+     * Cancels running searches and stops the pool.
+     */
+    public synchronized void shutdown() {
+        new ArrayList<>(running).forEach(LogSearch::cancel);
+        if (pool != null) {
+            pool.shutdownNow();
+            pool = null;
+        }
+    }
+
+    private synchronized ForkJoinPool pool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(parallelism, p -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+                thread.setName("jira-log-viewer-search-" + thread.getPoolIndex());
+                thread.setDaemon(true);
+                return thread;
+            }, null, false);
+        }
+        return pool;
+    }
+}
@@ -0,0 +1,141 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * What a {@link LogFollower} lets through: the lines of entries passing a {@link LogFilter}
+ * that also contain a match of {@code pattern}, plus up to {@code contextLines} lines before
+ * and after each, the way {@code grep -C} shows them. Lines without a timestamp, such as stack
+ * traces, belong to the entry before; the pattern is searched line by line.
+ */
+public final class LogStreamFilter {
+    /** Most context lines a client can ask for. */
+    public static final int MAX_CONTEXT_LINES = 100;
+
+    private final LogFilter fields;
+    private final Pattern pattern;
+    private final int contextLines;
+
+    /**
+     * @param fields       null for any entry
+     * @param pattern      null for any line
+     * @param contextLines lines shown around each match
+     */
+    public LogStreamFilter(LogFilter fields, Pattern pattern, int contextLines) {
+        this.fields = fields != null ? fields : LogFilter.ALL;
+        this.pattern = pattern;
+        this.contextLines = Math.max(0, Math.min(contextLines, MAX_CONTEXT_LINES));
+    }
+
+    /**
+     * Parses a filter given as a query string, every parameter optional and URL encoded; other
+     * parameters are ignored:
+     *
+     * <pre>
+     *   level=ERROR,WARN&amp;logger=com.atlassian.jira.index&amp;thread=http-nio&amp;regex=timed?out
+     *   &amp;since=2024-05-14T14:00&amp;until=2024-05-14T15:00&amp;context=2
+     * </pre>
+     *
+     * @return the filter, or null if the query has none of its parameters, which lets
+     *         everything through
+     * @throws IllegalArgumentException if a parameter is invalid
+     */
+    public static LogStreamFilter parse(String query) {
+        if (query == null || query.isBlank()) {
+            return null;
+        }
+        boolean any = false;
+        String level = null;
+        String logger = null;
+        String thread = null;
+        Pattern pattern = null;
+        long since = LogFilter.UNBOUNDED;
+        long until = LogFilter.UNBOUNDED;
+        int context = 0;
+        for (String parameter : query.trim().split("&")) {
+            int equals = parameter.indexOf('=');
+            String name = equals < 0 ? parameter : parameter.substring(0, equals);
+            String value = equals < 0 ? ""
+                    : URLDecoder.decode(parameter.substring(equals + 1), StandardCharsets.UTF_8);
+            switch (name) {
+                case "level":
+                    level = value;
+                    break;
+                case "logger":
+                    logger = value;
+                    break;
+                case "thread":
+                    thread = value;
+                    break;
+                case "regex":
+                    try {
+                        pattern = value.isEmpty() ? null : Pattern.compile(value);
+                    } catch (PatternSyntaxException e) {
+                        throw new IllegalArgumentException("Invalid regex: " + e.getDescription(), e);
+                    }
+                    break;
+                case "since":
+                    since = time(value);
+                    break;
+                case "until":
+                    until = time(value);
+                    break;
+                case "context":
+                    try {
+                        context = value.isEmpty() ? 0 : Integer.parseInt(value.trim());
+                    } catch (NumberFormatException e) {
+                        throw new IllegalArgumentException("Invalid context: " + value, e);
+                    }
+                    break;
+                default:
+                    continue;
+            }
+            any |= !value.isEmpty();
+        }
+        if (!any) {
+            return null;
+        }
+        Set<LogLevel> levels;
+        try {
+            levels = LogFilter.parseLevels(level);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid level: " + level, e);
+        }
+        return new LogStreamFilter(new LogFilter(levels, logger, thread, since, until), pattern, context);
+    }
+
+    public LogFilter getFields() {
+        return fields;
+    }
+
+    /** Null if any line passes. */
+    public Pattern getPattern() {
+        return pattern;
+    }
+
+    public int getContextLines() {
+        return contextLines;
+    }
+
+    @Override
+    public String toString() {
+        return fields + ", regex=" + pattern + ", context=" + contextLines;
+    }
+
+    private static long time(String value) {
+        if (value.isBlank()) {
+            return LogFilter.UNBOUNDED;
+        }
+        try {
+            return LogFiles.toMillis(LocalDateTime.parse(value.trim().replace(' ', 'T')));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid time: " + value, e);
+        }
+    }
+}
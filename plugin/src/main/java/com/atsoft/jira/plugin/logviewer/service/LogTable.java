@@ -0,0 +1,415 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The entries of one log file, parsed into their fields and stored column by column: a
+ * primitive array each for the line number, offset, timestamp, level, thread, logger and
+ * where the message starts, with thread and logger names encoded through a
+ * {@link LogDictionary}. Filtering ({@link #select}, {@link #count}) tests the names once per
+ * distinct value and then scans the arrays, instead of reading and matching the text of
+ * every line.
+ * <p>
+ * An entry is a line starting with a timestamp; lines without one, such as stack traces,
+ * belong to the entry before. Fields are taken by {@link LogLineParser} from the layouts Jira
+ * and most log4j setups use: {@code %d %t %p ... [%c] %m}, as in {@code atlassian-jira.log},
+ * and {@code %d %p [%t] %c - %m}. A line in another layout keeps its timestamp and has no
+ * level, thread or logger.
+ * <p>
+ * Like {@link LogIndex}, the table covers complete lines, is extended by {@link #update} as
+ * the file grows and starts over when the file was truncated or replaced. It holds at most
+ * {@code maxBytes} of columns: once full, the oldest quarter of the entries is dropped, so a
+ * large file keeps its most recent entries.
+ */
+public class LogTable {
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+    private static final int FINGERPRINT_BYTES = 1024;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    /** Column bytes per entry. */
+    public static final int RECORD_BYTES = 8 + 8 + 8 + 1 + 4 + 4 + 4;
+
+    private final int maxRecords;
+    private final int maxNames;
+    private final LogLineParser parser = new LogLineParser();
+    private LogDictionary threads;
+    private LogDictionary loggers;
+    private long[] lines = new long[0];
+    private long[] offsets = new long[0];
+    private long[] times = new long[0];
+    private byte[] levels = new byte[0];
+    private int[] threadCodes = new int[0];
+    private int[] loggerCodes = new int[0];
+    // from the entry's offset
+    private int[] messageStarts = new int[0];
+    private int count;
+    private long dropped;
+    private long parsedBytes;
+    private long lineCount;
+    private int fingerprintLength;
+    private long fingerprint;
+
+    /**
+     * @param maxBytes memory for the columns
+     * @param maxNames distinct thread and logger names each kept; further ones are not filterable
+     */
+    public LogTable(long maxBytes, int maxNames) {
+        this.maxRecords = (int) Math.max(INITIAL_CAPACITY,
+                Math.min(Integer.MAX_VALUE - 8, maxBytes / RECORD_BYTES));
+        this.maxNames = maxNames;
+        this.threads = new LogDictionary(maxNames);
+        this.loggers = new LogDictionary(maxNames);
+    }
+
+    /**
+     * Parses the lines appended since the last update.
+     *
+     * @return true if the table changed
+     */
+    public synchronized boolean update(FileChannel channel) throws IOException {
+        long size = channel.size();
+        boolean reset = false;
+        if (size < parsedBytes
+                || (fingerprintLength > 0 && LogFiles.checksum(channel, fingerprintLength) != fingerprint)) {
+            reset();
+            reset = true;
+        }
+        if (size == parsedBytes) {
+            return reset;
+        }
+        long before = lineCount;
+        parse(channel, size);
+        if (fingerprintLength < FINGERPRINT_BYTES && parsedBytes > fingerprintLength) {
+            fingerprintLength = (int) Math.min(FINGERPRINT_BYTES, parsedBytes);
+            fingerprint = LogFiles.checksum(channel, fingerprintLength);
+        }
+        return reset || lineCount != before;
+    }
+
+    /**
+     * Up to {@code maxRecords} entries passing {@code filter}, starting with the first entry at
+     * or after {@code fromOffset}. The page's next offset continues after the last one, or
+     * where the table ends if the scan got there, so that polling picks up new entries.
+     */
+    public LogRecords select(FileChannel channel, LogFilter filter, long fromOffset, int maxRecords,
+            int maxMessageBytes) throws IOException {
+        if (maxRecords <= 0) {
+            throw new IllegalArgumentException("maxRecords must be positive");
+        }
+        int[] hits = new int[maxRecords];
+        int found = 0;
+        long next;
+        Snapshot snapshot;
+        synchronized (this) {
+            Matcher matcher = new Matcher(filter);
+            int i = firstAtOrAfter(fromOffset);
+            for (; i < count && found < hits.length; i++) {
+                if (matcher.matches(i)) {
+                    hits[found++] = i;
+                }
+            }
+            next = i < count ? offsets[hits[found - 1]] + 1 : parsedBytes;
+            snapshot = snapshot(hits, 0, found);
+        }
+        return snapshot.read(channel, next, maxMessageBytes);
+    }
+
+    /**
+     * Up to {@code maxRecords} entries passing {@code filter} that start before
+     * {@code beforeOffset}, the ones nearest to it, in file order. The page's next offset is
+     * the first one's, to read further back, or -1 if nothing is left.
+     */
+    public LogRecords selectBefore(FileChannel channel, LogFilter filter, long beforeOffset, int maxRecords,
+            int maxMessageBytes) throws IOException {
+        if (maxRecords <= 0) {
+            throw new IllegalArgumentException("maxRecords must be positive");
+        }
+        int[] hits = new int[maxRecords];
+        int found = 0;
+        long next;
+        Snapshot snapshot;
+        synchronized (this) {
+            Matcher matcher = new Matcher(filter);
+            int i = firstAtOrAfter(beforeOffset) - 1;
+            for (; i >= 0 && found < hits.length; i--) {
+                if (matcher.matches(i)) {
+                    hits[hits.length - 1 - found++] = i;
+                }
+            }
+            next = i >= 0 ? offsets[hits[hits.length - found]] : -1;
+            snapshot = snapshot(hits, hits.length - found, found);
+        }
+        return snapshot.read(channel, next, maxMessageBytes);
+    }
+
+    /** Entries passing {@code filter}. */
+    public synchronized long count(LogFilter filter) {
+        Matcher matcher = new Matcher(filter);
+        long matching = 0;
+        for (int i = 0; i < count; i++) {
+            if (matcher.matches(i)) {
+                matching++;
+            }
+        }
+        return matching;
+    }
+
+    public synchronized int getRecordCount() {
+        return count;
+    }
+
+    /** Entries dropped to stay within the memory budget since the table was last reset. */
+    public synchronized long getDroppedCount() {
+        return dropped;
+    }
+
+    public synchronized long getParsedBytes() {
+        return parsedBytes;
+    }
+
+    public synchronized long getLineCount() {
+        return lineCount;
+    }
+
+    /** Offset of the oldest entry held, or -1 if there is none. */
+    public synchronized long getFirstOffset() {
+        return count == 0 ? -1 : offsets[0];
+    }
+
+    /** Rough heap taken by the columns and the dictionaries. */
+    public synchronized long getMemoryBytes() {
+        return (long) lines.length * RECORD_BYTES + threads.getMemoryBytes() + loggers.getMemoryBytes();
+    }
+
+    private void reset() {
+        lines = new long[0];
+        offsets = new long[0];
+        times = new long[0];
+        levels = new byte[0];
+        threadCodes = new int[0];
+        loggerCodes = new int[0];
+        messageStarts = new int[0];
+        threads = new LogDictionary(maxNames);
+        loggers = new LogDictionary(maxNames);
+        count = 0;
+        dropped = 0;
+        parsedBytes = 0;
+        lineCount = 0;
+        fingerprintLength = 0;
+        fingerprint = 0;
+    }
+
+    // parses the complete lines in [parsedBytes, to)
+    private void parse(FileChannel channel, long to) throws IOException {
+        byte[] bytes = new byte[SCAN_BUFFER_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        ByteBuffer skip = null;
+        long position = parsedBytes;
+        while (position < to) {
+            buffer.clear();
+            buffer.limit((int) Math.min(bytes.length, to - position));
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            int lineStart = 0;
+            for (int i = 0; i < read; i++) {
+                if (bytes[i] == '\n') {
+                    addLine(buffer, lineStart, i, position + lineStart);
+                    lineStart = i + 1;
+                }
+            }
+            if (lineStart > 0) {
+                // the incomplete line at the end of the buffer is read again from its start
+                position += lineStart;
+                continue;
+            }
+            // a line longer than the buffer: its head is in the buffer, find its end
+            if (skip == null) {
+                skip = ByteBuffer.allocate(8192);
+            }
+            long end = LogFiles.findNewline(channel, skip, position + read, to);
+            if (end < 0) {
+                break;
+            }
+            addLine(buffer, 0, read, position);
+            position = end + 1;
+        }
+        parsedBytes = position;
+    }
+
+    // the line in buffer[start, end) starting at offset in the file
+    private void addLine(ByteBuffer buffer, int start, int end, long offset) {
+        long line = lineCount++;
+        if (!parser.parse(buffer, start, end)) {
+            return;
+        }
+        byte[] bytes = buffer.array();
+        int thread = parser.hasThread()
+                ? threads.encode(bytes, parser.getThreadStart(), parser.getThreadEnd() - parser.getThreadStart())
+                : LogDictionary.NONE;
+        int logger = parser.hasLogger()
+                ? loggers.encode(bytes, parser.getLoggerStart(), parser.getLoggerEnd() - parser.getLoggerStart())
+                : LogDictionary.NONE;
+        add(line, offset, parser.getTimestamp(), parser.getLevel(), thread, logger, parser.getMessageStart() - start);
+    }
+
+    private void add(long line, long offset, long timestamp, LogLevel level, int thread, int logger,
+            int messageStart) {
+        if (count == lines.length) {
+            if (count == maxRecords) {
+                drop(Math.max(1, count / 4));
+            } else {
+                grow((int) Math.min(maxRecords, Math.max(INITIAL_CAPACITY, (long) count * 2)));
+            }
+        }
+        lines[count] = line;
+        offsets[count] = offset;
+        times[count] = timestamp;
+        levels[count] = (byte) (level == null ? -1 : level.ordinal());
+        threadCodes[count] = thread;
+        loggerCodes[count] = logger;
+        messageStarts[count] = messageStart;
+        count++;
+    }
+
+    private void grow(int capacity) {
+        lines = Arrays.copyOf(lines, capacity);
+        offsets = Arrays.copyOf(offsets, capacity);
+        times = Arrays.copyOf(times, capacity);
+        levels = Arrays.copyOf(levels, capacity);
+        threadCodes = Arrays.copyOf(threadCodes, capacity);
+        loggerCodes = Arrays.copyOf(loggerCodes, capacity);
+        messageStarts = Arrays.copyOf(messageStarts, capacity);
+    }
+
+    private void drop(int oldest) {
+        int kept = count - oldest;
+        System.arraycopy(lines, oldest, lines, 0, kept);
+        System.arraycopy(offsets, oldest, offsets, 0, kept);
+        System.arraycopy(times, oldest, times, 0, kept);
+        System.arraycopy(levels, oldest, levels, 0, kept);
+        System.arraycopy(threadCodes, oldest, threadCodes, 0, kept);
+        System.arraycopy(loggerCodes, oldest, loggerCodes, 0, kept);
+        System.arraycopy(messageStarts, oldest, messageStarts, 0, kept);
+        count = kept;
+        dropped += oldest;
+    }
+
+    // index of the first entry starting at or after offset; offsets are increasing
+    private int firstAtOrAfter(long offset) {
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (offsets[mid] < offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private Snapshot snapshot(int[] hits, int from, int found) {
+        Snapshot snapshot = new Snapshot(found, getFirstOffset(), count);
+        for (int k = 0; k < found; k++) {
+            int i = hits[from + k];
+            snapshot.lines[k] = lines[i];
+            snapshot.offsets[k] = offsets[i];
+            snapshot.times[k] = times[i];
+            snapshot.levels[k] = LogLevel.of(levels[i]);
+            snapshot.threads[k] = threads.decode(threadCodes[i]);
+            snapshot.loggers[k] = loggers.decode(loggerCodes[i]);
+            snapshot.messageStarts[k] = messageStarts[i];
+        }
+        return snapshot;
+    }
+
+    /** The filter turned into per-code lookups, so testing an entry is a few array reads. */
+    private final class Matcher {
+        private final int levelMask;
+        private final boolean[] threadMatches;
+        private final boolean[] loggerMatches;
+        private final long from;
+        private final long to;
+
+        Matcher(LogFilter filter) {
+            int mask = 0;
+            if (filter.getLevels() == null) {
+                // entries without a level too
+                mask = -1;
+            } else {
+                for (LogLevel level : filter.getLevels()) {
+                    mask |= 1 << level.ordinal();
+                }
+            }
+            levelMask = mask;
+            threadMatches = filter.getThread() == null ? null : new boolean[threads.size()];
+            for (int code = 0; threadMatches != null && code < threadMatches.length; code++) {
+                threadMatches[code] = filter.matchesThread(threads.decode(code));
+            }
+            loggerMatches = filter.getLogger() == null ? null : new boolean[loggers.size()];
+            for (int code = 0; loggerMatches != null && code < loggerMatches.length; code++) {
+                loggerMatches[code] = filter.matchesLogger(loggers.decode(code));
+            }
+            from = filter.getFrom() == LogFilter.UNBOUNDED ? Long.MIN_VALUE : filter.getFrom();
+            to = filter.getTo() == LogFilter.UNBOUNDED ? Long.MAX_VALUE : filter.getTo();
+        }
+
+        boolean matches(int i) {
+            if (levelMask != -1 && (levels[i] < 0 || (levelMask & (1 << levels[i])) == 0)) {
+                return false;
+            }
+            if (times[i] < from || times[i] >= to) {
+                return false;
+            }
+            if (threadMatches != null && (threadCodes[i] < 0 || !threadMatches[threadCodes[i]])) {
+                return false;
+            }
+            return loggerMatches == null || (loggerCodes[i] >= 0 && loggerMatches[loggerCodes[i]]);
+        }
+    }
+
+    /** Fields of the selected entries, copied so that their messages are read without the lock. */
+    private static final class Snapshot {
+        final long[] lines;
+        final long[] offsets;
+        final long[] times;
+        final LogLevel[] levels;
+        final String[] threads;
+        final String[] loggers;
+        final int[] messageStarts;
+        final long firstOffset;
+        final int recordCount;
+
+        Snapshot(int size, long firstOffset, int recordCount) {
+            lines = new long[size];
+            offsets = new long[size];
+            times = new long[size];
+            levels = new LogLevel[size];
+            threads = new String[size];
+            loggers = new String[size];
+            messageStarts = new int[size];
+            this.firstOffset = firstOffset;
+            this.recordCount = recordCount;
+        }
+
+        LogRecords read(FileChannel channel, long nextOffset, int maxMessageBytes) throws IOException {
+            List<LogRecord> records = new ArrayList<>(lines.length);
+            long size = channel.size();
+            for (int k = 0; k < lines.length; k++) {
+                List<String> message = LogFiles.readLines(channel, offsets[k] + messageStarts[k], size, 1,
+                        maxMessageBytes);
+                records.add(new LogRecord(lines[k], offsets[k], times[k], levels[k], threads[k], loggers[k],
+                        message.isEmpty() ? "" : message.get(0)));
+            }
+            return new LogRecords(records, nextOffset, firstOffset, recordCount);
+        }
+    }
+}
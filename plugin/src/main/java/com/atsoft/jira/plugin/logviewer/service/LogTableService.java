@@ -0,0 +1,120 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps a {@link LogTable} for the log files most recently filtered, brought up to date on
+ * each use. Tables live in memory only: each takes up to {@link LogViewerSettings#TABLE_MAX_BYTES}
+ * and at most {@link LogViewerSettings#TABLE_MAX_FILES} are kept, the least recently used
+ * being dropped first.
+ */
+public class LogTableService {
+    private static final LogTableService INSTANCE = new LogTableService(LogTailService.getInstance(),
+            LogViewerSettings.TABLE_MAX_FILES, LogViewerSettings.TABLE_MAX_BYTES, LogViewerSettings.TABLE_MAX_NAMES);
+
+    private final LogTailService logs;
+    private final int maxTables;
+    private final long maxBytes;
+    private final int maxNames;
+    // access order, guarded by itself
+    private final Map<Path, LogTable> tables = new LinkedHashMap<>(16, 0.75f, true);
+
+    public static LogTableService getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param logs      resolves log file names
+     * @param maxTables files whose tables are kept
+     * @param maxBytes  column memory of each table
+     * @param maxNames  distinct thread and logger names of each table
+     */
+    public LogTableService(LogTailService logs, int maxTables, long maxBytes, int maxNames) {
+        this.logs = logs;
+        this.maxTables = Math.max(1, maxTables);
+        this.maxBytes = maxBytes;
+        this.maxNames = maxNames;
+    }
+
+    /**
+     * Up to {@code maxRecords} entries passing {@code filter}, from the first at or after
+     * {@code fromOffset}.
+     */
+    public LogRecords select(String fileName, LogFilter filter, long fromOffset, int maxRecords) throws IOException {
+        Path path = logs.resolve(fileName);
+        try (FileChannel channel = logs.open(path)) {
+            return update(path, channel).select(channel, filter, fromOffset, maxRecords,
+                    LogViewerSettings.PAGE_MAX_LINE_BYTES);
+        }
+    }
+
+    /**
+     * Up to {@code maxRecords} entries passing {@code filter} that start before
+     * {@code beforeOffset}; {@link Long#MAX_VALUE} for the last ones in the file.
+     */
+    public LogRecords selectBefore(String fileName, LogFilter filter, long beforeOffset, int maxRecords)
+            throws IOException {
+        Path path = logs.resolve(fileName);
+        try (FileChannel channel = logs.open(path)) {
+            return update(path, channel).selectBefore(channel, filter, beforeOffset, maxRecords,
+                    LogViewerSettings.PAGE_MAX_LINE_BYTES);
+        }
+    }
+
+    /** Entries of the file passing {@code filter}, as far as its table reaches. */
+    public long count(String fileName, LogFilter filter) throws IOException {
+        Path path = logs.resolve(fileName);
+        try (FileChannel channel = logs.open(path)) {
+            return update(path, channel).count(filter);
+        }
+    }
+
+    public int getTableCount() {
+        synchronized (tables) {
+            return tables.size();
+        }
+    }
+
+    /** Rough heap taken by all tables. */
+    public long getMemoryBytes() {
+        long bytes = 0;
+        for (LogTable table : tables()) {
+            bytes += table.getMemoryBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Drops every table. Called when the plugin is disabled.
+     */
+    public void shutdown() {
+        synchronized (tables) {
+            tables.clear();
+        }
+    }
+
+    private LogTable update(Path path, FileChannel channel) throws IOException {
+        LogTable table;
+        synchronized (tables) {
+            table = tables.computeIfAbsent(path, p -> new LogTable(maxBytes, maxNames));
+            while (tables.size() > maxTables) {
+                // the eldest in access order
+                tables.remove(tables.keySet().iterator().next());
+            }
+        }
+        table.update(channel);
+        return table;
+    }
+
+    private List<LogTable> tables() {
+        synchronized (tables) {
+            return new ArrayList<>(tables.values());
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared tail reader of one log file. It keeps the file open, notices growth, rotation (the
+ * path now points to a different file) and truncation, and wakes the {@link LogFollower}s,
+ * which read through the shared channel at their own pace.
+ * <p>
+ * Rotation keeps the old file open until every follower has read it to the end, so no line
+ * written just before the rotation is lost.
+ */
+public class LogTail {
+    private static final Logger log = LoggerFactory.getLogger(LogTail.class);
+
+    /** One incarnation of the file behind the path. */
+    static class Generation {
+        final FileChannel channel;
+        final Object fileKey;
+        // followers plus one reference held by the tail while this is the current generation
+        private final AtomicInteger references = new AtomicInteger(1);
+        private volatile long size;
+
+        Generation(FileChannel channel, Object fileKey, long size) {
+            this.channel = channel;
+            this.fileKey = fileKey;
+            this.size = size;
+        }
+
+        long size() {
+            return size;
+        }
+
+        Generation retain() {
+            references.incrementAndGet();
+            return this;
+        }
+
+        void release() {
+            if (references.decrementAndGet() == 0) {
+                try {
+                    channel.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    private final Path path;
+    private final LogArchiveService archives;
+    private final List<LogFollower> followers = new CopyOnWriteArrayList<>();
+    private volatile Generation current;
+
+    LogTail(Path path, LogArchiveService archives) {
+        this.path = path;
+        this.archives = archives;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public int getFollowerCount() {
+        return followers.size();
+    }
+
+    Generation current() {
+        return current;
+    }
+
+    /** Retains the current generation for a new follower, opening the file first if needed. */
+    synchronized Generation open() throws IOException {
+        if (current == null) {
+            current = openGeneration();
+        }
+        return current.retain();
+    }
+
+    void add(LogFollower follower) {
+        followers.add(follower);
+    }
+
+    /**
+     * @return true if no followers are left
+     */
+    synchronized boolean remove(LogFollower follower) {
+        followers.remove(follower);
+        return followers.isEmpty();
+    }
+
+    synchronized void close() {
+        if (current != null) {
+            current.release();
+            current = null;
+        }
+    }
+
+    /**
+     * Checks the file once and wakes the followers if anything changed.
+     */
+    void poll() {
+        boolean changed;
+        try {
+            changed = refresh();
+        } catch (IOException e) {
+            log.warn("Cannot poll log file " + path + ": " + e.getMessage());
+            return;
+        }
+        if (changed) {
+            for (LogFollower follower : followers) {
+                follower.wake();
+            }
+        }
+    }
+
+    private synchronized boolean refresh() throws IOException {
+        Generation generation = current;
+        if (generation == null) {
+            return false;
+        }
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            // between rename and re-creation during rotation; keep reading the old file
+            return updateSize(generation);
+        }
+
+        Object fileKey = attributes.fileKey();
+        if (fileKey != null && !Objects.equals(fileKey, generation.fileKey)) {
+            // final size of the rotated file, so followers can finish it
+            updateSize(generation);
+            current = openGeneration();
+            generation.release();
+            log.debug("Log file rotated: " + path);
+            return true;
+        }
+        return updateSize(generation);
+    }
+
+    private boolean updateSize(Generation generation) throws IOException {
+        long size = generation.channel.size();
+        if (size == generation.size) {
+            return false;
+        }
+        // a shrinking size means the file was truncated in place; followers start over
+        generation.size = size;
+        return true;
+    }
+
+    private Generation openGeneration() throws IOException {
+        FileChannel channel = archives.open(path);
+        Object fileKey = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+        return new Generation(channel, fileKey, channel.size());
+    }
+}
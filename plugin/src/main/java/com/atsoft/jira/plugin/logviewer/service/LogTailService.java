@@ -0,0 +1,195 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.jira.config.util.JiraHome;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Follows Jira's log files without spawning {@code tail -f}. All viewers of a file share one
+ * {@link LogTail}, which keeps the file open and is polled by a single background thread; a
+ * viewer is only a {@link LogFollower} cursor into it.
+ */
+public class LogTailService {
+    private static final Logger log = LoggerFactory.getLogger(LogTailService.class);
+    private static final LogTailService INSTANCE = new LogTailService(null);
+
+    private final Map<Path, LogTail> tails = new HashMap<>();
+    private final LogArchiveService archives;
+    private Path logDirectory;
+    private ScheduledExecutorService poller;
+
+    public static LogTailService getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param logDirectory directory the log files are read from; null to use Jira's log directory
+     */
+    public LogTailService(Path logDirectory) {
+        this(logDirectory, LogArchiveService.getInstance());
+    }
+
+    /**
+     * @param logDirectory directory the log files are read from; null to use Jira's log directory
+     * @param archives     opens the log files, decompressing archives
+     */
+    public LogTailService(Path logDirectory, LogArchiveService archives) {
+        this.logDirectory = logDirectory;
+        this.archives = archives;
+    }
+
+    /**
+     * Log files that can be followed, by name, rotated and compressed ones included.
+     */
+    public List<String> listLogFiles() throws IOException {
+        List<String> names = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(getLogDirectory(), "*.log*")) {
+            for (Path file : files) {
+                if (Files.isRegularFile(file)) {
+                    names.add(file.getFileName().toString());
+                }
+            }
+        }
+        names.sort(null);
+        return names;
+    }
+
+    /**
+     * Starts following a log file. The follower first receives the last {@code initialBytes}
+     * of the file, starting at a line boundary, and then everything appended to it.
+     *
+     * @param fileName name of a file in the log directory
+     */
+    public LogFollower follow(String fileName, long initialBytes, OutputCoalescer.FrameSink sink) throws IOException {
+        return follow(fileName, initialBytes, null, sink);
+    }
+
+    /**
+     * Starts following a log file, sending only what {@code filter} selects from the last
+     * {@code initialBytes} and what is appended; see {@link LogFollower#setFilter}.
+     *
+     * @param filter null for the whole file
+     */
+    public synchronized LogFollower follow(String fileName, long initialBytes, LogStreamFilter filter,
+            OutputCoalescer.FrameSink sink) throws IOException {
+        Path path = resolve(fileName);
+        LogTail tail = tails.get(path);
+        if (tail == null) {
+            tail = new LogTail(path, archives);
+            tails.put(path, tail);
+        }
+        LogTail.Generation generation;
+        try {
+            generation = tail.open();
+        } catch (IOException e) {
+            if (tail.getFollowerCount() == 0) {
+                tails.remove(path);
+            }
+            throw e;
+        }
+        long position = LogFiles.lineStartAtOrAfter(generation.channel, Math.max(0, generation.size() - initialBytes));
+        LogFollower follower = new LogFollower(tail, generation, position, filter, sink,
+                LogViewerSettings.OUTPUT_MAX_FRAME_BYTES);
+        tail.add(follower);
+        startPoller();
+        follower.wake();
+        return follower;
+    }
+
+    public synchronized void unfollow(LogFollower follower) {
+        follower.close();
+        LogTail tail = follower.getTail();
+        if (tail.remove(follower) && tails.get(tail.getPath()) == tail) {
+            tails.remove(tail.getPath());
+            tail.close();
+        }
+    }
+
+    public synchronized int getTailCount() {
+        return tails.size();
+    }
+
+    /**
+     * Stops polling and closes all files. Called when the plugin is disabled.
+     */
+    public synchronized void shutdown() {
+        if (poller != null) {
+            poller.shutdownNow();
+            poller = null;
+        }
+        tails.values().forEach(LogTail::close);
+        tails.clear();
+    }
+
+    /**
+     * Opens a file returned by {@link #resolve} for reading; a gzip archive reads as its
+     * decompressed content, see {@link LogArchiveService}.
+     */
+    public FileChannel open(Path path) throws IOException {
+        return archives.open(path);
+    }
+
+    /**
+     * Resolves a file name inside the log directory, rejecting anything that would escape it.
+     */
+    public Path resolve(String fileName) throws IOException {
+        Path directory = getLogDirectory();
+        Path path = directory.resolve(fileName).normalize();
+        if (fileName.isEmpty() || !directory.normalize().equals(path.getParent()) || !Files.isRegularFile(path)) {
+            throw new IOException("Not a log file: " + fileName);
+        }
+        return path;
+    }
+
+    public synchronized Path getLogDirectory() {
+        if (logDirectory == null) {
+            String configured = LogViewerSettings.LOG_DIRECTORY;
+            logDirectory = configured != null
+                    ? Paths.get(configured)
+                    : ComponentAccessor.getComponent(JiraHome.class).getLogDirectory().toPath();
+        }
+        return logDirectory;
+    }
+
+    private void startPoller() {
+        if (poller != null) {
+            return;
+        }
+        poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "jira-log-viewer-log-tail");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(this::pollAll, LogViewerSettings.TAIL_POLL_MILLIS,
+                LogViewerSettings.TAIL_POLL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private void pollAll() {
+        List<LogTail> snapshot;
+        synchronized (this) {
+            snapshot = new ArrayList<>(tails.values());
+        }
+        for (LogTail tail : snapshot) {
+            try {
+                tail.poll();
+            } catch (RuntimeException e) {
+                log.error("Error polling log file " + tail.getPath(), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,471 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Entry counts of one log file per minute and per hour, by level and logger, so that a day's
+ * error timeline is read from a few thousand counters instead of gigabytes of text. Like
+ * {@link LogIndex}, the timeline covers complete lines and is extended by {@link #update} as
+ * the file grows. When the file was rotated or truncated, counting goes on from its new start
+ * and what was counted stays, so the timeline spans rotations.
+ * <p>
+ * Minute buckets are kept for {@code minuteRetention} and hour buckets for
+ * {@code hourRetention} before the latest entry. A bucket holds a counter per level and one per
+ * logger and level that occurred in it; loggers are encoded through a {@link LogDictionary},
+ * and entries of loggers past its {@code maxLoggers} count by level only.
+ */
+public class LogTimeline {
+    public static final long MINUTE = 60_000;
+    public static final long HOUR = 60 * MINUTE;
+
+    private static final int FILE_MAGIC = 0x4A4C5654; // "JLVT"
+    private static final int FILE_VERSION = 1;
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+    private static final int FINGERPRINT_BYTES = 1024;
+    private static final LogLevel[] LEVELS = LogLevel.values();
+    // counter slot of entries without a level
+    private static final int NO_LEVEL = LEVELS.length;
+
+    private final long minuteRetention;
+    private final long hourRetention;
+    private final LogLineParser parser = new LogLineParser();
+    private final TreeMap<Long, Bucket> minutes = new TreeMap<>();
+    private final TreeMap<Long, Bucket> hours = new TreeMap<>();
+    private LogDictionary loggers;
+    // the buckets the last entry went to; entries mostly go to the same ones
+    private Bucket minute;
+    private Bucket hour;
+    private long parsedBytes;
+    private long lastTimestamp = -1;
+    private long entryCount;
+    private int fingerprintLength;
+    private long fingerprint;
+    private long unsaved;
+
+    /**
+     * @param minuteRetention how long before the latest entry minute buckets are kept
+     * @param hourRetention   how long before the latest entry hour buckets are kept
+     * @param maxLoggers      distinct loggers counted separately
+     */
+    public LogTimeline(long minuteRetention, long hourRetention, int maxLoggers) {
+        this.minuteRetention = minuteRetention;
+        this.hourRetention = hourRetention;
+        this.loggers = new LogDictionary(maxLoggers);
+    }
+
+    /**
+     * Counts the entries appended since the last update.
+     *
+     * @return true if any were
+     */
+    public synchronized boolean update(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < parsedBytes
+                || (fingerprintLength > 0 && LogFiles.checksum(channel, fingerprintLength) != fingerprint)) {
+            // a new file: its entries are new, the ones counted so far stay
+            parsedBytes = 0;
+            fingerprintLength = 0;
+            fingerprint = 0;
+        }
+        if (size == parsedBytes) {
+            return false;
+        }
+        long before = entryCount;
+        parse(channel, size);
+        if (fingerprintLength < FINGERPRINT_BYTES && parsedBytes > fingerprintLength) {
+            fingerprintLength = (int) Math.min(FINGERPRINT_BYTES, parsedBytes);
+            fingerprint = LogFiles.checksum(channel, fingerprintLength);
+        }
+        prune();
+        return entryCount != before;
+    }
+
+    /**
+     * The counts of {@code [from, to)} in buckets of {@code bucketMillis}. Without {@code to},
+     * the range ends with the bucket of the latest entry; without {@code from}, it is
+     * {@code defaultBuckets} long. The filter's levels and logger apply; its thread and time do
+     * not.
+     *
+     * @param from         start, or {@link LogFilter#UNBOUNDED}; rounded down to a bucket
+     * @param to           end, or {@link LogFilter#UNBOUNDED}; rounded up to a bucket
+     * @param bucketMillis {@link #MINUTE} or {@link #HOUR}
+     * @param maxBuckets   longest range allowed, in buckets
+     * @param topLoggers   how many of the loggers with the most entries to include
+     * @throws IllegalArgumentException for another bucket size, or a range longer than
+     *                                  {@code maxBuckets}
+     */
+    public synchronized LogHistogram histogram(long from, long to, long bucketMillis, int defaultBuckets,
+            int maxBuckets, LogFilter filter, int topLoggers) {
+        if (bucketMillis != MINUTE && bucketMillis != HOUR) {
+            throw new IllegalArgumentException("Buckets are a minute or an hour");
+        }
+        if (to == LogFilter.UNBOUNDED) {
+            to = lastTimestamp < 0 ? 0 : floor(lastTimestamp, bucketMillis) + bucketMillis;
+        } else {
+            to = floor(to + bucketMillis - 1, bucketMillis);
+        }
+        from = from == LogFilter.UNBOUNDED ? to - defaultBuckets * bucketMillis : floor(from, bucketMillis);
+        if (from > to || (to - from) / bucketMillis > maxBuckets) {
+            throw new IllegalArgumentException("At most " + maxBuckets + " buckets");
+        }
+        boolean[] levels = new boolean[NO_LEVEL + 1];
+        for (int slot = 0; slot <= NO_LEVEL; slot++) {
+            levels[slot] = filter.matchesLevel(slot == NO_LEVEL ? null : LEVELS[slot]);
+        }
+        // which logger codes pass, null if any logger does
+        boolean[] matching = null;
+        if (filter.getLogger() != null) {
+            matching = new boolean[loggers.size()];
+            for (int code = 0; code < matching.length; code++) {
+                matching[code] = filter.matchesLogger(loggers.decode(code));
+            }
+        }
+        TreeMap<Long, Bucket> resolution = bucketMillis == MINUTE ? minutes : hours;
+        long[] loggerCounts = new long[loggers.size()];
+        List<LogHistogram.Bucket> buckets = new ArrayList<>((int) ((to - from) / bucketMillis));
+        for (long time = from; time < to; time += bucketMillis) {
+            Bucket bucket = resolution.get(time);
+            buckets.add(bucket == null ? new LogHistogram.Bucket(time, 0, Collections.emptyMap())
+                    : bucket.select(levels, matching, loggerCounts));
+        }
+        return new LogHistogram(bucketMillis, from, to, lastTimestamp, buckets, top(loggerCounts, topLoggers));
+    }
+
+    public synchronized long getEntryCount() {
+        return entryCount;
+    }
+
+    public synchronized long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    public synchronized int getBucketCount() {
+        return minutes.size() + hours.size();
+    }
+
+    /** Entries counted since the timeline was last saved or loaded. */
+    public synchronized long getUnsavedCount() {
+        return unsaved;
+    }
+
+    /** Rough heap taken by the buckets and the logger names. */
+    public synchronized long getMemoryBytes() {
+        long bytes = loggers.getMemoryBytes();
+        for (Bucket bucket : minutes.values()) {
+            bytes += bucket.getMemoryBytes();
+        }
+        for (Bucket bucket : hours.values()) {
+            bytes += bucket.getMemoryBytes();
+        }
+        return bytes;
+    }
+
+    /** Writes the timeline to {@code file}. */
+    public synchronized void save(Path file) throws IOException {
+        LogFiles.writeAtomically(file, out -> {
+            out.writeInt(FILE_MAGIC);
+            out.writeInt(FILE_VERSION);
+            out.writeLong(parsedBytes);
+            out.writeLong(lastTimestamp);
+            out.writeLong(entryCount);
+            out.writeInt(fingerprintLength);
+            out.writeLong(fingerprint);
+            out.writeInt(loggers.size());
+            for (int code = 0; code < loggers.size(); code++) {
+                byte[] name = loggers.decode(code).getBytes(StandardCharsets.UTF_8);
+                out.writeInt(name.length);
+                out.write(name);
+            }
+            write(out, minutes);
+            write(out, hours);
+        });
+        unsaved = 0;
+    }
+
+    /**
+     * Reads a timeline written by {@link #save}; buckets past the retention are dropped.
+     *
+     * @return the timeline, or null if the file does not exist or was written with another format
+     */
+    public static LogTimeline load(Path file, long minuteRetention, long hourRetention, int maxLoggers)
+            throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != FILE_MAGIC || in.readInt() != FILE_VERSION) {
+                return null;
+            }
+            LogTimeline timeline = new LogTimeline(minuteRetention, hourRetention, maxLoggers);
+            timeline.parsedBytes = in.readLong();
+            timeline.lastTimestamp = in.readLong();
+            timeline.entryCount = in.readLong();
+            timeline.fingerprintLength = in.readInt();
+            timeline.fingerprint = in.readLong();
+            int loggerCount = in.readInt();
+            int[] codes = new int[loggerCount];
+            for (int i = 0; i < loggerCount; i++) {
+                byte[] name = new byte[in.readInt()];
+                in.readFully(name);
+                codes[i] = timeline.loggers.encode(name, 0, name.length);
+            }
+            read(in, timeline.minutes, codes);
+            read(in, timeline.hours, codes);
+            timeline.prune();
+            return timeline;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    private static void write(DataOutputStream out, TreeMap<Long, Bucket> buckets) throws IOException {
+        out.writeInt(buckets.size());
+        for (Bucket bucket : buckets.values()) {
+            out.writeLong(bucket.start);
+            for (int count : bucket.levels) {
+                out.writeInt(count);
+            }
+            out.writeInt(bucket.size);
+            for (int slot = 0; slot < bucket.keys.length; slot++) {
+                if (bucket.keys[slot] != 0) {
+                    out.writeInt(bucket.keys[slot] - 1);
+                    out.writeInt(bucket.counts[slot]);
+                }
+            }
+        }
+    }
+
+    // codes maps the saved logger codes to those of this timeline, NONE if over its limit
+    private static void read(DataInputStream in, TreeMap<Long, Bucket> buckets, int[] codes) throws IOException {
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) {
+            Bucket bucket = new Bucket(in.readLong());
+            for (int level = 0; level <= NO_LEVEL; level++) {
+                bucket.levels[level] = in.readInt();
+            }
+            int pairs = in.readInt();
+            for (int j = 0; j < pairs; j++) {
+                int key = in.readInt();
+                int value = in.readInt();
+                int code = key >>> 3 < codes.length ? codes[key >>> 3] : LogDictionary.NONE;
+                if (code != LogDictionary.NONE) {
+                    bucket.addLogger(code << 3 | key & 7, value);
+                }
+            }
+            buckets.put(bucket.start, bucket);
+        }
+    }
+
+    // parses the complete lines in [parsedBytes, to)
+    private void parse(FileChannel channel, long to) throws IOException {
+        byte[] bytes = new byte[SCAN_BUFFER_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        ByteBuffer skip = null;
+        long position = parsedBytes;
+        while (position < to) {
+            buffer.clear();
+            buffer.limit((int) Math.min(bytes.length, to - position));
+            int read = channel.read(buffer, position);
+            if (read <= 0) {
+                break;
+            }
+            int lineStart = 0;
+            for (int i = 0; i < read; i++) {
+                if (bytes[i] == '\n') {
+                    addLine(buffer, lineStart, i);
+                    lineStart = i + 1;
+                }
+            }
+            if (lineStart > 0) {
+                // the incomplete line at the end of the buffer is read again from its start
+                position += lineStart;
+                continue;
+            }
+            // a line longer than the buffer: its head holds the fields, find its end
+            if (skip == null) {
+                skip = ByteBuffer.allocate(8192);
+            }
+            long end = LogFiles.findNewline(channel, skip, position + read, to);
+            if (end < 0) {
+                break;
+            }
+            addLine(buffer, 0, read);
+            position = end + 1;
+        }
+        parsedBytes = position;
+    }
+
+    private void addLine(ByteBuffer buffer, int start, int end) {
+        if (!parser.parse(buffer, start, end)) {
+            return;
+        }
+        int logger = LogDictionary.NONE;
+        if (parser.hasLogger()) {
+            int loggerStart = parser.getLoggerStart();
+            logger = loggers.encode(buffer.array(), loggerStart, parser.getLoggerEnd() - loggerStart);
+        }
+        LogLevel level = parser.getLevel();
+        count(parser.getTimestamp(), level == null ? NO_LEVEL : level.ordinal(), logger);
+    }
+
+    private void count(long timestamp, int level, int logger) {
+        if (timestamp > lastTimestamp) {
+            lastTimestamp = timestamp;
+        }
+        long hourStart = floor(timestamp, HOUR);
+        if (hour == null || hour.start != hourStart) {
+            hour = hours.computeIfAbsent(hourStart, Bucket::new);
+        }
+        hour.add(level, logger);
+        if (timestamp >= lastTimestamp - minuteRetention) {
+            long minuteStart = floor(timestamp, MINUTE);
+            if (minute == null || minute.start != minuteStart) {
+                minute = minutes.computeIfAbsent(minuteStart, Bucket::new);
+            }
+            minute.add(level, logger);
+        }
+        entryCount++;
+        unsaved++;
+    }
+
+    private void prune() {
+        if (lastTimestamp < 0) {
+            return;
+        }
+        minutes.headMap(floor(lastTimestamp - minuteRetention, MINUTE)).clear();
+        hours.headMap(floor(lastTimestamp - hourRetention, HOUR)).clear();
+        minute = null;
+        hour = null;
+    }
+
+    private static long floor(long time, long bucketMillis) {
+        return Math.floorDiv(time, bucketMillis) * bucketMillis;
+    }
+
+    private List<LogHistogram.LoggerCount> top(long[] counts, int limit) {
+        List<Integer> codes = new ArrayList<>();
+        for (int code = 0; code < counts.length; code++) {
+            if (counts[code] > 0) {
+                codes.add(code);
+            }
+        }
+        codes.sort((a, b) -> Long.compare(counts[b], counts[a]));
+        List<LogHistogram.LoggerCount> top = new ArrayList<>();
+        for (int code : codes.subList(0, Math.min(limit, codes.size()))) {
+            top.add(new LogHistogram.LoggerCount(loggers.decode(code), counts[code]));
+        }
+        return top;
+    }
+
+    /** The counters of one minute or hour. */
+    private static final class Bucket {
+        final long start;
+        final int[] levels = new int[NO_LEVEL + 1];
+        // open addressing over logger code << 3 | level; slots hold key + 1, 0 for empty
+        int[] keys = new int[8];
+        int[] counts = new int[8];
+        int size;
+
+        Bucket(long start) {
+            this.start = start;
+        }
+
+        void add(int level, int logger) {
+            levels[level]++;
+            if (logger != LogDictionary.NONE) {
+                addLogger(logger << 3 | level, 1);
+            }
+        }
+
+        void addLogger(int key, int count) {
+            int mask = keys.length - 1;
+            int slot = spread(key) & mask;
+            while (keys[slot] != 0 && keys[slot] != key + 1) {
+                slot = (slot + 1) & mask;
+            }
+            if (keys[slot] == 0) {
+                keys[slot] = key + 1;
+                size++;
+            }
+            counts[slot] += count;
+            if (size * 2 > keys.length) {
+                rehash();
+            }
+        }
+
+        // the counts passing the level and logger filter; adds each logger's to loggerCounts
+        LogHistogram.Bucket select(boolean[] levelMatches, boolean[] loggerMatches, long[] loggerCounts) {
+            long[] selected = new long[NO_LEVEL + 1];
+            if (loggerMatches == null) {
+                for (int level = 0; level <= NO_LEVEL; level++) {
+                    if (levelMatches[level]) {
+                        selected[level] = levels[level];
+                    }
+                }
+            }
+            for (int slot = 0; slot < keys.length; slot++) {
+                if (keys[slot] == 0) {
+                    continue;
+                }
+                int key = keys[slot] - 1;
+                int logger = key >>> 3;
+                int level = key & 7;
+                if (levelMatches[level] && logger < loggerCounts.length
+                        && (loggerMatches == null || loggerMatches[logger])) {
+                    loggerCounts[logger] += counts[slot];
+                    if (loggerMatches != null) {
+                        selected[level] += counts[slot];
+                    }
+                }
+            }
+            long total = 0;
+            Map<LogLevel, Long> byLevel = new EnumMap<>(LogLevel.class);
+            for (int level = 0; level <= NO_LEVEL; level++) {
+                total += selected[level];
+                if (level < NO_LEVEL && selected[level] > 0) {
+                    byLevel.put(LEVELS[level], selected[level]);
+                }
+            }
+            return new LogHistogram.Bucket(start, total, byLevel);
+        }
+
+        long getMemoryBytes() {
+            return 64 + levels.length * 4L + keys.length * 8L;
+        }
+
+        private void rehash() {
+            int[] oldKeys = keys;
+            int[] oldCounts = counts;
+            keys = new int[oldKeys.length * 2];
+            counts = new int[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != 0) {
+                    int slot = spread(oldKeys[i] - 1) & mask;
+                    while (keys[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    counts[slot] = oldCounts[i];
+                }
+            }
+        }
+
+        private static int spread(int key) {
+            int hash = key * 0x9E3779B9;
+            return hash ^ (hash >>> 16);
+        }
+    }
+}
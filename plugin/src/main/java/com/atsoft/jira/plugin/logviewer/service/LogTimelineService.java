@@ -0,0 +1,207 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a {@link LogTimeline} per log file, persisted next to the log indexes. The files of
+ * {@link LogViewerSettings#TIMELINE_FILES}, and every file whose timeline was asked for, are
+ * brought up to date in the background every {@link LogViewerSettings#TIMELINE_REFRESH_SECONDS},
+ * so a histogram only has to read the entries written since. A timeline is written out at most
+ * every few minutes, and on shutdown.
+ */
+public class LogTimelineService {
+    private static final Logger log = LoggerFactory.getLogger(LogTimelineService.class);
+    private static final LogTimelineService INSTANCE = new LogTimelineService(LogTailService.getInstance(), null,
+            List.of(LogViewerSettings.TIMELINE_FILES.split(",")));
+
+    // buckets of a histogram without a start: a day of minutes, or 30 days of hours
+    private static final int DEFAULT_MINUTES = 24 * 60;
+    private static final int DEFAULT_HOURS = 30 * 24;
+    private static final int MAX_BUCKETS = 10_000;
+    private static final int TOP_LOGGERS = 20;
+    // a timeline with new counts is written out at most this often; everything else on shutdown
+    private static final long SAVE_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final LogTailService logs;
+    private final List<String> trackedFiles = new ArrayList<>();
+    private final Map<Path, LogTimeline> timelines = new ConcurrentHashMap<>();
+    private final Map<Path, Long> saveTimes = new ConcurrentHashMap<>();
+    private Path directory;
+    private ScheduledExecutorService refresher;
+
+    public static LogTimelineService getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @param logs         resolves log file names
+     * @param directory    where timelines are stored; null for the directory of the log indexes
+     * @param trackedFiles names of the log files counted from the start
+     */
+    public LogTimelineService(LogTailService logs, Path directory, List<String> trackedFiles) {
+        this.logs = logs;
+        this.directory = directory;
+        for (String fileName : trackedFiles) {
+            if (!fileName.isBlank()) {
+                this.trackedFiles.add(fileName.trim());
+            }
+        }
+    }
+
+    /**
+     * Entries of a log file per minute or hour, by level, and the loggers with the most; see
+     * {@link LogTimeline#histogram}. Without {@code from}, a day of minutes or 30 days of hours.
+     *
+     * @throws IllegalArgumentException for a bucket size other than a minute or an hour, or too
+     *                                  long a range
+     */
+    public LogHistogram histogram(String fileName, long from, long to, long bucketMillis, LogFilter filter)
+            throws IOException {
+        LogTimeline timeline = update(logs.resolve(fileName));
+        return timeline.histogram(from, to, bucketMillis,
+                bucketMillis == LogTimeline.HOUR ? DEFAULT_HOURS : DEFAULT_MINUTES, MAX_BUCKETS, filter, TOP_LOGGERS);
+    }
+
+    /**
+     * Starts counting the tracked files in the background. Called when the plugin starts.
+     */
+    public synchronized void start() {
+        if (refresher != null) {
+            return;
+        }
+        refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "jira-log-viewer-timeline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        refresher.scheduleWithFixedDelay(this::refresh, 0, LogViewerSettings.TIMELINE_REFRESH_SECONDS,
+                TimeUnit.SECONDS);
+    }
+
+    /**
+     * Counts what was appended to the tracked files and to those with a timeline, and saves
+     * the timelines that changed and were last saved a while ago.
+     */
+    public void refresh() {
+        List<Path> paths = new ArrayList<>();
+        for (String fileName : trackedFiles) {
+            try {
+                paths.add(logs.resolve(fileName));
+            } catch (IOException e) {
+                log.debug("Not counting " + fileName + ": " + e.getMessage());
+            }
+        }
+        for (Path path : timelines.keySet()) {
+            if (!paths.contains(path)) {
+                paths.add(path);
+            }
+        }
+        for (Path path : paths) {
+            try {
+                LogTimeline timeline = update(path);
+                if (System.currentTimeMillis() - saveTimes.getOrDefault(path, 0L) >= SAVE_INTERVAL_MILLIS) {
+                    save(path, timeline);
+                }
+            } catch (IOException e) {
+                // a rotated archive that was removed; its timeline is on disk
+                log.debug("Cannot count " + path + ": " + e.getMessage());
+                LogTimeline removed = timelines.remove(path);
+                if (removed != null && removed.getUnsavedCount() > 0) {
+                    save(path, removed);
+                }
+                saveTimes.remove(path);
+            } catch (RuntimeException e) {
+                log.error("Error counting entries of " + path, e);
+            }
+        }
+    }
+
+    public int getTimelineCount() {
+        return timelines.size();
+    }
+
+    /** Rough heap taken by all timelines. */
+    public long getMemoryBytes() {
+        long bytes = 0;
+        for (LogTimeline timeline : timelines.values()) {
+            bytes += timeline.getMemoryBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Stops counting and writes every timeline with unsaved counts. Called when the plugin is
+     * disabled.
+     */
+    public void shutdown() {
+        synchronized (this) {
+            if (refresher != null) {
+                refresher.shutdownNow();
+                refresher = null;
+            }
+        }
+        for (Map.Entry<Path, LogTimeline> entry : new ArrayList<>(timelines.entrySet())) {
+            save(entry.getKey(), entry.getValue());
+        }
+        timelines.clear();
+        saveTimes.clear();
+    }
+
+    private LogTimeline update(Path path) throws IOException {
+        LogTimeline timeline = timelines.computeIfAbsent(path, this::load);
+        try (FileChannel channel = logs.open(path)) {
+            timeline.update(channel);
+        }
+        return timeline;
+    }
+
+    private LogTimeline load(Path path) {
+        long minuteRetention = LogViewerSettings.TIMELINE_MINUTE_HOURS * LogTimeline.HOUR;
+        long hourRetention = LogViewerSettings.TIMELINE_HOUR_DAYS * 24 * LogTimeline.HOUR;
+        int maxLoggers = LogViewerSettings.TIMELINE_MAX_LOGGERS;
+        try {
+            LogTimeline timeline = LogTimeline.load(timelineFile(path), minuteRetention, hourRetention, maxLoggers);
+            if (timeline != null) {
+                return timeline;
+            }
+        } catch (IOException e) {
+            log.warn("Ignoring unreadable timeline of " + path + ": " + e.getMessage());
+        }
+        return new LogTimeline(minuteRetention, hourRetention, maxLoggers);
+    }
+
+    private void save(Path path, LogTimeline timeline) {
+        if (timeline.getUnsavedCount() == 0) {
+            return;
+        }
+        try {
+            timeline.save(timelineFile(path));
+            saveTimes.put(path, System.currentTimeMillis());
+        } catch (IOException e) {
+            log.warn("Could not save timeline of " + path, e);
+        }
+    }
+
+    private Path timelineFile(Path logFile) {
+        return getDirectory().resolve(logFile.getFileName() + ".timeline");
+    }
+
+    private synchronized Path getDirectory() {
+        if (directory == null) {
+            directory = LogIndexService.defaultIndexDirectory();
+        }
+        return directory;
+    }
+}
@@ -0,0 +1,340 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Plugin-wide counters of terminal traffic and issue copies, exposed through JMX and
+ * {@code /rest/log-viewer/1.0/metrics}. Terminal totals are fed by each session's
+ * {@link SessionMetrics}; gauges such as active sessions and queue depths are read from the
+ * services when asked. Copy latencies are recorded per phase and per field handler by the
+ * issue copy helper, and copies are counted per user, so load on a node can be traced to
+ * the people and operations causing it.
+ */
+public class LogViewerMetrics implements LogViewerMetricsMXBean {
+    public static final String OBJECT_NAME = "com.atsoft.jira.plugin.logviewer:type=Metrics";
+
+    private static final Logger log = LoggerFactory.getLogger(LogViewerMetrics.class);
+    private static final LogViewerMetrics INSTANCE = new LogViewerMetrics();
+    private static final int RATE_WINDOW_SECONDS = 10;
+
+    private final LongAdder terminalBytesIn = new LongAdder();
+    private final LongAdder terminalBytesOut = new LongAdder();
+    private final LongAdder framesSent = new LongAdder();
+    private final RateMeter frameRate = new RateMeter(RATE_WINDOW_SECONDS);
+    private final LatencyHistogram sendLatency = new LatencyHistogram();
+    private final LongAdder compressionBytesIn = new LongAdder();
+    private final LongAdder compressionBytesOut = new LongAdder();
+    private final Map<String, LongAdder> reapedSessions = new ConcurrentHashMap<>();
+    private final LongAdder leakedProcesses = new LongAdder();
+
+    private final Map<String, LatencyHistogram> copyPhases = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> copyFields = new ConcurrentHashMap<>();
+    private final Map<String, CopyCounts> copiesByUser = new ConcurrentHashMap<>();
+
+    public static LogViewerMetrics getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Registers the JMX view with the platform MBean server, replacing one left behind by an
+     * earlier instance of the plugin.
+     */
+    public void register() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            try {
+                server.registerMBean(this, name);
+            } catch (InstanceAlreadyExistsException e) {
+                server.unregisterMBean(name);
+                server.registerMBean(this, name);
+            }
+        } catch (JMException e) {
+            log.warn("Could not register log viewer metrics with JMX: " + e);
+        }
+    }
+
+    public void unregister() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(OBJECT_NAME));
+        } catch (InstanceNotFoundException e) {
+            // never registered
+        } catch (JMException e) {
+            log.warn("Could not unregister log viewer metrics from JMX: " + e);
+        }
+    }
+
+    // --- recording ---
+
+    void terminalInput(int bytes) {
+        terminalBytesIn.add(bytes);
+    }
+
+    void frameSent(int bytes) {
+        terminalBytesOut.add(bytes);
+        framesSent.increment();
+        frameRate.mark(1);
+    }
+
+    void sendCompleted(long nanos) {
+        sendLatency.record(nanos);
+    }
+
+    /** Counts a frame deflated for a client that asked for compression. */
+    public void frameCompressed(int uncompressedBytes, int compressedBytes) {
+        compressionBytesIn.add(uncompressedBytes);
+        compressionBytesOut.add(compressedBytes);
+    }
+
+    /** Counts a session killed by the reaper, by cause, e.g. {@code idle} or {@code orphaned}. */
+    void sessionReaped(String cause) {
+        reapedSessions.computeIfAbsent(cause, c -> new LongAdder()).increment();
+    }
+
+    /** Counts processes of killed sessions that were still running after SIGKILL. */
+    void processesLeaked(int count) {
+        leakedProcesses.add(count);
+    }
+
+    /** Records one phase of an issue copy, e.g. {@code validate} or {@code create}. */
+    public void copyPhase(String phase, long nanos) {
+        copyPhases.computeIfAbsent(phase, p -> new LatencyHistogram()).record(nanos);
+    }
+
+    /** Records how long the handler of one field took to copy its value. */
+    public void copyField(String handler, long nanos) {
+        copyFields.computeIfAbsent(handler, h -> new LatencyHistogram()).record(nanos);
+    }
+
+    /** Counts a finished copy of one issue on behalf of {@code user}. */
+    public void issueCopied(String user, boolean success, long nanos) {
+        copiesByUser.computeIfAbsent(user != null ? user : "", u -> new CopyCounts()).add(success, nanos);
+    }
+
+    // --- terminals ---
+
+    @Override
+    public int getActiveSessions() {
+        return PtyManager.getInstance().getSessions().size();
+    }
+
+    @Override
+    public int getReaderThreads() {
+        return PtyManager.getInstance().getReaderThreadCount();
+    }
+
+    @Override
+    public int getActiveReaders() {
+        return PtyManager.getInstance().getReaderCount();
+    }
+
+    @Override
+    public long getTerminalBytesIn() {
+        return terminalBytesIn.sum();
+    }
+
+    @Override
+    public long getTerminalBytesOut() {
+        return terminalBytesOut.sum();
+    }
+
+    @Override
+    public long getFramesSent() {
+        return framesSent.sum();
+    }
+
+    @Override
+    public double getFramesPerSecond() {
+        return frameRate.getRate();
+    }
+
+    @Override
+    public long getCompressedFrameBytes() {
+        return compressionBytesIn.sum();
+    }
+
+    @Override
+    public long getCompressedFrameBytesSent() {
+        return compressionBytesOut.sum();
+    }
+
+    @Override
+    public long getQueuedBytes() {
+        long queued = 0;
+        for (PtySession session : PtyManager.getInstance().getSessions()) {
+            queued += session.getOutput().getQueuedBytes();
+        }
+        return queued;
+    }
+
+    @Override
+    public long getDroppedBytes() {
+        long dropped = 0;
+        for (PtySession session : PtyManager.getInstance().getSessions()) {
+            dropped += session.getOutput().getDroppedBytes();
+        }
+        return dropped;
+    }
+
+    @Override
+    public Map<String, Long> getSendLatency() {
+        return sendLatency.toMap();
+    }
+
+    public LatencyHistogram getSendLatencyHistogram() {
+        return sendLatency;
+    }
+
+    @Override
+    public Map<String, Long> getSessionsByUser() {
+        return sumByOwner(session -> 1);
+    }
+
+    @Override
+    public Map<String, Long> getBytesOutByUser() {
+        return sumByOwner(session -> session.getMetrics().getBytesOut());
+    }
+
+    @Override
+    public Map<String, Long> getReapedSessions() {
+        Map<String, Long> reaped = new TreeMap<>();
+        reapedSessions.forEach((cause, count) -> reaped.put(cause, count.sum()));
+        return reaped;
+    }
+
+    @Override
+    public long getLeakedProcesses() {
+        return leakedProcesses.sum();
+    }
+
+    @Override
+    public int getPtyDescriptors() {
+        return ProcessTree.countPtyDescriptors();
+    }
+
+    @Override
+    public int getPooledShells() {
+        return PtyManager.getInstance().getShellPool().getIdleCount();
+    }
+
+    @Override
+    public long getShellPoolHits() {
+        return PtyManager.getInstance().getShellPool().getHits();
+    }
+
+    @Override
+    public long getShellPoolMisses() {
+        return PtyManager.getInstance().getShellPool().getMisses();
+    }
+
+    // --- issue copies ---
+
+    @Override
+    public int getPendingCopyJobs() {
+        return IssueCopyJobService.getInstance().getPendingCount();
+    }
+
+    @Override
+    public long getIssuesCopied() {
+        long copied = 0;
+        for (CopyCounts counts : copiesByUser.values()) {
+            copied += counts.getCopied();
+        }
+        return copied;
+    }
+
+    @Override
+    public long getIssueCopyFailures() {
+        long failed = 0;
+        for (CopyCounts counts : copiesByUser.values()) {
+            failed += counts.getFailed();
+        }
+        return failed;
+    }
+
+    @Override
+    public Map<String, Long> getCopyPhaseP99Micros() {
+        return p99(copyPhases);
+    }
+
+    @Override
+    public Map<String, Long> getCopyFieldP99Micros() {
+        return p99(copyFields);
+    }
+
+    @Override
+    public Map<String, Long> getIssuesCopiedByUser() {
+        Map<String, Long> copied = new TreeMap<>();
+        copiesByUser.forEach((user, counts) -> copied.put(user, counts.getCopied()));
+        return copied;
+    }
+
+    /** Latency per copy phase, sorted by name. */
+    public Map<String, LatencyHistogram> getCopyPhases() {
+        return Collections.unmodifiableMap(new TreeMap<>(copyPhases));
+    }
+
+    /** Latency per field handler, sorted by name. */
+    public Map<String, LatencyHistogram> getCopyFields() {
+        return Collections.unmodifiableMap(new TreeMap<>(copyFields));
+    }
+
+    /** Copies per user name, sorted by name. */
+    public Map<String, CopyCounts> getCopiesByUser() {
+        return Collections.unmodifiableMap(new TreeMap<>(copiesByUser));
+    }
+
+    private static Map<String, Long> sumByOwner(ToLongFunction<PtySession> value) {
+        Map<String, Long> sums = new TreeMap<>();
+        for (PtySession session : PtyManager.getInstance().getSessions()) {
+            String owner = session.getOwner() != null ? session.getOwner() : "";
+            sums.merge(owner, value.applyAsLong(session), Long::sum);
+        }
+        return sums;
+    }
+
+    private static Map<String, Long> p99(Map<String, LatencyHistogram> histograms) {
+        Map<String, Long> p99 = new TreeMap<>();
+        histograms.forEach((name, histogram) -> p99.put(name, histogram.getPercentileMicros(0.99)));
+        return p99;
+    }
+
+    /** Issue copies of one user. */
+    public static class CopyCounts {
+        private final LongAdder copied = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        void add(boolean success, long elapsedNanos) {
+            (success ? copied : failed).increment();
+            nanos.add(elapsedNanos);
+        }
+
+        public long getCopied() {
+            return copied.sum();
+        }
+
+        public long getFailed() {
+            return failed.sum();
+        }
+
+        /** Time spent copying, successful or not, in milliseconds. */
+        public long getTotalMillis() {
+            return nanos.sum() / 1_000_000;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link LogViewerMetrics}, registered as {@value LogViewerMetrics#OBJECT_NAME}.
+ * Latency maps hold count, mean, percentiles and maximum in microseconds; see
+ * {@link LatencyHistogram#toMap()}.
+ */
+public interface LogViewerMetricsMXBean {
+
+    int getActiveSessions();
+
+    int getReaderThreads();
+
+    int getActiveReaders();
+
+    long getTerminalBytesIn();
+
+    long getTerminalBytesOut();
+
+    long getFramesSent();
+
+    double getFramesPerSecond();
+
+    /** Output bytes that were deflated before sending. */
+    long getCompressedFrameBytes();
+
+    /** What {@link #getCompressedFrameBytes()} shrank to. */
+    long getCompressedFrameBytesSent();
+
+    /** Output queued for the slowest client, summed over all sessions. */
+    long getQueuedBytes();
+
+    long getDroppedBytes();
+
+    Map<String, Long> getSendLatency();
+
+    /** Running terminal sessions per owner. */
+    Map<String, Long> getSessionsByUser();
+
+    /** Output bytes sent for the running sessions of each owner. */
+    Map<String, Long> getBytesOutByUser();
+
+    /** Sessions killed for being idle, orphaned or dead, by cause. */
+    Map<String, Long> getReapedSessions();
+
+    /** Processes of killed sessions that survived SIGKILL; anything but 0 needs a look. */
+    long getLeakedProcesses();
+
+    /** PTY file descriptors held by the JVM, or -1 where they cannot be counted. */
+    int getPtyDescriptors();
+
+    /** Pre-started shells waiting for a terminal. */
+    int getPooledShells();
+
+    /** Terminals opened with a pooled shell. */
+    long getShellPoolHits();
+
+    /** Terminals that started their own shell because the pool was empty or disabled. */
+    long getShellPoolMisses();
+
+    int getPendingCopyJobs();
+
+    long getIssuesCopied();
+
+    long getIssueCopyFailures();
+
+    /** 99th percentile per copy phase (prefetch, plan, populate, validate, create, total). */
+    Map<String, Long> getCopyPhaseP99Micros();
+
+    /** 99th percentile per field handler, e.g. {@code summary} or {@code select}. */
+    Map<String, Long> getCopyFieldP99Micros();
+
+    /** Issues copied per user since the plugin started. */
+    Map<String, Long> getIssuesCopiedByUser();
+}
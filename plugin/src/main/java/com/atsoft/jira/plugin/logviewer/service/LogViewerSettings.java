@@ -0,0 +1,182 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import java.util.Locale;
+
+/**
+ * Tunables for the terminal, log and issue copy services. Values are read once from system properties,
+ * e.g. {@code -Djira.logviewer.output.flushMillis=10} in Jira's {@code setenv.sh}.
+ */
+public final class LogViewerSettings {
+
+    /** How long PTY output is gathered before it is sent as one frame. */
+    public static final long OUTPUT_FLUSH_MILLIS = Long.getLong("jira.logviewer.output.flushMillis", 5L);
+
+    /** Upper bound of a single output frame; a full frame is sent without waiting for the window. */
+    public static final int OUTPUT_MAX_FRAME_BYTES = Integer.getInteger("jira.logviewer.output.maxFrameBytes", 32 * 1024);
+
+    /** How far a client may fall behind before {@link #OUTPUT_OVERFLOW_POLICY} applies. */
+    public static final int OUTPUT_MAX_QUEUED_BYTES = Integer.getInteger("jira.logviewer.output.maxQueuedBytes", 1024 * 1024);
+
+    /** PAUSE, DROP or DISCONNECT; see {@link OverflowPolicy}. */
+    public static final OverflowPolicy OUTPUT_OVERFLOW_POLICY =
+            enumProperty("jira.logviewer.output.overflowPolicy", OverflowPolicy.PAUSE);
+
+    /**
+     * Frames at least this large are deflated for clients that ask for compression; smaller ones,
+     * such as keystroke echo, are sent as they are.
+     */
+    public static final int OUTPUT_COMPRESSION_MIN_BYTES =
+            Integer.getInteger("jira.logviewer.output.compressionMinBytes", 512);
+
+    /** Deflate level from 1 (fastest) to 9 (smallest); 0 turns compression off. */
+    public static final int OUTPUT_COMPRESSION_LEVEL = Integer.getInteger("jira.logviewer.output.compressionLevel", 1);
+
+    /** Input a session takes ahead of the PTY, e.g. a large paste; messages that do not fit are refused. */
+    public static final int INPUT_MAX_PENDING_BYTES =
+            Integer.getInteger("jira.logviewer.input.maxPendingBytes", 1024 * 1024);
+
+    /**
+     * Keeps a model of the screen of full-screen programs such as {@code top} server-side and
+     * sends clients only the rows that changed; see {@link ScreenRelay}.
+     */
+    public static final boolean SCREEN_MODEL = Boolean.getBoolean("jira.logviewer.screen.model");
+
+    /** Shortest interval between two screen frames of a full-screen program. */
+    public static final long SCREEN_REFRESH_MILLIS = Long.getLong("jira.logviewer.screen.refreshMillis", 50L);
+
+    /** Output kept per session (off-heap) for replay to a client that reconnects. */
+    public static final int SCROLLBACK_BYTES = Integer.getInteger("jira.logviewer.scrollback.bytes", 1024 * 1024);
+
+    /** How long a session whose WebSocket dropped is kept alive, waiting for the client to resume it. */
+    public static final long SESSION_GRACE_SECONDS = Long.getLong("jira.logviewer.session.graceSeconds", 120L);
+
+    /** Shells started ahead of time so that a new terminal gets its prompt at once; 0 disables the pool. */
+    public static final int SHELL_POOL_SIZE = Integer.getInteger("jira.logviewer.shell.poolSize", 0);
+
+    /** How long a pooled shell may wait for a terminal before it is replaced; 0 keeps it forever. */
+    public static final long SHELL_POOL_MAX_AGE_MINUTES = Long.getLong("jira.logviewer.shell.poolMaxAgeMinutes", 30L);
+
+    /** Terminal sessions without input or output for this long are killed; 0 keeps them forever. */
+    public static final long SESSION_IDLE_MINUTES = Long.getLong("jira.logviewer.session.idleMinutes", 60L);
+
+    /** Terminal sessions running at the same time, across all users. */
+    public static final int MAX_SESSIONS = Integer.getInteger("jira.logviewer.session.max", 50);
+
+    /** Terminal sessions one user may have running at the same time. */
+    public static final int MAX_SESSIONS_PER_USER = Integer.getInteger("jira.logviewer.session.maxPerUser", 5);
+
+    /** How often sessions are checked for being idle, orphaned or dead, and for leaks. */
+    public static final long SESSION_REAP_INTERVAL_SECONDS =
+            Long.getLong("jira.logviewer.session.reapIntervalSeconds", 30L);
+
+    /** How long a killed shell's processes get to exit on SIGTERM before they are killed with SIGKILL. */
+    public static final long SESSION_KILL_GRACE_MILLIS = Long.getLong("jira.logviewer.session.killGraceMillis", 2000L);
+
+    /** How many read-only viewers a terminal session may have. */
+    public static final int MAX_VIEWERS = Integer.getInteger("jira.logviewer.session.maxViewers", 20);
+
+    /** What happens to a viewer that falls behind; PAUSE would hold up the owner's shell. */
+    public static final OverflowPolicy VIEWER_OVERFLOW_POLICY =
+            enumProperty("jira.logviewer.session.viewerOverflowPolicy", OverflowPolicy.DROP);
+
+    /** Directory the log viewer reads from; defaults to Jira's log directory. */
+    public static final String LOG_DIRECTORY = System.getProperty("jira.logviewer.log.dir");
+
+    /** How often followed log files are checked for new output, rotation and truncation. */
+    public static final long TAIL_POLL_MILLIS = Long.getLong("jira.logviewer.tail.pollMillis", 250L);
+
+    /** How much of the end of a log file a new follower gets before live output. */
+    public static final long TAIL_INITIAL_BYTES = Long.getLong("jira.logviewer.tail.initialBytes", 64 * 1024L);
+
+    /**
+     * Log directories of the Data Center nodes whose logs can be merged, as
+     * {@code node1=/mnt/node1/log,node2=/mnt/node2/log}; see {@link LogMergeService}.
+     */
+    public static final String NODE_LOG_DIRECTORIES = System.getProperty("jira.logviewer.nodes");
+
+    /** A directory with a log directory per node, named after the node, e.g. copies in the shared home. */
+    public static final String NODES_DIRECTORY = System.getProperty("jira.logviewer.nodes.dir");
+
+    /** How long a node that wrote nothing holds back later entries of the others in a followed merge. */
+    public static final long MERGE_LAG_MILLIS = Long.getLong("jira.logviewer.merge.lagMillis", 2000L);
+
+    /** Threads reading merged node logs for their clients. */
+    public static final int MERGE_THREADS = Integer.getInteger("jira.logviewer.merge.threads", 2);
+
+    /** Where log indexes are stored; defaults to {@code <jira data>/jira-log-viewer/index}. */
+    public static final String INDEX_DIRECTORY = System.getProperty("jira.logviewer.index.dir");
+
+    /** Distance between two checkpoints of a log index; a seek scans at most this much. */
+    public static final long INDEX_INTERVAL_BYTES = Long.getLong("jira.logviewer.index.intervalBytes", 64 * 1024L);
+
+    /** Decompressed bytes between two checkpoints of a gzip archive's index; a seek decompresses at most this much. */
+    public static final long ARCHIVE_SPAN_BYTES = Long.getLong("jira.logviewer.archive.spanBytes", 2 * 1024 * 1024L);
+
+    /**
+     * Log files, comma separated, whose entries are counted per minute and hour from the start;
+     * see {@link LogTimelineService}. Other files are counted once their timeline is asked for.
+     */
+    public static final String TIMELINE_FILES = System.getProperty("jira.logviewer.timeline.files",
+            "atlassian-jira.log");
+
+    /** How often the counts are brought up to date with their log files. */
+    public static final long TIMELINE_REFRESH_SECONDS = Long.getLong("jira.logviewer.timeline.refreshSeconds", 10L);
+
+    /** How long per-minute counts are kept, before the latest entry of their file. */
+    public static final long TIMELINE_MINUTE_HOURS = Long.getLong("jira.logviewer.timeline.minuteHours", 48L);
+
+    /** How long per-hour counts are kept, before the latest entry of their file. */
+    public static final long TIMELINE_HOUR_DAYS = Long.getLong("jira.logviewer.timeline.hourDays", 90L);
+
+    /** Distinct loggers counted separately per log file; entries of further loggers count by level only. */
+    public static final int TIMELINE_MAX_LOGGERS = Integer.getInteger("jira.logviewer.timeline.maxLoggers", 2000);
+
+    /** Column memory of the parsed entries of one log file; once full, the oldest entries are dropped. */
+    public static final long TABLE_MAX_BYTES = Long.getLong("jira.logviewer.table.maxBytes", 64 * 1024 * 1024L);
+
+    /** Log files whose parsed entries are kept in memory for filtering. */
+    public static final int TABLE_MAX_FILES = Integer.getInteger("jira.logviewer.table.maxFiles", 4);
+
+    /** Distinct thread and logger names kept per log file; entries with further names cannot be filtered by them. */
+    public static final int TABLE_MAX_NAMES = Integer.getInteger("jira.logviewer.table.maxNames", 10000);
+
+    /** Longest line returned when paging through a log file; the rest of the line is cut. */
+    public static final int PAGE_MAX_LINE_BYTES = Integer.getInteger("jira.logviewer.page.maxLineBytes", 16 * 1024);
+
+    /** Parallelism of the log search pool. */
+    public static final int SEARCH_THREADS = Integer.getInteger("jira.logviewer.search.threads",
+            Runtime.getRuntime().availableProcessors());
+
+    /** Size of the line-aligned segments a log file is split into for searching. */
+    public static final long SEARCH_SEGMENT_BYTES = Long.getLong("jira.logviewer.search.segmentBytes", 8 * 1024 * 1024L);
+
+    /** Bulk issue copy jobs run at the same time, across all users. */
+    public static final int COPY_JOB_THREADS = Integer.getInteger("jira.logviewer.copy.jobThreads", 2);
+
+    /** Copy jobs one user may have running at the same time; further ones wait their turn. */
+    public static final int COPY_JOBS_PER_USER = Integer.getInteger("jira.logviewer.copy.jobsPerUser", 1);
+
+    /** Copy jobs queued or running before new ones are refused. */
+    public static final int COPY_MAX_PENDING_JOBS = Integer.getInteger("jira.logviewer.copy.maxPendingJobs", 50);
+
+    /** Issues of one copy job that are created concurrently. */
+    public static final int COPY_PARALLELISM = Integer.getInteger("jira.logviewer.copy.parallelism", 4);
+
+    /** How long the results of a finished copy job are kept. */
+    public static final long COPY_JOB_RETENTION_MINUTES = Long.getLong("jira.logviewer.copy.retentionMinutes", 60L);
+
+    private LogViewerSettings() {
+    }
+
+    private static <E extends Enum<E>> E enumProperty(String key, E defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Enum.valueOf(defaultValue.getDeclaringClass(), value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return defaultValue;
+        }
+    }
+}
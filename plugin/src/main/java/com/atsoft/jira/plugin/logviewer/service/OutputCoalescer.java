@@ -0,0 +1,234 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One client's cursor into a {@link SessionOutput}. Output is gathered for a short window, or
+ * until a frame is full, and handed to the sink as one binary frame. Output arriving after a
+ * quiet period is sent right away so that keystroke echo is not delayed; only bursts are held
+ * back. At most one frame is in flight; whatever arrives meanwhile stays queued in the ring.
+ * <p>
+ * Control messages (see {@link #sendControl(String)}) travel through the same single-flight
+ * pipeline, ahead of any output queued after them, so the client can track the exact stream
+ * offset of every byte it receives.
+ * <p>
+ * All state is guarded by the owning {@link SessionOutput}'s monitor.
+ */
+public class OutputCoalescer {
+
+    public interface FrameSink {
+        /**
+         * Sends the frame asynchronously. {@code onComplete} must be called exactly once, after
+         * the container no longer needs the buffer, whether the send succeeded or not.
+         */
+        void send(ByteBuffer frame, Runnable onComplete);
+
+        /**
+         * Sends a control message asynchronously, with the same contract as {@link #send}.
+         */
+        void sendText(String message, Runnable onComplete);
+
+        /**
+         * Called when the client fell too far behind under {@link OverflowPolicy#DISCONNECT}.
+         */
+        default void disconnect(String reason) {
+        }
+    }
+
+    private final SessionOutput owner;
+    private final FrameSink sink;
+    private final OverflowPolicy policy;
+    private final long windowNanos;
+    private final ByteBuffer frame;
+    private final Deque<String> controls = new ArrayDeque<>();
+    private ByteBuffer snapshot;
+
+    private long cursor;
+    private long limit;
+    private long dropped;
+    private boolean inFlight;
+    private boolean flushing;
+    private boolean flushScheduled;
+    private boolean closed;
+    private long lastFlushNanos;
+    private long sendStartNanos;
+
+    OutputCoalescer(SessionOutput owner, FrameSink sink, OverflowPolicy policy, long cursor, long limit,
+            long windowMillis, int maxFrameBytes) {
+        this.owner = owner;
+        this.sink = sink;
+        this.policy = policy;
+        this.cursor = cursor;
+        this.limit = limit;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.frame = ByteBuffer.allocate(maxFrameBytes);
+        this.lastFlushNanos = System.nanoTime() - windowNanos;
+    }
+
+    public OverflowPolicy policy() {
+        return policy;
+    }
+
+    FrameSink sink() {
+        return sink;
+    }
+
+    long cursor() {
+        return cursor;
+    }
+
+    long queuedBytes() {
+        return owner.ring().end() - cursor;
+    }
+
+    long droppedBytes() {
+        return dropped;
+    }
+
+    /**
+     * Maximum backlog before the overflow policy applies. A resuming client may start with a
+     * backlog larger than the queue limit; it is allowed to work that off first.
+     */
+    long limit() {
+        return limit;
+    }
+
+    /**
+     * Queues a text message that is sent before any output written after this call.
+     */
+    public void sendControl(String message) {
+        synchronized (owner) {
+            controls.add(message);
+            if (!inFlight) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Queues a frame that is not part of the stream, sent after the pending control messages
+     * and before any output.
+     */
+    void sendSnapshot(ByteBuffer frame) {
+        snapshot = frame;
+        if (!inFlight) {
+            flush();
+        }
+    }
+
+    /**
+     * Makes sure {@code length} more bytes fit into this client's queue.
+     *
+     * @return false if the client has to be disconnected
+     */
+    boolean makeRoom(int length) {
+        if (queuedBytes() + length <= limit) {
+            return true;
+        }
+        if (policy == OverflowPolicy.DISCONNECT) {
+            closed = true;
+            return false;
+        }
+        // DROP: discard the backlog and tell the client how much it missed
+        long skipped = queuedBytes();
+        cursor += skipped;
+        dropped += skipped;
+        controls.add("truncated:" + skipped);
+        return true;
+    }
+
+    void onAppend() {
+        if (closed || inFlight) {
+            // an in-flight frame picks up the rest when it completes
+            return;
+        }
+        long sinceLastFlush = System.nanoTime() - lastFlushNanos;
+        if (queuedBytes() >= frame.capacity() || sinceLastFlush >= windowNanos) {
+            flush();
+        } else if (!flushScheduled) {
+            flushScheduled = true;
+            owner.scheduler().schedule(this::scheduledFlush, windowNanos - sinceLastFlush, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    void close() {
+        closed = true;
+    }
+
+    void disconnect() {
+        disconnect("Client could not keep up with terminal output");
+    }
+
+    void disconnect(String reason) {
+        sink.disconnect(reason);
+    }
+
+    private void scheduledFlush() {
+        synchronized (owner) {
+            flushScheduled = false;
+            flush();
+        }
+    }
+
+    private void flush() {
+        if (flushing) {
+            // a send completed inline; the loop below continues
+            return;
+        }
+        flushing = true;
+        try {
+            while (!closed && !inFlight && sendNext()) {
+                // keep going while sends complete synchronously
+            }
+        } finally {
+            flushing = false;
+        }
+    }
+
+    private boolean sendNext() {
+        if (!controls.isEmpty()) {
+            inFlight = true;
+            sendStartNanos = System.nanoTime();
+            sink.sendText(controls.poll(), this::onSent);
+            return true;
+        }
+        if (snapshot != null) {
+            ByteBuffer screen = snapshot;
+            snapshot = null;
+            return send(screen);
+        }
+        if (queuedBytes() == 0) {
+            return false;
+        }
+        frame.clear();
+        cursor += owner.ring().read(cursor, frame);
+        frame.flip();
+        if (limit > owner.maxQueuedBytes() && queuedBytes() <= owner.maxQueuedBytes()) {
+            // caught up with the replay after a resume
+            limit = owner.maxQueuedBytes();
+        }
+        return send(frame);
+    }
+
+    private boolean send(ByteBuffer data) {
+        inFlight = true;
+        lastFlushNanos = System.nanoTime();
+        owner.metrics().frameSent(data.remaining());
+        sendStartNanos = System.nanoTime();
+        sink.send(data, this::onSent);
+        return true;
+    }
+
+    private void onSent() {
+        synchronized (owner) {
+            owner.metrics().sendCompleted(System.nanoTime() - sendStartNanos);
+            inFlight = false;
+            // wake a producer paused on this client
+            owner.notifyAll();
+            flush();
+        }
+    }
+}
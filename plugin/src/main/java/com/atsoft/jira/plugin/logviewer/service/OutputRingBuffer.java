@@ -0,0 +1,70 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed-size byte ring addressed by absolute stream offsets. Offsets grow monotonically from
+ * zero; once more than {@code capacity} bytes were written, the oldest ones are overwritten.
+ * The bytes live off-heap so that the scrollback of many idle sessions does not weigh on GC.
+ * <p>
+ * Not thread-safe; the owning {@link SessionOutput} guards it.
+ */
+public class OutputRingBuffer {
+
+    private final ByteBuffer data;
+    private final int capacity;
+    private long end;
+
+    public OutputRingBuffer(int capacity) {
+        this.data = ByteBuffer.allocateDirect(capacity);
+        this.capacity = capacity;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /** Offset of the oldest byte still held. */
+    public long start() {
+        return Math.max(0, end - capacity);
+    }
+
+    /** Offset just past the newest byte. */
+    public long end() {
+        return end;
+    }
+
+    /**
+     * Appends all remaining bytes of {@code src}.
+     */
+    public void append(ByteBuffer src) {
+        while (src.hasRemaining()) {
+            int index = (int) (end % capacity);
+            int length = Math.min(src.remaining(), capacity - index);
+            data.put(index, src, src.position(), length);
+            src.position(src.position() + length);
+            end += length;
+        }
+    }
+
+    /**
+     * Copies bytes starting at {@code offset} into {@code dst}, as many as fit.
+     *
+     * @return the number of bytes copied
+     */
+    public int read(long offset, ByteBuffer dst) {
+        if (offset < start() || offset > end) {
+            throw new IllegalArgumentException("Offset " + offset + " not in [" + start() + ", " + end + "]");
+        }
+        int total = (int) Math.min(end - offset, dst.remaining());
+        int copied = 0;
+        while (copied < total) {
+            int index = (int) ((offset + copied) % capacity);
+            int length = Math.min(total - copied, capacity - index);
+            dst.put(dst.position(), data, index, length);
+            dst.position(dst.position() + length);
+            copied += length;
+        }
+        return total;
+    }
+}
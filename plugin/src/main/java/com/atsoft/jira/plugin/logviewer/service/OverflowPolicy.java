@@ -0,0 +1,13 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+/**
+ * What a session does when a client falls further behind than the output queue allows.
+ */
+public enum OverflowPolicy {
+    /** Stop reading from the PTY until the client catches up; the shell blocks on write. */
+    PAUSE,
+    /** Discard the queued output and tell the client that output was truncated. */
+    DROP,
+    /** Close the client connection; the session keeps running. */
+    DISCONNECT
+}
@@ -0,0 +1,173 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A shell and every process it started. {@link Process#destroy()} only signals the shell, so a
+ * runaway {@code grep} or a background job would outlive it; this also signals the shell's
+ * descendants and, on Linux, the processes still in the shell's session that were reparented
+ * when their parent exited. The members are collected when the tree is created, since once
+ * the shell is gone its children can no longer be found through it.
+ */
+public final class ProcessTree {
+    private static final Path PROC = Paths.get("/proc");
+
+    private final Process root;
+    private final List<ProcessHandle> members;
+
+    private ProcessTree(Process root, List<ProcessHandle> members) {
+        this.root = root;
+        this.members = members;
+    }
+
+    public static ProcessTree of(Process root) {
+        Map<Long, ProcessHandle> members = new LinkedHashMap<>();
+        Optional<ProcessHandle> handle = handle(root);
+        if (handle.isPresent()) {
+            long pid = handle.get().pid();
+            handle.get().descendants().forEach(p -> members.put(p.pid(), p));
+            // a PTY shell leads its own session, whose id is its pid
+            for (long member : sessionMembers(pid)) {
+                if (member != pid) {
+                    ProcessHandle.of(member).ifPresent(p -> members.putIfAbsent(p.pid(), p));
+                }
+            }
+        }
+        return new ProcessTree(root, new ArrayList<>(members.values()));
+    }
+
+    /** Asks the shell and all its processes to terminate (SIGTERM on Unix). */
+    public void destroy() {
+        members.forEach(ProcessHandle::destroy);
+        root.destroy();
+    }
+
+    /** Kills whatever is still running (SIGKILL on Unix). */
+    public void destroyForcibly() {
+        for (ProcessHandle member : members) {
+            if (member.isAlive()) {
+                member.destroyForcibly();
+            }
+        }
+        if (root.isAlive()) {
+            root.destroyForcibly();
+        }
+    }
+
+    public boolean isAlive() {
+        return !getSurvivors().isEmpty();
+    }
+
+    /** Processes of the tree that are still running, described as {@code <pid> <command>}. */
+    public List<String> getSurvivors() {
+        List<String> survivors = new ArrayList<>();
+        if (root.isAlive()) {
+            survivors.add(describe(handle(root).orElse(null), "shell"));
+        }
+        for (ProcessHandle member : members) {
+            if (member.isAlive()) {
+                survivors.add(describe(member, "?"));
+            }
+        }
+        return survivors;
+    }
+
+    /** Number of processes besides the shell. */
+    public int size() {
+        return members.size();
+    }
+
+    /**
+     * PTY file descriptors the JVM holds open, standard streams excepted, or -1 where this
+     * cannot be told (anything but Linux). Each running terminal session accounts for one or
+     * two; with no session left, any of them is a leak.
+     */
+    public static int countPtyDescriptors() {
+        Path fds = PROC.resolve("self/fd");
+        if (!Files.isDirectory(fds)) {
+            return -1;
+        }
+        int count = 0;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(fds)) {
+            for (Path entry : entries) {
+                if (isPty(entry)) {
+                    count++;
+                }
+            }
+        } catch (IOException e) {
+            return -1;
+        }
+        return count;
+    }
+
+    private static boolean isPty(Path fd) {
+        try {
+            if (Integer.parseInt(fd.getFileName().toString()) <= 2) {
+                return false;
+            }
+            String target = Files.readSymbolicLink(fd).toString();
+            return target.startsWith("/dev/pts/") || target.equals("/dev/ptmx");
+        } catch (IOException | NumberFormatException e) {
+            // closed meanwhile
+            return false;
+        }
+    }
+
+    // pids whose session id is sid, from /proc/<pid>/stat; empty where there is no /proc
+    private static List<Long> sessionMembers(long sid) {
+        List<Long> pids = new ArrayList<>();
+        if (!Files.isDirectory(PROC)) {
+            return pids;
+        }
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(PROC, "[0-9]*")) {
+            for (Path entry : entries) {
+                if (sessionId(entry.resolve("stat")) == sid) {
+                    pids.add(Long.parseLong(entry.getFileName().toString()));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            // best effort: the descendants are still known
+        }
+        return pids;
+    }
+
+    private static long sessionId(Path stat) {
+        try {
+            String line = new String(Files.readAllBytes(stat), StandardCharsets.US_ASCII);
+            // "pid (comm) state ppid pgrp session ...", comm may contain spaces and parentheses
+            String[] fields = line.substring(line.lastIndexOf(')') + 2).split(" ");
+            return Long.parseLong(fields[3]);
+        } catch (IOException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private static Optional<ProcessHandle> handle(Process process) {
+        try {
+            return Optional.of(process.toHandle());
+        } catch (UnsupportedOperationException e) {
+            try {
+                return ProcessHandle.of(process.pid());
+            } catch (UnsupportedOperationException ex) {
+                return Optional.empty();
+            }
+        }
+    }
+
+    private static String describe(ProcessHandle process, String fallback) {
+        if (process == null) {
+            return fallback;
+        }
+        return process.pid() + " " + process.info().command().orElse(fallback);
+    }
+}
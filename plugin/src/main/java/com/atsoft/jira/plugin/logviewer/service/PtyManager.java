@@ -7,78 +7,500 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.function.Consumer;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongFunction;
 
+/**
+ * Owns every terminal session of the node. Sessions are capped globally and per user
+ * ({@link LogViewerSettings#MAX_SESSIONS}, {@link LogViewerSettings#MAX_SESSIONS_PER_USER}),
+ * and a reaper kills the ones that were idle too long, lost their owner or whose shell died.
+ * Killing a session signals the shell's whole {@link ProcessTree}, escalating to SIGKILL
+ * after {@link LogViewerSettings#SESSION_KILL_GRACE_MILLIS}; processes that survive even that
+ * and PTY descriptors left open without sessions are reported as leaks.
+ */
 public class PtyManager {
     private static final Logger log = LoggerFactory.getLogger(PtyManager.class);
     private static final PtyManager INSTANCE = new PtyManager();
+    private static final int READ_BUFFER_SIZE = 8192;
+    private static final long EXIT_POLL_MILLIS = 50;
+    private static final AtomicInteger WRITER_COUNT = new AtomicInteger();
+    // until the client sends its size
+    private static final int INITIAL_COLUMNS = 80;
+    private static final int INITIAL_ROWS = 24;
+    private static final String[] SHELL_COMMAND = isWindows() ? new String[] { "cmd.exe" }
+            : new String[] { "/bin/bash", "-l" };
+    // the JVM's environment does not change, so it is copied once rather than per shell
+    private static final Map<String, String> SHELL_ENVIRONMENT = shellEnvironment();
 
-    private final Map<String, PtyProcess> processes = new ConcurrentHashMap<>();
-    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final Map<String, PtySession> sessions = new ConcurrentHashMap<>();
+    private final PtyReaderScheduler readers = new PtyReaderScheduler();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "jira-log-viewer-output-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // writer tasks only run while a session has input pending, so idle sessions cost no thread
+    private final ExecutorService writers = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "jira-log-viewer-pty-writer-" + WRITER_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+    // sessions being started, per owner; guarded by this
+    private final Map<String, Integer> starting = new HashMap<>();
+    private final ShellPool<PtyProcess> shells = new ShellPool<>(PtyManager::startShell,
+            LogViewerSettings.SHELL_POOL_SIZE, TimeUnit.MINUTES.toMillis(LogViewerSettings.SHELL_POOL_MAX_AGE_MINUTES));
+    private int leakedDescriptors;
+
+    public PtyManager() {
+        shells.start();
+        long interval = LogViewerSettings.SESSION_REAP_INTERVAL_SECONDS;
+        if (interval > 0) {
+            scheduler.scheduleWithFixedDelay(this::reap, interval, interval, TimeUnit.SECONDS);
+        }
+    }
 
     public static PtyManager getInstance() {
         return INSTANCE;
     }
 
-    public void startTerminal(String sessionId, Consumer<String> onOutput) throws IOException {
-        String[] cmd = isWindows() ? new String[] { "cmd.exe" } : new String[] { "/bin/bash", "-l" };
+    /**
+     * Starts a new shell and attaches {@code sink} to its output.
+     *
+     * @param owner name of the connecting user, or null
+     * @return the id under which the session can be written to, resized and resumed
+     * @throws SessionLimitException if the node or the user already has the maximum number of
+     *                               sessions
+     */
+    public String startTerminal(String owner, OutputCoalescer.FrameSink sink) throws IOException {
+        reserve(owner);
+        try {
+            return spawn(owner, sink);
+        } finally {
+            release(owner);
+        }
+    }
+
+    private String spawn(String owner, OutputCoalescer.FrameSink sink) throws IOException {
+        PtyProcess process = shells.take();
+        if (process == null) {
+            process = startShell();
+        }
+
+        String sessionId = UUID.randomUUID().toString();
+        SessionOutput output = new SessionOutput(scheduler, LogViewerSettings.OUTPUT_FLUSH_MILLIS,
+                LogViewerSettings.OUTPUT_MAX_FRAME_BYTES, LogViewerSettings.OUTPUT_MAX_QUEUED_BYTES,
+                LogViewerSettings.SCROLLBACK_BYTES);
+        output.attach(sink, LogViewerSettings.OUTPUT_OVERFLOW_POLICY, 0, offset -> greeting(sessionId, offset));
+        PtyReader reader = new PtyReader(sessionId, process.getInputStream(), output, READ_BUFFER_SIZE,
+                () -> kill(sessionId));
+        SessionInput input = new SessionInput(sessionId, process.getOutputStream(), writers,
+                LogViewerSettings.INPUT_MAX_PENDING_BYTES);
+        ScreenRelay screen = null;
+        if (LogViewerSettings.SCREEN_MODEL) {
+            screen = new ScreenRelay(output, scheduler, LogViewerSettings.SCREEN_REFRESH_MILLIS, INITIAL_COLUMNS,
+                    INITIAL_ROWS);
+            reader.setScreen(screen);
+        }
+        sessions.put(sessionId, new PtySession(sessionId, owner, process, output, input, reader, screen));
+
+        readers.start(reader);
+        return sessionId;
+    }
+
+    /**
+     * Reattaches a reconnecting client to a session that is still running. Output after
+     * {@code offset} is replayed from the scrollback, so nothing is sent twice.
+     *
+     * @return false if the session is gone or belongs to someone else
+     */
+    public boolean resume(String sessionId, String owner, long offset, OutputCoalescer.FrameSink sink) {
+        PtySession session = sessions.get(sessionId);
+        if (session == null || !Objects.equals(session.getOwner(), owner)) {
+            return false;
+        }
+        session.cancelExpiry();
+        attach(session, sink, LogViewerSettings.OUTPUT_OVERFLOW_POLICY, offset, start -> greeting(sessionId, start));
+        log.info("Terminal session resumed: " + sessionId + " at offset " + offset);
+        return true;
+    }
+
+    /**
+     * Attaches a read-only viewer to a running session, e.g. to watch a diagnostic script
+     * someone else started. The viewer gets the scrollback and then live output through its own
+     * queue; it cannot write to or resize the terminal. A viewer that falls behind loses output
+     * ({@link LogViewerSettings#VIEWER_OVERFLOW_POLICY}) rather than holding up the shell.
+     *
+     * @param viewer      name of the watching user, or null if the connection is anonymous
+     * @param systemAdmin whether the viewer is a system administrator
+     * @param offset      stream offset to start at, e.g. when a viewer reconnects; 0 for the
+     *                    whole scrollback
+     * @return false if the session is gone, the viewer may not watch it (see
+     *         {@link #mayWatch}) or it has the maximum number of viewers
+     */
+    public boolean watch(String sessionId, String viewer, boolean systemAdmin, long offset,
+            OutputCoalescer.FrameSink sink) {
+        PtySession session = sessionId != null ? sessions.get(sessionId) : null;
+        if (session == null || session.getViewerCount() >= LogViewerSettings.MAX_VIEWERS) {
+            return false;
+        }
+        if (!mayWatch(session.getOwner(), viewer, systemAdmin)) {
+            log.warn("Terminal session " + sessionId + " of " + session.getOwner() + " refused to viewer " + viewer);
+            return false;
+        }
+        session.addViewer(sink);
+        attach(session, sink, LogViewerSettings.VIEWER_OVERFLOW_POLICY, offset,
+                start -> "watch:" + sessionId + ":" + start);
+        log.info("Terminal session " + sessionId + " watched by " + viewer + " (" + session.getViewerCount()
+                + " viewers)");
+        return true;
+    }
+
+    /**
+     * Whether a user may watch a session: its owner and system administrators may, anonymous
+     * users may not, not even the sessions of other anonymous users.
+     */
+    public static boolean mayWatch(String owner, String viewer, boolean systemAdmin) {
+        return viewer != null && (systemAdmin || viewer.equals(owner));
+    }
+
+    /**
+     * Detaches a client whose connection went away. The session keeps running and is killed
+     * only if its owner does not resume it within the grace period.
+     */
+    public void detach(String sessionId, OutputCoalescer.FrameSink sink) {
+        PtySession session = sessionId != null ? sessions.get(sessionId) : null;
+        if (session == null) {
+            return;
+        }
+        session.getOutput().detach(sink);
+        if (session.removeViewer(sink)) {
+            return;
+        }
+        if (!session.hasOwnerAttached()) {
+            // the reaper catches this too, but only on its next round
+            session.setExpiry(scheduler.schedule(() -> expire(sessionId),
+                    LogViewerSettings.SESSION_GRACE_SECONDS, TimeUnit.SECONDS));
+        }
+    }
+
+    /**
+     * Queues input for the shell and returns without waiting for the PTY to take it.
+     *
+     * @throws IOException if too much input is already pending
+     */
+    public void write(String sessionId, String command) throws IOException {
+        PtySession session = sessionId != null ? sessions.get(sessionId) : null;
+        if (session != null && session.getProcess().isAlive()) {
+            int bytes = session.getInput().offer(command);
+            if (bytes < 0) {
+                throw inputRefused(session);
+            }
+            inputAccepted(session, bytes);
+        }
+    }
+
+    /**
+     * Queues raw input, e.g. the payload of a framed message, for the shell without decoding
+     * it. The payload is copied, so the caller may reuse the buffer.
+     *
+     * @throws IOException if too much input is already pending
+     */
+    public void write(String sessionId, ByteBuffer input) throws IOException {
+        PtySession session = sessionId != null ? sessions.get(sessionId) : null;
+        if (session != null && session.getProcess().isAlive()) {
+            int bytes = input.remaining();
+            if (!session.getInput().offer(input)) {
+                throw inputRefused(session);
+            }
+            inputAccepted(session, bytes);
+        }
+    }
+
+    private static void inputAccepted(PtySession session, int bytes) {
+        session.inputReceived();
+        session.getMetrics().input(bytes);
+    }
+
+    private static IOException inputRefused(PtySession session) {
+        return new IOException("Input for terminal " + session.getId() + " refused: "
+                + session.getInput().getPendingBytes() + " bytes are still waiting for the shell");
+    }
+
+    public void resize(String sessionId, int cols, int rows) {
+        PtySession session = sessionId != null ? sessions.get(sessionId) : null;
+        if (session != null && session.getProcess().isAlive()) {
+            session.inputReceived();
+            session.getProcess().setWinSize(new WinSize(cols, rows));
+            if (session.getScreen() != null) {
+                session.getScreen().resize(cols, rows);
+            }
+        }
+    }
+
+    /**
+     * Ends a session: its clients are left with what was already queued, and the shell and
+     * everything it started are terminated, forcibly if they do not exit within the grace.
+     */
+    public void kill(String sessionId) {
+        kill(sessionId, null);
+    }
+
+    private void kill(String sessionId, String reason) {
+        ProcessTree tree = remove(sessionId, reason);
+        if (tree == null) {
+            return;
+        }
+        tree.destroy();
+        schedule(() -> {
+            if (tree.isAlive()) {
+                tree.destroyForcibly();
+                schedule(() -> reportSurvivors(sessionId, tree));
+            }
+        });
+    }
+
+    /**
+     * Kills all sessions and stops the reader and flush threads. Called when the plugin is
+     * disabled, so unlike {@link #kill} this waits for the processes to exit: nothing is left
+     * to force-kill them afterwards.
+     */
+    public void shutdown() {
+        shells.shutdown();
+        log.info("Shutting down " + sessions.size() + " terminal sessions");
+        Map<String, ProcessTree> trees = new LinkedHashMap<>();
+        for (String sessionId : new ArrayList<>(sessions.keySet())) {
+            ProcessTree tree = remove(sessionId, "The server is shutting down");
+            if (tree != null) {
+                tree.destroy();
+                trees.put(sessionId, tree);
+            }
+        }
+        if (awaitExit(trees)) {
+            // force-killed; give SIGKILL the same time to take effect
+            awaitExit(trees);
+        }
+        trees.forEach(this::reportSurvivors);
+        readers.shutdown();
+        writers.shutdownNow();
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Running sessions, for listing the ones that can be watched.
+     */
+    public List<PtySession> getSessions() {
+        return new ArrayList<>(sessions.values());
+    }
+
+    /**
+     * Output bytes queued for the session's client but not yet sent, or 0 for unknown sessions.
+     */
+    public long getQueuedBytes(String sessionId) {
+        PtySession session = sessions.get(sessionId);
+        return session != null ? session.getOutput().getQueuedBytes() : 0;
+    }
+
+    /** Threads reading PTY output. */
+    public int getReaderThreadCount() {
+        return readers.getThreadCount();
+    }
+
+    /** Readers still draining a PTY, one per running session. */
+    public int getReaderCount() {
+        return readers.getReaderCount();
+    }
+
+    public ShellPool<PtyProcess> getShellPool() {
+        return shells;
+    }
+
+    private static PtyProcess startShell() throws IOException {
+        return new PtyProcessBuilder(SHELL_COMMAND)
+                .setEnvironment(SHELL_ENVIRONMENT)
+                .start();
+    }
+
+    private static Map<String, String> shellEnvironment() {
         Map<String, String> env = new HashMap<>(System.getenv());
         env.put("TERM", "xterm");
+        return Collections.unmodifiableMap(env);
+    }
 
-        PtyProcess process = new PtyProcessBuilder(cmd)
-                .setEnvironment(env)
-                .start();
+    // a client joining a full-screen program gets its screen rather than the raw replay
+    private static void attach(PtySession session, OutputCoalescer.FrameSink sink, OverflowPolicy policy, long offset,
+            LongFunction<String> greeting) {
+        if (session.getScreen() != null) {
+            session.getScreen().attach(sink, policy, offset, greeting);
+        } else {
+            session.getOutput().attach(sink, policy, offset, greeting);
+        }
+    }
 
-        processes.put(sessionId, process);
+    private void expire(String sessionId) {
+        PtySession session = sessions.get(sessionId);
+        if (session != null && !session.hasOwnerAttached()) {
+            log.info("Terminal session not resumed within grace period: " + sessionId);
+            kill(sessionId);
+        }
+    }
 
-        // Read output in a separate thread
-        executor.submit(() -> {
-            try (InputStream is = process.getInputStream()) {
-                byte[] buffer = new byte[1024];
-                int read;
-                while ((read = is.read(buffer)) != -1) {
-                    onOutput.accept(new String(buffer, 0, read, StandardCharsets.UTF_8));
+    /**
+     * One round of the reaper. Kills sessions idle for longer than
+     * {@link LogViewerSettings#SESSION_IDLE_MINUTES}, sessions whose owner has been gone for
+     * longer than the grace period (a lost expiry, or an owner that never attached) and
+     * sessions whose shell is dead, then checks for PTY descriptors nothing accounts for.
+     */
+    void reap() {
+        try {
+            long now = System.currentTimeMillis();
+            for (PtySession session : getSessions()) {
+                String cause = reapCause(session, now);
+                if (cause != null) {
+                    log.info("Reaping " + cause + " terminal session " + session.getId() + " of "
+                            + session.getOwner());
+                    LogViewerMetrics.getInstance().sessionReaped(cause);
+                    kill(session.getId(), reapMessage(cause));
                 }
-            } catch (IOException e) {
-                log.error("Error reading PTY output", e);
-            } finally {
-                kill(sessionId);
             }
-        });
+            checkDescriptors();
+        } catch (RuntimeException e) {
+            // an exception would cancel the reaper for good
+            log.warn("Reaping terminal sessions failed", e);
+        }
     }
 
-    public void write(String sessionId, String command) throws IOException {
-        PtyProcess process = processes.get(sessionId);
-        if (process != null && process.isAlive()) {
-            OutputStream os = process.getOutputStream();
-            os.write(command.getBytes(StandardCharsets.UTF_8));
-            os.flush();
+    private static String reapCause(PtySession session, long now) {
+        if (!session.getProcess().isAlive()) {
+            return "dead";
+        }
+        long idleMillis = TimeUnit.MINUTES.toMillis(LogViewerSettings.SESSION_IDLE_MINUTES);
+        if (idleMillis > 0 && now - session.getLastActivityTime() > idleMillis) {
+            return "idle";
         }
+        if (!session.hasOwnerAttached()) {
+            session.markDetached();
+            long graceMillis = TimeUnit.SECONDS.toMillis(LogViewerSettings.SESSION_GRACE_SECONDS);
+            if (now - session.getDetachedSince() > graceMillis) {
+                return "orphaned";
+            }
+        }
+        return null;
     }
 
-    public void resize(String sessionId, int cols, int rows) {
-        PtyProcess process = processes.get(sessionId);
-        if (process != null && process.isAlive()) {
-            process.setWinSize(new WinSize(cols, rows));
+    private static String reapMessage(String cause) {
+        switch (cause) {
+            case "idle":
+                return "Terminal closed after " + LogViewerSettings.SESSION_IDLE_MINUTES + " minutes without activity";
+            case "dead":
+                return "The shell has exited";
+            default:
+                return "Terminal closed";
         }
     }
 
-    public void kill(String sessionId) {
-        PtyProcess process = processes.remove(sessionId);
-        if (process != null && process.isAlive()) {
-            process.destroy();
+    private void checkDescriptors() {
+        int descriptors = ProcessTree.countPtyDescriptors();
+        // the shells waiting in the pool hold theirs as well, up to two each
+        int leaked = sessions.isEmpty() ? Math.max(descriptors - 2 * shells.getIdleCount(), 0) : 0;
+        if (leaked > leakedDescriptors) {
+            log.warn(leaked + " PTY file descriptors are open without any terminal session; "
+                    + readers.getReaderCount() + " readers are still running");
+        }
+        leakedDescriptors = leaked;
+    }
+
+    // removes the session, stops its reader and output and returns its processes, still to be killed
+    private ProcessTree remove(String sessionId, String reason) {
+        PtySession session = sessionId != null ? sessions.remove(sessionId) : null;
+        if (session == null) {
+            return null;
+        }
+        session.cancelExpiry();
+        session.getReader().stop();
+        session.getInput().close();
+        session.getOutput().close();
+        if (reason != null) {
+            session.getOutput().disconnectAll(reason);
+        }
+        return ProcessTree.of(session.getProcess());
+    }
+
+    // waits out the kill grace for all trees; force-kills and returns true if some are still alive
+    private static boolean awaitExit(Map<String, ProcessTree> trees) {
+        long deadline = System.currentTimeMillis() + LogViewerSettings.SESSION_KILL_GRACE_MILLIS;
+        try {
+            while (trees.values().stream().anyMatch(ProcessTree::isAlive)) {
+                if (System.currentTimeMillis() >= deadline) {
+                    trees.values().forEach(ProcessTree::destroyForcibly);
+                    return true;
+                }
+                Thread.sleep(EXIT_POLL_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    private void reportSurvivors(String sessionId, ProcessTree tree) {
+        List<String> survivors = tree.getSurvivors();
+        if (!survivors.isEmpty()) {
+            log.warn("Processes of terminal session " + sessionId + " survived SIGKILL: " + survivors);
+            LogViewerMetrics.getInstance().processesLeaked(survivors.size());
         }
     }
 
-    private boolean isWindows() {
+    // runs after the kill grace, or right away once the scheduler is shut down
+    private void schedule(Runnable task) {
+        try {
+            scheduler.schedule(task, LogViewerSettings.SESSION_KILL_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+
+    private synchronized void reserve(String owner) throws SessionLimitException {
+        int pending = starting.values().stream().mapToInt(Integer::intValue).sum();
+        if (LogViewerSettings.MAX_SESSIONS > 0 && sessions.size() + pending >= LogViewerSettings.MAX_SESSIONS) {
+            log.warn("Terminal refused for " + owner + ": " + LogViewerSettings.MAX_SESSIONS
+                    + " sessions are running");
+            throw new SessionLimitException("The server already runs the maximum of "
+                    + LogViewerSettings.MAX_SESSIONS + " terminal sessions. Try again later.");
+        }
+        long own = sessions.values().stream().filter(s -> Objects.equals(s.getOwner(), owner)).count()
+                + starting.getOrDefault(owner, 0);
+        if (LogViewerSettings.MAX_SESSIONS_PER_USER > 0 && own >= LogViewerSettings.MAX_SESSIONS_PER_USER) {
+            throw new SessionLimitException("You already have " + own
+                    + " terminal sessions open. Close one to start another.");
+        }
+        starting.merge(owner, 1, Integer::sum);
+    }
+
+    private synchronized void release(String owner) {
+        starting.computeIfPresent(owner, (o, count) -> count > 1 ? count - 1 : null);
+    }
+
+    // tells the client which session it is attached to and the offset of the next output byte
+    private static String greeting(String sessionId, long offset) {
+        return "session:" + sessionId + ":" + offset;
+    }
+
+    private static boolean isWindows() {
         return System.getProperty("os.name").toLowerCase().contains("win");
     }
 }
@@ -0,0 +1,82 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.CharBuffer;
+
+/**
+ * Moves output of one PTY into its {@link SessionOutput}, or into its {@link ScreenRelay} when
+ * the session keeps a screen model. {@link PtyReaderScheduler} runs it on a thread of its own.
+ */
+public class PtyReader {
+    private static final Logger log = LoggerFactory.getLogger(PtyReader.class);
+
+    private final String name;
+    private final InputStream in;
+    private final SessionOutput output;
+    private final Runnable onExit;
+    private final Utf8StreamDecoder decoder;
+    private ScreenRelay screen;
+    private volatile boolean stopped;
+
+    public PtyReader(String name, InputStream in, SessionOutput output, int bufferSize, Runnable onExit) {
+        this.name = name;
+        this.in = in;
+        this.output = output;
+        this.onExit = onExit;
+        this.decoder = new Utf8StreamDecoder(bufferSize);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** Stops after the current read; the thread stays blocked until the shell exits or is killed. */
+    public void stop() {
+        stopped = true;
+    }
+
+    /** Routes output through a screen model; must be called before the reader is started. */
+    void setScreen(ScreenRelay screen) {
+        this.screen = screen;
+    }
+
+    /**
+     * Reads with plain blocking reads until the stream ends or the reader is stopped.
+     */
+    void drainBlocking() {
+        try {
+            CharBuffer chars;
+            while (!stopped && (chars = decoder.read(in)) != null) {
+                emit(chars);
+            }
+        } catch (IOException e) {
+            log.error("Error reading PTY output", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            finish();
+        }
+    }
+
+    private void emit(CharBuffer chars) throws InterruptedException {
+        if (screen != null) {
+            screen.write(chars);
+        } else {
+            output.write(chars);
+        }
+    }
+
+    private void finish() {
+        try {
+            in.close();
+        } catch (IOException e) {
+            // ignore
+        }
+        output.close();
+        onExit.run();
+    }
+}
@@ -0,0 +1,60 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the {@link PtyReader}s of all sessions, each on a daemon thread of its own blocked in
+ * {@code read}, and stops them when the plugin is disabled.
+ * <p>
+ * pty4j's PTY stream offers no way to read without blocking: {@link java.io.InputStream#available()}
+ * always reports 0 and the stream cannot be registered with a selector. Its read is a native call
+ * that would pin a virtual thread to its carrier, so virtual threads would not save any platform
+ * threads either.
+ */
+public class PtyReaderScheduler {
+
+    private final ExecutorService pool = Executors.newCachedThreadPool(daemonThreads("jira-log-viewer-pty-reader"));
+    private final Set<PtyReader> readers = ConcurrentHashMap.newKeySet();
+
+    /** Threads currently reading PTY output, one per reader. */
+    public int getThreadCount() {
+        return readers.size();
+    }
+
+    public int getReaderCount() {
+        return readers.size();
+    }
+
+    public void start(PtyReader reader) {
+        readers.add(reader);
+        pool.execute(() -> {
+            try {
+                reader.drainBlocking();
+            } finally {
+                readers.remove(reader);
+            }
+        });
+    }
+
+    /**
+     * Stops all readers and releases the threads. Called when the plugin is disabled.
+     */
+    public void shutdown() {
+        readers.forEach(PtyReader::stop);
+        pool.shutdownNow();
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
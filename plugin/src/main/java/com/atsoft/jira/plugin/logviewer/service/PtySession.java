@@ -0,0 +1,140 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import com.pty4j.PtyProcess;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+
+/**
+ * A running shell, the reader draining it, the queue of input waiting for it and the output
+ * queue that feeds its clients. The
+ * session outlives its WebSocket for a grace period so that the client can reconnect.
+ * <p>
+ * Besides its owner, a session may have read-only viewers. They share the one reader and
+ * output buffer, each with its own cursor, and do not keep the session alive.
+ */
+public class PtySession {
+    private final String id;
+    private final String owner;
+    private final PtyProcess process;
+    private final SessionOutput output;
+    private final SessionInput input;
+    private final PtyReader reader;
+    private final ScreenRelay screen;
+    private final long startTime = System.currentTimeMillis();
+    private final Set<OutputCoalescer.FrameSink> viewers = ConcurrentHashMap.newKeySet();
+    private ScheduledFuture<?> expiry;
+    private volatile long lastInputTime = startTime;
+    private volatile long detachedSince;
+
+    PtySession(String id, String owner, PtyProcess process, SessionOutput output, SessionInput input,
+            PtyReader reader, ScreenRelay screen) {
+        this.id = id;
+        this.owner = owner;
+        this.process = process;
+        this.output = output;
+        this.input = input;
+        this.reader = reader;
+        this.screen = screen;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    /** Name of the user who opened the session, or null if the connection was anonymous. */
+    public String getOwner() {
+        return owner;
+    }
+
+    public PtyProcess getProcess() {
+        return process;
+    }
+
+    public SessionOutput getOutput() {
+        return output;
+    }
+
+    public SessionInput getInput() {
+        return input;
+    }
+
+    /** The screen model the output goes through, or null if it is disabled. */
+    public ScreenRelay getScreen() {
+        return screen;
+    }
+
+    public SessionMetrics getMetrics() {
+        return output.getMetrics();
+    }
+
+    public PtyReader getReader() {
+        return reader;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /** When the owner last typed or resized the terminal. */
+    public long getLastInputTime() {
+        return lastInputTime;
+    }
+
+    /**
+     * When the session last saw traffic in either direction. A session whose shell keeps
+     * printing, e.g. {@code tail -f}, is not idle even if nobody types.
+     */
+    public long getLastActivityTime() {
+        return Math.max(lastInputTime, output.getLastWriteTime());
+    }
+
+    /** Since when the owner has been disconnected, or 0 while connected. */
+    public long getDetachedSince() {
+        return detachedSince;
+    }
+
+    public int getViewerCount() {
+        return viewers.size();
+    }
+
+    void addViewer(OutputCoalescer.FrameSink sink) {
+        viewers.add(sink);
+    }
+
+    /** @return false if {@code sink} is not a viewer, i.e. it is the owner's connection */
+    boolean removeViewer(OutputCoalescer.FrameSink sink) {
+        return viewers.remove(sink);
+    }
+
+    /** Whether the owner is connected; viewers alone do not count. */
+    boolean hasOwnerAttached() {
+        return output.getSubscriberCount() > viewers.size();
+    }
+
+    void inputReceived() {
+        lastInputTime = System.currentTimeMillis();
+    }
+
+    /** Starts the detached clock if {@link #setExpiry} did not, e.g. the owner never attached. */
+    synchronized void markDetached() {
+        if (detachedSince == 0) {
+            detachedSince = System.currentTimeMillis();
+        }
+    }
+
+    synchronized void setExpiry(ScheduledFuture<?> expiry) {
+        cancelExpiry();
+        this.expiry = expiry;
+        detachedSince = System.currentTimeMillis();
+    }
+
+    synchronized void cancelExpiry() {
+        detachedSince = 0;
+        if (expiry != null) {
+            expiry.cancel(false);
+            expiry = null;
+        }
+    }
+}
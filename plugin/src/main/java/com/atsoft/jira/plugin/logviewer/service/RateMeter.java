@@ -0,0 +1,43 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Events per second, averaged over the last few completed seconds. Counts go into one slot
+ * per second of a small ring; a slot is reused once its second has left the window. Marks
+ * racing with that reset may be lost, which is fine for a gauge.
+ */
+public class RateMeter {
+    private final int windowSeconds;
+    private final AtomicLongArray counts;
+    private final AtomicLongArray seconds;
+
+    public RateMeter(int windowSeconds) {
+        this.windowSeconds = Math.max(1, windowSeconds);
+        // one more slot than the window, for the second in progress
+        this.counts = new AtomicLongArray(this.windowSeconds + 1);
+        this.seconds = new AtomicLongArray(this.windowSeconds + 1);
+    }
+
+    public void mark(long events) {
+        long now = System.currentTimeMillis() / 1000;
+        int slot = (int) (now % counts.length());
+        long second = seconds.get(slot);
+        if (second != now && seconds.compareAndSet(slot, second, now)) {
+            counts.set(slot, 0);
+        }
+        counts.addAndGet(slot, events);
+    }
+
+    public double getRate() {
+        long now = System.currentTimeMillis() / 1000;
+        long events = 0;
+        for (int slot = 0; slot < counts.length(); slot++) {
+            long second = seconds.get(slot);
+            if (second < now && second >= now - windowSeconds) {
+                events += counts.get(slot);
+            }
+        }
+        return (double) events / windowSeconds;
+    }
+}
@@ -0,0 +1,1319 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Headless model of what a full-screen program such as {@code top}, {@code less} or
+ * {@code htop} shows, kept from the PTY output so that clients can be sent what changed
+ * instead of every redraw. Only the alternate screen is modelled: a program entering it
+ * starts from a blank screen, while output on the normal screen, with its scrollback, goes to
+ * clients unchanged. On the normal screen the output is only scanned for mode changes.
+ * <p>
+ * The emulation covers what terminfo's {@code xterm} entry uses: cursor movement, erasing,
+ * insert and delete of characters and lines, scroll regions, SGR attributes with 256 and
+ * true colours, wide characters and the DEC line drawing set. Sequences that change how the
+ * client behaves rather than what it shows, e.g. application cursor keys, mouse reporting or
+ * status queries, are collected as they are (see {@link #takePassthrough}) so they reach the
+ * client's terminal, which also answers the queries.
+ * <p>
+ * Changes are tracked per row as a column span, and scrolls as a pending scroll of a region,
+ * so a frame ({@link #renderDelta}) redraws only what changed and lets the client scroll
+ * what merely moved. The spans are compared with what the last frame left on the clients'
+ * screens, so a program that clears and repaints its screen every second only costs the
+ * cells that differ. Not thread-safe; {@link ScreenRelay} guards it.
+ */
+public class ScreenModel {
+    /** Largest screen modelled; a client claiming more is clamped. */
+    public static final int MAX_COLUMNS = 512;
+    public static final int MAX_ROWS = 256;
+
+    private static final char ESC = '\u001b';
+    private static final int BLANK = ' ';
+    // second cell of a wide character
+    private static final int WIDE_TAIL = -1;
+    // a cell whose content on the clients' screens is not known
+    private static final int UNKNOWN = -2;
+    // a sequence longer than this, e.g. a clipboard OSC, is dropped instead of forwarded
+    private static final int MAX_SEQUENCE_LENGTH = 4096;
+    private static final int MAX_PARAMS = 32;
+
+    // parser states
+    private static final int GROUND = 0;
+    private static final int ESCAPE = 1;
+    private static final int CSI = 2;
+    private static final int OSC = 3;
+    private static final int STRING = 4;
+    private static final int STRING_ESCAPE = 5;
+    private static final int CHARSET = 6;
+    private static final int ESCAPE_HASH = 7;
+
+    // style bits: attribute flags, then foreground and background as 2-bit kind and 24-bit value
+    private static final long BOLD = 1, DIM = 1 << 1, ITALIC = 1 << 2, UNDERLINE = 1 << 3, BLINK = 1 << 4,
+            INVERSE = 1 << 5, HIDDEN = 1 << 6, STRIKE = 1 << 7;
+    private static final int[] FLAG_SGR = { 1, 2, 3, 4, 5, 7, 8, 9 };
+    private static final int FG_SHIFT = 8;
+    private static final int BG_SHIFT = 34;
+    private static final long COLOR_MASK = (1L << 26) - 1;
+    private static final int PALETTE = 1;
+    private static final int RGB = 2;
+    private static final long BG_MASK = COLOR_MASK << BG_SHIFT;
+
+    // DEC special graphics for 0x60..0x7e, the line drawing characters of ncurses' ACS
+    private static final String LINE_DRAWING =
+            "◆▒␉␌␍␊°±␤␋┘┐┌└┼⎺"
+            + "⎻─⎼⎽├┤┴┬│≤≥π≠£·";
+
+    private int cols;
+    private int rows;
+    private int[][] chars;
+    private long[][] styles;
+    // what the clients show after the last frame
+    private int[][] shownChars;
+    private long[][] shownStyles;
+    // dirty column span per row, from inclusive to exclusive; from == -1 if clean
+    private int[] dirtyFrom;
+    private int[] dirtyTo;
+    private int dirtyRows;
+    // scroll the client has yet to do: region and amount, positive for up
+    private int scrollTop;
+    private int scrollBottom;
+    private int scrollAmount;
+
+    private int row;
+    private int col;
+    private boolean wrapPending;
+    private long pen;
+    private int top;
+    private int bottom;
+    private boolean originMode;
+    private boolean autoWrap = true;
+    private boolean insertMode;
+    private boolean cursorVisible = true;
+    private boolean lineDrawingG0;
+    private boolean lineDrawingG1;
+    private boolean shiftedOut;
+    private int lastPrinted = BLANK;
+    private int savedRow;
+    private int savedCol;
+    private long savedPen;
+    private boolean savedOrigin;
+
+    private boolean alternate;
+    private int alternateMode = 1049;
+    // client modes that are not part of the picture, replayed for someone joining
+    private final Map<Integer, Boolean> privateModes = new LinkedHashMap<>();
+    private boolean keypadApplication;
+    private final StringBuilder passthrough = new StringBuilder();
+    private boolean flushRequested;
+
+    private int state = GROUND;
+    private final StringBuilder sequence = new StringBuilder();
+    private final int[] params = new int[MAX_PARAMS];
+    private int paramCount;
+    private char privateMarker;
+    private char intermediate;
+    private char charsetTarget;
+    private char highSurrogate;
+
+    public ScreenModel(int cols, int rows) {
+        allocate(clamp(cols, MAX_COLUMNS), clamp(rows, MAX_ROWS));
+    }
+
+    /**
+     * Feeds output from {@code from} up to {@code to}, stopping early right after a sequence
+     * that entered or left the alternate screen, so the caller can switch how it forwards the
+     * output that follows.
+     *
+     * @return where feeding stopped
+     */
+    public int feed(CharSequence text, int from, int to) {
+        for (int i = from; i < to; i++) {
+            boolean wasAlternate = alternate;
+            accept(text.charAt(i));
+            if (alternate != wasAlternate) {
+                return i + 1;
+            }
+        }
+        return to;
+    }
+
+    public boolean isAlternate() {
+        return alternate;
+    }
+
+    /** The private mode, 47, 1047 or 1049, that the program used to enter the alternate screen. */
+    public int getAlternateMode() {
+        return alternateMode;
+    }
+
+    public int getColumns() {
+        return cols;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getCursorRow() {
+        return row;
+    }
+
+    public int getCursorColumn() {
+        return col;
+    }
+
+    /** Whether a frame would draw anything; never on the normal screen, which is not modelled. */
+    public boolean isDirty() {
+        return alternate && (dirtyRows > 0 || scrollAmount != 0);
+    }
+
+    /**
+     * Whether the program asked the terminal something, e.g. the cursor position, so the
+     * screen should be sent now rather than at the next frame for the answer to be right.
+     */
+    public boolean isFlushRequested() {
+        return flushRequested;
+    }
+
+    /** Moves the sequences collected for the client's terminal to {@code out}. */
+    public void takePassthrough(StringBuilder out) {
+        out.append(passthrough);
+        passthrough.setLength(0);
+    }
+
+    /** Text of one row without trailing blanks, wide characters counted once, for tests and diagnostics. */
+    public String getRowText(int index) {
+        StringBuilder text = new StringBuilder(cols);
+        int[] line = chars[index];
+        for (int i = 0, end = contentEnd(index); i < end; i++) {
+            if (line[i] != WIDE_TAIL) {
+                text.appendCodePoint(line[i]);
+            }
+        }
+        return text.toString();
+    }
+
+    public void resize(int newCols, int newRows) {
+        newCols = clamp(newCols, MAX_COLUMNS);
+        newRows = clamp(newRows, MAX_ROWS);
+        if (newCols == cols && newRows == rows) {
+            return;
+        }
+        int[][] oldChars = chars;
+        long[][] oldStyles = styles;
+        int keep = Math.min(rows, newRows);
+        // keep the rows nearest the cursor, like terminals do when shrinking
+        int shift = Math.max(0, row - (newRows - 1));
+        allocate(newCols, newRows);
+        for (int r = 0; r < keep && r + shift < oldChars.length; r++) {
+            int width = Math.min(newCols, oldChars[r + shift].length);
+            System.arraycopy(oldChars[r + shift], 0, chars[r], 0, width);
+            System.arraycopy(oldStyles[r + shift], 0, styles[r], 0, width);
+            if (chars[r][newCols - 1] != WIDE_TAIL && width == newCols && isWide(chars[r][newCols - 1])) {
+                chars[r][newCols - 1] = BLANK;
+            }
+        }
+        row = Math.min(row - shift, newRows - 1);
+        col = Math.min(col, newCols - 1);
+        wrapPending = false;
+    }
+
+    /**
+     * Appends what changed since the last frame: a pending scroll, then the changed span of
+     * each row, then the cursor. Absolute positions only, so the result is right whatever the
+     * client's cursor and attributes were.
+     */
+    public void renderDelta(StringBuilder out) {
+        if (shownChars[0][0] == UNKNOWN && dirtyRows == rows) {
+            // nothing to build on, e.g. after entering the screen or a resize
+            scrollAmount = 0;
+            appendCsi(out).append("0m");
+            appendCsi(out).append("H");
+            appendCsi(out).append("2J");
+            for (int r = 0; r < rows; r++) {
+                int end = contentEnd(r);
+                if (end > 0) {
+                    renderSpan(out, r, 0, end, false);
+                }
+                shown(r, 0, cols);
+            }
+        } else {
+            if (scrollAmount != 0) {
+                appendCsi(out).append(scrollTop + 1).append(';').append(scrollBottom + 1).append('r');
+                appendCsi(out).append(Math.abs(scrollAmount)).append(scrollAmount > 0 ? 'S' : 'T');
+                appendCsi(out).append('r');
+                scrollShown(scrollTop, scrollBottom, scrollAmount);
+                scrollAmount = 0;
+            }
+            for (int r = 0; r < rows; r++) {
+                int from = dirtyFrom[r];
+                int to = dirtyTo[r];
+                if (from < 0) {
+                    continue;
+                }
+                while (from < to && isShown(r, from)) {
+                    from++;
+                }
+                while (to > from && isShown(r, to - 1)) {
+                    to--;
+                }
+                if (from < to) {
+                    renderSpan(out, r, from, to, true);
+                    shown(r, dirtyFrom[r], dirtyTo[r]);
+                }
+            }
+        }
+        Arrays.fill(dirtyFrom, -1);
+        Arrays.fill(dirtyTo, 0);
+        dirtyRows = 0;
+        flushRequested = false;
+        appendCursor(out);
+    }
+
+    /**
+     * Appends everything a client needs to show the current alternate screen from scratch:
+     * the switch to it, the client modes in effect, every row and the cursor.
+     */
+    public void renderSnapshot(StringBuilder out) {
+        appendCsi(out).append('?').append(alternateMode == 47 ? 1049 : alternateMode).append('h');
+        for (Map.Entry<Integer, Boolean> mode : privateModes.entrySet()) {
+            appendCsi(out).append('?').append(mode.getKey()).append(mode.getValue() ? 'h' : 'l');
+        }
+        out.append(ESC).append(keypadApplication ? '=' : '>');
+        appendCsi(out).append("0m");
+        appendCsi(out).append("H");
+        appendCsi(out).append("2J");
+        for (int r = 0; r < rows; r++) {
+            int end = contentEnd(r);
+            if (end > 0) {
+                renderSpan(out, r, 0, end, false);
+            }
+        }
+        appendCursor(out);
+    }
+
+    // --- parser ---
+
+    private void accept(char c) {
+        if (state == ESCAPE || state == CSI || state == CHARSET || state == ESCAPE_HASH) {
+            if (c == 0x18 || c == 0x1a) {
+                // CAN and SUB abort a sequence
+                state = GROUND;
+                return;
+            }
+            if (c < 0x20) {
+                // C0 controls are executed in the middle of a sequence; ESC starts a new one
+                control(c);
+                return;
+            }
+        }
+        switch (state) {
+            case GROUND:
+                if (c < 0x20 || c == 0x7f) {
+                    control(c);
+                } else {
+                    printChar(c);
+                }
+                break;
+            case ESCAPE:
+                sequence.append(c);
+                escape(c);
+                break;
+            case CSI:
+                sequence.append(c);
+                csiChar(c);
+                break;
+            case OSC:
+                if (c == 0x07) {
+                    sequence.append(c);
+                    forwardSequence();
+                    state = GROUND;
+                } else if (c == ESC) {
+                    state = STRING_ESCAPE;
+                    sequence.append(c);
+                } else {
+                    sequence.append(c);
+                }
+                break;
+            case STRING:
+                if (c == ESC) {
+                    state = STRING_ESCAPE;
+                }
+                break;
+            case STRING_ESCAPE:
+                // ESC \ ends an OSC, DCS, APC or PM string
+                if (c == '\\' && sequence.length() > 1 && sequence.charAt(1) == ']') {
+                    sequence.append(c);
+                    forwardSequence();
+                }
+                sequence.setLength(0);
+                state = GROUND;
+                if (c != '\\') {
+                    accept(ESC);
+                    accept(c);
+                }
+                break;
+            case CHARSET:
+                if (charsetTarget == '(') {
+                    lineDrawingG0 = c == '0';
+                } else if (charsetTarget == ')') {
+                    lineDrawingG1 = c == '0';
+                }
+                state = GROUND;
+                break;
+            case ESCAPE_HASH:
+                if (c == '8' && alternate) {
+                    // DECALN: fill the screen with E
+                    for (int r = 0; r < rows; r++) {
+                        Arrays.fill(chars[r], 'E');
+                        Arrays.fill(styles[r], 0);
+                        markDirty(r, 0, cols);
+                    }
+                }
+                state = GROUND;
+                break;
+            default:
+                state = GROUND;
+        }
+        if (sequence.length() > MAX_SEQUENCE_LENGTH) {
+            sequence.setLength(0);
+            if (state == OSC) {
+                state = STRING;
+            }
+        }
+    }
+
+    private void control(char c) {
+        switch (c) {
+            case 0x07:
+                if (alternate) {
+                    passthrough.append(c);
+                }
+                break;
+            case 0x08:
+                if (col > 0) {
+                    col--;
+                }
+                wrapPending = false;
+                break;
+            case 0x09:
+                col = Math.min(cols - 1, (col / 8 + 1) * 8);
+                wrapPending = false;
+                break;
+            case 0x0a:
+            case 0x0b:
+            case 0x0c:
+                lineFeed();
+                break;
+            case 0x0d:
+                col = 0;
+                wrapPending = false;
+                break;
+            case 0x0e:
+                shiftedOut = true;
+                break;
+            case 0x0f:
+                shiftedOut = false;
+                break;
+            case ESC:
+                state = ESCAPE;
+                sequence.setLength(0);
+                sequence.append(c);
+                break;
+            default:
+                // other controls do nothing on a screen
+        }
+    }
+
+    private void escape(char c) {
+        state = GROUND;
+        switch (c) {
+            case '[':
+                state = CSI;
+                paramCount = 0;
+                privateMarker = 0;
+                intermediate = 0;
+                Arrays.fill(params, 0);
+                break;
+            case ']':
+                state = OSC;
+                break;
+            case 'P':
+            case 'X':
+            case '^':
+            case '_':
+                state = STRING;
+                break;
+            case '(':
+            case ')':
+            case '*':
+            case '+':
+                charsetTarget = c;
+                state = CHARSET;
+                break;
+            case '#':
+                state = ESCAPE_HASH;
+                break;
+            case '7':
+                saveCursor();
+                break;
+            case '8':
+                restoreCursor();
+                break;
+            case 'D':
+                lineFeed();
+                break;
+            case 'E':
+                col = 0;
+                lineFeed();
+                break;
+            case 'M':
+                reverseIndex();
+                break;
+            case 'c':
+                reset();
+                break;
+            case '=':
+            case '>':
+                keypadApplication = c == '=';
+                forwardSequence();
+                break;
+            default:
+                // ignored, e.g. ESC H (set tab stop)
+        }
+    }
+
+    private void csiChar(char c) {
+        if (c >= '0' && c <= '9') {
+            if (paramCount == 0) {
+                paramCount = 1;
+            }
+            params[paramCount - 1] = Math.min(params[paramCount - 1] * 10 + (c - '0'), 65535);
+        } else if (c == ';' || c == ':') {
+            if (paramCount == 0) {
+                paramCount = 1;
+            }
+            if (paramCount < MAX_PARAMS) {
+                paramCount++;
+            }
+        } else if (c == '?' || c == '>' || c == '<' || c == '=') {
+            privateMarker = c;
+        } else if (c >= 0x20 && c <= 0x2f) {
+            intermediate = c;
+        } else if (c >= 0x40 && c <= 0x7e) {
+            state = GROUND;
+            if (privateMarker == '?' && intermediate == 0) {
+                privateCsi(c);
+            } else if (privateMarker == 0 && intermediate == 0) {
+                csi(c);
+            } else if (intermediate == '!' && c == 'p') {
+                softReset();
+            } else {
+                // e.g. DA2 (CSI > c) or the cursor style (CSI SP q): the client's business
+                requestFlushIfQuery(c);
+                forwardSequence();
+            }
+        } else {
+            state = GROUND;
+        }
+    }
+
+    private void csi(char c) {
+        int n = param(0, 1);
+        switch (c) {
+            case '@':
+                insertChars(n);
+                break;
+            case 'A':
+                moveTo(Math.max(row - n, row >= top ? top : 0), col);
+                break;
+            case 'B':
+            case 'e':
+                moveTo(Math.min(row + n, row <= bottom ? bottom : rows - 1), col);
+                break;
+            case 'C':
+            case 'a':
+                moveTo(row, Math.min(col + n, cols - 1));
+                break;
+            case 'D':
+                moveTo(row, Math.max(col - n, 0));
+                break;
+            case 'E':
+                moveTo(Math.min(row + n, bottom), 0);
+                break;
+            case 'F':
+                moveTo(Math.max(row - n, top), 0);
+                break;
+            case 'G':
+            case '`':
+                moveTo(row, Math.min(n, cols) - 1);
+                break;
+            case 'H':
+            case 'f':
+                cursorPosition(param(0, 1), param(1, 1));
+                break;
+            case 'J':
+                eraseDisplay(param(0, 0));
+                break;
+            case 'K':
+                eraseLine(param(0, 0));
+                break;
+            case 'L':
+                if (row >= top && row <= bottom) {
+                    scroll(row, bottom, -n);
+                    col = 0;
+                }
+                break;
+            case 'M':
+                if (row >= top && row <= bottom) {
+                    scroll(row, bottom, n);
+                    col = 0;
+                }
+                break;
+            case 'P':
+                deleteChars(n);
+                break;
+            case 'S':
+                scroll(top, bottom, n);
+                break;
+            case 'T':
+                if (paramCount <= 1) {
+                    scroll(top, bottom, -n);
+                }
+                break;
+            case 'X':
+                eraseCells(row, col, Math.min(col + n, cols));
+                break;
+            case 'b':
+                for (int i = 0; i < Math.min(n, cols * rows); i++) {
+                    print(lastPrinted);
+                }
+                break;
+            case 'd':
+                moveTo(originMode ? Math.min(top + n - 1, bottom) : n - 1, col);
+                break;
+            case 'h':
+            case 'l':
+                for (int i = 0; i < Math.max(paramCount, 1); i++) {
+                    if (params[i] == 4) {
+                        insertMode = c == 'h';
+                    }
+                }
+                break;
+            case 'm':
+                sgr();
+                break;
+            case 'n':
+            case 'c':
+                requestFlushIfQuery(c);
+                forwardSequence();
+                break;
+            case 'r':
+                setMargins(param(0, 1), param(1, rows));
+                break;
+            case 's':
+                if (paramCount == 0) {
+                    saveCursor();
+                }
+                break;
+            case 'u':
+                restoreCursor();
+                break;
+            default:
+                // window operations, tab stops and the like do not change the picture
+        }
+    }
+
+    private void privateCsi(char c) {
+        if (c != 'h' && c != 'l') {
+            // e.g. DECRQM (CSI ? Ps $ p) or a keyboard protocol query
+            requestFlushIfQuery(c);
+            forwardSequence();
+            return;
+        }
+        boolean set = c == 'h';
+        boolean forward = false;
+        for (int i = 0; i < Math.max(paramCount, 1); i++) {
+            int mode = params[i];
+            switch (mode) {
+                case 6:
+                    originMode = set;
+                    cursorPosition(1, 1);
+                    break;
+                case 7:
+                    autoWrap = set;
+                    break;
+                case 25:
+                    cursorVisible = set;
+                    break;
+                case 47:
+                case 1047:
+                case 1049:
+                    switchScreen(mode, set);
+                    break;
+                default:
+                    privateModes.put(mode, set);
+                    forward = true;
+            }
+        }
+        if (forward) {
+            forwardSequence();
+        }
+    }
+
+    private void forwardSequence() {
+        if (alternate) {
+            passthrough.append(sequence);
+        }
+        sequence.setLength(0);
+    }
+
+    private void requestFlushIfQuery(char c) {
+        if (alternate && (c == 'n' || c == 'c' || c == 'p' || c == 'u')) {
+            flushRequested = true;
+        }
+    }
+
+    private int param(int index, int defaultValue) {
+        int value = index < paramCount ? params[index] : 0;
+        return value == 0 ? defaultValue : value;
+    }
+
+    // --- screen operations ---
+
+    private void switchScreen(int mode, boolean enter) {
+        if (enter == alternate) {
+            return;
+        }
+        alternate = enter;
+        if (enter) {
+            alternateMode = mode;
+            if (mode != 47) {
+                eraseAll();
+            }
+            resetMargins();
+            row = 0;
+            col = 0;
+            wrapPending = false;
+            scrollAmount = 0;
+            forgetShown();
+            markAllDirty();
+        }
+        flushRequested = false;
+    }
+
+    private void reset() {
+        pen = 0;
+        resetMargins();
+        originMode = false;
+        autoWrap = true;
+        insertMode = false;
+        cursorVisible = true;
+        lineDrawingG0 = false;
+        lineDrawingG1 = false;
+        shiftedOut = false;
+        privateModes.clear();
+        keypadApplication = false;
+        eraseAll();
+        row = 0;
+        col = 0;
+        wrapPending = false;
+        // a full reset returns to the normal screen
+        switchScreen(alternateMode, false);
+    }
+
+    private void softReset() {
+        pen = 0;
+        resetMargins();
+        originMode = false;
+        autoWrap = true;
+        insertMode = false;
+        cursorVisible = true;
+        savedRow = 0;
+        savedCol = 0;
+        savedPen = 0;
+    }
+
+    private void saveCursor() {
+        savedRow = row;
+        savedCol = col;
+        savedPen = pen;
+        savedOrigin = originMode;
+    }
+
+    private void restoreCursor() {
+        row = Math.min(savedRow, rows - 1);
+        col = Math.min(savedCol, cols - 1);
+        pen = savedPen;
+        originMode = savedOrigin;
+        wrapPending = false;
+    }
+
+    private void printChar(char c) {
+        if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+            return;
+        }
+        int codePoint = c;
+        if (Character.isLowSurrogate(c) && highSurrogate != 0) {
+            codePoint = Character.toCodePoint(highSurrogate, c);
+        }
+        highSurrogate = 0;
+        if ((shiftedOut ? lineDrawingG1 : lineDrawingG0) && codePoint >= 0x60 && codePoint <= 0x7e) {
+            codePoint = LINE_DRAWING.charAt(codePoint - 0x60);
+        }
+        lastPrinted = codePoint;
+        if (alternate) {
+            print(codePoint);
+        }
+    }
+
+    private void print(int codePoint) {
+        int width = width(codePoint);
+        if (width == 0) {
+            // combining marks are not modelled
+            return;
+        }
+        if (wrapPending && autoWrap) {
+            col = 0;
+            lineFeed();
+        }
+        wrapPending = false;
+        if (width == 2 && col == cols - 1) {
+            if (!autoWrap) {
+                return;
+            }
+            eraseCells(row, col, cols);
+            col = 0;
+            lineFeed();
+        }
+        if (insertMode) {
+            shiftRight(row, col, width);
+        }
+        int[] line = chars[row];
+        // overwriting half of a wide character leaves the other half blank
+        if (line[col] == WIDE_TAIL && col > 0) {
+            line[col - 1] = BLANK;
+            markDirty(row, col - 1, col);
+        }
+        int end = col + width;
+        if (end < cols && line[end] == WIDE_TAIL) {
+            line[end] = BLANK;
+            markDirty(row, end, end + 1);
+        }
+        // programs like top redraw whole lines that mostly did not change
+        if (line[col] != codePoint || styles[row][col] != pen
+                || width == 2 && (line[col + 1] != WIDE_TAIL || styles[row][col + 1] != pen)) {
+            line[col] = codePoint;
+            styles[row][col] = pen;
+            if (width == 2) {
+                line[col + 1] = WIDE_TAIL;
+                styles[row][col + 1] = pen;
+            }
+            markDirty(row, col, end);
+        }
+        if (end >= cols) {
+            col = cols - 1;
+            wrapPending = true;
+        } else {
+            col = end;
+        }
+    }
+
+    private void lineFeed() {
+        wrapPending = false;
+        if (row == bottom) {
+            if (alternate) {
+                scroll(top, bottom, 1);
+            }
+        } else if (row < rows - 1) {
+            row++;
+        }
+    }
+
+    private void reverseIndex() {
+        wrapPending = false;
+        if (row == top) {
+            if (alternate) {
+                scroll(top, bottom, -1);
+            }
+        } else if (row > 0) {
+            row--;
+        }
+    }
+
+    private void moveTo(int newRow, int newCol) {
+        row = Math.max(0, Math.min(newRow, rows - 1));
+        col = Math.max(0, Math.min(newCol, cols - 1));
+        wrapPending = false;
+    }
+
+    private void cursorPosition(int oneBasedRow, int oneBasedCol) {
+        if (originMode) {
+            moveTo(Math.min(top + oneBasedRow - 1, bottom), oneBasedCol - 1);
+        } else {
+            moveTo(oneBasedRow - 1, oneBasedCol - 1);
+        }
+    }
+
+    private void setMargins(int oneBasedTop, int oneBasedBottom) {
+        int newTop = oneBasedTop - 1;
+        int newBottom = Math.min(oneBasedBottom, rows) - 1;
+        if (newTop < newBottom) {
+            top = newTop;
+            bottom = newBottom;
+            cursorPosition(1, 1);
+        }
+    }
+
+    private void resetMargins() {
+        top = 0;
+        bottom = rows - 1;
+    }
+
+    private void eraseDisplay(int mode) {
+        if (!alternate) {
+            return;
+        }
+        if (mode == 0) {
+            eraseCells(row, col, cols);
+            for (int r = row + 1; r < rows; r++) {
+                eraseCells(r, 0, cols);
+            }
+        } else if (mode == 1) {
+            for (int r = 0; r < row; r++) {
+                eraseCells(r, 0, cols);
+            }
+            eraseCells(row, 0, col + 1);
+        } else {
+            for (int r = 0; r < rows; r++) {
+                eraseCells(r, 0, cols);
+            }
+        }
+    }
+
+    private void eraseLine(int mode) {
+        if (mode == 0) {
+            eraseCells(row, col, cols);
+        } else if (mode == 1) {
+            eraseCells(row, 0, col + 1);
+        } else {
+            eraseCells(row, 0, cols);
+        }
+    }
+
+    private void eraseCells(int r, int from, int to) {
+        if (!alternate || from >= to) {
+            return;
+        }
+        // a wide character cut in half goes entirely
+        if (from > 0 && chars[r][from] == WIDE_TAIL) {
+            from--;
+        }
+        if (to < cols && chars[r][to] == WIDE_TAIL) {
+            to++;
+        }
+        // a clear before each redraw only dirties what was not blank already
+        long blank = pen & BG_MASK;
+        int first = from;
+        while (first < to && chars[r][first] == BLANK && styles[r][first] == blank) {
+            first++;
+        }
+        int last = to;
+        while (last > first && chars[r][last - 1] == BLANK && styles[r][last - 1] == blank) {
+            last--;
+        }
+        if (first < last) {
+            Arrays.fill(chars[r], first, last, BLANK);
+            Arrays.fill(styles[r], first, last, blank);
+            markDirty(r, first, last);
+        }
+    }
+
+    private void eraseAll() {
+        for (int r = 0; r < rows; r++) {
+            Arrays.fill(chars[r], BLANK);
+            Arrays.fill(styles[r], 0);
+        }
+    }
+
+    private void insertChars(int n) {
+        if (!alternate) {
+            return;
+        }
+        shiftRight(row, col, n);
+        eraseCells(row, col, Math.min(col + n, cols));
+    }
+
+    private void shiftRight(int r, int from, int n) {
+        if (!alternate) {
+            return;
+        }
+        n = Math.min(n, cols - from);
+        System.arraycopy(chars[r], from, chars[r], from + n, cols - from - n);
+        System.arraycopy(styles[r], from, styles[r], from + n, cols - from - n);
+        if (chars[r][cols - 1] != WIDE_TAIL && isWide(chars[r][cols - 1])) {
+            chars[r][cols - 1] = BLANK;
+        }
+        markDirty(r, from, cols);
+    }
+
+    private void deleteChars(int n) {
+        if (!alternate) {
+            return;
+        }
+        n = Math.min(n, cols - col);
+        // as with erasing, a wide character cut in half goes entirely
+        if (col > 0 && chars[row][col] == WIDE_TAIL) {
+            chars[row][col - 1] = BLANK;
+            markDirty(row, col - 1, col);
+        }
+        System.arraycopy(chars[row], col + n, chars[row], col, cols - col - n);
+        System.arraycopy(styles[row], col + n, styles[row], col, cols - col - n);
+        Arrays.fill(chars[row], cols - n, cols, BLANK);
+        Arrays.fill(styles[row], cols - n, cols, pen & BG_MASK);
+        if (chars[row][col] == WIDE_TAIL) {
+            chars[row][col] = BLANK;
+        }
+        markDirty(row, col, cols);
+    }
+
+    /**
+     * Scrolls rows {@code from..to} up by {@code n}, or down for negative {@code n}. Change
+     * marks move along with their rows, so a scroll the client repeats leaves only the
+     * uncovered rows to be drawn.
+     */
+    private void scroll(int from, int to, int n) {
+        if (!alternate || n == 0) {
+            return;
+        }
+        int height = to - from + 1;
+        int amount = Math.min(Math.abs(n), height);
+        boolean up = n > 0;
+        if (scrollAmount != 0 && (scrollTop != from || scrollBottom != to || (scrollAmount > 0) != up)) {
+            // a second kind of scroll in the same frame: draw the first region instead, marked
+            // before this scroll moves its rows
+            markRowsDirty(scrollTop, scrollBottom);
+            scrollAmount = 0;
+        }
+        for (int i = 0; i < amount; i++) {
+            if (up) {
+                rotateUp(from, to);
+            } else {
+                rotateDown(from, to);
+            }
+        }
+        if (amount == height) {
+            markRowsDirty(from, to);
+            return;
+        }
+        if (scrollAmount == 0) {
+            scrollTop = from;
+            scrollBottom = to;
+        }
+        scrollAmount += up ? amount : -amount;
+        if (Math.abs(scrollAmount) >= height) {
+            markRowsDirty(from, to);
+            scrollAmount = 0;
+        }
+    }
+
+    private void rotateUp(int from, int to) {
+        int[] freedChars = chars[from];
+        long[] freedStyles = styles[from];
+        System.arraycopy(chars, from + 1, chars, from, to - from);
+        System.arraycopy(styles, from + 1, styles, from, to - from);
+        System.arraycopy(dirtyFrom, from + 1, dirtyFrom, from, to - from);
+        System.arraycopy(dirtyTo, from + 1, dirtyTo, from, to - from);
+        chars[to] = freedChars;
+        styles[to] = freedStyles;
+        clearRow(to);
+    }
+
+    private void rotateDown(int from, int to) {
+        int[] freedChars = chars[to];
+        long[] freedStyles = styles[to];
+        System.arraycopy(chars, from, chars, from + 1, to - from);
+        System.arraycopy(styles, from, styles, from + 1, to - from);
+        System.arraycopy(dirtyFrom, from, dirtyFrom, from + 1, to - from);
+        System.arraycopy(dirtyTo, from, dirtyTo, from + 1, to - from);
+        chars[from] = freedChars;
+        styles[from] = freedStyles;
+        clearRow(from);
+    }
+
+    private void clearRow(int r) {
+        Arrays.fill(chars[r], BLANK);
+        Arrays.fill(styles[r], pen & BG_MASK);
+        dirtyFrom[r] = -1;
+        dirtyTo[r] = 0;
+        recountDirty();
+        markDirty(r, 0, cols);
+    }
+
+    private void recountDirty() {
+        int count = 0;
+        for (int from : dirtyFrom) {
+            if (from >= 0) {
+                count++;
+            }
+        }
+        dirtyRows = count;
+    }
+
+    private void markDirty(int r, int from, int to) {
+        if (dirtyFrom[r] < 0) {
+            dirtyFrom[r] = from;
+            dirtyTo[r] = to;
+            dirtyRows++;
+        } else {
+            dirtyFrom[r] = Math.min(dirtyFrom[r], from);
+            dirtyTo[r] = Math.max(dirtyTo[r], to);
+        }
+    }
+
+    private void markRowsDirty(int from, int to) {
+        for (int r = from; r <= to; r++) {
+            markDirty(r, 0, cols);
+        }
+    }
+
+    private void forgetShown() {
+        for (int[] line : shownChars) {
+            Arrays.fill(line, UNKNOWN);
+        }
+    }
+
+    private void markAllDirty() {
+        scrollAmount = 0;
+        markRowsDirty(0, rows - 1);
+    }
+
+    private void sgr() {
+        if (paramCount == 0) {
+            pen = 0;
+            return;
+        }
+        for (int i = 0; i < paramCount; i++) {
+            int p = params[i];
+            if (p == 0) {
+                pen = 0;
+            } else if (p >= 1 && p <= 9 && p != 6) {
+                pen |= flag(p);
+            } else if (p == 21) {
+                pen |= UNDERLINE;
+            } else if (p == 22) {
+                pen &= ~(BOLD | DIM);
+            } else if (p >= 23 && p <= 29 && p != 26) {
+                pen &= ~flag(p - 20);
+            } else if (p >= 30 && p <= 37) {
+                pen = withColor(pen, FG_SHIFT, PALETTE, p - 30);
+            } else if (p == 39) {
+                pen = withColor(pen, FG_SHIFT, 0, 0);
+            } else if (p >= 40 && p <= 47) {
+                pen = withColor(pen, BG_SHIFT, PALETTE, p - 40);
+            } else if (p == 49) {
+                pen = withColor(pen, BG_SHIFT, 0, 0);
+            } else if (p >= 90 && p <= 97) {
+                pen = withColor(pen, FG_SHIFT, PALETTE, p - 90 + 8);
+            } else if (p >= 100 && p <= 107) {
+                pen = withColor(pen, BG_SHIFT, PALETTE, p - 100 + 8);
+            } else if ((p == 38 || p == 48) && i + 1 < paramCount) {
+                int shift = p == 38 ? FG_SHIFT : BG_SHIFT;
+                if (params[i + 1] == 5 && i + 2 < paramCount) {
+                    pen = withColor(pen, shift, PALETTE, params[i + 2] & 0xff);
+                    i += 2;
+                } else if (params[i + 1] == 2 && i + 4 < paramCount) {
+                    int rgb = (params[i + 2] & 0xff) << 16 | (params[i + 3] & 0xff) << 8 | (params[i + 4] & 0xff);
+                    pen = withColor(pen, shift, RGB, rgb);
+                    i += 4;
+                } else {
+                    break;
+                }
+            }
+        }
+    }
+
+    private static long flag(int sgr) {
+        for (int i = 0; i < FLAG_SGR.length; i++) {
+            if (FLAG_SGR[i] == sgr) {
+                return 1L << i;
+            }
+        }
+        return 0;
+    }
+
+    private static long withColor(long style, int shift, int kind, int value) {
+        long color = (long) kind << 24 | value;
+        return style & ~(COLOR_MASK << shift) | color << shift;
+    }
+
+    // --- rendering ---
+
+    private void renderSpan(StringBuilder out, int r, int from, int to, boolean clearTail) {
+        int[] line = chars[r];
+        long[] lineStyles = styles[r];
+        if (from > 0 && line[from] == WIDE_TAIL) {
+            from--;
+        }
+        int end = to;
+        boolean eraseRest = false;
+        if (clearTail && to == cols) {
+            // trailing blanks without background are cheaper to erase than to draw
+            end = Math.max(from, contentEnd(r));
+            eraseRest = end < cols;
+        }
+        if (end == from && !eraseRest) {
+            return;
+        }
+        appendCsi(out).append(r + 1).append(';').append(from + 1).append('H');
+        long current = -1;
+        for (int c = from; c < end; c++) {
+            if (line[c] == WIDE_TAIL) {
+                continue;
+            }
+            if (lineStyles[c] != current) {
+                current = lineStyles[c];
+                appendStyle(out, current);
+            }
+            out.appendCodePoint(line[c]);
+        }
+        if (eraseRest) {
+            if (current != 0) {
+                appendCsi(out).append("0m");
+            }
+            appendCsi(out).append('K');
+        } else if (current != 0) {
+            appendCsi(out).append("0m");
+        }
+    }
+
+    private void appendCursor(StringBuilder out) {
+        appendCsi(out).append(row + 1).append(';').append(col + 1).append('H');
+        appendCsi(out).append("?25").append(cursorVisible ? 'h' : 'l');
+    }
+
+    private boolean isShown(int r, int c) {
+        return shownChars[r][c] == chars[r][c] && shownStyles[r][c] == styles[r][c];
+    }
+
+    private void shown(int r, int from, int to) {
+        System.arraycopy(chars[r], from, shownChars[r], from, to - from);
+        System.arraycopy(styles[r], from, shownStyles[r], from, to - from);
+    }
+
+    // repeats on the clients' copy the scroll just sent; uncovered rows are drawn afterwards
+    private void scrollShown(int from, int to, int n) {
+        int height = to - from + 1;
+        int amount = Math.min(Math.abs(n), height);
+        int[][] movedChars = new int[height][];
+        long[][] movedStyles = new long[height][];
+        for (int i = 0; i < height; i++) {
+            int source = n > 0 ? from + (i + amount) % height : from + (i - amount + height) % height;
+            movedChars[i] = shownChars[source];
+            movedStyles[i] = shownStyles[source];
+        }
+        for (int i = 0; i < height; i++) {
+            shownChars[from + i] = movedChars[i];
+            shownStyles[from + i] = movedStyles[i];
+            boolean uncovered = n > 0 ? i >= height - amount : i < amount;
+            if (uncovered) {
+                Arrays.fill(shownChars[from + i], UNKNOWN);
+            }
+        }
+    }
+
+    // end of the row's content: the column after its last cell that is not a plain blank
+    private int contentEnd(int r) {
+        for (int c = cols - 1; c >= 0; c--) {
+            if (chars[r][c] != BLANK || styles[r][c] != 0) {
+                return c + 1;
+            }
+        }
+        return 0;
+    }
+
+    private static void appendStyle(StringBuilder out, long style) {
+        appendCsi(out).append('0');
+        for (int i = 0; i < FLAG_SGR.length; i++) {
+            if ((style & (1L << i)) != 0) {
+                out.append(';').append(FLAG_SGR[i]);
+            }
+        }
+        appendColor(out, style >>> FG_SHIFT & COLOR_MASK, 30, 90, 38);
+        appendColor(out, style >>> BG_SHIFT & COLOR_MASK, 40, 100, 48);
+        out.append('m');
+    }
+
+    private static void appendColor(StringBuilder out, long color, int base, int brightBase, int extended) {
+        int kind = (int) (color >>> 24);
+        int value = (int) (color & 0xffffff);
+        if (kind == PALETTE) {
+            if (value < 8) {
+                out.append(';').append(base + value);
+            } else if (value < 16) {
+                out.append(';').append(brightBase + value - 8);
+            } else {
+                out.append(';').append(extended).append(";5;").append(value);
+            }
+        } else if (kind == RGB) {
+            out.append(';').append(extended).append(";2;").append(value >> 16 & 0xff).append(';')
+                    .append(value >> 8 & 0xff).append(';').append(value & 0xff);
+        }
+    }
+
+    private static StringBuilder appendCsi(StringBuilder out) {
+        return out.append(ESC).append('[');
+    }
+
+    private void allocate(int newCols, int newRows) {
+        cols = newCols;
+        rows = newRows;
+        chars = new int[rows][cols];
+        styles = new long[rows][cols];
+        for (int[] line : chars) {
+            Arrays.fill(line, BLANK);
+        }
+        shownChars = new int[rows][cols];
+        shownStyles = new long[rows][cols];
+        forgetShown();
+        dirtyFrom = new int[rows];
+        dirtyTo = new int[rows];
+        Arrays.fill(dirtyFrom, -1);
+        dirtyRows = 0;
+        scrollAmount = 0;
+        resetMargins();
+        markAllDirty();
+    }
+
+    private static int clamp(int value, int max) {
+        return Math.max(1, Math.min(value, max));
+    }
+
+    private static boolean isWide(int codePoint) {
+        return width(codePoint) == 2;
+    }
+
+    // columns a code point takes in a terminal, after wcwidth: 0 for combining marks, 2 for
+    // East Asian wide and fullwidth characters and most emoji
+    static int width(int cp) {
+        if (cp < 0x300) {
+            return 1;
+        }
+        if (cp <= 0x36f || (cp >= 0x200b && cp <= 0x200f) || (cp >= 0xfe00 && cp <= 0xfe0f)
+                || (cp >= 0x1ab0 && cp <= 0x1aff) || (cp >= 0x20d0 && cp <= 0x20ff)) {
+            return 0;
+        }
+        if ((cp >= 0x1100 && cp <= 0x115f) || (cp >= 0x2e80 && cp <= 0x303e) || (cp >= 0x3041 && cp <= 0x33ff)
+                || (cp >= 0x3400 && cp <= 0x4dbf) || (cp >= 0x4e00 && cp <= 0x9fff) || (cp >= 0xa000 && cp <= 0xa4cf)
+                || (cp >= 0xac00 && cp <= 0xd7a3) || (cp >= 0xf900 && cp <= 0xfaff) || (cp >= 0xfe30 && cp <= 0xfe4f)
+                || (cp >= 0xff00 && cp <= 0xff60) || (cp >= 0xffe0 && cp <= 0xffe6)
+                || (cp >= 0x1f300 && cp <= 0x1f64f) || (cp >= 0x1f900 && cp <= 0x1f9ff)
+                || (cp >= 0x20000 && cp <= 0x3fffd)) {
+            return 2;
+        }
+        return 1;
+    }
+}
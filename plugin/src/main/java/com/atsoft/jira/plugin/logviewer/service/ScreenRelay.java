@@ -0,0 +1,225 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongFunction;
+
+/**
+ * Sits between a session's {@link PtyReader} and its {@link SessionOutput} when the screen
+ * model is enabled ({@link LogViewerSettings#SCREEN_MODEL}). Output on the normal screen is
+ * passed on as it is. While a full-screen program has the alternate screen, its output only
+ * updates a {@link ScreenModel}, and clients are sent a frame of what changed at most every
+ * {@code refreshMillis}: a program redrawing its whole screen many times a second costs the
+ * clients one delta per frame. A client that attaches meanwhile gets a snapshot of the screen
+ * instead of a replay of every redraw.
+ * <p>
+ * Frames are written into the same output stream as everything else, so every client sees
+ * the deltas relative to the frame before; a client that falls behind is handled by the usual
+ * overflow policy. Frames that are due while no output arrives are written by a timer on
+ * {@code scheduler}; all writes to the output go through one lock, so there is still a single
+ * producer at any time.
+ */
+public class ScreenRelay {
+    // how long an attaching client waits for the producer before it gets a plain replay
+    private static final long ATTACH_WAIT_MILLIS = 200;
+    // UTF-8 bytes per char at most
+    private static final int MAX_EXPANSION = 3;
+
+    private final SessionOutput output;
+    private final ScreenModel model;
+    private final ScheduledExecutorService scheduler;
+    private final long refreshNanos;
+    private final ReentrantLock producer = new ReentrantLock();
+    private final AtomicBoolean frameScheduled = new AtomicBoolean();
+    // rendered but not yet written, e.g. while a client is too far behind; guarded by producer
+    private final StringBuilder frame = new StringBuilder();
+    private long lastFrameNanos;
+
+    public ScreenRelay(SessionOutput output, ScheduledExecutorService scheduler, long refreshMillis, int cols,
+            int rows) {
+        this.output = output;
+        this.model = new ScreenModel(cols, rows);
+        this.scheduler = scheduler;
+        this.refreshNanos = TimeUnit.MILLISECONDS.toNanos(refreshMillis);
+        this.lastFrameNanos = System.nanoTime() - refreshNanos;
+    }
+
+    /**
+     * Takes output from the reader in place of {@link SessionOutput#write}, with the same
+     * contract.
+     */
+    public void write(CharSequence text) throws InterruptedException {
+        producer.lock();
+        try {
+            int length = text.length();
+            int position = 0;
+            while (position < length) {
+                boolean wasAlternate;
+                boolean left;
+                int next;
+                synchronized (model) {
+                    wasAlternate = model.isAlternate();
+                    next = model.feed(text, position, length);
+                    left = wasAlternate && !model.isAlternate();
+                    if (wasAlternate) {
+                        if (model.isFlushRequested() && !left) {
+                            // the client answers a query from its own screen, so draw it first
+                            model.renderDelta(frame);
+                            lastFrameNanos = System.nanoTime();
+                        }
+                        model.takePassthrough(frame);
+                        if (left) {
+                            frame.append("\u001b[?").append(model.getAlternateMode()).append('l');
+                        }
+                    }
+                }
+                if (!wasAlternate) {
+                    output.write(text.subSequence(position, next));
+                } else {
+                    writeFrame();
+                }
+                position = next;
+            }
+            sendFrameIfDue();
+        } finally {
+            producer.unlock();
+        }
+    }
+
+    /**
+     * Attaches a client. While a full-screen program runs, the client is sent a snapshot of
+     * its screen and then what follows; otherwise output after {@code fromOffset} is replayed
+     * as with {@link SessionOutput#attach(OutputCoalescer.FrameSink, OverflowPolicy, long,
+     * LongFunction)}.
+     */
+    public OutputCoalescer attach(OutputCoalescer.FrameSink sink, OverflowPolicy policy, long fromOffset,
+            LongFunction<String> greeting) {
+        boolean locked = false;
+        try {
+            locked = producer.tryLock(ATTACH_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (locked) {
+                StringBuilder snapshot = null;
+                synchronized (model) {
+                    if (model.isAlternate()) {
+                        // frames after the snapshot must build on it, so none may be pending
+                        model.renderDelta(frame);
+                        lastFrameNanos = System.nanoTime();
+                        if (frame.length() * MAX_EXPANSION <= output.writableBytes()) {
+                            snapshot = new StringBuilder();
+                            model.renderSnapshot(snapshot);
+                        }
+                    }
+                }
+                if (snapshot != null) {
+                    try {
+                        // fits, so this does not wait
+                        writeFrame();
+                        return output.attach(sink, policy, StandardCharsets.UTF_8.encode(snapshot.toString()),
+                                greeting);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+            // a producer held up by a slow client; the replay is correct, only longer
+            return output.attach(sink, policy, fromOffset, greeting);
+        } finally {
+            if (locked) {
+                producer.unlock();
+            }
+        }
+    }
+
+    /** Follows the size of the owner's terminal; the program redraws, and so does the next frame. */
+    public void resize(int cols, int rows) {
+        synchronized (model) {
+            model.resize(cols, rows);
+        }
+        scheduleFrame(refreshNanos);
+    }
+
+    /** Whether a full-screen program is running, i.e. clients get frames rather than raw output. */
+    public boolean isFullScreen() {
+        synchronized (model) {
+            return model.isAlternate();
+        }
+    }
+
+    // with the producer lock held
+    private void sendFrameIfDue() throws InterruptedException {
+        synchronized (model) {
+            if (!model.isAlternate() || !model.isDirty()) {
+                return;
+            }
+        }
+        long sinceLastFrame = System.nanoTime() - lastFrameNanos;
+        if (sinceLastFrame >= refreshNanos) {
+            sendFrame();
+        } else {
+            scheduleFrame(refreshNanos - sinceLastFrame);
+        }
+    }
+
+    // with the producer lock held
+    private void sendFrame() throws InterruptedException {
+        synchronized (model) {
+            model.renderDelta(frame);
+        }
+        lastFrameNanos = System.nanoTime();
+        writeFrame();
+    }
+
+    private void writeFrame() throws InterruptedException {
+        if (frame.length() > 0) {
+            output.write(frame);
+            frame.setLength(0);
+        }
+    }
+
+    private void scheduleFrame(long delayNanos) {
+        if (frameScheduled.compareAndSet(false, true)) {
+            try {
+                scheduler.schedule(this::scheduledFrame, delayNanos, TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException e) {
+                // shutting down
+                frameScheduled.set(false);
+            }
+        }
+    }
+
+    // runs on the scheduler, which must never wait for a slow client
+    private void scheduledFrame() {
+        frameScheduled.set(false);
+        if (!producer.tryLock()) {
+            // the reader is writing and sends the frame itself, unless it is paused
+            scheduleFrame(refreshNanos);
+            return;
+        }
+        try {
+            synchronized (model) {
+                if (model.isAlternate() && model.isDirty()) {
+                    model.renderDelta(frame);
+                    lastFrameNanos = System.nanoTime();
+                }
+            }
+            if (frame.length() * MAX_EXPANSION > output.writableBytes()) {
+                // writing would pause this thread; keep the frame and add to it later
+                scheduleFrame(refreshNanos);
+                return;
+            }
+            writeFrame();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            producer.unlock();
+        }
+    }
+}
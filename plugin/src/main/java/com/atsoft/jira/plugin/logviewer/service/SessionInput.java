@@ -0,0 +1,170 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Input queue of one terminal session. WebSocket threads only copy their message into the
+ * pending buffer and return; a writer task on {@code executor} moves it to the PTY, so a large
+ * paste blocked by a full PTY input buffer holds up the writer, never the container thread.
+ * <p>
+ * Keystrokes that arrive while the writer is busy are written and flushed together. Pending
+ * input is bounded by {@code maxPendingBytes}: a message that does not fit is refused as a
+ * whole, so the shell never gets half a paste. The pending and the writing buffer swap roles
+ * on every round and are reused; a writer task runs only while there is input.
+ */
+public class SessionInput {
+    private static final Logger log = LoggerFactory.getLogger(SessionInput.class);
+
+    // about what a PTY takes before a write blocks
+    private static final int WRITE_CHUNK_BYTES = 4096;
+    private static final int INITIAL_BUFFER_BYTES = 1024;
+
+    private final String name;
+    private final OutputStream out;
+    private final Executor executor;
+    private final int maxPendingBytes;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    // never larger than maxPendingBytes, so encoding cannot run past the limit; guarded by this
+    private ByteBuffer pending;
+    private boolean writing;
+    private boolean closed;
+    // only touched by the writer task
+    private ByteBuffer draining;
+
+    public SessionInput(String name, OutputStream out, Executor executor, int maxPendingBytes) {
+        this.name = name;
+        this.out = out;
+        this.executor = executor;
+        this.maxPendingBytes = maxPendingBytes;
+        this.pending = ByteBuffer.allocate(Math.min(INITIAL_BUFFER_BYTES, maxPendingBytes));
+        this.draining = ByteBuffer.allocate(pending.capacity());
+    }
+
+    /**
+     * Queues raw input, e.g. the payload of a framed message. The bytes are copied before this
+     * returns, so the caller may reuse the buffer.
+     *
+     * @return false if the input was refused because too much is pending or the session ended
+     */
+    public synchronized boolean offer(ByteBuffer input) {
+        if (!reserve(input.remaining())) {
+            return false;
+        }
+        pending.put(input.duplicate());
+        schedule();
+        return true;
+    }
+
+    /**
+     * Queues text, encoding it straight into the pending buffer.
+     *
+     * @return the number of bytes queued, or -1 if the input was refused because too much is
+     *         pending or the session ended
+     */
+    public synchronized int offer(CharSequence text) {
+        int start = pending.position();
+        // UTF-8 takes at most three bytes per UTF-16 char; the exact size shows when encoding
+        if (!reserve(Math.min(text.length() * 3, maxPendingBytes - start))) {
+            return -1;
+        }
+        encoder.reset();
+        CoderResult result = encoder.encode(CharBuffer.wrap(text), pending, true);
+        if (!result.isOverflow()) {
+            result = encoder.flush(pending);
+        }
+        if (result.isOverflow()) {
+            pending.position(start);
+            return -1;
+        }
+        schedule();
+        return pending.position() - start;
+    }
+
+    /** Input accepted but not yet written to the PTY. */
+    public synchronized int getPendingBytes() {
+        return pending.position();
+    }
+
+    /** Refuses further input and discards what is pending. */
+    public synchronized void close() {
+        closed = true;
+        pending.clear();
+    }
+
+    // makes room for bytes more in the pending buffer, growing it up to the limit
+    private boolean reserve(int bytes) {
+        if (closed || pending.position() + bytes > maxPendingBytes) {
+            return false;
+        }
+        if (pending.remaining() < bytes) {
+            int capacity = pending.capacity();
+            while (capacity - pending.position() < bytes) {
+                capacity *= 2;
+            }
+            ByteBuffer larger = ByteBuffer.allocate(Math.min(capacity, maxPendingBytes));
+            pending.flip();
+            pending = larger.put(pending);
+        }
+        return true;
+    }
+
+    private void schedule() {
+        if (writing) {
+            return;
+        }
+        writing = true;
+        try {
+            executor.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            // shutting down
+            writing = false;
+        }
+    }
+
+    private void drain() {
+        while (swap()) {
+            try {
+                byte[] bytes = draining.array();
+                for (int offset = 0; offset < draining.limit(); offset += WRITE_CHUNK_BYTES) {
+                    out.write(bytes, offset, Math.min(WRITE_CHUNK_BYTES, draining.limit() - offset));
+                }
+                out.flush();
+            } catch (IOException e) {
+                log.debug("Terminal " + name + " no longer takes input: " + e);
+                close();
+            }
+        }
+    }
+
+    // hands the pending input to the writer; false, ending the writer task, if there is none
+    private synchronized boolean swap() {
+        if (closed || pending.position() == 0) {
+            writing = false;
+            return false;
+        }
+        ByteBuffer filled = pending;
+        draining.clear();
+        if (draining.capacity() < filled.capacity()) {
+            draining = ByteBuffer.allocate(filled.capacity());
+        }
+        pending = draining;
+        draining = filled;
+        draining.flip();
+        return true;
+    }
+}
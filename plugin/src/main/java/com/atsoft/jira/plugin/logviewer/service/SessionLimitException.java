@@ -0,0 +1,17 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import java.io.IOException;
+
+/**
+ * A terminal could not be started because {@link LogViewerSettings#MAX_SESSIONS} or
+ * {@link LogViewerSettings#MAX_SESSIONS_PER_USER} sessions are already running. The message
+ * is meant for the user.
+ */
+public class SessionLimitException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public SessionLimitException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,56 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Traffic of one terminal session: input written to the shell, and frames sent to its
+ * clients (owner and viewers alike) with how long each send took to complete. Everything is
+ * also added to the plugin-wide {@link LogViewerMetrics}.
+ */
+public class SessionMetrics {
+    private static final int RATE_WINDOW_SECONDS = 10;
+
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+    private final AtomicLong framesSent = new AtomicLong();
+    private final RateMeter frameRate = new RateMeter(RATE_WINDOW_SECONDS);
+    private final LatencyHistogram sendLatency = new LatencyHistogram();
+
+    public long getBytesIn() {
+        return bytesIn.get();
+    }
+
+    public long getBytesOut() {
+        return bytesOut.get();
+    }
+
+    public long getFramesSent() {
+        return framesSent.get();
+    }
+
+    public double getFramesPerSecond() {
+        return frameRate.getRate();
+    }
+
+    /** From handing a frame or control message to the WebSocket until the send completed. */
+    public LatencyHistogram getSendLatency() {
+        return sendLatency;
+    }
+
+    void input(int bytes) {
+        bytesIn.addAndGet(bytes);
+        LogViewerMetrics.getInstance().terminalInput(bytes);
+    }
+
+    void frameSent(int bytes) {
+        bytesOut.addAndGet(bytes);
+        framesSent.incrementAndGet();
+        frameRate.mark(1);
+        LogViewerMetrics.getInstance().frameSent(bytes);
+    }
+
+    void sendCompleted(long nanos) {
+        sendLatency.record(nanos);
+        LogViewerMetrics.getInstance().sendCompleted(nanos);
+    }
+}
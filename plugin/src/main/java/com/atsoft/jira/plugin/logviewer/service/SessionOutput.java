@@ -0,0 +1,264 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.function.LongFunction;
+
+/**
+ * Bounded output queue and scrollback of one terminal session. The PTY reader encodes output
+ * into a ring buffer; each attached client reads from it through its own
+ * {@link OutputCoalescer} cursor. A client may fall at most {@code maxQueuedBytes} behind,
+ * after which its {@link OverflowPolicy} applies. Memory per session therefore stays fixed no
+ * matter how slow the client is.
+ * <p>
+ * The ring keeps the last {@code scrollbackBytes} of output even with no client attached, so a
+ * client that reconnects can {@link #attach attach} again at the last offset it received and
+ * get only what it missed.
+ */
+public class SessionOutput {
+
+    private final ScheduledExecutorService scheduler;
+    private final long flushMillis;
+    private final int maxFrameBytes;
+    private final int maxQueuedBytes;
+    private final OutputRingBuffer ring;
+    private final List<OutputCoalescer> subscribers = new ArrayList<>();
+    private final SessionMetrics metrics = new SessionMetrics();
+
+    // only touched by the producer thread
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final ByteBuffer staging;
+
+    private boolean closed;
+    private volatile long lastWriteTime = System.currentTimeMillis();
+
+    public SessionOutput(ScheduledExecutorService scheduler, long flushMillis, int maxFrameBytes, int maxQueuedBytes) {
+        this(scheduler, flushMillis, maxFrameBytes, maxQueuedBytes, maxQueuedBytes);
+    }
+
+    public SessionOutput(ScheduledExecutorService scheduler, long flushMillis, int maxFrameBytes, int maxQueuedBytes,
+            int scrollbackBytes) {
+        this.scheduler = scheduler;
+        this.flushMillis = flushMillis;
+        this.maxFrameBytes = maxFrameBytes;
+        this.maxQueuedBytes = maxQueuedBytes;
+        this.ring = new OutputRingBuffer(Math.max(maxQueuedBytes, scrollbackBytes));
+        this.staging = ByteBuffer.allocate(Math.min(maxFrameBytes, maxQueuedBytes));
+    }
+
+    /**
+     * Attaches a client that receives everything written from now on.
+     */
+    public OutputCoalescer attach(OutputCoalescer.FrameSink sink, OverflowPolicy policy) {
+        return attach(sink, policy, Long.MAX_VALUE, null);
+    }
+
+    /**
+     * Attaches a client starting at stream offset {@code fromOffset}. Output already written
+     * after that offset is replayed from the scrollback; if the offset has already been
+     * overwritten, the client starts at the oldest byte still held.
+     *
+     * @param greeting if not null, builds a control message from the actual start offset that
+     *                 is sent before any output
+     */
+    public synchronized OutputCoalescer attach(OutputCoalescer.FrameSink sink, OverflowPolicy policy,
+            long fromOffset, LongFunction<String> greeting) {
+        long start = Math.max(ring.start(), Math.min(fromOffset, ring.end()));
+        long limit = Math.max(maxQueuedBytes, ring.end() - start);
+        OutputCoalescer subscriber = new OutputCoalescer(this, sink, policy, start, limit, flushMillis, maxFrameBytes);
+        subscribers.add(subscriber);
+        if (greeting != null) {
+            subscriber.sendControl(greeting.apply(start));
+        }
+        subscriber.onAppend();
+        return subscriber;
+    }
+
+    /**
+     * Attaches a client that is sent {@code snapshot}, e.g. a picture of the screen, instead
+     * of the scrollback, and then everything written from now on. The snapshot is not part of
+     * the stream: the greeting's offset is set back by its length, so a client counting the
+     * bytes it receives arrives at the offset of the next output byte.
+     */
+    public synchronized OutputCoalescer attach(OutputCoalescer.FrameSink sink, OverflowPolicy policy,
+            ByteBuffer snapshot, LongFunction<String> greeting) {
+        long start = ring.end();
+        OutputCoalescer subscriber = new OutputCoalescer(this, sink, policy, start, maxQueuedBytes, flushMillis,
+                maxFrameBytes);
+        subscribers.add(subscriber);
+        if (greeting != null) {
+            subscriber.sendControl(greeting.apply(start - snapshot.remaining()));
+        }
+        subscriber.sendSnapshot(snapshot);
+        return subscriber;
+    }
+
+    public synchronized void detach(OutputCoalescer subscriber) {
+        subscribers.remove(subscriber);
+        subscriber.close();
+        notifyAll();
+    }
+
+    /**
+     * Detaches the client sending through {@code sink}, if it is attached.
+     */
+    public synchronized void detach(OutputCoalescer.FrameSink sink) {
+        for (OutputCoalescer subscriber : new ArrayList<>(subscribers)) {
+            if (subscriber.sink() == sink) {
+                detach(subscriber);
+            }
+        }
+    }
+
+    public synchronized int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /** When output was last written, or when this was created if nothing has been written. */
+    public long getLastWriteTime() {
+        return lastWriteTime;
+    }
+
+    /**
+     * Disconnects every client, e.g. because the session is being killed.
+     */
+    public synchronized void disconnectAll(String reason) {
+        for (OutputCoalescer subscriber : subscribers) {
+            subscriber.close();
+            scheduler.execute(() -> subscriber.disconnect(reason));
+        }
+        subscribers.clear();
+        notifyAll();
+    }
+
+    /** Offset just past the newest byte written. */
+    public synchronized long getEndOffset() {
+        return ring.end();
+    }
+
+    /**
+     * Appends output. Must only be called by one producer at a time: the PTY reader, or a
+     * {@link ScreenRelay} that serializes the reader and its frame timer. The text
+     * is fully consumed before this returns, so the caller may reuse its buffer. Blocks while a
+     * {@link OverflowPolicy#PAUSE} client is too far behind.
+     */
+    public void write(CharSequence text) throws InterruptedException {
+        CharBuffer in = text instanceof CharBuffer ? (CharBuffer) text : CharBuffer.wrap(text);
+        CoderResult result;
+        do {
+            staging.clear();
+            result = encoder.encode(in, staging, false);
+            staging.flip();
+            if (staging.hasRemaining() && !append(staging)) {
+                return;
+            }
+        } while (result.isOverflow());
+    }
+
+    /**
+     * Stops accepting output. Clients still receive what was already queued.
+     */
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    /**
+     * How many bytes can be written right now without pausing the producer.
+     */
+    public synchronized int writableBytes() {
+        int writable = maxQueuedBytes;
+        for (OutputCoalescer subscriber : subscribers) {
+            if (subscriber.policy() == OverflowPolicy.PAUSE) {
+                writable = (int) Math.max(0, Math.min(writable, subscriber.limit() - subscriber.queuedBytes()));
+            }
+        }
+        return writable;
+    }
+
+    /**
+     * Bytes written but not yet sent to the slowest client.
+     */
+    public synchronized long getQueuedBytes() {
+        long queued = 0;
+        for (OutputCoalescer subscriber : subscribers) {
+            queued = Math.max(queued, subscriber.queuedBytes());
+        }
+        return queued;
+    }
+
+    /** Traffic of this session's clients, counted as frames are sent. */
+    public SessionMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Bytes discarded so far for clients using {@link OverflowPolicy#DROP}.
+     */
+    public synchronized long getDroppedBytes() {
+        long dropped = 0;
+        for (OutputCoalescer subscriber : subscribers) {
+            dropped += subscriber.droppedBytes();
+        }
+        return dropped;
+    }
+
+    private synchronized boolean append(ByteBuffer chunk) throws InterruptedException {
+        int length = chunk.remaining();
+        while (!closed && mustPause(length)) {
+            wait();
+        }
+        if (closed) {
+            return false;
+        }
+        for (int i = subscribers.size() - 1; i >= 0; i--) {
+            OutputCoalescer subscriber = subscribers.get(i);
+            if (!subscriber.makeRoom(length)) {
+                subscribers.remove(i);
+                scheduler.execute(subscriber::disconnect);
+            }
+        }
+        ring.append(chunk);
+        lastWriteTime = System.currentTimeMillis();
+        for (OutputCoalescer subscriber : subscribers) {
+            subscriber.onAppend();
+        }
+        return true;
+    }
+
+    private boolean mustPause(int length) {
+        for (OutputCoalescer subscriber : subscribers) {
+            if (subscriber.policy() == OverflowPolicy.PAUSE && subscriber.queuedBytes() + length > subscriber.limit()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // --- used by OutputCoalescer, always with this monitor held ---
+
+    OutputRingBuffer ring() {
+        return ring;
+    }
+
+    ScheduledExecutorService scheduler() {
+        return scheduler;
+    }
+
+    int maxQueuedBytes() {
+        return maxQueuedBytes;
+    }
+
+    SessionMetrics metrics() {
+        return metrics;
+    }
+}
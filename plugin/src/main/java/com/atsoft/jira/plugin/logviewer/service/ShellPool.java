@@ -0,0 +1,178 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Shells started ahead of time, so that opening a terminal does not wait for a login shell to
+ * run the profile scripts. The shell's first output, e.g. the prompt, waits in the PTY until
+ * a session takes the shell and starts reading it.
+ * <p>
+ * A background thread refills the pool after every {@link #take()} and replaces shells that
+ * died or were kept longer than {@code maxAgeMillis}, which also picks up changed profile
+ * scripts eventually. If starting a shell fails, the pool stays short until the next take
+ * instead of retrying in a loop.
+ *
+ * @param <P> the kind of process, a {@code PtyProcess} in production
+ */
+public final class ShellPool<P extends Process> {
+    private static final Logger log = LoggerFactory.getLogger(ShellPool.class);
+    private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+    private final Callable<P> spawner;
+    private final int size;
+    private final long maxAgeMillis;
+    // oldest first, and taken first: its profile scripts have had the longest to finish; guarded by this
+    private final Deque<Shell<P>> idle = new ArrayDeque<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final ScheduledExecutorService refiller = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "jira-log-viewer-shell-pool-" + POOL_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+    private boolean closed;
+
+    /**
+     * @param size         shells kept ready; 0 disables the pool
+     * @param maxAgeMillis how long a shell may wait in the pool; 0 for no limit
+     */
+    public ShellPool(Callable<P> spawner, int size, long maxAgeMillis) {
+        this.spawner = spawner;
+        this.size = Math.max(size, 0);
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /** Starts filling the pool and, if shells expire, the periodic replacement of old ones. */
+    public void start() {
+        if (size == 0) {
+            return;
+        }
+        refill();
+        if (maxAgeMillis > 0) {
+            long period = Math.max(maxAgeMillis / 4, 1000);
+            refiller.scheduleWithFixedDelay(this::replaceExpired, period, period, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Hands out a ready shell and has a new one started in its place.
+     *
+     * @return null if the pool is empty or disabled; the caller then starts a shell itself
+     */
+    public P take() {
+        if (size == 0) {
+            return null;
+        }
+        P process = null;
+        synchronized (this) {
+            while (!idle.isEmpty() && process == null) {
+                Shell<P> shell = idle.pollFirst();
+                if (shell.process.isAlive()) {
+                    process = shell.process;
+                }
+            }
+        }
+        (process != null ? hits : misses).increment();
+        refill();
+        return process;
+    }
+
+    public synchronized int getIdleCount() {
+        return idle.size();
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /** Terminals opened with a pooled shell. */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /** Terminals that had to start their own shell because the pool was empty. */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /** Stops refilling and kills the shells still waiting. */
+    public void shutdown() {
+        refiller.shutdownNow();
+        synchronized (this) {
+            closed = true;
+            for (Shell<P> shell : idle) {
+                ProcessTree.of(shell.process).destroyForcibly();
+            }
+            idle.clear();
+        }
+    }
+
+    private void refill() {
+        try {
+            refiller.execute(this::fill);
+        } catch (RejectedExecutionException e) {
+            // shut down
+        }
+    }
+
+    // runs on the refiller thread only, so there is never more than one shell starting
+    private void fill() {
+        while (needsShell()) {
+            P process;
+            try {
+                process = spawner.call();
+            } catch (Exception e) {
+                log.warn("Could not start a shell for the pool: " + e);
+                return;
+            }
+            synchronized (this) {
+                if (closed) {
+                    process.destroyForcibly();
+                    return;
+                }
+                idle.addLast(new Shell<>(process, System.currentTimeMillis()));
+            }
+        }
+    }
+
+    private synchronized boolean needsShell() {
+        return !closed && idle.size() < size;
+    }
+
+    private void replaceExpired() {
+        long oldest = System.currentTimeMillis() - maxAgeMillis;
+        synchronized (this) {
+            for (Iterator<Shell<P>> it = idle.iterator(); it.hasNext(); ) {
+                Shell<P> shell = it.next();
+                if (shell.startTime < oldest || !shell.process.isAlive()) {
+                    it.remove();
+                    // nobody waits for it to exit, and a login shell may well ignore SIGTERM
+                    ProcessTree.of(shell.process).destroyForcibly();
+                }
+            }
+        }
+        fill();
+    }
+
+    private static final class Shell<P extends Process> {
+        final P process;
+        final long startTime;
+
+        Shell(P process, long startTime) {
+            this.process = process;
+            this.startTime = startTime;
+        }
+    }
+}
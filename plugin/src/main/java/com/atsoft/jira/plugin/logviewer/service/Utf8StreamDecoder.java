@@ -0,0 +1,70 @@
+package com.atsoft.jira.plugin.logviewer.service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Incremental UTF-8 decoder for one output stream. Bytes are read straight into a reused
+ * buffer, and a multibyte character cut off at the end of a read is kept for the next read
+ * instead of being replaced with U+FFFD. Nothing is allocated per read.
+ * <p>
+ * Not thread-safe; each reader owns its own instance.
+ */
+public class Utf8StreamDecoder {
+
+    private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final ByteBuffer bytes;
+    private final CharBuffer chars;
+    private boolean endOfInput;
+
+    public Utf8StreamDecoder(int bufferSize) {
+        // a UTF-8 sequence is at most 4 bytes, so there is always room to make progress
+        this.bytes = ByteBuffer.allocate(Math.max(bufferSize, 8));
+        // every decoded char consumes at least one byte
+        this.chars = CharBuffer.allocate(bytes.capacity());
+    }
+
+    /**
+     * Reads the next chunk from {@code in} and decodes it.
+     *
+     * @return the decoded characters, valid only until the next call, or {@code null} at end of stream
+     */
+    public CharBuffer read(InputStream in) throws IOException {
+        if (endOfInput) {
+            return null;
+        }
+        int read = in.read(bytes.array(), bytes.position(), bytes.remaining());
+        chars.clear();
+        if (read == -1) {
+            endOfInput = true;
+            bytes.flip();
+            decoder.decode(bytes, chars, true);
+            decoder.flush(chars);
+            bytes.clear();
+            chars.flip();
+            return chars.hasRemaining() ? chars : null;
+        }
+
+        bytes.position(bytes.position() + read);
+        bytes.flip();
+        decoder.decode(bytes, chars, false);
+        // keep an incomplete trailing sequence for the next read
+        bytes.compact();
+        chars.flip();
+        return chars;
+    }
+
+    /**
+     * Number of bytes of an incomplete character carried over to the next read.
+     */
+    public int pendingBytes() {
+        return bytes.position();
+    }
+}
@@ -0,0 +1,94 @@
+package com.atsoft.jira.plugin.logviewer.ws;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.websocket.Session;
+import java.util.ArrayDeque;
+
+/**
+ * Sends the text messages of one WebSocket session asynchronously, one at a time, since an
+ * endpoint allows only one message in flight. Messages are queued in order; each one's
+ * callback runs once it has been sent or dropped, so that the caller can hold back what it
+ * sends next until then.
+ */
+final class AsyncTextSender {
+    private static final Logger log = LoggerFactory.getLogger(AsyncTextSender.class);
+
+    private static class Pending {
+        final String message;
+        final Runnable onSent;
+
+        Pending(String message, Runnable onSent) {
+            this.message = message;
+            this.onSent = onSent;
+        }
+    }
+
+    private final Session session;
+    private final String content;
+    // guarded by this
+    private final ArrayDeque<Pending> queue = new ArrayDeque<>();
+    private boolean sending;
+    private boolean pumping;
+
+    /**
+     * @param content what the messages are, for the log, e.g. {@code "search results"}
+     */
+    AsyncTextSender(Session session, String content) {
+        this.session = session;
+        this.content = content;
+    }
+
+    /** Queues a message; {@code onSent} runs once it has been sent or dropped. */
+    void send(String message, Runnable onSent) {
+        synchronized (this) {
+            queue.add(new Pending(message, onSent));
+        }
+        pump();
+    }
+
+    void send(String message) {
+        send(message, () -> { });
+    }
+
+    // a loop rather than recursion, as sends may complete inline
+    private void pump() {
+        synchronized (this) {
+            if (pumping) {
+                return;
+            }
+            pumping = true;
+        }
+        while (true) {
+            Pending next;
+            synchronized (this) {
+                if (sending || queue.isEmpty()) {
+                    pumping = false;
+                    return;
+                }
+                next = queue.poll();
+                sending = true;
+            }
+            try {
+                session.getAsyncRemote().sendText(next.message, result -> {
+                    if (!result.isOK()) {
+                        log.debug("Dropping " + content + " for closed websocket: " + session.getId());
+                    }
+                    sent(next);
+                });
+            } catch (IllegalStateException e) {
+                log.debug("Dropping " + content + " for closed websocket: " + session.getId());
+                sent(next);
+            }
+        }
+    }
+
+    private void sent(Pending pending) {
+        synchronized (this) {
+            sending = false;
+        }
+        pending.onSent.run();
+        pump();
+    }
+}
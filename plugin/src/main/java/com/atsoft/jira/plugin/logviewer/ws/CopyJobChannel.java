@@ -0,0 +1,80 @@
+package com.atsoft.jira.plugin.logviewer.ws;
+
+import com.atsoft.jira.plugin.logviewer.helper.IssueCopyResult;
+import com.atsoft.jira.plugin.logviewer.service.IssueCopyJob;
+import com.atsoft.jira.plugin.logviewer.service.IssueCopyJobService;
+
+import java.util.Locale;
+
+/**
+ * Progress of an issue copy job on a {@link MuxConnection}, as JSON control messages: the
+ * job's state when the channel opens, one message per copied issue, and a last one when the
+ * job is done, after which the server closes the channel.
+ */
+class CopyJobChannel extends MuxChannel implements IssueCopyJob.Listener {
+    // not guarded by this: close() runs while the job's lock may be held by onFinish
+    private volatile IssueCopyJob job;
+
+    CopyJobChannel(int id, MuxConnection connection) {
+        super(id, connection);
+    }
+
+    /**
+     * Subscribes to the job with the given id.
+     *
+     * @return false if there is no such job or it is not {@code owner}'s
+     */
+    boolean open(String owner, String jobId) {
+        IssueCopyJob found = IssueCopyJobService.getInstance().getJob(jobId.trim());
+        if (found == null || owner == null || !owner.equals(found.getUser().getUsername())) {
+            return false;
+        }
+        job = found;
+        send(status("status", found).append('}'));
+        found.subscribe(this);
+        return true;
+    }
+
+    @Override
+    public void onProgress(IssueCopyJob progressed, IssueCopyResult result) {
+        StringBuilder message = status("progress", progressed);
+        message.append(",\"issueKey\":");
+        Json.string(message, result.getSourceIssueKey()).append(",\"status\":\"").append(result.getStatus())
+                .append('"');
+        if (result.getTargetIssueKey() != null) {
+            message.append(",\"targetIssueKey\":");
+            Json.string(message, result.getTargetIssueKey());
+        }
+        message.append(",\"errors\":");
+        Json.strings(message, result.getErrors()).append('}');
+        send(message);
+    }
+
+    @Override
+    public void onFinish(IssueCopyJob finished) {
+        send(status("finished", finished).append('}'));
+        connection.closeChannel(id, "Job " + finished.getState().name().toLowerCase(Locale.ROOT));
+    }
+
+    @Override
+    void close() {
+        IssueCopyJob subscribed = job;
+        job = null;
+        if (subscribed != null) {
+            subscribed.unsubscribe(this);
+        }
+    }
+
+    private static StringBuilder status(String type, IssueCopyJob job) {
+        return new StringBuilder(256).append("{\"type\":\"").append(type)
+                .append("\",\"state\":\"").append(job.getState())
+                .append("\",\"total\":").append(job.getTotal())
+                .append(",\"completed\":").append(job.getCompleted())
+                .append(",\"succeeded\":").append(job.getSucceeded());
+    }
+
+    // not sendText: progress comes from several copy threads, so the frame buffer is not reused
+    private void send(StringBuilder message) {
+        connection.send(MuxProtocol.encode(id, MuxProtocol.CONTROL, message.toString()), () -> { });
+    }
+}
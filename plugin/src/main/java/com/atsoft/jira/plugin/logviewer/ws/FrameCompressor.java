@@ -0,0 +1,126 @@
+package com.atsoft.jira.plugin.logviewer.ws;
+
+import com.atsoft.jira.plugin.logviewer.service.LogViewerMetrics;
+import com.atsoft.jira.plugin.logviewer.service.LogViewerSettings;
+
+import jakarta.websocket.Session;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Deflates the output frames of one stream for a client that connected with
+ * {@code ?compress=deflate}. The deflate context carries over from frame to frame, each frame
+ * ending with a sync flush, so log prefixes and prompts seen before shrink to a few bytes.
+ * Frames below {@link LogViewerSettings#OUTPUT_COMPRESSION_MIN_BYTES} are not compressed;
+ * interactive echo gains nothing from it. Neither are frames that deflate does not shrink,
+ * such as binary or already compressed output; the deflater is then reset to the last 32 KB
+ * the client did inflate, so that both sides keep the same history.
+ * <p>
+ * A compressed frame is {@code u32 uncompressed length | raw deflate data}; the client feeds
+ * the data of all compressed frames of the stream, in order, to one inflater. The returned
+ * buffer is reused, which is safe because the output queues have at most one frame in flight.
+ * The deflater, a few hundred KB of native memory, is only created for a stream that
+ * actually has a frame to compress.
+ */
+final class FrameCompressor {
+    private static final String PARAMETER = "compress";
+    private static final String DEFLATE = "deflate";
+    private static final int LENGTH_BYTES = 4;
+    private static final int HISTORY_BYTES = 32 * 1024;
+
+    private final int minBytes;
+    private final int level;
+    private Deflater deflater;
+    private ByteBuffer compressed;
+    // the end of the output sent compressed, oldest first: the client's inflater window
+    private byte[] history;
+    private int historyLength;
+    private boolean closed;
+
+    FrameCompressor() {
+        this(LogViewerSettings.OUTPUT_COMPRESSION_MIN_BYTES, LogViewerSettings.OUTPUT_COMPRESSION_LEVEL);
+    }
+
+    FrameCompressor(int minBytes, int level) {
+        this.minBytes = minBytes;
+        this.level = level;
+    }
+
+    /** Whether the client asked for compressed output and compression is enabled. */
+    static boolean isRequested(Session session) {
+        List<String> values = session.getRequestParameterMap().get(PARAMETER);
+        return values != null && values.contains(DEFLATE) && LogViewerSettings.OUTPUT_COMPRESSION_LEVEL > 0;
+    }
+
+    /**
+     * Compresses {@code frame}, leaving its position unchanged.
+     *
+     * @return the compressed frame, valid until the next call, or null if {@code frame} is to
+     *         be sent as it is
+     */
+    synchronized ByteBuffer compress(ByteBuffer frame) {
+        int length = frame.remaining();
+        if (closed || length < minBytes) {
+            return null;
+        }
+        if (deflater == null) {
+            deflater = new Deflater(level, true);
+            history = new byte[HISTORY_BYTES];
+        }
+        if (compressed == null || compressed.capacity() < LENGTH_BYTES + length / 2) {
+            compressed = ByteBuffer.allocate(LENGTH_BYTES + length / 2 + 64);
+        }
+        compressed.clear();
+        compressed.putInt(length);
+        deflater.setInput(frame.duplicate());
+        // as long as the output fills the buffer completely, there may be more of it
+        while (true) {
+            deflater.deflate(compressed, Deflater.SYNC_FLUSH);
+            if (compressed.hasRemaining()) {
+                break;
+            }
+            compressed = grow(compressed);
+        }
+        if (compressed.position() >= length) {
+            forget();
+            return null;
+        }
+        remember(frame);
+        compressed.flip();
+        LogViewerMetrics.getInstance().frameCompressed(length, compressed.remaining());
+        return compressed;
+    }
+
+    /** Releases the deflater; later frames are passed through uncompressed. */
+    synchronized void close() {
+        closed = true;
+        if (deflater != null) {
+            deflater.end();
+            deflater = null;
+            history = null;
+        }
+    }
+
+    private void remember(ByteBuffer frame) {
+        int added = Math.min(frame.remaining(), HISTORY_BYTES);
+        int kept = Math.min(historyLength, HISTORY_BYTES - added);
+        System.arraycopy(history, historyLength - kept, history, 0, kept);
+        frame.get(frame.limit() - added, history, kept, added);
+        historyLength = kept + added;
+    }
+
+    // drops the frame just deflated, which the client will not inflate
+    private void forget() {
+        deflater.reset();
+        if (historyLength > 0) {
+            deflater.setDictionary(history, 0, historyLength);
+        }
+    }
+
+    private static ByteBuffer grow(ByteBuffer full) {
+        ByteBuffer larger = ByteBuffer.allocate(full.capacity() * 2);
+        full.flip();
+        return larger.put(full);
+    }
+}
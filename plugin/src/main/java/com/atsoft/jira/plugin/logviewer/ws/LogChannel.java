@@ -0,0 +1,47 @@
+package com.atsoft.jira.plugin.logviewer.ws;
+
+import com.atsoft.jira.plugin.logviewer.service.LogFollower;
+import com.atsoft.jira.plugin.logviewer.service.LogStreamFilter;
+import com.atsoft.jira.plugin.logviewer.service.LogTailService;
+import com.atsoft.jira.plugin.logviewer.service.LogViewerSettings;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A followed log file on a {@link MuxConnection}. It is opened with {@code <file>[?<filter>]};
+ * an INPUT frame replaces the filter without reopening the channel.
+ */
+class LogChannel extends MuxChannel {
+    private final LogTailService logTailService = LogTailService.getInstance();
+    private LogFollower follower;
+
+    LogChannel(int id, MuxConnection connection) {
+        super(id, connection);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the filter is invalid
+     */
+    synchronized void open(String argument) throws IOException {
+        int query = argument.indexOf('?');
+        String fileName = query < 0 ? argument : argument.substring(0, query);
+        LogStreamFilter filter = query < 0 ? null : LogStreamFilter.parse(argument.substring(query + 1));
+        follower = logTailService.follow(fileName, LogViewerSettings.TAIL_INITIAL_BYTES, filter, this);
+    }
+
+    @Override
+    synchronized void input(ByteBuffer payload) {
+        if (follower != null) {
+            follower.setFilter(MuxProtocol.text(payload), LogViewerSettings.TAIL_INITIAL_BYTES);
+        }
+    }
+
+    @Override
+    synchronized void close() {
+        if (follower != null) {
+            logTailService.unfollow(follower);
+            follower = null;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.atsoft.jira.plugin.logviewer.ws;
+
+import com.atsoft.jira.plugin.logviewer.service.LogFiles;
+import com.atsoft.jira.plugin.logviewer.service.LogFilter;
+import com.atsoft.jira.plugin.logviewer.service.LogMerge;
+import com.atsoft.jira.plugin.logviewer.service.LogMergeService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.OnClose;
+import jakarta.websocket.OnError;
+import jakarta.websocket.OnOpen;
+import jakarta.websocket.Session;
+import jakarta.websocket.server.ServerEndpoint;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+
+/**
+ * Streams one log file of all Data Center nodes merged by time, see {@link LogMerge}:
+ * {@code /ws/merge?file=atlassian-jira.log&since=2024-05-14T14:30&follow=true}. Without
+ * {@code since}, a followed merge starts near the end of the files and one that is not
+ * followed at their start.
+ * <p>
+ * The first message is {@code {"nodes":[..]}}, the nodes that have the file. Lines follow in
+ * batches, {@code {"lines":[{"node":..,"text":..},..]}}; a merge that is not followed ends
+ * with {@code {"done":true}}, or {@code {"done":true,"error":..}} if reading failed. Only
+ * system administrators may merge logs.
+ * <p>
+ * Messages are sent asynchronously, one at a time, and the next batch is read only once the
+ * previous one was sent, so a slow client slows its merge down instead of holding up the
+ * merge pool.
+ */
+@ServerEndpoint("/ws/merge")
+public class LogMergeWebSocket {
+    private static final Logger log = LoggerFactory.getLogger(LogMergeWebSocket.class);
+
+    private final LogMergeService logMergeService = LogMergeService.getInstance();
+    private LogMerge merge;
+    // queues the nodes message, at most one batch and the done message
+    private AsyncTextSender sender;
+
+    @OnOpen
+    public void onOpen(Session session) {
+        if (!WebSocketAccess.requireSystemAdmin(session)) {
+            return;
+        }
+        sender = new AsyncTextSender(session, "merged lines");
+        String fileName = getParameter(session, "file", "atlassian-jira.log");
+        String since = getParameter(session, "since", "");
+        boolean follow = Boolean.parseBoolean(getParameter(session, "follow", "false"));
+        try {
+            long from = since.isBlank() ? LogFilter.UNBOUNDED
+                    : LogFiles.toMillis(LocalDateTime.parse(since.trim().replace(' ', 'T')));
+            start(session, logMergeService.open(fileName, from, follow));
+        } catch (DateTimeParseException e) {
+            close(session, CloseReason.CloseCodes.CANNOT_ACCEPT, "Invalid time: " + since);
+        } catch (IOException e) {
+            log.warn("Cannot merge log file " + fileName + ": " + e.getMessage());
+            close(session, CloseReason.CloseCodes.CANNOT_ACCEPT, "Cannot merge " + fileName);
+        }
+    }
+
+    private synchronized void start(Session session, LogMerge opened) {
+        merge = opened;
+        StringBuilder nodes = new StringBuilder("{\"nodes\":");
+        Json.strings(nodes, opened.getNodes()).append('}');
+        sender.send(nodes.toString());
+        log.info("WebSocket " + session.getId() + " merging " + opened.getNodes().size() + " nodes"
+                + (opened.isFollowing() ? ", following" : ""));
+        logMergeService.start(opened, new LogMerge.Listener() {
+            private final StringBuilder batch = new StringBuilder(16 * 1024);
+
+            @Override
+            public void onLine(String node, String text) {
+                batch.append(batch.length() == 0 ? "{\"lines\":[" : ",").append("{\"node\":");
+                Json.string(batch, node).append(",\"text\":");
+                Json.string(batch, text).append('}');
+            }
+
+            @Override
+            public void onBatch(Runnable onDelivered) {
+                sender.send(batch.append("]}").toString(), onDelivered);
+                batch.setLength(0);
+            }
+
+            @Override
+            public void onFinish(Exception error) {
+                if (error != null) {
+                    StringBuilder message = new StringBuilder("{\"done\":true,\"error\":");
+                    Json.string(message, String.valueOf(error.getMessage())).append('}');
+                    sender.send(message.toString());
+                } else if (!opened.isFollowing()) {
+                    sender.send("{\"done\":true}");
+                }
+            }
+        });
+    }
+
+    @OnClose
+    public void onClose(Session session) {
+        stop();
+    }
+
+    @OnError
+    public void onError(Session session, Throwable t) {
+        log.error("WebSocket error", t);
+        stop();
+    }
+
+    private synchronized void stop() {
+        if (merge != null) {
+            merge.close();
+            merge = null;
+        }
+    }
+
+    private static void close(Session session, CloseReason.CloseCode code, String reason) {
+        try {
+            session.close(new CloseReason(code, reason));
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    private static String getParameter(Session session, String name, String defaultValue) {
+        List<String> values = session.getRequestParameterMap().get(name);
+        return values == null || values.isEmpty() ? defaultValue : values.get(0);
+    }
+}
@@ -0,0 +1,161 @@
+package com.atsoft.jira.plugin.logviewer.ws;
+
+import com.atsoft.jira.plugin.logviewer.service.LogMatch;
+import com.atsoft.jira.plugin.logviewer.service.LogSearch;
+import com.atsoft.jira.plugin.logviewer.service.LogSearchService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.OnClose;
+import jakarta.websocket.OnError;
+import jakarta.websocket.OnOpen;
+import jakarta.websocket.Session;
+import jakarta.websocket.server.ServerEndpoint;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Searches a log file and streams the matches in file order:
+ * {@code /ws/search?file=atlassian-jira.log&q=NullPointerException&limit=500&context=2}.
+ * Repeating {@code file} searches several files at once, such as rotated and gzipped
+ * archives, up to {@value #MAX_FILES} different ones; matches of different files are
+ * interleaved, each file's in its own order, and {@code limit} applies per file.
+ * <p>
+ * Each match is a text message {@code {"file":..,"line":..,"text":..,"before":[..],"after":[..]}},
+ * and the last one is {@code {"done":true,"matches":..,"complete":..}} once every file is
+ * done. Closing the socket cancels the search. Only system administrators may search.
+ * <p>
+ * Messages are sent asynchronously, one at a time. A file's search hands over its next match
+ * only once the previous one was sent, so a slow client pauses its searches instead of
+ * holding up the search pool.
+ */
+@ServerEndpoint("/ws/search")
+public class LogSearchWebSocket {
+    private static final Logger log = LoggerFactory.getLogger(LogSearchWebSocket.class);
+    private static final int DEFAULT_LIMIT = 1000;
+    private static final int MAX_LIMIT = 10000;
+    private static final int MAX_CONTEXT = 20;
+    private static final int MAX_FILES = 20;
+
+    private final LogSearchService logSearchService = LogSearchService.getInstance();
+    private List<LogSearch> searches;
+    // queues at most one match per file and the done message
+    private AsyncTextSender sender;
+
+    @OnOpen
+    public void onOpen(Session session) {
+        if (!WebSocketAccess.requireSystemAdmin(session)) {
+            return;
+        }
+        sender = new AsyncTextSender(session, "search results");
+        List<String> fileNames = session.getRequestParameterMap().get("file");
+        if (fileNames == null || fileNames.isEmpty()) {
+            fileNames = List.of("atlassian-jira.log");
+        }
+        if (fileNames.size() > MAX_FILES) {
+            close(session, CloseReason.CloseCodes.CANNOT_ACCEPT, "At most " + MAX_FILES + " files can be searched");
+            return;
+        }
+        if (new HashSet<>(fileNames).size() < fileNames.size()) {
+            close(session, CloseReason.CloseCodes.CANNOT_ACCEPT, "Each file can be searched only once");
+            return;
+        }
+        String query = getParameter(session, "q", "");
+        int limit = Math.max(1, Math.min(MAX_LIMIT, getInt(session, "limit", DEFAULT_LIMIT)));
+        int context = Math.min(MAX_CONTEXT, getInt(session, "context", 0));
+        try {
+            int flags = Boolean.parseBoolean(getParameter(session, "ignoreCase", "false"))
+                    ? Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE : 0;
+            Pattern pattern = Pattern.compile(query, flags);
+            start(fileNames, pattern, limit, context);
+        } catch (PatternSyntaxException e) {
+            close(session, CloseReason.CloseCodes.CANNOT_ACCEPT, "Invalid pattern");
+        } catch (IllegalArgumentException | IOException e) {
+            log.warn("Cannot search log files " + fileNames + ": " + e.getMessage());
+            close(session, CloseReason.CloseCodes.CANNOT_ACCEPT, "Cannot search " + String.join(", ", fileNames));
+        }
+    }
+
+    private synchronized void start(List<String> fileNames, Pattern pattern, int limit, int context)
+            throws IOException {
+        AtomicInteger remaining = new AtomicInteger(fileNames.size());
+        AtomicInteger matches = new AtomicInteger();
+        AtomicBoolean complete = new AtomicBoolean(true);
+        AtomicBoolean limitReached = new AtomicBoolean();
+        searches = logSearchService.search(fileNames, pattern, limit, context, fileName -> new LogSearch.Listener() {
+            @Override
+            public void onMatch(LogMatch match, Runnable onDelivered) {
+                StringBuilder message = new StringBuilder(256);
+                message.append("{\"file\":");
+                Json.string(message, fileName).append(",\"line\":").append(match.getLine()).append(",\"text\":");
+                Json.string(message, match.getText()).append(",\"before\":");
+                Json.strings(message, match.getBefore()).append(",\"after\":");
+                Json.strings(message, match.getAfter()).append('}');
+                sender.send(message.toString(), onDelivered);
+            }
+
+            @Override
+            public void onFinish(LogSearch finished) {
+                matches.addAndGet(finished.getMatchCount());
+                if (!finished.isComplete()) {
+                    complete.set(false);
+                }
+                if (finished.isLimitReached()) {
+                    limitReached.set(true);
+                }
+                if (finished.getError() != null) {
+                    log.warn("Search of " + fileName + " failed: " + finished.getError().getMessage());
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    sender.send("{\"done\":true,\"matches\":" + matches.get() + ",\"complete\":" + complete.get()
+                            + ",\"limitReached\":" + limitReached.get() + "}");
+                }
+            }
+        });
+    }
+
+    @OnClose
+    public void onClose(Session session) {
+        stop();
+    }
+
+    @OnError
+    public void onError(Session session, Throwable t) {
+        log.error("WebSocket error", t);
+        stop();
+    }
+
+    private synchronized void stop() {
+        if (searches != null) {
+            searches.forEach(LogSearch::cancel);
+            searches = null;
+        }
+    }
+
+    private static void close(Session session, CloseReason.CloseCode code, String reason) {
+        try {
+            session.close(new CloseReason(code, reason));
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    private static String getParameter(Session session, String name, String defaultValue) {
+        List<String> values = session.getRequestParameterMap().get(name);
+        return values == null || values.isEmpty() ? defaultValue : values.get(0);
+    }
+
+    private static int getInt(Session session, String name, int defaultValue) {
+        try {
+            return Math.max(0, Integer.parseInt(getParameter(session, name, String.valueOf(defaultValue))));
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+}
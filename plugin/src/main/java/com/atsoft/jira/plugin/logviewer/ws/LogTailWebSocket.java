@@ -0,0 +1,95 @@
+package com.atsoft.jira.plugin.logviewer.ws;
+
+import com.atsoft.jira.plugin.logviewer.service.LogFollower;
+import com.atsoft.jira.plugin.logviewer.service.LogStreamFilter;
+import com.atsoft.jira.plugin.logviewer.service.LogTailService;
+import com.atsoft.jira.plugin.logviewer.service.LogViewerSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.OnClose;
+import jakarta.websocket.OnError;
+import jakarta.websocket.OnMessage;
+import jakarta.websocket.OnOpen;
+import jakarta.websocket.Session;
+import jakarta.websocket.server.ServerEndpoint;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Streams a log file from Jira's log directory: {@code /ws/log?file=atlassian-jira.log}.
+ * File content is sent as binary frames; {@code log:rotated} and {@code log:truncated} text
+ * messages mark where the file was replaced. {@code &compress=deflate} asks for compressed
+ * content, see {@link WebSocketFrameSink}.
+ * <p>
+ * The filter parameters of {@link LogStreamFilter#parse}, e.g. {@code &level=ERROR&context=2},
+ * have only the selected lines sent. A text message from the client replaces the filter with
+ * the one it holds in the same form, or removes it if empty; the reply is {@code log:filter}
+ * before the newly filtered lines, or {@code log:invalid-filter:<reason>}.
+ * <p>
+ * Like the REST resources, only system administrators may follow log files; the socket of
+ * anyone else is closed with {@code VIOLATED_POLICY}.
+ */
+@ServerEndpoint("/ws/log")
+public class LogTailWebSocket {
+    private static final Logger log = LoggerFactory.getLogger(LogTailWebSocket.class);
+    private final LogTailService logTailService = LogTailService.getInstance();
+    private LogFollower follower;
+    private WebSocketFrameSink sink;
+
+    @OnOpen
+    public void onOpen(Session session) {
+        if (!WebSocketAccess.requireSystemAdmin(session)) {
+            return;
+        }
+        List<String> files = session.getRequestParameterMap().get("file");
+        String fileName = files == null || files.isEmpty() ? "atlassian-jira.log" : files.get(0);
+        sink = new WebSocketFrameSink(session);
+        String reason;
+        try {
+            LogStreamFilter filter = LogStreamFilter.parse(session.getQueryString());
+            follower = logTailService.follow(fileName, LogViewerSettings.TAIL_INITIAL_BYTES, filter, sink);
+            log.info("WebSocket " + session.getId() + " following " + fileName + (filter != null ? ", " + filter : ""));
+            return;
+        } catch (IllegalArgumentException e) {
+            reason = e.getMessage();
+        } catch (IOException e) {
+            log.warn("Cannot follow log file " + fileName + ": " + e.getMessage());
+            reason = "Cannot open " + fileName;
+        }
+        try {
+            session.close(new CloseReason(CloseReason.CloseCodes.CANNOT_ACCEPT, reason));
+        } catch (IOException ex) {
+            // ignore
+        }
+    }
+
+    @OnMessage
+    public synchronized void onMessage(String filter, Session session) {
+        if (follower != null) {
+            follower.setFilter(filter, LogViewerSettings.TAIL_INITIAL_BYTES);
+        }
+    }
+
+    @OnClose
+    public void onClose(Session session) {
+        stop();
+    }
+
+    @OnError
+    public void onError(Session session, Throwable t) {
+        log.error("WebSocket error", t);
+        stop();
+    }
+
+    private synchronized void stop() {
+        if (follower != null) {
+            logTailService.unfollow(follower);
+            follower = null;
+        }
+        if (sink != null) {
+            sink.close();
+        }
+    }
+}
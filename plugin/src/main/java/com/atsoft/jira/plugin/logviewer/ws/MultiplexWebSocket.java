@@ -0,0 +1,51 @@
+package com.atsoft.jira.plugin.logviewer.ws;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.websocket.OnClose;
+import jakarta.websocket.OnError;
+import jakarta.websocket.OnMessage;
+import jakarta.websocket.OnOpen;
+import jakarta.websocket.Session;
+import jakarta.websocket.server.ServerEndpoint;
+import java.nio.ByteBuffer;
+
+/**
+ * Carries any number of terminals and log streams over one socket, using the binary framing
+ * described in {@link MuxProtocol}. {@code ?compress=deflate} has output compressed per
+ * channel ({@link MuxProtocol#DATA_DEFLATE}). {@code /ws/terminal} and {@code /ws/log} remain
+ * for single-stream clients.
+ * <p>
+ * Like {@code /ws/log}, log channels are for system administrators only; other users are
+ * refused OPEN_LOG but may still open terminals and copy job channels.
+ */
+@ServerEndpoint("/ws/mux")
+public class MultiplexWebSocket {
+    private static final Logger log = LoggerFactory.getLogger(MultiplexWebSocket.class);
+    private MuxConnection connection;
+
+    @OnOpen
+    public void onOpen(Session session) {
+        String owner = session.getUserPrincipal() != null ? session.getUserPrincipal().getName() : null;
+        connection = new MuxConnection(session, owner, WebSocketAccess.isSystemAdmin(session));
+        log.info("Multiplexed WebSocket opened: " + session.getId());
+    }
+
+    @OnMessage
+    public void onMessage(ByteBuffer message, Session session) {
+        connection.receive(message);
+    }
+
+    @OnClose
+    public void onClose(Session session) {
+        log.info("Multiplexed WebSocket closed: " + session.getId());
+        connection.close();
+    }
+
+    @OnError
+    public void onError(Session session, Throwable t) {
+        log.error("WebSocket error", t);
+        connection.close();
+    }
+}
@@ -0,0 +1,65 @@
+package com.atsoft.jira.plugin.logviewer.ws;
+
+import com.atsoft.jira.plugin.logviewer.service.OutputCoalescer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One terminal or log stream on a {@link MuxConnection}. Output sent to it is framed with the
+ * channel id and queued on the shared socket.
+ */
+abstract class MuxChannel implements OutputCoalescer.FrameSink {
+    protected final int id;
+    protected final MuxConnection connection;
+    // null unless the client asked for compression
+    private final FrameCompressor compressor;
+    // the producer has at most one frame in flight, so the frame buffer can be reused
+    private ByteBuffer frame;
+
+    MuxChannel(int id, MuxConnection connection) {
+        this.id = id;
+        this.connection = connection;
+        this.compressor = connection.isCompressing() ? new FrameCompressor() : null;
+    }
+
+    /** Called with the payload of an INPUT frame. */
+    void input(ByteBuffer payload) {
+    }
+
+    /** Called with the payload of a RESIZE frame. */
+    void resize(int cols, int rows) {
+    }
+
+    /** Releases what the channel holds; it receives no more frames. */
+    abstract void close();
+
+    /** Closes the channel and its compression context. */
+    final void dispose() {
+        close();
+        if (compressor != null) {
+            compressor.close();
+        }
+    }
+
+    @Override
+    public void send(ByteBuffer output, Runnable onComplete) {
+        ByteBuffer compressed = compressor != null ? compressor.compress(output) : null;
+        frame = compressed != null
+                ? MuxProtocol.encode(frame, id, MuxProtocol.DATA_DEFLATE, compressed)
+                : MuxProtocol.encode(frame, id, MuxProtocol.DATA, output);
+        connection.send(frame, onComplete);
+    }
+
+    @Override
+    public void sendText(String message, Runnable onComplete) {
+        frame = MuxProtocol.encode(frame, id, MuxProtocol.CONTROL,
+                ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8)));
+        connection.send(frame, onComplete);
+    }
+
+    @Override
+    public void disconnect(String reason) {
+        connection.closeChannel(id, reason);
+    }
+}
@@ -0,0 +1,259 @@
+package com.atsoft.jira.plugin.logviewer.ws;
+
+import com.atsoft.jira.plugin.logviewer.service.SessionLimitException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.Session;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The channels of one {@code /ws/mux} socket. Inbound frames are dispatched to their channel;
+ * outbound frames of all channels are queued and sent one at a time, since a WebSocket
+ * endpoint allows only one message in flight.
+ */
+class MuxConnection {
+    private static final Logger log = LoggerFactory.getLogger(MuxConnection.class);
+    private static final int MAX_CHANNELS = 32;
+
+    private static class Pending {
+        final ByteBuffer message;
+        final Runnable onComplete;
+
+        Pending(ByteBuffer message, Runnable onComplete) {
+            this.message = message;
+            this.onComplete = onComplete;
+        }
+    }
+
+    private final Session session;
+    private final String owner;
+    private final boolean systemAdmin;
+    private final boolean compressing;
+    private final Map<Integer, MuxChannel> channels = new ConcurrentHashMap<>();
+
+    // guarded by this
+    private final ArrayDeque<Pending> queue = new ArrayDeque<>();
+    private boolean sending;
+    private boolean pumping;
+    private boolean closed;
+
+    /**
+     * @param systemAdmin whether the user may follow log files and watch others' terminals
+     */
+    MuxConnection(Session session, String owner, boolean systemAdmin) {
+        this.session = session;
+        this.owner = owner;
+        this.systemAdmin = systemAdmin;
+        this.compressing = FrameCompressor.isRequested(session);
+    }
+
+    /** Whether output is deflated; the client opted in with {@code ?compress=deflate}. */
+    boolean isCompressing() {
+        return compressing;
+    }
+
+    /**
+     * Handles one binary message from the client.
+     */
+    void receive(ByteBuffer message) {
+        try {
+            MuxProtocol.decode(message, this::dispatch);
+        } catch (ProtocolException e) {
+            fail(e.getMessage());
+        }
+    }
+
+    private void dispatch(int id, byte type, ByteBuffer payload) {
+        MuxChannel channel = channels.get(id);
+        switch (type) {
+            case MuxProtocol.OPEN_TERMINAL:
+            case MuxProtocol.OPEN_VIEWER:
+            case MuxProtocol.OPEN_LOG:
+            case MuxProtocol.OPEN_COPY_JOB:
+                if (channel != null) {
+                    closeChannel(id, "Channel already open");
+                } else if (channels.size() >= MAX_CHANNELS) {
+                    sendClose(id, "Too many channels");
+                } else {
+                    open(id, type, MuxProtocol.text(payload));
+                }
+                break;
+            case MuxProtocol.INPUT:
+                if (channel != null) {
+                    channel.input(payload);
+                }
+                break;
+            case MuxProtocol.RESIZE:
+                if (channel != null && payload.remaining() >= 4) {
+                    channel.resize(payload.getShort() & 0xFFFF, payload.getShort() & 0xFFFF);
+                }
+                break;
+            case MuxProtocol.CLOSE:
+                if (channels.remove(id) != null) {
+                    channel.dispose();
+                }
+                break;
+            default:
+                log.debug("Ignoring frame of unknown type " + type + " on channel " + id);
+        }
+    }
+
+    private void open(int id, byte type, String argument) {
+        MuxChannel channel;
+        String reason = "Cannot open channel";
+        // register first: the channel may receive output before open returns
+        if (type == MuxProtocol.OPEN_TERMINAL) {
+            TerminalChannel terminal = new TerminalChannel(id, this);
+            channels.put(id, terminal);
+            channel = terminal;
+            try {
+                terminal.open(owner, argument);
+                return;
+            } catch (SessionLimitException e) {
+                reason = e.getMessage();
+            } catch (IOException e) {
+                log.error("Failed to start terminal", e);
+            }
+        } else if (type == MuxProtocol.OPEN_VIEWER) {
+            TerminalChannel viewer = new TerminalChannel(id, this);
+            channels.put(id, viewer);
+            channel = viewer;
+            if (viewer.watch(owner, systemAdmin, argument)) {
+                return;
+            }
+        } else if (type == MuxProtocol.OPEN_COPY_JOB) {
+            CopyJobChannel jobChannel = new CopyJobChannel(id, this);
+            channels.put(id, jobChannel);
+            channel = jobChannel;
+            if (jobChannel.open(owner, argument)) {
+                return;
+            }
+        } else if (!systemAdmin) {
+            sendClose(id, "Log files are for system administrators only");
+            return;
+        } else {
+            LogChannel logChannel = new LogChannel(id, this);
+            channels.put(id, logChannel);
+            channel = logChannel;
+            try {
+                logChannel.open(argument);
+                return;
+            } catch (IllegalArgumentException e) {
+                reason = e.getMessage();
+            } catch (IOException e) {
+                log.warn("Cannot follow log file " + argument + ": " + e.getMessage());
+            }
+        }
+        channels.remove(id, channel);
+        sendClose(id, reason);
+    }
+
+    /**
+     * Closes a channel from the server side and tells the client why.
+     */
+    void closeChannel(int id, String reason) {
+        MuxChannel channel = channels.remove(id);
+        if (channel != null) {
+            channel.dispose();
+        }
+        sendClose(id, reason);
+    }
+
+    /**
+     * Closes every channel. Called when the socket is gone.
+     */
+    void close() {
+        synchronized (this) {
+            closed = true;
+            queue.clear();
+        }
+        for (Integer id : new ArrayList<>(channels.keySet())) {
+            MuxChannel channel = channels.remove(id);
+            if (channel != null) {
+                channel.dispose();
+            }
+        }
+    }
+
+    int getChannelCount() {
+        return channels.size();
+    }
+
+    /**
+     * Queues a framed message; {@code onComplete} runs once it has been sent or dropped.
+     */
+    void send(ByteBuffer message, Runnable onComplete) {
+        synchronized (this) {
+            if (!closed) {
+                queue.add(new Pending(message, onComplete));
+                message = null;
+            }
+        }
+        if (message != null) {
+            onComplete.run();
+            return;
+        }
+        pump();
+    }
+
+    private void sendClose(int id, String reason) {
+        send(MuxProtocol.encode(id, MuxProtocol.CLOSE, reason), () -> { });
+    }
+
+    // a loop rather than recursion, as sends may complete inline
+    private void pump() {
+        synchronized (this) {
+            if (pumping) {
+                return;
+            }
+            pumping = true;
+        }
+        while (true) {
+            Pending next;
+            synchronized (this) {
+                if (sending || queue.isEmpty()) {
+                    pumping = false;
+                    return;
+                }
+                next = queue.poll();
+                sending = true;
+            }
+            try {
+                session.getAsyncRemote().sendBinary(next.message, result -> {
+                    if (!result.isOK()) {
+                        log.error("Error sending to websocket", result.getException());
+                    }
+                    sent(next);
+                });
+            } catch (IllegalStateException e) {
+                log.debug("Dropping output for closed websocket: " + session.getId());
+                sent(next);
+            }
+        }
+    }
+
+    private void sent(Pending pending) {
+        synchronized (this) {
+            sending = false;
+        }
+        pending.onComplete.run();
+        pump();
+    }
+
+    private void fail(String reason) {
+        log.warn("Closing websocket " + session.getId() + ": " + reason);
+        try {
+            session.close(new CloseReason(CloseReason.CloseCodes.PROTOCOL_ERROR, reason));
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+}
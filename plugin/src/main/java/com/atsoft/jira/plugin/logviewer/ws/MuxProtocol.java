@@ -0,0 +1,115 @@
+package com.atsoft.jira.plugin.logviewer.ws;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Framing of {@code /ws/mux}. Every binary WebSocket message carries one or more frames:
+ *
+ * <pre>
+ *   u16 channel | u8 type | u32 length | payload[length]
+ * </pre>
+ *
+ * All numbers are big-endian. The client picks the channel ids; a channel is one terminal, one
+ * followed log file or one issue copy job.
+ */
+final class MuxProtocol {
+    static final int HEADER_BYTES = 7;
+    static final int MAX_CHANNEL = 0xFFFF;
+
+    // client to server
+    /** Starts a terminal; the payload is empty or {@code <session id>:<offset>} to resume one. */
+    static final byte OPEN_TERMINAL = 1;
+    /**
+     * Follows a log file; the payload is its name, optionally followed by {@code ?} and a filter
+     * as parsed by {@link com.atsoft.jira.plugin.logviewer.service.LogStreamFilter#parse}.
+     */
+    static final byte OPEN_LOG = 2;
+    /** Keystrokes, UTF-8; on a log channel a new filter, empty for none. */
+    static final byte INPUT = 3;
+    /** u16 columns, u16 rows. */
+    static final byte RESIZE = 4;
+    /** Watches another user's terminal read-only; the payload is {@code <session id>[:<offset>]}. */
+    static final byte OPEN_VIEWER = 6;
+    /** Follows the progress of an issue copy job; the payload is its id. */
+    static final byte OPEN_COPY_JOB = 7;
+
+    // both directions
+    /** Closes a channel; from the server the payload is the reason. */
+    static final byte CLOSE = 5;
+
+    // server to client
+    /** Terminal output or log file content. */
+    static final byte DATA = 16;
+    /**
+     * A control message: {@code session:<id>:<offset>}, {@code watch:<id>:<offset>},
+     * {@code truncated:<bytes>}, {@code log:rotated}, {@code log:filter},
+     * {@code log:invalid-filter:<reason>}; on a copy job channel a JSON object.
+     */
+    static final byte CONTROL = 17;
+    /**
+     * Output compressed with the channel's deflate context, for sockets opened with
+     * {@code ?compress=deflate}; see {@link FrameCompressor}. Short or incompressible output
+     * still comes as DATA.
+     */
+    static final byte DATA_DEFLATE = 18;
+
+    /** Receives the frames of a message. */
+    interface FrameHandler {
+        void frame(int channel, byte type, ByteBuffer payload);
+    }
+
+    private MuxProtocol() {
+    }
+
+    /**
+     * Splits a message into its frames and passes them to {@code handler} in order. The payloads
+     * are slices of {@code message}.
+     *
+     * @throws ProtocolException at a frame that does not fit the rest of the message; the frames
+     *                           before it have been handled
+     */
+    static void decode(ByteBuffer message, FrameHandler handler) throws ProtocolException {
+        while (message.remaining() >= HEADER_BYTES) {
+            int channel = message.getShort() & MAX_CHANNEL;
+            byte type = message.get();
+            int length = message.getInt();
+            if (length < 0 || length > message.remaining()) {
+                throw new ProtocolException("Frame length " + Integer.toUnsignedString(length) + " exceeds message");
+            }
+            ByteBuffer payload = message.slice();
+            payload.limit(length);
+            message.position(message.position() + length);
+            handler.frame(channel, type, payload);
+        }
+        if (message.hasRemaining()) {
+            throw new ProtocolException("Incomplete frame header");
+        }
+    }
+
+    /**
+     * Writes a frame into {@code target}, growing it if needed, and returns it flipped for sending.
+     */
+    static ByteBuffer encode(ByteBuffer target, int channel, byte type, ByteBuffer payload) {
+        int length = payload != null ? payload.remaining() : 0;
+        if (target == null || target.capacity() < HEADER_BYTES + length) {
+            target = ByteBuffer.allocate(HEADER_BYTES + length);
+        }
+        target.clear();
+        target.putShort((short) channel).put(type).putInt(length);
+        if (payload != null) {
+            target.put(payload.duplicate());
+        }
+        target.flip();
+        return target;
+    }
+
+    static ByteBuffer encode(int channel, byte type, String text) {
+        return encode(null, channel, type, ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    static String text(ByteBuffer payload) {
+        return StandardCharsets.UTF_8.decode(payload.duplicate()).toString();
+    }
+}
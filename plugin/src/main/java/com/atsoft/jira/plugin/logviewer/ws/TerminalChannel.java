@@ -0,0 +1,93 @@
+package com.atsoft.jira.plugin.logviewer.ws;
+
+import com.atsoft.jira.plugin.logviewer.service.PtyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A terminal session on a {@link MuxConnection}, either as its owner or as a read-only viewer.
+ */
+class TerminalChannel extends MuxChannel {
+    private static final Logger log = LoggerFactory.getLogger(TerminalChannel.class);
+    private final PtyManager ptyManager = PtyManager.getInstance();
+    private volatile String sessionId;
+    private volatile boolean readOnly;
+
+    TerminalChannel(int id, MuxConnection connection) {
+        super(id, connection);
+    }
+
+    /**
+     * Resumes the session named in {@code resume} ({@code <session id>:<offset>}) if it is still
+     * running, otherwise starts a new shell.
+     */
+    void open(String owner, String resume) throws IOException {
+        int separator = resume.lastIndexOf(':');
+        if (separator > 0) {
+            String resumeId = resume.substring(0, separator);
+            long offset = parseOffset(resume.substring(separator + 1));
+            if (ptyManager.resume(resumeId, owner, offset, this)) {
+                sessionId = resumeId;
+                log.info("Channel " + id + " resumed terminal " + sessionId);
+                return;
+            }
+        }
+        sessionId = ptyManager.startTerminal(owner, this);
+        log.info("Channel " + id + " opened terminal " + sessionId);
+    }
+
+    /**
+     * Watches the session named in {@code target} ({@code <session id>[:<offset>]}) without
+     * being able to type into it.
+     *
+     * @return false if there is no such session or the viewer may not watch it
+     */
+    boolean watch(String viewer, boolean systemAdmin, String target) {
+        int separator = target.lastIndexOf(':');
+        String watchId = separator > 0 ? target.substring(0, separator) : target;
+        long offset = separator > 0 ? parseOffset(target.substring(separator + 1)) : 0;
+        readOnly = true;
+        if (!ptyManager.watch(watchId, viewer, systemAdmin, offset, this)) {
+            return false;
+        }
+        sessionId = watchId;
+        return true;
+    }
+
+    @Override
+    void input(ByteBuffer payload) {
+        if (readOnly) {
+            return;
+        }
+        try {
+            ptyManager.write(sessionId, payload);
+        } catch (IOException e) {
+            log.error("Error writing to terminal", e);
+        }
+    }
+
+    @Override
+    void resize(int cols, int rows) {
+        // the window size is the owner's
+        if (!readOnly) {
+            ptyManager.resize(sessionId, cols, rows);
+        }
+    }
+
+    @Override
+    void close() {
+        // keep the shell running for a while in case the client reconnects
+        ptyManager.detach(sessionId, this);
+    }
+
+    private static long parseOffset(String offset) {
+        try {
+            return Long.parseLong(offset);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
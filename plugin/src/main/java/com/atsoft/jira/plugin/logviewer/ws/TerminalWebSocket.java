@@ -1,9 +1,11 @@
 package com.atsoft.jira.plugin.logviewer.ws;
 
 import com.atsoft.jira.plugin.logviewer.service.PtyManager;
+import com.atsoft.jira.plugin.logviewer.service.SessionLimitException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import jakarta.websocket.CloseReason;
 import jakarta.websocket.OnClose;
 import jakarta.websocket.OnError;
 import jakarta.websocket.OnMessage;
@@ -11,37 +13,63 @@ import jakarta.websocket.OnOpen;
 import jakarta.websocket.Session;
 import jakarta.websocket.server.ServerEndpoint;
 import java.io.IOException;
+import java.util.List;
 
+/**
+ * Terminal endpoint. Output is sent as binary frames; text frames from the server are control
+ * messages ({@code session:<id>:<offset>}, {@code truncated:<bytes>}). A client that lost its
+ * connection reconnects with {@code ?resume=<id>&offset=<bytes received>} to continue the same
+ * shell. {@code ?watch=<id>} attaches read-only to one of the user's sessions, or to anyone's
+ * for a system administrator. {@code ?compress=deflate} asks for compressed output, see
+ * {@link WebSocketFrameSink}.
+ */
 @ServerEndpoint("/ws/terminal")
 public class TerminalWebSocket {
     private static final Logger log = LoggerFactory.getLogger(TerminalWebSocket.class);
     private final PtyManager ptyManager = PtyManager.getInstance();
     private String sessionId;
+    private WebSocketFrameSink sink;
+    private boolean readOnly;
 
     @OnOpen
     public void onOpen(Session session) {
-        this.sessionId = session.getId();
-        log.info("WebSocket opened: " + sessionId);
+        this.sink = new WebSocketFrameSink(session);
+        String owner = session.getUserPrincipal() != null ? session.getUserPrincipal().getName() : null;
+        String watchId = getParameter(session, "watch");
+        if (watchId != null) {
+            readOnly = true;
+            if (ptyManager.watch(watchId, owner, WebSocketAccess.isSystemAdmin(session), getOffset(session), sink)) {
+                this.sessionId = watchId;
+                log.info("WebSocket " + session.getId() + " watching terminal " + sessionId);
+            } else {
+                close(session);
+            }
+            return;
+        }
+        String resumeId = getParameter(session, "resume");
+        if (resumeId != null && ptyManager.resume(resumeId, owner, getOffset(session), sink)) {
+            this.sessionId = resumeId;
+            log.info("WebSocket " + session.getId() + " resumed terminal " + sessionId);
+            return;
+        }
+
         try {
-            ptyManager.startTerminal(sessionId, output -> {
-                try {
-                    session.getBasicRemote().sendText(output);
-                } catch (IOException e) {
-                    log.error("Error sending to websocket", e);
-                }
-            });
+            this.sessionId = ptyManager.startTerminal(owner, sink);
+            log.info("WebSocket " + session.getId() + " opened terminal " + sessionId);
+        } catch (SessionLimitException e) {
+            log.info("WebSocket " + session.getId() + " refused a terminal: " + e.getMessage());
+            close(session, new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, e.getMessage()));
         } catch (IOException e) {
             log.error("Failed to start terminal", e);
-            try {
-                session.close();
-            } catch (IOException ex) {
-                // ignore
-            }
+            close(session);
         }
     }
 
     @OnMessage
     public void onMessage(String message, Session session) {
+        if (readOnly) {
+            return;
+        }
         // Simple protocol: If message starts with "resize:", handle resize. Else write
         // to terminal.
         try {
@@ -62,13 +90,46 @@ public class TerminalWebSocket {
 
     @OnClose
     public void onClose(Session session) {
-        log.info("WebSocket closed: " + sessionId);
-        ptyManager.kill(sessionId);
+        log.info("WebSocket closed: " + session.getId());
+        // keep the shell running for a while in case the client reconnects
+        ptyManager.detach(sessionId, sink);
+        sink.close();
     }
 
     @OnError
     public void onError(Session session, Throwable t) {
         log.error("WebSocket error", t);
-        ptyManager.kill(sessionId);
+        ptyManager.detach(sessionId, sink);
+        sink.close();
+    }
+
+    private static void close(Session session) {
+        try {
+            session.close();
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    private static void close(Session session, CloseReason reason) {
+        try {
+            session.close(reason);
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    private static String getParameter(Session session, String name) {
+        List<String> values = session.getRequestParameterMap().get(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
+    private static long getOffset(Session session) {
+        try {
+            String offset = getParameter(session, "offset");
+            return offset != null ? Long.parseLong(offset) : 0;
+        } catch (NumberFormatException e) {
+            return 0;
+        }
     }
 }
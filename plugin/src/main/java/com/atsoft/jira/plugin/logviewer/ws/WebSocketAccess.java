@@ -0,0 +1,49 @@
+package com.atsoft.jira.plugin.logviewer.ws;
+
+import com.atlassian.jira.component.ComponentAccessor;
+import com.atlassian.sal.api.user.UserManager;
+import com.atlassian.sal.api.user.UserProfile;
+
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.Session;
+import java.io.IOException;
+import java.security.Principal;
+
+/**
+ * Access checks of the WebSocket endpoints, the counterpart of the REST resources' checks:
+ * log files are for system administrators only.
+ */
+final class WebSocketAccess {
+
+    private WebSocketAccess() {
+    }
+
+    /** Whether the user who opened the socket is a system administrator. */
+    static boolean isSystemAdmin(Session session) {
+        Principal principal = session.getUserPrincipal();
+        if (principal == null) {
+            return false;
+        }
+        UserManager userManager = ComponentAccessor.getOSGiComponentInstanceOfType(UserManager.class);
+        UserProfile user = userManager.getUserProfile(principal.getName());
+        return user != null && userManager.isSystemAdmin(user.getUserKey());
+    }
+
+    /**
+     * Closes the socket unless its user is a system administrator.
+     *
+     * @return whether the user is one
+     */
+    static boolean requireSystemAdmin(Session session) {
+        if (isSystemAdmin(session)) {
+            return true;
+        }
+        try {
+            session.close(new CloseReason(CloseReason.CloseCodes.VIOLATED_POLICY,
+                    "Log files are for system administrators only"));
+        } catch (IOException e) {
+            // ignore
+        }
+        return false;
+    }
+}
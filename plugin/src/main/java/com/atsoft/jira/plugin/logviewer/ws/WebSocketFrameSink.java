@@ -0,0 +1,97 @@
+package com.atsoft.jira.plugin.logviewer.ws;
+
+import com.atsoft.jira.plugin.logviewer.service.OutputCoalescer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.Session;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Sends output frames as binary messages, and control messages as text messages, over the
+ * async remote endpoint of a WebSocket session.
+ * <p>
+ * With a {@link FrameCompressor}, i.e. for a client that connected with
+ * {@code ?compress=deflate}, every binary message starts with one byte: 0 for output as it
+ * is, 1 for a compressed frame.
+ */
+class WebSocketFrameSink implements OutputCoalescer.FrameSink {
+    private static final Logger log = LoggerFactory.getLogger(WebSocketFrameSink.class);
+
+    private static final byte RAW = 0;
+    private static final byte DEFLATE = 1;
+
+    private final Session session;
+    private final FrameCompressor compressor;
+    // one frame in flight at a time, as with the frames themselves
+    private ByteBuffer message;
+
+    WebSocketFrameSink(Session session) {
+        this.session = session;
+        this.compressor = FrameCompressor.isRequested(session) ? new FrameCompressor() : null;
+    }
+
+    @Override
+    public void send(ByteBuffer frame, Runnable onComplete) {
+        if (compressor != null) {
+            frame = flagged(frame);
+        }
+        try {
+            session.getAsyncRemote().sendBinary(frame, result -> {
+                if (!result.isOK()) {
+                    log.error("Error sending to websocket", result.getException());
+                }
+                onComplete.run();
+            });
+        } catch (IllegalStateException e) {
+            // session already closed or closing
+            log.debug("Dropping output for closed websocket: " + session.getId());
+            onComplete.run();
+        }
+    }
+
+    @Override
+    public void sendText(String message, Runnable onComplete) {
+        try {
+            session.getAsyncRemote().sendText(message, result -> {
+                if (!result.isOK()) {
+                    log.error("Error sending to websocket", result.getException());
+                }
+                onComplete.run();
+            });
+        } catch (IllegalStateException e) {
+            log.debug("Dropping control message for closed websocket: " + session.getId());
+            onComplete.run();
+        }
+    }
+
+    /** Releases the compression context. Called when the socket is closed. */
+    void close() {
+        if (compressor != null) {
+            compressor.close();
+        }
+    }
+
+    @Override
+    public void disconnect(String reason) {
+        log.warn("Closing websocket " + session.getId() + ": " + reason);
+        try {
+            session.close(new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, reason));
+        } catch (IOException e) {
+            // ignore
+        }
+    }
+
+    private ByteBuffer flagged(ByteBuffer frame) {
+        ByteBuffer compressed = compressor.compress(frame);
+        ByteBuffer payload = compressed != null ? compressed : frame;
+        if (message == null || message.capacity() < 1 + payload.remaining()) {
+            message = ByteBuffer.allocate(1 + payload.remaining());
+        }
+        message.clear();
+        message.put(compressed != null ? DEFLATE : RAW).put(payload.duplicate()).flip();
+        return message;
+    }
+}
@@ -0,0 +1,95 @@
+package com.atsoft.jira.plugin.logviewer.ws;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import jakarta.websocket.RemoteEndpoint;
+import jakarta.websocket.SendHandler;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AsyncTextSenderTest {
+
+    private final List<String> sent = new ArrayList<>();
+    private final List<SendHandler> inFlight = new ArrayList<>();
+    private final List<String> completed = new ArrayList<>();
+    private boolean completeInline;
+    private boolean closed;
+    private AsyncTextSender sender;
+
+    @BeforeEach
+    public void setup() {
+        RemoteEndpoint.Async remote = (RemoteEndpoint.Async) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { RemoteEndpoint.Async.class }, (proxy, method, args) -> {
+                    if (closed) {
+                        throw new IllegalStateException("closed");
+                    }
+                    sent.add((String) args[0]);
+                    SendHandler handler = (SendHandler) args[1];
+                    if (completeInline) {
+                        handler.onResult(new SendResult());
+                    } else {
+                        inFlight.add(handler);
+                    }
+                    return null;
+                });
+        Session session = (Session) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { Session.class }, (proxy, method, args) -> method.getName().equals("getId")
+                        ? "1" : remote);
+        sender = new AsyncTextSender(session, "test messages");
+    }
+
+    private void send(String message) {
+        sender.send(message, () -> completed.add(message));
+    }
+
+    @Test
+    public void testSendsOneMessageAtATime() {
+        send("a");
+        send("b");
+        send("c");
+
+        assertEquals(List.of("a"), sent);
+
+        inFlight.remove(0).onResult(new SendResult());
+        assertEquals(List.of("a", "b"), sent);
+        assertEquals(List.of("a"), completed);
+
+        inFlight.remove(0).onResult(new SendResult());
+        inFlight.remove(0).onResult(new SendResult());
+        assertEquals(List.of("a", "b", "c"), sent);
+        assertEquals(List.of("a", "b", "c"), completed);
+    }
+
+    @Test
+    public void testSendsCompletingInlineStayInOrder() {
+        completeInline = true;
+        List<String> expected = new ArrayList<>();
+
+        // deep enough to overflow the stack if every completion sent the next one recursively
+        for (int i = 0; i < 20_000; i++) {
+            expected.add(Integer.toString(i));
+            send(Integer.toString(i));
+        }
+
+        assertEquals(expected, sent);
+        assertEquals(expected, completed);
+    }
+
+    @Test
+    public void testMessagesForClosedSessionAreDropped() {
+        closed = true;
+
+        send("a");
+        send("b");
+
+        // dropped, but the callbacks still run so that the senders move on
+        assertEquals(List.of(), sent);
+        assertEquals(List.of("a", "b"), completed);
+    }
+}
@@ -0,0 +1,118 @@
+package com.atsoft.jira.plugin.logviewer.ws;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FrameCompressorTest {
+
+    private FrameCompressor compressor;
+    // the client: one inflater for all compressed frames of the stream
+    private Inflater inflater;
+
+    @BeforeEach
+    public void setup() {
+        compressor = new FrameCompressor(64, 6);
+        inflater = new Inflater(true);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        compressor.close();
+        inflater.end();
+    }
+
+    private static byte[] log(int from, int to) {
+        StringBuilder text = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            text.append("2024-05-14 14:00:").append(i % 60).append(",000+0900 http-nio-8080-exec-").append(i % 8)
+                    .append(" INFO admin [c.a.jira.service.DefaultService] Request ").append(i).append(" done\r\n");
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] random(int length, long seed) {
+        byte[] bytes = new byte[length];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    // what the client does with a frame; returns the size of the compressed frame, or -1 if sent as it is
+    private int roundTrip(byte[] frame) throws DataFormatException {
+        ByteBuffer input = ByteBuffer.wrap(frame);
+        ByteBuffer compressed = compressor.compress(input);
+        assertEquals(frame.length, input.remaining());
+        if (compressed == null) {
+            return -1;
+        }
+        int size = compressed.remaining();
+        int length = compressed.getInt();
+        assertEquals(frame.length, length);
+        byte[] data = new byte[compressed.remaining()];
+        compressed.get(data);
+        inflater.setInput(data);
+        byte[] output = new byte[length];
+        int inflated = 0;
+        while (inflated < length) {
+            int read = inflater.inflate(output, inflated, length - inflated);
+            assertTrue(read > 0, "inflater stalled at " + inflated + " of " + length);
+            inflated += read;
+        }
+        // a sync flush leaves nothing behind for the next frame
+        assertEquals(0, inflater.inflate(new byte[16]));
+        assertArrayEquals(frame, output);
+        return size;
+    }
+
+    @Test
+    public void testConsecutiveFramesShareTheContext() throws DataFormatException {
+        int first = roundTrip(log(0, 20));
+        int second = roundTrip(log(20, 40));
+        int third = roundTrip(log(40, 60));
+
+        assertTrue(first > 0 && first < log(0, 20).length / 2, "first frame: " + first);
+        // later frames refer back to the ones before
+        assertTrue(second < first && third < first, first + ", " + second + ", " + third);
+    }
+
+    @Test
+    public void testShortFramesAreNotCompressed() throws DataFormatException {
+        assertEquals(-1, roundTrip("ls\r\n".getBytes(StandardCharsets.UTF_8)));
+        assertTrue(roundTrip(log(0, 10)) > 0);
+    }
+
+    @Test
+    public void testIncompressibleFramesAreSentAsTheyAre() throws DataFormatException {
+        assertTrue(roundTrip(log(0, 20)) > 0);
+        assertEquals(-1, roundTrip(random(4096, 1)));
+        // the client never saw the random frame; the stream still inflates
+        assertTrue(roundTrip(log(20, 40)) > 0);
+        assertEquals(-1, roundTrip(random(100_000, 2)));
+        assertEquals(-1, roundTrip(random(200, 3)));
+        assertTrue(roundTrip(log(0, 500)) > 0);
+        assertTrue(roundTrip(log(500, 520)) > 0);
+    }
+
+    @Test
+    public void testIncompressibleFirstFrame() throws DataFormatException {
+        assertEquals(-1, roundTrip(random(1000, 4)));
+        assertTrue(roundTrip(log(0, 20)) > 0);
+    }
+
+    @Test
+    public void testClosedCompressorPassesFramesThrough() {
+        compressor.close();
+
+        assertNull(compressor.compress(ByteBuffer.wrap(log(0, 20))));
+        assertNull(compressor.compress(ByteBuffer.wrap(Arrays.copyOf(log(0, 20), 100))));
+    }
+}
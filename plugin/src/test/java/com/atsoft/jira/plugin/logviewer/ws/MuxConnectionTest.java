@@ -0,0 +1,159 @@
+package com.atsoft.jira.plugin.logviewer.ws;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import jakarta.websocket.CloseReason;
+import jakarta.websocket.RemoteEndpoint;
+import jakarta.websocket.SendHandler;
+import jakarta.websocket.SendResult;
+import jakarta.websocket.Session;
+import java.lang.reflect.Proxy;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MuxConnectionTest {
+
+    private final List<ByteBuffer> sent = new ArrayList<>();
+    private final List<SendHandler> inFlight = new ArrayList<>();
+    private final List<Integer> completed = new ArrayList<>();
+    private boolean completeInline;
+    private CloseReason closeReason;
+    private MuxConnection connection;
+
+    @BeforeEach
+    public void setup() {
+        RemoteEndpoint.Async remote = proxy(RemoteEndpoint.Async.class, (name, args) -> {
+            if (!name.equals("sendBinary")) {
+                throw new UnsupportedOperationException(name);
+            }
+            sent.add((ByteBuffer) args[0]);
+            SendHandler handler = (SendHandler) args[1];
+            if (completeInline) {
+                handler.onResult(new SendResult());
+            } else {
+                inFlight.add(handler);
+            }
+            return null;
+        });
+        Session session = proxy(Session.class, (name, args) -> {
+            switch (name) {
+                case "getId":
+                    return "1";
+                case "getRequestParameterMap":
+                    return Map.of();
+                case "getAsyncRemote":
+                    return remote;
+                case "close":
+                    closeReason = (CloseReason) args[0];
+                    return null;
+                default:
+                    throw new UnsupportedOperationException(name);
+            }
+        });
+        connection = new MuxConnection(session, "alice", false);
+    }
+
+    private interface Handler {
+        Object invoke(String name, Object[] args);
+    }
+
+    private static <T> T proxy(Class<T> type, Handler handler) {
+        return type.cast(Proxy.newProxyInstance(MuxConnectionTest.class.getClassLoader(), new Class<?>[] { type },
+                (proxy, method, args) -> handler.invoke(method.getName(), args)));
+    }
+
+    private void send(int i) {
+        connection.send(MuxProtocol.encode(i, MuxProtocol.DATA, "output " + i), () -> completed.add(i));
+    }
+
+    private void completeNext() {
+        inFlight.remove(0).onResult(new SendResult());
+    }
+
+    private static int channel(ByteBuffer frame) {
+        return frame.getShort(frame.position()) & MuxProtocol.MAX_CHANNEL;
+    }
+
+    @Test
+    public void testSendsOneMessageAtATime() {
+        send(1);
+        send(2);
+        send(3);
+
+        assertEquals(1, sent.size());
+        assertEquals(List.of(), completed);
+
+        completeNext();
+        assertEquals(2, sent.size());
+        assertEquals(List.of(1), completed);
+
+        completeNext();
+        completeNext();
+        assertEquals(List.of(1, 2, 3), sent.stream().map(MuxConnectionTest::channel).toList());
+        assertEquals(List.of(1, 2, 3), completed);
+        assertTrue(inFlight.isEmpty());
+    }
+
+    @Test
+    public void testSendsCompletingInlineStayInOrder() {
+        completeInline = true;
+
+        // deep enough to overflow the stack if every completion sent the next one recursively
+        for (int i = 0; i < 20_000; i++) {
+            send(i % 1000);
+        }
+
+        assertEquals(20_000, sent.size());
+        assertEquals(20_000, completed.size());
+        for (int i = 0; i < 20_000; i++) {
+            assertEquals(i % 1000, channel(sent.get(i)));
+        }
+    }
+
+    @Test
+    public void testCloseDropsQueuedMessages() {
+        send(1);
+        send(2);
+
+        connection.close();
+        completeNext();
+        send(3);
+
+        // the message in flight completes, the queued one is never sent and later ones are dropped
+        assertEquals(1, sent.size());
+        assertEquals(List.of(1, 3), completed);
+    }
+
+    @Test
+    public void testMalformedMessageClosesSocket() {
+        ByteBuffer message = ByteBuffer.allocate(MuxProtocol.HEADER_BYTES + 2);
+        message.putShort((short) 1).put(MuxProtocol.INPUT).putInt(100).put((byte) 'l').put((byte) 's').flip();
+
+        connection.receive(message);
+
+        assertNotNull(closeReason);
+        assertEquals(CloseReason.CloseCodes.PROTOCOL_ERROR, closeReason.getCloseCode());
+        assertEquals("Frame length 100 exceeds message", closeReason.getReasonPhrase());
+    }
+
+    @Test
+    public void testLogChannelIsRefusedToNonAdministrator() throws Exception {
+        connection.receive(MuxProtocol.encode(4, MuxProtocol.OPEN_LOG, "atlassian-jira.log"));
+
+        assertNull(closeReason);
+        assertEquals(0, connection.getChannelCount());
+        assertEquals(1, sent.size());
+        List<String> replies = new ArrayList<>();
+        MuxProtocol.decode(sent.get(0), (channel, type, payload) -> {
+            assertEquals(4, channel);
+            assertEquals(MuxProtocol.CLOSE, type);
+            replies.add(MuxProtocol.text(payload));
+        });
+        assertEquals(List.of("Log files are for system administrators only"), replies);
+    }
+}
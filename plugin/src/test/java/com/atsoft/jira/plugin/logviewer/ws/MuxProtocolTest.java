@@ -0,0 +1,130 @@
+package com.atsoft.jira.plugin.logviewer.ws;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MuxProtocolTest {
+
+    private static class Frame {
+        final int channel;
+        final byte type;
+        final String payload;
+
+        Frame(int channel, byte type, ByteBuffer payload) {
+            this.channel = channel;
+            this.type = type;
+            this.payload = MuxProtocol.text(payload);
+        }
+    }
+
+    private static ByteBuffer concat(ByteBuffer... frames) {
+        int length = 0;
+        for (ByteBuffer frame : frames) {
+            length += frame.remaining();
+        }
+        ByteBuffer message = ByteBuffer.allocate(length);
+        for (ByteBuffer frame : frames) {
+            message.put(frame);
+        }
+        return message.flip();
+    }
+
+    private static List<Frame> decode(ByteBuffer message, List<Frame> frames) throws ProtocolException {
+        MuxProtocol.decode(message, (channel, type, payload) -> frames.add(new Frame(channel, type, payload)));
+        return frames;
+    }
+
+    @Test
+    public void testRoundTripOfSeveralFrames() throws ProtocolException {
+        ByteBuffer message = concat(MuxProtocol.encode(1, MuxProtocol.INPUT, "ls -l\r"),
+                MuxProtocol.encode(MuxProtocol.MAX_CHANNEL, MuxProtocol.CLOSE, ""),
+                MuxProtocol.encode(300, MuxProtocol.OPEN_LOG, "atlassian-jira.log?level=ERROR"));
+        assertEquals(3 * MuxProtocol.HEADER_BYTES + 6 + 30, message.remaining());
+
+        List<Frame> frames = decode(message, new ArrayList<>());
+
+        assertEquals(3, frames.size());
+        assertEquals(1, frames.get(0).channel);
+        assertEquals(MuxProtocol.INPUT, frames.get(0).type);
+        assertEquals("ls -l\r", frames.get(0).payload);
+        // channel ids are unsigned
+        assertEquals(0xFFFF, frames.get(1).channel);
+        assertEquals(MuxProtocol.CLOSE, frames.get(1).type);
+        assertEquals("", frames.get(1).payload);
+        assertEquals(300, frames.get(2).channel);
+        assertEquals("atlassian-jira.log?level=ERROR", frames.get(2).payload);
+        assertFalse(message.hasRemaining());
+    }
+
+    @Test
+    public void testHeaderLayout() {
+        ByteBuffer frame = MuxProtocol.encode(0x1234, MuxProtocol.DATA, "ab");
+
+        assertArrayEquals(new byte[] { 0x12, 0x34, MuxProtocol.DATA, 0, 0, 0, 2, 'a', 'b' },
+                bytes(frame));
+    }
+
+    @Test
+    public void testEncodeReusesLargeEnoughTarget() {
+        ByteBuffer target = ByteBuffer.allocate(64);
+        ByteBuffer payload = ByteBuffer.wrap(new byte[] { 1, 2, 3 });
+
+        ByteBuffer frame = MuxProtocol.encode(target, 7, MuxProtocol.DATA, payload);
+
+        assertSame(target, frame);
+        assertEquals(MuxProtocol.HEADER_BYTES + 3, frame.remaining());
+        // the payload is left as it was
+        assertEquals(3, payload.remaining());
+        assertNotSame(target, MuxProtocol.encode(target, 7, MuxProtocol.DATA, ByteBuffer.allocate(64)));
+    }
+
+    @Test
+    public void testTruncatedHeader() {
+        ByteBuffer first = MuxProtocol.encode(1, MuxProtocol.INPUT, "x");
+        ByteBuffer message = concat(first, ByteBuffer.wrap(new byte[] { 0, 2, MuxProtocol.INPUT, 0 }));
+        List<Frame> frames = new ArrayList<>();
+
+        ProtocolException e = assertThrows(ProtocolException.class, () -> decode(message, frames));
+
+        assertEquals("Incomplete frame header", e.getMessage());
+        // the frames before it were passed on
+        assertEquals(1, frames.size());
+    }
+
+    @Test
+    public void testTruncatedPayload() {
+        ByteBuffer frame = MuxProtocol.encode(1, MuxProtocol.INPUT, "hello");
+        ByteBuffer message = ByteBuffer.wrap(bytes(frame), 0, MuxProtocol.HEADER_BYTES + 3);
+        List<Frame> frames = new ArrayList<>();
+
+        ProtocolException e = assertThrows(ProtocolException.class, () -> decode(message, frames));
+
+        assertEquals("Frame length 5 exceeds message", e.getMessage());
+        assertTrue(frames.isEmpty());
+    }
+
+    @Test
+    public void testOversizedLength() {
+        // a u32 length beyond what a Java int holds must not read as negative
+        ByteBuffer message = ByteBuffer.allocate(MuxProtocol.HEADER_BYTES + 4);
+        message.putShort((short) 1).put(MuxProtocol.INPUT).putInt(0xFFFFFFF0).putInt(0).flip();
+        List<Frame> frames = new ArrayList<>();
+
+        ProtocolException e = assertThrows(ProtocolException.class, () -> decode(message, frames));
+
+        assertEquals("Frame length 4294967280 exceeds message", e.getMessage());
+        assertTrue(frames.isEmpty());
+    }
+
+    private static byte[] bytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+}
@@ -1,6 +1,8 @@
 package ut.com.atsoft.jira.plugin.logviewer.helper;
 
 import com.atsoft.jira.plugin.logviewer.helper.IssueCopyHelper;
+import com.atsoft.jira.plugin.logviewer.helper.IssueCopyReport;
+import com.atsoft.jira.plugin.logviewer.helper.IssueCopyResult;
 import com.atlassian.jira.bc.issue.IssueService;
 import com.atlassian.jira.issue.CustomFieldManager;
 import com.atlassian.jira.issue.IssueInputParameters;
@@ -15,8 +17,11 @@ import com.atlassian.jira.issue.fields.layout.field.FieldLayoutManager;
 import com.atlassian.jira.issue.fields.OrderableField;
 import com.atlassian.jira.issue.priority.Priority;
 import com.atlassian.jira.mock.component.MockComponentWorker;
+import com.atlassian.jira.permission.ProjectPermissions;
 import com.atlassian.jira.project.Project;
 import com.atlassian.jira.project.ProjectManager;
+import com.atlassian.jira.security.JiraAuthenticationContext;
+import com.atlassian.jira.security.PermissionManager;
 import com.atlassian.jira.user.ApplicationUser;
 import com.atlassian.jira.util.SimpleErrorCollection;
 import org.junit.jupiter.api.BeforeEach;
@@ -25,10 +30,17 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -44,6 +56,10 @@ public class IssueCopyHelperTest {
     private CustomFieldManager customFieldManager;
     @Mock
     private ProjectManager projectManager;
+    @Mock
+    private JiraAuthenticationContext authenticationContext;
+    @Mock
+    private PermissionManager permissionManager;
 
     @Mock
     private ApplicationUser user;
@@ -73,6 +89,8 @@ public class IssueCopyHelperTest {
                 .addMock(FieldLayoutManager.class, fieldLayoutManager)
                 .addMock(CustomFieldManager.class, customFieldManager)
                 .addMock(ProjectManager.class, projectManager)
+                .addMock(JiraAuthenticationContext.class, authenticationContext)
+                .addMock(PermissionManager.class, permissionManager)
                 .init();
 
         // Common stubs
@@ -80,6 +98,8 @@ public class IssueCopyHelperTest {
         when(projectManager.getProjectObjByKey("TARGET")).thenReturn(targetProject);
         when(targetProject.getId()).thenReturn(100L);
         when(issueInputParameters.getActionParameters()).thenReturn(new HashMap<>()); // Ensure map is not null
+        lenient().when(permissionManager.hasPermission(eq(ProjectPermissions.BROWSE_PROJECTS),
+                any(com.atlassian.jira.issue.Issue.class), eq(user))).thenReturn(true);
 
         issueCopyHelper = new IssueCopyHelper();
     }
@@ -220,4 +240,177 @@ public class IssueCopyHelperTest {
         // Then
         assertNull(result);
     }
+
+    @Test
+    public void testCopyPlanIsReused() {
+        // Given
+        when(issueManager.getIssueObject("SOURCE-1")).thenReturn(sourceIssue);
+        when(fieldLayoutManager.getFieldLayout(targetProject, "10000")).thenReturn(fieldLayout);
+
+        FieldLayoutItem item = mock(FieldLayoutItem.class);
+        OrderableField<?> field = mock(OrderableField.class);
+        when(item.getOrderableField()).thenReturn(field);
+        when(field.getId()).thenReturn("customfield_10001");
+        when(item.isRequired()).thenReturn(true);
+        when(fieldLayout.getFieldLayoutItems()).thenReturn(Collections.singletonList(item));
+
+        CustomField cf = mock(CustomField.class);
+        CustomFieldType<?, ?> cfType = mock(CustomFieldType.class);
+        when(customFieldManager.getCustomFieldObject("customfield_10001")).thenReturn(cf);
+        when(cf.getCustomFieldType()).thenReturn(cfType);
+        when(cfType.getKey()).thenReturn("com.atlassian.jira.plugin.system.customfieldtypes:select");
+        when(cf.getId()).thenReturn("customfield_10001");
+
+        Option option = mock(Option.class);
+        when(sourceIssue.getCustomFieldValue(cf)).thenReturn(option);
+        when(option.getOptionId()).thenReturn(55L);
+
+        when(issueService.validateCreate(any(), any())).thenReturn(validationResult);
+        when(validationResult.isValid()).thenReturn(false);
+        when(validationResult.getErrorCollection()).thenReturn(new SimpleErrorCollection());
+
+        // When
+        issueCopyHelper.copyIssue(user, "SOURCE-1", "TARGET", "10000");
+        issueCopyHelper.copyIssue(user, "SOURCE-1", "TARGET", "10000");
+
+        // Then: 필드 구성과 커스텀 필드는 처음 한 번만 조회
+        verify(issueInputParameters, times(2)).addCustomFieldValue("customfield_10001", "55");
+        verify(fieldLayout, times(1)).getFieldLayoutItems();
+        verify(customFieldManager, times(1)).getCustomFieldObject("customfield_10001");
+    }
+
+    @Test
+    public void testCopyIssuesReport() {
+        // Given
+        when(issueManager.getIssueObject("SOURCE-1")).thenReturn(sourceIssue);
+        when(issueManager.getIssueObject("SOURCE-2")).thenReturn(null);
+        when(fieldLayoutManager.getFieldLayout(targetProject, "10000")).thenReturn(fieldLayout);
+        when(fieldLayout.getFieldLayoutItems()).thenReturn(Collections.emptyList());
+
+        when(issueService.validateCreate(any(), any())).thenReturn(validationResult);
+        when(validationResult.isValid()).thenReturn(true);
+        when(issueService.create(any(), any())).thenReturn(issueResult);
+        when(issueResult.isValid()).thenReturn(true);
+        when(issueResult.getIssue()).thenReturn(createdIssue);
+        when(createdIssue.getKey()).thenReturn("TARGET-1");
+
+        // When
+        IssueCopyReport report = issueCopyHelper.copyIssues(user, Arrays.asList("SOURCE-1", "SOURCE-2"), "TARGET",
+                "10000");
+
+        // Then
+        List<IssueCopyResult> results = report.getResults();
+        assertEquals(2, results.size());
+        assertEquals(1, report.getSuccessCount());
+        assertEquals(IssueCopyResult.Status.COPIED, results.get(0).getStatus());
+        assertEquals("TARGET-1", results.get(0).getTargetIssueKey());
+        assertEquals("SOURCE-2", results.get(1).getSourceIssueKey());
+        assertEquals(IssueCopyResult.Status.NOT_FOUND, results.get(1).getStatus());
+
+        // 필드 구성은 이슈마다가 아니라 한 번만 조회
+        verify(fieldLayoutManager, times(1)).getFieldLayout(targetProject, "10000");
+        verify(authenticationContext).setLoggedInUser(user);
+    }
+
+    @Test
+    public void testSourceIssueUserCannotBrowseIsNotFound() {
+        // Given: SOURCE-2 exists, but the user may not browse its project
+        MutableIssue hiddenIssue = mock(MutableIssue.class);
+        when(issueManager.getIssueObject("SOURCE-1")).thenReturn(sourceIssue);
+        when(issueManager.getIssueObject("SOURCE-2")).thenReturn(hiddenIssue);
+        doReturn(false).when(permissionManager).hasPermission(ProjectPermissions.BROWSE_PROJECTS, hiddenIssue, user);
+        when(fieldLayoutManager.getFieldLayout(targetProject, "10000")).thenReturn(fieldLayout);
+        when(fieldLayout.getFieldLayoutItems()).thenReturn(Collections.emptyList());
+
+        when(issueService.validateCreate(any(), any())).thenReturn(validationResult);
+        when(validationResult.isValid()).thenReturn(true);
+        when(issueService.create(any(), any())).thenReturn(issueResult);
+        when(issueResult.isValid()).thenReturn(true);
+        when(issueResult.getIssue()).thenReturn(createdIssue);
+        when(createdIssue.getKey()).thenReturn("TARGET-1");
+
+        // When
+        IssueCopyReport report = issueCopyHelper.copyIssues(user, Arrays.asList("SOURCE-1", "SOURCE-2"), "TARGET",
+                "10000");
+
+        // Then: reported exactly like a missing issue, and never copied
+        IssueCopyResult hidden = report.getResults().get(1);
+        assertEquals(IssueCopyResult.Status.NOT_FOUND, hidden.getStatus());
+        assertEquals(Collections.singletonList("Source issue not found: SOURCE-2"), hidden.getErrors());
+        assertNull(issueCopyHelper.copyIssue(user, "SOURCE-2", "TARGET", "10000"));
+        verify(issueService, times(1)).validateCreate(any(), any());
+    }
+
+    @Test
+    public void testCancelWaitsForCreateInProgress() throws Exception {
+        // Given: one copy thread, whose first create blocks until released
+        when(issueManager.getIssueObject("SOURCE-1")).thenReturn(sourceIssue);
+        when(issueManager.getIssueObject("SOURCE-2")).thenReturn(sourceIssue);
+        when(fieldLayoutManager.getFieldLayout(targetProject, "10000")).thenReturn(fieldLayout);
+        when(fieldLayout.getFieldLayoutItems()).thenReturn(Collections.emptyList());
+
+        CountDownLatch creating = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(issueService.validateCreate(any(), any())).thenReturn(validationResult);
+        when(validationResult.isValid()).thenReturn(true);
+        when(issueService.create(any(), any())).thenAnswer(invocation -> {
+            creating.countDown();
+            release.await(5, TimeUnit.SECONDS);
+            return issueResult;
+        });
+        when(issueResult.isValid()).thenReturn(true);
+        when(issueResult.getIssue()).thenReturn(createdIssue);
+        when(createdIssue.getKey()).thenReturn("TARGET-1");
+
+        AtomicReference<IssueCopyReport> report = new AtomicReference<>();
+        AtomicBoolean interrupted = new AtomicBoolean();
+        Thread caller = new Thread(() -> {
+            report.set(issueCopyHelper.copyIssues(user, Arrays.asList("SOURCE-1", "SOURCE-2"), "TARGET",
+                    "10000", 1));
+            interrupted.set(Thread.currentThread().isInterrupted());
+        });
+        caller.start();
+        assertTrue(creating.await(5, TimeUnit.SECONDS));
+
+        // When: cancelled while SOURCE-1 is being created
+        caller.interrupt();
+        Thread.sleep(50);
+        release.countDown();
+        caller.join(5000);
+
+        // Then: the issue that was created is reported, the one not started is not copied
+        List<IssueCopyResult> results = report.get().getResults();
+        assertEquals(IssueCopyResult.Status.COPIED, results.get(0).getStatus());
+        assertEquals("TARGET-1", results.get(0).getTargetIssueKey());
+        assertEquals(IssueCopyResult.Status.CANCELLED, results.get(1).getStatus());
+        assertTrue(interrupted.get());
+        verify(issueService, times(1)).create(any(), any());
+    }
+
+    @Test
+    public void testCopyIssuesValidationErrors() {
+        // Given
+        when(issueManager.getIssueObject("SOURCE-1")).thenReturn(sourceIssue);
+        when(fieldLayoutManager.getFieldLayout(targetProject, "10000")).thenReturn(fieldLayout);
+        when(fieldLayout.getFieldLayoutItems()).thenReturn(Collections.emptyList());
+
+        when(issueService.validateCreate(any(), any())).thenReturn(validationResult);
+        when(validationResult.isValid()).thenReturn(false);
+        SimpleErrorCollection errors = new SimpleErrorCollection();
+        errors.addErrorMessage("Validation failed");
+        errors.addError("summary", "Summary is required");
+        when(validationResult.getErrorCollection()).thenReturn(errors);
+
+        // When
+        IssueCopyReport report = issueCopyHelper.copyIssues(user, Collections.singletonList("SOURCE-1"), "TARGET",
+                "10000");
+
+        // Then
+        IssueCopyResult result = report.getResults().get(0);
+        assertFalse(result.isSuccess());
+        assertEquals(IssueCopyResult.Status.INVALID, result.getStatus());
+        assertNull(result.getTargetIssue());
+        assertEquals(Arrays.asList("Validation failed", "summary: Summary is required"), result.getErrors());
+        assertEquals(1, report.getFailures().size());
+    }
 }
@@ -0,0 +1,132 @@
+package ut.com.atsoft.jira.plugin.logviewer.service;
+
+import com.atlassian.jira.user.ApplicationUser;
+import com.atsoft.jira.plugin.logviewer.helper.IssueCopyReport;
+import com.atsoft.jira.plugin.logviewer.helper.IssueCopyResult;
+import com.atsoft.jira.plugin.logviewer.service.IssueCopyJob;
+import com.atsoft.jira.plugin.logviewer.service.IssueCopyJobService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class IssueCopyJobServiceTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<IssueCopyJob> finished = Collections.synchronizedList(new ArrayList<>());
+    private IssueCopyJobService service;
+
+    @BeforeEach
+    public void setup() {
+        // copies every issue, then waits for the test to let the job finish
+        service = new IssueCopyJobService((user, keys, projectKey, issueTypeId, onResult) -> {
+            List<IssueCopyResult> results = new ArrayList<>();
+            for (String key : keys) {
+                IssueCopyResult result = result(key);
+                onResult.accept(result);
+                results.add(result);
+            }
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            IssueCopyReport report = mock(IssueCopyReport.class);
+            when(report.getResults()).thenReturn(results);
+            when(report.getSuccessCount()).thenReturn(results.size());
+            return report;
+        }, 2, 1, 3, 60);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        service.shutdown();
+    }
+
+    private static IssueCopyResult result(String key) {
+        IssueCopyResult result = mock(IssueCopyResult.class);
+        when(result.getSourceIssueKey()).thenReturn(key);
+        when(result.isSuccess()).thenReturn(true);
+        return result;
+    }
+
+    private static ApplicationUser user(String key) {
+        ApplicationUser user = mock(ApplicationUser.class);
+        when(user.getKey()).thenReturn(key);
+        when(user.getUsername()).thenReturn(key);
+        return user;
+    }
+
+    private void waitForProgress(IssueCopyJob job, int completed) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (job.getCompleted() < completed && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(completed, job.getCompleted());
+    }
+
+    @Test
+    public void testJobsOfOneUserRunOneAtATime() throws InterruptedException {
+        ApplicationUser alice = user("alice");
+        ApplicationUser bob = user("bob");
+        IssueCopyJob first = service.submit(alice, List.of("SRC-1", "SRC-2"), "TARGET", "10000");
+        IssueCopyJob second = service.submit(alice, List.of("SRC-3"), "TARGET", "10000");
+        IssueCopyJob other = service.submit(bob, List.of("SRC-4"), "TARGET", "10000");
+        first.subscribe(new IssueCopyJob.Listener() {
+            @Override
+            public void onProgress(IssueCopyJob job, IssueCopyResult result) {
+            }
+
+            @Override
+            public void onFinish(IssueCopyJob job) {
+                finished.add(job);
+            }
+        });
+
+        // alice's second job waits for her first, bob's runs next to it
+        waitForProgress(first, 2);
+        waitForProgress(other, 1);
+        assertEquals(IssueCopyJob.State.RUNNING, first.getState());
+        assertEquals(IssueCopyJob.State.QUEUED, second.getState());
+        assertEquals(3, service.getPendingCount());
+
+        release.countDown();
+        assertTrue(second.await(5, TimeUnit.SECONDS));
+        assertEquals(IssueCopyJob.State.FINISHED, first.getState());
+        assertEquals(IssueCopyJob.State.FINISHED, second.getState());
+        assertEquals(2, first.getSucceeded());
+        assertEquals(List.of(first), finished);
+        assertEquals(List.of(second, first), service.getJobs(alice));
+    }
+
+    @Test
+    public void testCancelQueuedJobAndRejectWhenFull() throws InterruptedException {
+        ApplicationUser alice = user("alice");
+        IssueCopyJob first = service.submit(alice, List.of("SRC-1"), "TARGET", "10000");
+        IssueCopyJob second = service.submit(alice, List.of("SRC-2"), "TARGET", "10000");
+        service.submit(alice, List.of("SRC-3"), "TARGET", "10000");
+        assertThrows(RejectedExecutionException.class,
+                () -> service.submit(alice, List.of("SRC-4"), "TARGET", "10000"));
+
+        assertTrue(service.cancel(second.getId()));
+        assertEquals(IssueCopyJob.State.CANCELLED, second.getState());
+        assertTrue(second.await(0, TimeUnit.SECONDS));
+        assertEquals(2, service.getPendingCount());
+        assertFalse(service.cancel(second.getId()));
+
+        release.countDown();
+        assertTrue(first.await(5, TimeUnit.SECONDS));
+        assertEquals(0, second.getCompleted());
+    }
+}
@@ -0,0 +1,54 @@
+package ut.com.atsoft.jira.plugin.logviewer.service;
+
+import com.atsoft.jira.plugin.logviewer.service.LatencyHistogram;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testEmpty() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMeanMicros());
+        assertEquals(0, histogram.getPercentileMicros(0.99));
+    }
+
+    @Test
+    public void testPercentilesWithinBucketPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int micros = 1; micros <= 1000; micros++) {
+            histogram.record(TimeUnit.MICROSECONDS.toNanos(micros));
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(500, histogram.getMeanMicros());
+        assertEquals(1000, histogram.getMaxMicros());
+        assertBetween(500, 500 * 9 / 8, histogram.getPercentileMicros(0.5));
+        assertBetween(990, 1000, histogram.getPercentileMicros(0.99));
+        // never beyond the largest value recorded
+        assertEquals(1000, histogram.getPercentileMicros(1.0));
+    }
+
+    @Test
+    public void testOutliersAreCountedInLastBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(TimeUnit.DAYS.toNanos(365));
+        histogram.record(-1);
+
+        Map<String, Long> snapshot = histogram.toMap();
+        assertEquals(2, (long) snapshot.get("count"));
+        assertEquals(0, (long) snapshot.get("p50Micros"));
+        assertEquals(TimeUnit.DAYS.toMicros(365), (long) snapshot.get("maxMicros"));
+        assertTrue(snapshot.get("p99Micros") > TimeUnit.DAYS.toMicros(20));
+    }
+
+    private static void assertBetween(long min, long max, long actual) {
+        assertTrue(actual >= min && actual <= max, actual + " not in [" + min + ", " + max + "]");
+    }
+}
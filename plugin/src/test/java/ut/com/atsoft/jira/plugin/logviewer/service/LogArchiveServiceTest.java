@@ -0,0 +1,242 @@
+package ut.com.atsoft.jira.plugin.logviewer.service;
+
+import com.atsoft.jira.plugin.logviewer.service.GzipIndex;
+import com.atsoft.jira.plugin.logviewer.service.LogArchiveService;
+import com.atsoft.jira.plugin.logviewer.service.LogIndex;
+import com.atsoft.jira.plugin.logviewer.service.LogPosition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogArchiveServiceTest {
+    private static final long SPAN = 64 * 1024;
+
+    private Path directory;
+    private Path indexDirectory;
+    private byte[] content;
+    private List<String> lines;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("log-archive");
+        indexDirectory = directory.resolve("index");
+        lines = new ArrayList<>();
+        StringBuilder text = new StringBuilder();
+        Random random = new Random(42);
+        for (int i = 0; i < 40_000; i++) {
+            String line = String.format("2024-05-14 14:%02d:%02d,%03d+0900 exec-%d %s [c.a.j.Service%d] entry %d %x",
+                    i / 60 % 60, i % 60, i % 1000, random.nextInt(50), i % 7 == 0 ? "ERROR" : "INFO",
+                    random.nextInt(20), i, random.nextLong());
+            text.append(line).append('\n');
+            lines.add(line);
+        }
+        content = text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    private Path gzip(String name, byte[]... members) throws IOException {
+        Path file = directory.resolve(name);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            for (byte[] member : members) {
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+                try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+                    gzip.write(member);
+                }
+                out.write(compressed.toByteArray());
+            }
+        }
+        return file;
+    }
+
+    private static byte[] read(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining() && channel.read(buffer, position + buffer.position()) > 0) {
+            // until full or at the end
+        }
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    @Test
+    public void testReadsDecompressedContent() throws IOException {
+        Path archive = gzip("atlassian-jira.log.1.gz", content);
+        try (FileChannel file = FileChannel.open(archive, StandardOpenOption.READ)) {
+            GzipIndex index = GzipIndex.build(file, SPAN);
+            assertEquals(content.length, index.getSize());
+            assertFalse(index.isTruncated());
+            // one per span at most, at the next block start
+            assertTrue(index.getCheckpointCount() > 10 && index.getCheckpointCount() <= content.length / SPAN,
+                    "checkpoints: " + index.getCheckpointCount());
+        }
+        LogArchiveService archives = new LogArchiveService(indexDirectory, SPAN);
+        try (FileChannel channel = archives.open(archive)) {
+            assertEquals(content.length, channel.size());
+            assertArrayEquals(content, read(channel, 0, content.length));
+            Random random = new Random(7);
+            for (int i = 0; i < 200; i++) {
+                int position = random.nextInt(content.length);
+                int length = random.nextInt(20_000);
+                assertArrayEquals(Arrays.copyOfRange(content, position, Math.min(content.length, position + length)),
+                        read(channel, position, length), "at " + position);
+            }
+            assertEquals(-1, channel.read(ByteBuffer.allocate(10), content.length));
+        }
+    }
+
+    @Test
+    public void testParallelReads() throws Exception {
+        Path archive = gzip("atlassian-jira.log.2.gz", content);
+        LogArchiveService archives = new LogArchiveService(indexDirectory, SPAN);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try (FileChannel channel = archives.open(archive)) {
+            List<Future<Boolean>> reads = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int seed = t;
+                reads.add(pool.submit(() -> {
+                    Random random = new Random(seed);
+                    for (int i = 0; i < 50; i++) {
+                        int position = random.nextInt(content.length);
+                        byte[] expected = Arrays.copyOfRange(content, position, Math.min(content.length,
+                                position + 4096));
+                        if (!Arrays.equals(expected, read(channel, position, 4096))) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> read : reads) {
+                assertTrue(read.get());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, archives.getIndexCount());
+    }
+
+    @Test
+    public void testMultipleMembersAndPlainFiles() throws IOException {
+        int half = content.length / 2;
+        Path archive = gzip("atlassian-jira.log.3.gz", Arrays.copyOfRange(content, 0, half),
+                Arrays.copyOfRange(content, half, content.length));
+        Path plain = directory.resolve("atlassian-jira.log.4");
+        Files.write(plain, content);
+        LogArchiveService archives = new LogArchiveService(indexDirectory, SPAN);
+        try (FileChannel channel = archives.open(archive)) {
+            assertEquals(content.length, channel.size());
+            assertArrayEquals(Arrays.copyOfRange(content, half - 100, half + 100), read(channel, half - 100, 200));
+        }
+        assertFalse(LogArchiveService.isCompressed(plain));
+        try (FileChannel channel = archives.open(plain)) {
+            assertArrayEquals(content, read(channel, 0, content.length));
+        }
+        assertEquals(1, archives.getIndexCount());
+    }
+
+    @Test
+    public void testCheckpointsAtMemberBoundaries() throws IOException {
+        // members of a single block each: every checkpoint is at the start of a member, with an empty window
+        List<byte[]> members = new ArrayList<>();
+        for (int from = 0; from < content.length; from += 8192) {
+            members.add(Arrays.copyOfRange(content, from, Math.min(content.length, from + 8192)));
+        }
+        Path archive = gzip("atlassian-jira.log.5.gz", members.toArray(new byte[0][]));
+        LogArchiveService archives = new LogArchiveService(indexDirectory, SPAN);
+        try (FileChannel channel = archives.open(archive)) {
+            assertEquals(content.length, channel.size());
+            Random random = new Random(11);
+            for (int i = 0; i < 50; i++) {
+                int position = random.nextInt(content.length);
+                assertArrayEquals(Arrays.copyOfRange(content, position, Math.min(content.length, position + 20_000)),
+                        read(channel, position, 20_000), "at " + position);
+            }
+        }
+    }
+
+    @Test
+    public void testIndexIsSavedAndSurvivesRename() throws IOException {
+        Path archive = gzip("atlassian-jira.log.1.gz", content);
+        try (FileChannel channel = new LogArchiveService(indexDirectory, SPAN).open(archive)) {
+            assertEquals(content.length, channel.size());
+        }
+        Path gzi;
+        try (Stream<Path> files = Files.list(indexDirectory)) {
+            gzi = files.filter(p -> p.toString().endsWith(".gzi")).findFirst().orElseThrow();
+        }
+        GzipIndex loaded = GzipIndex.load(gzi, SPAN);
+        assertNotNull(loaded);
+        assertNull(GzipIndex.load(gzi, SPAN * 2));
+        assertEquals(content.length, loaded.getSize());
+
+        // the next rotation renames the archive; a new service finds the saved index by content
+        Path renamed = Files.move(archive, directory.resolve("atlassian-jira.log.2.gz"));
+        Files.writeString(gzi.resolveSibling("garbage.gzi"), "not an index");
+        try (FileChannel file = FileChannel.open(renamed, StandardOpenOption.READ)) {
+            assertTrue(loaded.matches(file));
+        }
+        try (FileChannel channel = new LogArchiveService(indexDirectory, SPAN).open(renamed)) {
+            int position = content.length - 5000;
+            assertArrayEquals(Arrays.copyOfRange(content, position, content.length), read(channel, position, 5000));
+        }
+    }
+
+    @Test
+    public void testTruncatedAndInvalidArchives() throws IOException {
+        Path archive = gzip("atlassian-jira.log.1.gz", content);
+        byte[] compressed = Files.readAllBytes(archive);
+        Files.write(archive, Arrays.copyOf(compressed, compressed.length / 2));
+        LogArchiveService archives = new LogArchiveService(indexDirectory, SPAN);
+        try (FileChannel channel = archives.open(archive)) {
+            long size = channel.size();
+            assertTrue(size > 0 && size < content.length, "size: " + size);
+            assertArrayEquals(Arrays.copyOf(content, (int) size), read(channel, 0, (int) size));
+        }
+
+        Path invalid = directory.resolve("atlassian-jira.log.5.gz");
+        Files.write(invalid, content);
+        assertThrows(ZipException.class, () -> archives.open(invalid).close());
+    }
+
+    @Test
+    public void testLogIndexOverArchive() throws IOException {
+        Path archive = gzip("atlassian-jira.log.1.gz", content);
+        try (FileChannel channel = new LogArchiveService(indexDirectory, SPAN).open(archive)) {
+            LogIndex index = new LogIndex(256 * 1024);
+            index.update(channel);
+            assertEquals(lines.size(), index.getLineCount());
+            for (int line : new int[] { 0, 1, 12_345, lines.size() - 1 }) {
+                LogPosition position = index.seekLine(channel, line);
+                assertEquals(line, position.getLine());
+            }
+            assertEquals(lines.subList(30_000, 30_050), index.page(channel, 30_000, 50, 1024).getLines());
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package ut.com.atsoft.jira.plugin.logviewer.service;
+
+import com.atsoft.jira.plugin.logviewer.service.LogFiles;
+import com.atsoft.jira.plugin.logviewer.service.LogIndex;
+import com.atsoft.jira.plugin.logviewer.service.LogPage;
+import com.atsoft.jira.plugin.logviewer.service.LogPosition;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogIndexTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 5, 14, 14, 0);
+    private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+    private Path directory;
+    private Path logFile;
+    private List<String> written;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("log-index");
+        logFile = directory.resolve("atlassian-jira.log");
+        written = new ArrayList<>();
+        Files.writeString(logFile, "");
+        append(0, 1000);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    // one entry per second, every tenth followed by an untimestamped stack trace line
+    private void append(int from, int to) throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            String line = FORMAT.format(START.plusSeconds(i)) + ",000+0900 exec-" + i + " INFO entry " + i;
+            text.append(line).append('\n');
+            written.add(line);
+            if (i % 10 == 0) {
+                text.append("\tat Frame.call(Frame.java:").append(i).append(")\n");
+                written.add("\tat Frame.call(Frame.java:" + i + ")");
+            }
+        }
+        Files.writeString(logFile, text, StandardOpenOption.APPEND);
+    }
+
+    private LogIndex build(FileChannel channel) throws IOException {
+        LogIndex index = new LogIndex(256);
+        index.update(channel);
+        return index;
+    }
+
+    @Test
+    public void testParseTimestamp() {
+        ByteBuffer line = ByteBuffer.wrap("2024-05-14 14:32:10,123+0900 main".getBytes());
+        assertEquals(LogFiles.toMillis(LocalDateTime.of(2024, 5, 14, 14, 32, 10, 123_000_000)),
+                LogFiles.parseTimestamp(line, 0, line.limit()));
+        assertEquals(-1, LogFiles.parseTimestamp(ByteBuffer.wrap("\tat Frame.call".getBytes()), 0, 14));
+    }
+
+    @Test
+    public void testSeekLine() throws IOException {
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+            LogIndex index = build(channel);
+            assertEquals(written.size(), index.getLineCount());
+            assertTrue(index.getCheckpointCount() > 100);
+            for (int line : new int[] { 0, 1, 10, 11, 537, written.size() - 1 }) {
+                LogPosition position = index.seekLine(channel, line);
+                assertEquals(line, position.getLine());
+                assertEquals(List.of(written.get(line)), LogFiles.readLines(channel, position.getOffset(),
+                        channel.size(), 1, 1024));
+            }
+            assertEquals(channel.size(), index.seekLine(channel, written.size() + 5).getOffset());
+        }
+    }
+
+    @Test
+    public void testSeekTime() throws IOException {
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+            LogIndex index = build(channel);
+            LogPosition position = index.seekTime(channel, LogFiles.toMillis(START.plusSeconds(537)));
+            assertEquals(written.indexOf(written.stream().filter(l -> l.endsWith(" entry 537")).findFirst().get()),
+                    position.getLine());
+            assertEquals(0, index.seekTime(channel, LogFiles.toMillis(START.minusHours(1))).getLine());
+            assertEquals(written.size(), index.seekTime(channel, LogFiles.toMillis(START.plusHours(1))).getLine());
+        }
+    }
+
+    @Test
+    public void testPageAndIncrementalUpdate() throws IOException {
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+            LogIndex index = build(channel);
+            LogPage page = index.page(channel, 300, 50, 1024);
+            assertEquals(300, page.getFirstLine());
+            assertEquals(written.subList(300, 350), page.getLines());
+
+            // a partial line is not indexed until it is complete
+            Files.writeString(logFile, "2024-05-14 15:00:00,000 partial", StandardOpenOption.APPEND);
+            index.update(channel);
+            assertEquals(written.size(), index.getLineCount());
+            Files.writeString(logFile, " line\n", StandardOpenOption.APPEND);
+            written.add("2024-05-14 15:00:00,000 partial line");
+            append(1000, 1100);
+            assertTrue(index.update(channel));
+            assertEquals(written.size(), index.getLineCount());
+            assertEquals(written.subList(written.size() - 20, written.size()),
+                    index.page(channel, written.size() - 20, 100, 1024).getLines());
+        }
+    }
+
+    @Test
+    public void testSaveLoadAndReset() throws IOException {
+        Path saved = directory.resolve("index").resolve("atlassian-jira.log.idx");
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+            build(channel).save(saved);
+        }
+        assertNull(LogIndex.load(saved, 512));
+        LogIndex loaded = LogIndex.load(saved, 256);
+        assertNotNull(loaded);
+        assertEquals(written.size(), loaded.getLineCount());
+
+        // the log was replaced by a smaller file: the loaded index starts over
+        Files.writeString(logFile, "2024-05-15 00:00:00,000 first\nsecond\n");
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+            assertTrue(loaded.update(channel));
+            assertEquals(2, loaded.getLineCount());
+            assertEquals(List.of("second"), loaded.page(channel, 1, 10, 1024).getLines());
+        }
+    }
+}
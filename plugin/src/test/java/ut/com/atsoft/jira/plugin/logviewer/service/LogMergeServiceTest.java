@@ -0,0 +1,271 @@
+package ut.com.atsoft.jira.plugin.logviewer.service;
+
+import com.atsoft.jira.plugin.logviewer.service.LogArchiveService;
+import com.atsoft.jira.plugin.logviewer.service.LogFiles;
+import com.atsoft.jira.plugin.logviewer.service.LogFilter;
+import com.atsoft.jira.plugin.logviewer.service.LogMerge;
+import com.atsoft.jira.plugin.logviewer.service.LogMergeService;
+import com.atsoft.jira.plugin.logviewer.service.LogViewerSettings;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogMergeServiceTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 5, 14, 14, 0);
+    private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss,SSS");
+
+    private Path directory;
+    private Map<String, Path> nodes;
+    private LogMergeService service;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("log-merge");
+        nodes = new LinkedHashMap<>();
+        for (String node : new String[] { "node1", "node2", "node3" }) {
+            nodes.put(node, Files.createDirectories(directory.resolve(node).resolve("log")));
+        }
+        service = new LogMergeService(nodes, new LogArchiveService(directory.resolve("index"), 64 * 1024));
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        service.shutdown();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    private static String entry(long millis, String text) {
+        return FORMAT.format(START.plusNanos(millis * 1_000_000)) + "+0900 exec-1 INFO " + text;
+    }
+
+    // node i writes an entry every 3 ms starting at i ms; every fifth has a two line stack trace
+    private static String text(int node, int from, int to) {
+        StringBuilder text = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            long millis = i * 3L + node;
+            text.append(entry(millis, "node" + (node + 1) + " entry " + i)).append('\n');
+            if (i % 5 == 0) {
+                text.append("java.lang.IllegalStateException: ").append(millis).append('\n');
+                text.append("\tat Frame.call(Frame.java:").append(i).append(")\n");
+            }
+        }
+        return text.toString();
+    }
+
+    private static class Lines implements LogMerge.Listener {
+        final List<String> nodes = new ArrayList<>();
+        final List<String> texts = new ArrayList<>();
+
+        @Override
+        public void onLine(String node, String text) {
+            nodes.add(node);
+            texts.add(text);
+        }
+    }
+
+    private static Lines readAll(LogMerge merge) throws IOException {
+        Lines lines = new Lines();
+        while (merge.read(lines, 100, 0) > 0) {
+            // until the end
+        }
+        return lines;
+    }
+
+    @Test
+    public void testMergesByTimeKeepingEntriesTogether() throws IOException {
+        for (int node = 0; node < 3; node++) {
+            Files.writeString(nodes.get("node" + (node + 1)).resolve("atlassian-jira.log"), text(node, 0, 200));
+        }
+        try (LogMerge merge = service.open("atlassian-jira.log", LogFilter.UNBOUNDED, false)) {
+            assertEquals(List.of("node1", "node2", "node3"), merge.getNodes());
+            Lines lines = readAll(merge);
+            assertTrue(merge.isDone());
+            assertEquals(3 * (200 + 2 * 40), lines.texts.size());
+            long previous = Long.MIN_VALUE;
+            String entryNode = null;
+            for (int i = 0; i < lines.texts.size(); i++) {
+                String text = lines.texts.get(i);
+                if (text.startsWith("2024-")) {
+                    long timestamp = LogFiles.toMillis(LocalDateTime.parse(text.substring(0, 23).replace(' ', 'T')
+                            .replace(',', '.')));
+                    assertTrue(timestamp > previous, "out of order at " + i + ": " + text);
+                    previous = timestamp;
+                    entryNode = lines.nodes.get(i);
+                    assertTrue(text.contains(entryNode + " entry "), text);
+                } else {
+                    // a stack trace line right after its entry, from the same node
+                    assertEquals(entryNode, lines.nodes.get(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSinceSeeksEveryNode() throws IOException {
+        for (int node = 0; node < 3; node++) {
+            Path file = nodes.get("node" + (node + 1)).resolve("atlassian-jira.log");
+            Files.writeString(file, text(node, 0, 20_000));
+        }
+        assertTrue(Files.size(nodes.get("node1").resolve("atlassian-jira.log")) > 1024 * 1024);
+        long since = LogFiles.toMillis(START.plusNanos(30_000 * 1_000_000L));
+        try (LogMerge merge = service.open("atlassian-jira.log", since, false)) {
+            Lines lines = new Lines();
+            merge.read(lines, 4, 0);
+            // 30000 ms is entry 10000 of node1, then node2 and node3 one ms apart
+            assertEquals(List.of(entry(30_000, "node1 entry 10000"), "java.lang.IllegalStateException: 30000",
+                    "\tat Frame.call(Frame.java:10000)", entry(30_001, "node2 entry 10000")), lines.texts);
+        }
+        long after = LogFiles.toMillis(START.plusHours(1));
+        try (LogMerge merge = service.open("atlassian-jira.log", after, false)) {
+            assertEquals(0, merge.read(new Lines(), 10, 0));
+            assertTrue(merge.isDone());
+        }
+    }
+
+    @Test
+    public void testNodesWithoutTheFileAndArchives() throws IOException {
+        for (int node : new int[] { 0, 2 }) {
+            Path archive = nodes.get("node" + (node + 1)).resolve("atlassian-jira.log.1.gz");
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(archive))) {
+                out.write(text(node, 0, 50).getBytes());
+            }
+        }
+        Files.writeString(nodes.get("node2").resolve("atlassian-jira.log"), text(1, 0, 10));
+        assertEquals(List.of("atlassian-jira.log", "atlassian-jira.log.1.gz"), service.listLogFiles());
+        assertThrows(IOException.class, () -> service.open("missing.log", LogFilter.UNBOUNDED, false));
+        assertThrows(IOException.class, () -> service.open("../../node2/log/atlassian-jira.log",
+                LogFilter.UNBOUNDED, false));
+
+        try (LogMerge merge = service.open("atlassian-jira.log.1.gz", LogFilter.UNBOUNDED, false)) {
+            assertEquals(List.of("node1", "node3"), merge.getNodes());
+            Lines lines = readAll(merge);
+            assertEquals(2 * (50 + 2 * 10), lines.texts.size());
+            assertEquals(List.of(entry(0, "node1 entry 0"), "java.lang.IllegalStateException: 0",
+                    "\tat Frame.call(Frame.java:0)", entry(2, "node3 entry 0")), lines.texts.subList(0, 4));
+            assertEquals("node3", lines.nodes.get(3));
+        }
+    }
+
+    @Test
+    public void testFollowHoldsBackForQuietNodes() throws IOException {
+        Path first = nodes.get("node1").resolve("atlassian-jira.log");
+        Path second = nodes.get("node2").resolve("atlassian-jira.log");
+        Files.writeString(first, entry(0, "a0") + "\n");
+        Files.writeString(second, entry(5, "b5") + "\n");
+        long lag = LogViewerSettings.MERGE_LAG_MILLIS;
+        try (LogMerge merge = service.open("atlassian-jira.log", LogFilter.UNBOUNDED, true)) {
+            Lines lines = new Lines();
+            // node1 is quiet after a0 and might still write something before b5
+            assertEquals(1, merge.read(lines, 100, 1000));
+            assertEquals(List.of(entry(0, "a0")), lines.texts);
+            assertEquals(0, merge.read(lines, 100, 1000 + lag - 1));
+
+            // it does; a partial line waits for its newline, so node1 is quiet again after a3
+            Files.writeString(first, entry(3, "a3") + "\n" + entry(9, "a9"), StandardOpenOption.APPEND);
+            long quiet = 1000 + lag;
+            assertEquals(1, merge.read(lines, 100, quiet));
+            assertEquals(1, merge.read(lines, 100, quiet + lag));
+            assertEquals(List.of("a0", "a3", "b5"), lines.texts.stream().map(t -> t.substring(t.length() - 2))
+                    .toList());
+            assertFalse(merge.isDone());
+
+            // now node2 is quiet; after the lag, node1's later entries go out without it
+            Files.writeString(first, "\n", StandardOpenOption.APPEND);
+            assertEquals(0, merge.read(lines, 100, quiet + 2 * lag - 1));
+            assertEquals(1, merge.read(lines, 100, quiet + 2 * lag));
+            assertEquals(entry(9, "a9"), lines.texts.get(3));
+            assertEquals("node1", lines.nodes.get(3));
+        }
+    }
+
+    @Test
+    public void testStreamsInBackground() throws Exception {
+        for (int node = 0; node < 3; node++) {
+            Files.writeString(nodes.get("node" + (node + 1)).resolve("atlassian-jira.log"), text(node, 0, 1000));
+        }
+        CountDownLatch finished = new CountDownLatch(1);
+        List<Exception> errors = new ArrayList<>();
+        int[] batches = new int[1];
+        Lines lines = new Lines() {
+            @Override
+            public void onBatch(Runnable onDelivered) {
+                batches[0]++;
+                onDelivered.run();
+            }
+
+            @Override
+            public void onFinish(Exception error) {
+                if (error != null) {
+                    errors.add(error);
+                }
+                finished.countDown();
+            }
+        };
+        service.start(service.open("atlassian-jira.log", LogFilter.UNBOUNDED, false), lines);
+        assertTrue(finished.await(10, TimeUnit.SECONDS));
+        assertEquals(List.of(), errors);
+        assertEquals(3 * (1000 + 2 * 200), lines.texts.size());
+        assertTrue(batches[0] >= 3 * 1400 / 500);
+        assertEquals(0, service.getRunningCount());
+    }
+
+    @Test
+    public void testNextBatchWaitsForDelivery() throws Exception {
+        for (int node = 0; node < 3; node++) {
+            Files.writeString(nodes.get("node" + (node + 1)).resolve("atlassian-jira.log"), text(node, 0, 1000));
+        }
+        CountDownLatch finished = new CountDownLatch(1);
+        BlockingQueue<Runnable> undelivered = new LinkedBlockingQueue<>();
+        Lines lines = new Lines() {
+            @Override
+            public void onBatch(Runnable onDelivered) {
+                undelivered.add(onDelivered);
+            }
+
+            @Override
+            public void onFinish(Exception error) {
+                finished.countDown();
+            }
+        };
+        service.start(service.open("atlassian-jira.log", LogFilter.UNBOUNDED, false), lines);
+
+        Runnable first = undelivered.poll(10, TimeUnit.SECONDS);
+        assertNotNull(first);
+        Thread.sleep(200);
+        // nothing more is read while the batch is on its way
+        assertEquals(500, lines.texts.size());
+        assertTrue(undelivered.isEmpty());
+
+        first.run();
+        while (finished.getCount() > 0) {
+            Runnable next = undelivered.poll(10, TimeUnit.SECONDS);
+            assertNotNull(next);
+            next.run();
+        }
+        assertEquals(3 * (1000 + 2 * 200), lines.texts.size());
+        assertEquals(0, service.getRunningCount());
+    }
+}
@@ -0,0 +1,180 @@
+package ut.com.atsoft.jira.plugin.logviewer.service;
+
+import com.atsoft.jira.plugin.logviewer.service.LogMatch;
+import com.atsoft.jira.plugin.logviewer.service.LogSearch;
+import com.atsoft.jira.plugin.logviewer.service.LogSearchService;
+import com.atsoft.jira.plugin.logviewer.service.LogTailService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogSearchTest {
+
+    private Path directory;
+    private List<String> lines;
+    private LogSearchService service;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("log-search");
+        lines = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            lines.add(i % 97 == 0 ? "ERROR issue JRA-" + i + " failed" : "INFO line " + i);
+        }
+        Files.write(directory.resolve("atlassian-jira.log"), lines);
+        // small segments so a search spans many of them
+        service = new LogSearchService(new LogTailService(directory), 4, 512);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        service.shutdown();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    private static class Collector implements LogSearch.Listener {
+        final List<LogMatch> matches = new ArrayList<>();
+        int finishes;
+
+        @Override
+        public synchronized void onMatch(LogMatch match, Runnable onDelivered) {
+            matches.add(match);
+            onDelivered.run();
+        }
+
+        @Override
+        public synchronized void onFinish(LogSearch search) {
+            finishes++;
+        }
+    }
+
+    @Test
+    public void testMatchesInFileOrderWithContext() throws Exception {
+        Collector collector = new Collector();
+        LogSearch search = service.search("atlassian-jira.log", Pattern.compile("JRA-\\d+"), 1000, 2, collector);
+        assertTrue(search.await(10, TimeUnit.SECONDS));
+
+        assertTrue(search.isComplete());
+        assertEquals(1, collector.finishes);
+        assertEquals(52, collector.matches.size());
+        for (int i = 0; i < collector.matches.size(); i++) {
+            LogMatch match = collector.matches.get(i);
+            int line = i * 97;
+            assertEquals(line, match.getLine());
+            assertEquals(lines.get(line), match.getText());
+            assertEquals(lines.subList(Math.max(0, line - 2), line), match.getBefore());
+            assertEquals(lines.subList(line + 1, Math.min(lines.size(), line + 3)), match.getAfter());
+        }
+    }
+
+    @Test
+    public void testStopsAtLimit() throws Exception {
+        Collector collector = new Collector();
+        LogSearch search = service.search("atlassian-jira.log", Pattern.compile("INFO"), 10, 0, collector);
+        assertTrue(search.await(10, TimeUnit.SECONDS));
+
+        assertTrue(search.isLimitReached());
+        assertFalse(search.isComplete());
+        assertEquals(10, collector.matches.size());
+        assertEquals(10, collector.matches.get(9).getLine());
+        assertEquals(1, collector.finishes);
+    }
+
+    @Test
+    public void testCancel() throws Exception {
+        Collector collector = new Collector();
+        LogSearch search = service.search("atlassian-jira.log", Pattern.compile("(a|b|c)*line"), 100000, 0, collector);
+        search.cancel();
+        assertTrue(search.await(10, TimeUnit.SECONDS));
+        assertFalse(search.isComplete());
+        assertEquals(1, collector.finishes);
+        assertEquals(0, service.getRunningCount());
+    }
+
+    @Test
+    public void testSlowListenerPausesSearch() throws Exception {
+        LinkedBlockingQueue<Runnable> acknowledgements = new LinkedBlockingQueue<>();
+        List<LogMatch> matches = new ArrayList<>();
+        Collector finishes = new Collector();
+        LogSearch search = service.search("atlassian-jira.log", Pattern.compile("INFO"), 100000, 0,
+                new LogSearch.Listener() {
+                    @Override
+                    public void onMatch(LogMatch match, Runnable onDelivered) {
+                        // like a client that has not received the previous message yet
+                        matches.add(match);
+                        acknowledgements.add(onDelivered);
+                    }
+
+                    @Override
+                    public void onFinish(LogSearch search) {
+                        finishes.onFinish(search);
+                    }
+                });
+        Runnable first = acknowledgements.poll(10, TimeUnit.SECONDS);
+        assertNotNull(first);
+        Thread.sleep(200);
+        assertEquals(1, matches.size());
+        assertFalse(search.isDone());
+        // the search holds back once enough matches wait, rather than scanning the whole file
+        assertTrue(search.getMatchCount() < 2000, "found " + search.getMatchCount());
+
+        first.run();
+        Runnable next;
+        while ((next = acknowledgements.poll(10, TimeUnit.SECONDS)) != null) {
+            next.run();
+            if (search.isDone()) {
+                break;
+            }
+        }
+        assertTrue(search.await(10, TimeUnit.SECONDS));
+        assertTrue(search.isComplete());
+        assertEquals(5000 - 52, matches.size());
+        for (int i = 1; i < matches.size(); i++) {
+            assertTrue(matches.get(i).getLine() > matches.get(i - 1).getLine());
+        }
+        assertEquals(1, finishes.finishes);
+    }
+
+    @Test
+    public void testCancelWhileMatchUndelivered() throws Exception {
+        LinkedBlockingQueue<Runnable> acknowledgements = new LinkedBlockingQueue<>();
+        Collector finishes = new Collector();
+        LogSearch search = service.search("atlassian-jira.log", Pattern.compile("INFO"), 100000, 0,
+                new LogSearch.Listener() {
+                    @Override
+                    public void onMatch(LogMatch match, Runnable onDelivered) {
+                        acknowledgements.add(onDelivered);
+                    }
+
+                    @Override
+                    public void onFinish(LogSearch search) {
+                        finishes.onFinish(search);
+                    }
+                });
+        Runnable undelivered = acknowledgements.poll(10, TimeUnit.SECONDS);
+        assertNotNull(undelivered);
+        search.cancel();
+        assertTrue(search.isDone());
+        assertEquals(1, finishes.finishes);
+        // a late acknowledgement delivers nothing more
+        undelivered.run();
+        assertTrue(acknowledgements.isEmpty());
+        assertEquals(1, finishes.finishes);
+        assertEquals(0, service.getRunningCount());
+    }
+}
@@ -0,0 +1,211 @@
+package ut.com.atsoft.jira.plugin.logviewer.service;
+
+import com.atsoft.jira.plugin.logviewer.service.LogFiles;
+import com.atsoft.jira.plugin.logviewer.service.LogFilter;
+import com.atsoft.jira.plugin.logviewer.service.LogLevel;
+import com.atsoft.jira.plugin.logviewer.service.LogRecord;
+import com.atsoft.jira.plugin.logviewer.service.LogRecords;
+import com.atsoft.jira.plugin.logviewer.service.LogTable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogTableTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 5, 14, 14, 0);
+    private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final LogLevel[] LEVELS = { LogLevel.INFO, LogLevel.DEBUG, LogLevel.WARN, LogLevel.ERROR };
+
+    private Path directory;
+    private Path logFile;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("log-table");
+        logFile = directory.resolve("atlassian-jira.log");
+        Files.writeString(logFile, "");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    // one entry per second in Jira's layout, levels and loggers taking turns, every tenth with a stack trace
+    private void append(int from, int to) throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            String thread = i % 2 == 0 ? "http-nio-8080-exec-" + (i % 5) + " url: /rest/api/2/issue/T-" + i
+                    + "; user: admin" : "Caesium-1-" + (i % 3);
+            String logger = i % 3 == 0 ? "c.a.jira.index.DefaultIndexManager" : "c.a.jira.web.Dispatcher";
+            text.append(FORMAT.format(START.plusSeconds(i))).append(",000+0900 ").append(thread).append(' ')
+                    .append(LEVELS[i % 4]).append(" admin 123x456x1 abc 127.0.0.1 /rest [").append(logger)
+                    .append("] entry ").append(i).append('\n');
+            if (i % 10 == 0) {
+                text.append("java.lang.IllegalStateException: ").append(i).append('\n');
+                text.append("\tat Frame.call(Frame.java:").append(i).append(")\n");
+            }
+        }
+        Files.writeString(logFile, text, StandardOpenOption.APPEND);
+    }
+
+    private LogRecords select(LogTable table, LogFilter filter, long from, int max) throws IOException {
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+            table.update(channel);
+            return table.select(channel, filter, from, max, 1024);
+        }
+    }
+
+    @Test
+    public void testParsesJiraLayout() throws IOException {
+        append(0, 2);
+        LogTable table = new LogTable(1024 * 1024, 100);
+
+        List<LogRecord> records = select(table, LogFilter.ALL, 0, 10).getRecords();
+
+        assertEquals(2, records.size());
+        LogRecord first = records.get(0);
+        assertEquals(0, first.getLine());
+        assertEquals(0, first.getOffset());
+        assertEquals(LogFiles.toMillis(START), first.getTimestamp());
+        assertEquals(LogLevel.INFO, first.getLevel());
+        assertEquals("http-nio-8080-exec-0", first.getThread());
+        assertEquals("c.a.jira.index.DefaultIndexManager", first.getLogger());
+        assertEquals("entry 0", first.getMessage());
+        LogRecord second = records.get(1);
+        // after the stack trace of the first entry
+        assertEquals(3, second.getLine());
+        assertEquals("Caesium-1-1", second.getThread());
+        assertEquals(LogLevel.DEBUG, second.getLevel());
+        assertEquals("entry 1", second.getMessage());
+    }
+
+    @Test
+    public void testParsesPatternLayoutWithBracketedThread() throws IOException {
+        Files.writeString(logFile, "2024-05-14 14:00:00,000 WARN  [main] com.example.Service - disk almost full\n"
+                + "2024-05-14 14:00:01,000 catalina started\n");
+        LogTable table = new LogTable(1024 * 1024, 100);
+
+        List<LogRecord> records = select(table, LogFilter.ALL, 0, 10).getRecords();
+
+        assertEquals(LogLevel.WARN, records.get(0).getLevel());
+        assertEquals("main", records.get(0).getThread());
+        assertEquals("com.example.Service", records.get(0).getLogger());
+        assertEquals("disk almost full", records.get(0).getMessage());
+        assertNull(records.get(1).getLevel());
+        assertNull(records.get(1).getLogger());
+        assertEquals("catalina started", records.get(1).getMessage());
+    }
+
+    @Test
+    public void testFiltersByLevelLoggerThreadAndTime() throws IOException {
+        append(0, 1000);
+        LogTable table = new LogTable(1024 * 1024, 100);
+        LogFilter errorsFromIndex = new LogFilter(EnumSet.of(LogLevel.ERROR), "com.atlassian.jira.index", null,
+                LogFilter.UNBOUNDED, LogFilter.UNBOUNDED);
+
+        List<LogRecord> records = select(table, errorsFromIndex, 0, 1000).getRecords();
+
+        // ERROR is every fourth entry, the index logger every third
+        assertEquals(84, records.size());
+        assertEquals(84, table.count(errorsFromIndex));
+        for (LogRecord record : records) {
+            assertEquals(LogLevel.ERROR, record.getLevel());
+            assertTrue(record.getLogger().startsWith("c.a.jira.index"));
+            int entry = Integer.parseInt(record.getMessage().substring("entry ".length()));
+            assertEquals(3, entry % 12);
+        }
+
+        LogFilter requests = new LogFilter(null, null, "http-nio", LogFiles.toMillis(START.plusSeconds(100)),
+                LogFiles.toMillis(START.plusSeconds(200)));
+        assertEquals(50, table.count(requests));
+        assertEquals(0, table.count(new LogFilter(null, "org.apache", null, LogFilter.UNBOUNDED,
+                LogFilter.UNBOUNDED)));
+    }
+
+    @Test
+    public void testPagesForwardAndBackward() throws IOException {
+        append(0, 100);
+        LogTable table = new LogTable(1024 * 1024, 100);
+        LogFilter warnings = new LogFilter(EnumSet.of(LogLevel.WARN), null, null, LogFilter.UNBOUNDED,
+                LogFilter.UNBOUNDED);
+
+        LogRecords first = select(table, warnings, 0, 10);
+        LogRecords second = select(table, warnings, first.getNextOffset(), 10);
+        LogRecords rest = select(table, warnings, second.getNextOffset(), 100);
+
+        assertEquals("entry 2", first.getRecords().get(0).getMessage());
+        assertEquals("entry 42", second.getRecords().get(0).getMessage());
+        assertEquals(5, rest.getRecords().size());
+        assertEquals(table.getParsedBytes(), rest.getNextOffset());
+
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+            LogRecords last = table.selectBefore(channel, warnings, Long.MAX_VALUE, 3, 1024);
+            assertEquals(List.of("entry 90", "entry 94", "entry 98"), messages(last));
+            LogRecords earlier = table.selectBefore(channel, warnings, last.getNextOffset(), 3, 1024);
+            assertEquals(List.of("entry 78", "entry 82", "entry 86"), messages(earlier));
+        }
+    }
+
+    @Test
+    public void testUpdatePicksUpAppendedAndReplacedFiles() throws IOException {
+        append(0, 10);
+        LogTable table = new LogTable(1024 * 1024, 100);
+        assertEquals(10, select(table, LogFilter.ALL, 0, 100).getRecords().size());
+
+        append(10, 20);
+        assertEquals(20, select(table, LogFilter.ALL, 0, 100).getRecords().size());
+
+        Files.writeString(logFile, "2024-05-15 09:00:00,000+0900 main ERROR [c.a.jira.Startup] restarted\n");
+        List<LogRecord> records = select(table, LogFilter.ALL, 0, 100).getRecords();
+        assertEquals(1, records.size());
+        assertEquals("restarted", records.get(0).getMessage());
+    }
+
+    @Test
+    public void testOldestEntriesAreDroppedBeyondBudget() throws IOException {
+        append(0, 3000);
+        LogTable table = new LogTable(1024L * LogTable.RECORD_BYTES, 100);
+
+        LogRecords records = select(table, LogFilter.ALL, 0, 10);
+
+        assertTrue(table.getRecordCount() <= 1024);
+        assertEquals(3000, table.getRecordCount() + table.getDroppedCount());
+        assertEquals(table.getFirstOffset(), records.getRecords().get(0).getOffset());
+        assertEquals("entry " + table.getDroppedCount(), records.getRecords().get(0).getMessage());
+        assertTrue(table.getMemoryBytes() < 1024L * LogTable.RECORD_BYTES + 64 * 1024);
+    }
+
+    @Test
+    public void testLoggerFilterUnderstandsAbbreviations() {
+        LogFilter filter = new LogFilter(null, "com.atlassian.jira.index", null, LogFilter.UNBOUNDED,
+                LogFilter.UNBOUNDED);
+
+        assertTrue(filter.matchesLogger("c.a.jira.index.DefaultIndexManager"));
+        assertTrue(filter.matchesLogger("com.atlassian.jira.index"));
+        assertFalse(filter.matchesLogger("c.a.jira.indexing.Foo"));
+        assertFalse(filter.matchesLogger("c.a.jira"));
+        assertTrue(new LogFilter(null, "c.a.jira", null, LogFilter.UNBOUNDED, LogFilter.UNBOUNDED)
+                .matchesLogger("com.atlassian.jira.web.Dispatcher"));
+    }
+
+    private static List<String> messages(LogRecords records) {
+        return records.getRecords().stream().map(LogRecord::getMessage).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,190 @@
+package ut.com.atsoft.jira.plugin.logviewer.service;
+
+import com.atsoft.jira.plugin.logviewer.service.LogFollower;
+import com.atsoft.jira.plugin.logviewer.service.LogStreamFilter;
+import com.atsoft.jira.plugin.logviewer.service.LogTailService;
+import com.atsoft.jira.plugin.logviewer.service.OutputCoalescer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogTailServiceTest {
+
+    private Path directory;
+    private Path logFile;
+    private LogTailService service;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("log-tail");
+        logFile = directory.resolve("atlassian-jira.log");
+        Files.writeString(logFile, "old line\nsecond line\n");
+        service = new LogTailService(directory);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        service.shutdown();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    private static void append(Path file, String text) throws IOException {
+        Files.writeString(file, text, StandardOpenOption.APPEND);
+    }
+
+    private static void awaitContent(RecordingSink sink, String expected) throws InterruptedException {
+        for (int i = 0; i < 100 && !sink.text().equals(expected); i++) {
+            Thread.sleep(20);
+        }
+        assertEquals(expected, sink.text());
+    }
+
+    @Test
+    public void testStartsAtLineBoundaryAndFollowsAppends() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        service.follow("atlassian-jira.log", 15, sink);
+        assertEquals("second line\n", sink.text());
+
+        append(logFile, "new line\n");
+
+        awaitContent(sink, "second line\nnew line\n");
+    }
+
+    @Test
+    public void testFollowersShareOneTail() throws Exception {
+        LogFollower first = service.follow("atlassian-jira.log", 0, new RecordingSink());
+        LogFollower second = service.follow("atlassian-jira.log", 0, new RecordingSink());
+        assertSame(first.getTail(), second.getTail());
+        assertEquals(1, service.getTailCount());
+
+        service.unfollow(first);
+        assertEquals(1, service.getTailCount());
+        service.unfollow(second);
+        assertEquals(0, service.getTailCount());
+    }
+
+    @Test
+    public void testRotationFinishesOldFileFirst() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        service.follow("atlassian-jira.log", 0, sink);
+
+        append(logFile, "last before rotation\n");
+        Files.move(logFile, directory.resolve("atlassian-jira.log.1"));
+        Files.writeString(logFile, "first after rotation\n");
+
+        awaitContent(sink, "last before rotation\n[log:rotated]first after rotation\n");
+    }
+
+    @Test
+    public void testTruncationRestartsFromBeginning() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        service.follow("atlassian-jira.log", 1024, sink);
+
+        Files.writeString(logFile, "fresh\n", StandardOpenOption.TRUNCATE_EXISTING);
+
+        awaitContent(sink, "old line\nsecond line\n[log:truncated]fresh\n");
+    }
+
+    @Test
+    public void testSendsOnlyLinesTheFilterSelects() throws Exception {
+        Files.writeString(logFile, "");
+        RecordingSink sink = new RecordingSink();
+        service.follow("atlassian-jira.log", 0, LogStreamFilter.parse("level=ERROR,WARN&logger=com.atlassian.jira"),
+                sink);
+
+        append(logFile, "2024-05-14 14:00:00,000+0900 main INFO [c.a.jira.Startup] started\n"
+                + "2024-05-14 14:00:01,000+0900 main ERROR [c.a.jira.index.Indexer] failed\n"
+                + "java.lang.IllegalStateException: broken\n"
+                + "\tat Indexer.run(Indexer.java:1)\n"
+                + "2024-05-14 14:00:02,000+0900 main ERROR [o.a.catalina.Server] stopped\n"
+                + "2024-05-14 14:00:03,000+0900 main WARN [c.a.jira.web.Dispatcher] slow\n");
+
+        // a stack trace goes with its entry
+        awaitContent(sink, "2024-05-14 14:00:01,000+0900 main ERROR [c.a.jira.index.Indexer] failed\n"
+                + "java.lang.IllegalStateException: broken\n"
+                + "\tat Indexer.run(Indexer.java:1)\n"
+                + "2024-05-14 14:00:03,000+0900 main WARN [c.a.jira.web.Dispatcher] slow\n");
+    }
+
+    @Test
+    public void testRegexWithContextLines() throws Exception {
+        Files.writeString(logFile, "");
+        RecordingSink sink = new RecordingSink();
+        service.follow("atlassian-jira.log", 0, LogStreamFilter.parse("regex=time[ds]?%20out&context=1"), sink);
+
+        append(logFile, "one\ntwo\nrequest timed out\nthree\nfour\nfive\n");
+        append(logFile, "six\nseven\nread time out\n");
+
+        awaitContent(sink, "two\nrequest timed out\nthree\n--\nseven\nread time out\n");
+    }
+
+    @Test
+    public void testFilterIsReplacedMidStream() throws Exception {
+        Files.writeString(logFile, "");
+        RecordingSink sink = new RecordingSink();
+        LogFollower follower = service.follow("atlassian-jira.log", 0, LogStreamFilter.parse("regex=alpha"), sink);
+        append(logFile, "alpha 1\nbeta 1\n");
+        awaitContent(sink, "alpha 1\n");
+
+        follower.setFilter("regex=beta", 0);
+        append(logFile, "alpha 2\nbeta 2\n");
+        awaitContent(sink, "alpha 1\n[log:filter]beta 2\n");
+
+        follower.setFilter("regex=(", 0);
+        follower.setFilter("", 0);
+        append(logFile, "gamma\n");
+        awaitContent(sink, "alpha 1\n[log:filter]beta 2\n[log:invalid-filter:Invalid regex: Unclosed group]"
+                + "[log:filter]gamma\n");
+        assertNull(follower.getFilter());
+    }
+
+    @Test
+    public void testNewFilterIsAppliedToRecentLines() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        LogFollower follower = service.follow("atlassian-jira.log", 1024, sink);
+        awaitContent(sink, "old line\nsecond line\n");
+
+        follower.setFilter("regex=old", 1024);
+
+        awaitContent(sink, "old line\nsecond line\n[log:filter]old line\n");
+    }
+
+    @Test
+    public void testRejectsFilesOutsideLogDirectory() {
+        assertThrows(IOException.class, () -> service.follow("../etc/passwd", 0, new RecordingSink()));
+        assertThrows(IOException.class, () -> service.follow("missing.log", 0, new RecordingSink()));
+    }
+
+    private static class RecordingSink implements OutputCoalescer.FrameSink {
+        private final StringBuilder text = new StringBuilder();
+
+        @Override
+        public synchronized void send(ByteBuffer frame, Runnable onComplete) {
+            text.append(StandardCharsets.UTF_8.decode(frame));
+            onComplete.run();
+        }
+
+        @Override
+        public synchronized void sendText(String message, Runnable onComplete) {
+            text.append('[').append(message).append(']');
+            onComplete.run();
+        }
+
+        synchronized String text() {
+            return text.toString();
+        }
+    }
+}
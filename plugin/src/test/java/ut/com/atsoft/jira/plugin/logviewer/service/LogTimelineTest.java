@@ -0,0 +1,314 @@
+package ut.com.atsoft.jira.plugin.logviewer.service;
+
+import com.atsoft.jira.plugin.logviewer.service.LogFiles;
+import com.atsoft.jira.plugin.logviewer.service.LogFilter;
+import com.atsoft.jira.plugin.logviewer.service.LogHistogram;
+import com.atsoft.jira.plugin.logviewer.service.LogLevel;
+import com.atsoft.jira.plugin.logviewer.service.LogTailService;
+import com.atsoft.jira.plugin.logviewer.service.LogTimeline;
+import com.atsoft.jira.plugin.logviewer.service.LogTimelineService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class LogTimelineTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 5, 14, 14, 0);
+    private static final long START_MILLIS = LogFiles.toMillis(START);
+    private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    private static final LogLevel[] LEVELS = { LogLevel.INFO, LogLevel.DEBUG, LogLevel.WARN, LogLevel.ERROR };
+    private static final long MINUTE = LogTimeline.MINUTE;
+    private static final long HOUR = LogTimeline.HOUR;
+
+    private Path directory;
+    private Path logFile;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("log-timeline");
+        logFile = directory.resolve("atlassian-jira.log");
+        Files.writeString(logFile, "");
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    // one entry per second in Jira's layout, levels taking turns, every third from the index manager
+    private static String text(int from, int to) {
+        StringBuilder text = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            String logger = i % 3 == 0 ? "c.a.jira.index.DefaultIndexManager" : "c.a.jira.web.Dispatcher";
+            text.append(FORMAT.format(START.plusSeconds(i))).append(",000+0900 http-nio-8080-exec-1 ")
+                    .append(LEVELS[i % 4]).append(" admin 123x456x1 abc 127.0.0.1 /rest [").append(logger)
+                    .append("] entry ").append(i).append('\n');
+            if (i % 10 == 0) {
+                text.append("java.lang.IllegalStateException: ").append(i).append('\n');
+                text.append("\tat Frame.call(Frame.java:").append(i).append(")\n");
+            }
+        }
+        return text.toString();
+    }
+
+    private void append(int from, int to) throws IOException {
+        Files.writeString(logFile, text(from, to), StandardOpenOption.APPEND);
+    }
+
+    private boolean update(LogTimeline timeline) throws IOException {
+        try (FileChannel channel = FileChannel.open(logFile, StandardOpenOption.READ)) {
+            return timeline.update(channel);
+        }
+    }
+
+    private static LogHistogram histogram(LogTimeline timeline, long from, long to, long bucketMillis,
+            LogFilter filter) {
+        return timeline.histogram(from, to, bucketMillis, 180, 10_000, filter, 10);
+    }
+
+    private static long count(LogHistogram histogram, long time) {
+        for (LogHistogram.Bucket bucket : histogram.getBuckets()) {
+            if (bucket.getTime() == time) {
+                return bucket.getCount();
+            }
+        }
+        throw new AssertionError("no bucket at " + time);
+    }
+
+    @Test
+    public void testCountsPerMinuteAndHour() throws IOException {
+        append(0, 7200);
+        LogTimeline timeline = new LogTimeline(48 * HOUR, 90 * 24 * HOUR, 100);
+        assertTrue(update(timeline));
+        assertEquals(7200, timeline.getEntryCount());
+        assertEquals(START_MILLIS + 7199_000, timeline.getLastTimestamp());
+        assertEquals(120 + 2, timeline.getBucketCount());
+
+        // without a range, the default number of buckets up to the one of the latest entry
+        LogHistogram minutes = histogram(timeline, LogFilter.UNBOUNDED, LogFilter.UNBOUNDED, MINUTE, LogFilter.ALL);
+        assertEquals(MINUTE, minutes.getBucketMillis());
+        assertEquals(START_MILLIS + 120 * MINUTE, minutes.getTo());
+        assertEquals(START_MILLIS - 60 * MINUTE, minutes.getFrom());
+        assertEquals(180, minutes.getBuckets().size());
+        assertEquals(0, minutes.getBuckets().get(59).getCount());
+        assertEquals(Map.of(), minutes.getBuckets().get(59).getLevels());
+        LogHistogram.Bucket first = minutes.getBuckets().get(60);
+        assertEquals(START_MILLIS, first.getTime());
+        assertEquals(60, first.getCount());
+        assertEquals(Map.of(LogLevel.INFO, 15L, LogLevel.DEBUG, 15L, LogLevel.WARN, 15L, LogLevel.ERROR, 15L),
+                first.getLevels());
+        assertEquals(2, minutes.getLoggers().size());
+        assertEquals("c.a.jira.web.Dispatcher", minutes.getLoggers().get(0).getLogger());
+        assertEquals(4800, minutes.getLoggers().get(0).getCount());
+        assertEquals(2400, minutes.getLoggers().get(1).getCount());
+
+        LogHistogram hours = histogram(timeline, START_MILLIS + 5 * MINUTE, START_MILLIS + 2 * HOUR, HOUR,
+                LogFilter.ALL);
+        assertEquals(START_MILLIS, hours.getFrom());
+        assertEquals(List.of(3600L, 3600L), hours.getBuckets().stream().map(LogHistogram.Bucket::getCount).toList());
+
+        assertThrows(IllegalArgumentException.class, () -> histogram(timeline, LogFilter.UNBOUNDED,
+                LogFilter.UNBOUNDED, 1000, LogFilter.ALL));
+        assertThrows(IllegalArgumentException.class, () -> timeline.histogram(START_MILLIS, START_MILLIS + 2 * HOUR,
+                MINUTE, 180, 100, LogFilter.ALL, 10));
+    }
+
+    @Test
+    public void testFiltersByLevelAndLogger() throws IOException {
+        append(0, 7200);
+        LogTimeline timeline = new LogTimeline(48 * HOUR, 90 * 24 * HOUR, 100);
+        update(timeline);
+
+        LogFilter errors = new LogFilter(EnumSet.of(LogLevel.ERROR), "com.atlassian.jira.index", null,
+                LogFilter.UNBOUNDED, LogFilter.UNBOUNDED);
+        LogHistogram histogram = histogram(timeline, START_MILLIS, START_MILLIS + 2 * HOUR, MINUTE, errors);
+        assertEquals(120, histogram.getBuckets().size());
+        // entries 3, 15, 27, 39 and 51 of every minute
+        for (LogHistogram.Bucket bucket : histogram.getBuckets()) {
+            assertEquals(5, bucket.getCount());
+            assertEquals(Map.of(LogLevel.ERROR, 5L), bucket.getLevels());
+        }
+        assertEquals(1, histogram.getLoggers().size());
+        assertEquals("c.a.jira.index.DefaultIndexManager", histogram.getLoggers().get(0).getLogger());
+        assertEquals(600, histogram.getLoggers().get(0).getCount());
+
+        LogFilter warnings = new LogFilter(EnumSet.of(LogLevel.WARN), null, null, LogFilter.UNBOUNDED,
+                LogFilter.UNBOUNDED);
+        histogram = histogram(timeline, START_MILLIS, START_MILLIS + 2 * HOUR, HOUR, warnings);
+        assertEquals(900, count(histogram, START_MILLIS + HOUR));
+        assertEquals(1200, histogram.getLoggers().get(0).getCount());
+        assertEquals(600, histogram.getLoggers().get(1).getCount());
+    }
+
+    @Test
+    public void testCountsOnlyCompleteLines() throws IOException {
+        append(0, 60);
+        LogTimeline timeline = new LogTimeline(48 * HOUR, 90 * 24 * HOUR, 100);
+        assertTrue(update(timeline));
+        assertFalse(update(timeline));
+        assertEquals(60, timeline.getEntryCount());
+
+        String next = text(60, 61);
+        Files.writeString(logFile, next.substring(0, 30), StandardOpenOption.APPEND);
+        assertFalse(update(timeline));
+        assertEquals(60, timeline.getEntryCount());
+        Files.writeString(logFile, next.substring(30), StandardOpenOption.APPEND);
+        assertTrue(update(timeline));
+        assertEquals(61, timeline.getEntryCount());
+        assertEquals(1, count(histogram(timeline, START_MILLIS, LogFilter.UNBOUNDED, MINUTE, LogFilter.ALL),
+                START_MILLIS + MINUTE));
+    }
+
+    @Test
+    public void testKeepsCountsAcrossRotation() throws IOException {
+        append(0, 120);
+        LogTimeline timeline = new LogTimeline(48 * HOUR, 90 * 24 * HOUR, 100);
+        update(timeline);
+
+        // rotated: a new file about as long as the old one
+        Files.writeString(logFile, text(120, 240));
+        assertTrue(update(timeline));
+        assertEquals(240, timeline.getEntryCount());
+        // truncated
+        Files.writeString(logFile, text(240, 250));
+        assertTrue(update(timeline));
+        assertEquals(250, timeline.getEntryCount());
+
+        LogHistogram histogram = histogram(timeline, START_MILLIS, LogFilter.UNBOUNDED, MINUTE, LogFilter.ALL);
+        assertEquals(List.of(60L, 60L, 60L, 60L, 10L),
+                histogram.getBuckets().stream().map(LogHistogram.Bucket::getCount).toList());
+    }
+
+    @Test
+    public void testDropsBucketsPastRetention() throws IOException {
+        append(0, 7200);
+        LogTimeline timeline = new LogTimeline(10 * MINUTE, HOUR, 100);
+        update(timeline);
+        assertEquals(11 + 2, timeline.getBucketCount());
+
+        LogHistogram minutes = histogram(timeline, START_MILLIS, LogFilter.UNBOUNDED, MINUTE, LogFilter.ALL);
+        assertEquals(0, count(minutes, START_MILLIS));
+        assertEquals(0, count(minutes, START_MILLIS + 108 * MINUTE));
+        assertEquals(60, count(minutes, START_MILLIS + 109 * MINUTE));
+        assertEquals(60, count(minutes, START_MILLIS + 119 * MINUTE));
+        LogHistogram hours = histogram(timeline, START_MILLIS, LogFilter.UNBOUNDED, HOUR, LogFilter.ALL);
+        assertEquals(List.of(3600L, 3600L), hours.getBuckets().stream().map(LogHistogram.Bucket::getCount).toList());
+
+        // an hour later, both hours are past it
+        append(10_800, 10_801);
+        update(timeline);
+        assertEquals(2, timeline.getBucketCount());
+        hours = histogram(timeline, START_MILLIS, LogFilter.UNBOUNDED, HOUR, LogFilter.ALL);
+        assertEquals(List.of(0L, 0L, 0L, 1L),
+                hours.getBuckets().stream().map(LogHistogram.Bucket::getCount).toList());
+    }
+
+    @Test
+    public void testSavesAndLoads() throws IOException {
+        append(0, 3600);
+        LogTimeline timeline = new LogTimeline(48 * HOUR, 90 * 24 * HOUR, 100);
+        update(timeline);
+        assertEquals(3600, timeline.getUnsavedCount());
+        Path file = directory.resolve("index").resolve("atlassian-jira.log.timeline");
+        timeline.save(file);
+        assertEquals(0, timeline.getUnsavedCount());
+        assertTrue(Files.size(file) < 64 * 1024, "saved " + Files.size(file) + " bytes");
+
+        assertNull(LogTimeline.load(directory.resolve("missing.timeline"), 48 * HOUR, 90 * 24 * HOUR, 100));
+        Files.writeString(directory.resolve("other.timeline"), "not a timeline");
+        assertNull(LogTimeline.load(directory.resolve("other.timeline"), 48 * HOUR, 90 * 24 * HOUR, 100));
+
+        LogTimeline loaded = LogTimeline.load(file, 48 * HOUR, 90 * 24 * HOUR, 100);
+        assertNotNull(loaded);
+        assertEquals(3600, loaded.getEntryCount());
+        assertEquals(timeline.getLastTimestamp(), loaded.getLastTimestamp());
+        assertEquals(timeline.getBucketCount(), loaded.getBucketCount());
+        LogFilter errors = new LogFilter(EnumSet.of(LogLevel.ERROR), "c.a.jira.index", null, LogFilter.UNBOUNDED,
+                LogFilter.UNBOUNDED);
+        LogHistogram expected = histogram(timeline, START_MILLIS, START_MILLIS + HOUR, MINUTE, errors);
+        LogHistogram actual = histogram(loaded, START_MILLIS, START_MILLIS + HOUR, MINUTE, errors);
+        for (int i = 0; i < 60; i++) {
+            assertEquals(expected.getBuckets().get(i).getCount(), actual.getBuckets().get(i).getCount());
+            assertEquals(expected.getBuckets().get(i).getLevels(), actual.getBuckets().get(i).getLevels());
+        }
+        assertEquals(600 / 2, actual.getLoggers().get(0).getCount());
+
+        // counting goes on where the saved timeline stopped
+        append(3600, 3660);
+        assertTrue(update(loaded));
+        assertEquals(3660, loaded.getEntryCount());
+        assertEquals(60, loaded.getUnsavedCount());
+    }
+
+    @Test
+    public void testServiceCountsTrackedFilesInBackground() throws IOException {
+        append(0, 600);
+        Path index = directory.resolve("index");
+        LogTailService logs = new LogTailService(directory);
+        LogTimelineService service = new LogTimelineService(logs, index, List.of("atlassian-jira.log", " "));
+        service.refresh();
+        assertEquals(1, service.getTimelineCount());
+        assertTrue(service.getMemoryBytes() > 0);
+        assertTrue(Files.exists(index.resolve("atlassian-jira.log.timeline")));
+
+        append(600, 660);
+        LogHistogram histogram = service.histogram("atlassian-jira.log", LogFilter.UNBOUNDED, LogFilter.UNBOUNDED,
+                MINUTE, LogFilter.ALL);
+        assertEquals(START_MILLIS + 11 * MINUTE, histogram.getTo());
+        assertEquals(24 * 60, histogram.getBuckets().size());
+        assertEquals(60, count(histogram, START_MILLIS + 10 * MINUTE));
+        assertThrows(IOException.class, () -> service.histogram("missing.log", LogFilter.UNBOUNDED,
+                LogFilter.UNBOUNDED, MINUTE, LogFilter.ALL));
+        assertThrows(IOException.class, () -> service.histogram("../atlassian-jira.log", LogFilter.UNBOUNDED,
+                LogFilter.UNBOUNDED, MINUTE, LogFilter.ALL));
+        service.shutdown();
+        assertEquals(0, service.getTimelineCount());
+
+        // a new service starts from the saved counts
+        LogTimelineService restarted = new LogTimelineService(logs, index, List.of());
+        histogram = restarted.histogram("atlassian-jira.log", START_MILLIS, START_MILLIS + 2 * HOUR, HOUR,
+                LogFilter.ALL);
+        assertEquals(List.of(660L, 0L), histogram.getBuckets().stream().map(LogHistogram.Bucket::getCount).toList());
+        restarted.shutdown();
+    }
+
+    @Test
+    public void testServiceDoesNotRewriteTimelineOnEveryRefresh() throws IOException {
+        append(0, 600);
+        Path index = directory.resolve("index");
+        Path file = index.resolve("atlassian-jira.log.timeline");
+        LogTimelineService service = new LogTimelineService(new LogTailService(directory), index,
+                List.of("atlassian-jira.log"));
+        service.refresh();
+        byte[] saved = Files.readAllBytes(file);
+
+        append(600, 660);
+        service.refresh();
+
+        // counted, but written out only later
+        LogHistogram histogram = service.histogram("atlassian-jira.log", START_MILLIS, START_MILLIS + HOUR, HOUR,
+                LogFilter.ALL);
+        assertEquals(660, histogram.getBuckets().get(0).getCount());
+        assertArrayEquals(saved, Files.readAllBytes(file));
+
+        service.shutdown();
+        assertFalse(Arrays.equals(saved, Files.readAllBytes(file)));
+    }
+}
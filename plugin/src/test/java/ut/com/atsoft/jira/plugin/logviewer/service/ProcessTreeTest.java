@@ -0,0 +1,68 @@
+package ut.com.atsoft.jira.plugin.logviewer.service;
+
+import com.atsoft.jira.plugin.logviewer.service.ProcessTree;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProcessTreeTest {
+
+    private Process shell;
+
+    @BeforeEach
+    public void setup() throws Exception {
+        Assumptions.assumeFalse(System.getProperty("os.name").toLowerCase().contains("win"));
+        // the background jobs would outlive a shell that is only sent SIGTERM
+        shell = new ProcessBuilder("/bin/sh", "-c", "sleep 300 & sleep 300 & wait").start();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (shell.toHandle().descendants().count() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @AfterEach
+    public void cleanup() {
+        if (shell != null) {
+            shell.toHandle().descendants().forEach(ProcessHandle::destroyForcibly);
+            shell.destroyForcibly();
+        }
+    }
+
+    @Test
+    public void testDestroyTerminatesDescendants() throws Exception {
+        ProcessTree tree = ProcessTree.of(shell);
+        assertEquals(2, tree.size());
+        assertTrue(tree.isAlive());
+
+        tree.destroy();
+
+        assertTrue(awaitExit(tree), "still running: " + tree.getSurvivors());
+        assertTrue(tree.getSurvivors().isEmpty());
+    }
+
+    @Test
+    public void testDestroyForciblyTerminatesDescendants() throws Exception {
+        ProcessTree tree = ProcessTree.of(shell);
+
+        tree.destroyForcibly();
+
+        assertTrue(awaitExit(tree), "still running: " + tree.getSurvivors());
+        assertTrue(shell.waitFor(5, TimeUnit.SECONDS));
+    }
+
+    private static boolean awaitExit(ProcessTree tree) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (tree.isAlive()) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,33 @@
+package ut.com.atsoft.jira.plugin.logviewer.service;
+
+import com.atsoft.jira.plugin.logviewer.service.PtyManager;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PtyManagerTest {
+
+    @Test
+    public void testOwnerMayWatchOwnSession() {
+        assertTrue(PtyManager.mayWatch("alice", "alice", false));
+    }
+
+    @Test
+    public void testNonOwnerIsRefused() {
+        assertFalse(PtyManager.mayWatch("alice", "bob", false));
+        assertFalse(PtyManager.mayWatch(null, "bob", false));
+    }
+
+    @Test
+    public void testSystemAdminMayWatchAnySession() {
+        assertTrue(PtyManager.mayWatch("alice", "admin", true));
+        assertTrue(PtyManager.mayWatch(null, "admin", true));
+    }
+
+    @Test
+    public void testAnonymousViewerIsRefused() {
+        assertFalse(PtyManager.mayWatch("alice", null, false));
+        // not even for a session that was opened anonymously
+        assertFalse(PtyManager.mayWatch(null, null, false));
+    }
+}
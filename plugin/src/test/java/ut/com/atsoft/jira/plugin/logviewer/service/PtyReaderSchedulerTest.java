@@ -0,0 +1,105 @@
+package ut.com.atsoft.jira.plugin.logviewer.service;
+
+import com.atsoft.jira.plugin.logviewer.service.OutputCoalescer;
+import com.atsoft.jira.plugin.logviewer.service.OverflowPolicy;
+import com.atsoft.jira.plugin.logviewer.service.PtyReader;
+import com.atsoft.jira.plugin.logviewer.service.PtyReaderScheduler;
+import com.atsoft.jira.plugin.logviewer.service.SessionOutput;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PtyReaderSchedulerTest {
+
+    private ScheduledExecutorService flushScheduler;
+    private PtyReaderScheduler scheduler;
+
+    @BeforeEach
+    public void setup() {
+        flushScheduler = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        flushScheduler.shutdownNow();
+    }
+
+    @Test
+    public void testEachReaderHasAThreadUntilItsStreamEnds() throws Exception {
+        scheduler = new PtyReaderScheduler();
+        int sessions = 3;
+        PipedOutputStream[] shells = new PipedOutputStream[sessions];
+        CountDownLatch exited = new CountDownLatch(sessions);
+        for (int i = 0; i < sessions; i++) {
+            shells[i] = new PipedOutputStream();
+            scheduler.start(new PtyReader("session-" + i, new PipedInputStream(shells[i], 4096),
+                    new SessionOutput(flushScheduler, 0, 1024, 4096), 1024, exited::countDown));
+        }
+        assertEquals(sessions, scheduler.getThreadCount());
+        assertEquals(sessions, scheduler.getReaderCount());
+
+        for (PipedOutputStream shell : shells) {
+            shell.close();
+        }
+        assertTrue(exited.await(5, TimeUnit.SECONDS), "all readers should finish");
+        // a reader deregisters just after its exit callback
+        for (int i = 0; i < 50 && scheduler.getReaderCount() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, scheduler.getThreadCount());
+    }
+
+    @Test
+    public void testReadsStreamsWithoutAvailable() throws Exception {
+        scheduler = new PtyReaderScheduler();
+
+        StringBuilder received = new StringBuilder();
+        SessionOutput output = new SessionOutput(flushScheduler, 0, 1024, 4096);
+        output.attach(new OutputCoalescer.FrameSink() {
+            @Override
+            public void send(ByteBuffer frame, Runnable onComplete) {
+                synchronized (received) {
+                    received.append(StandardCharsets.UTF_8.decode(frame));
+                }
+                onComplete.run();
+            }
+
+            @Override
+            public void sendText(String message, Runnable onComplete) {
+                onComplete.run();
+            }
+        }, OverflowPolicy.PAUSE);
+        PipedOutputStream shell = new PipedOutputStream();
+        // like pty4j's PTYInputStream, which never reports pending bytes
+        InputStream pty = new PipedInputStream(shell, 4096) {
+            @Override
+            public synchronized int available() {
+                return 0;
+            }
+        };
+        CountDownLatch exited = new CountDownLatch(1);
+        scheduler.start(new PtyReader("session", pty, output, 1024, exited::countDown));
+
+        shell.write("$ ls\r\n".getBytes(StandardCharsets.UTF_8));
+        shell.close();
+        assertTrue(exited.await(5, TimeUnit.SECONDS), "reader should finish at the end of the stream");
+        synchronized (received) {
+            assertEquals("$ ls\r\n", received.toString());
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package ut.com.atsoft.jira.plugin.logviewer.service;
+
+import com.atsoft.jira.plugin.logviewer.service.ScreenModel;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScreenModelTest {
+
+    private static final String ENTER = "\u001b[?1049h";
+    private static final String LEAVE = "\u001b[?1049l";
+
+    @Test
+    public void testNormalScreenIsNotModelled() {
+        ScreenModel model = new ScreenModel(20, 5);
+        String text = "ls -l\r\ntotal 0\r\n";
+
+        assertEquals(text.length(), model.feed(text, 0, text.length()));
+
+        assertFalse(model.isAlternate());
+        assertFalse(model.isDirty());
+        assertEquals("", model.getRowText(0));
+    }
+
+    @Test
+    public void testFeedStopsAfterAlternateScreenSwitch() {
+        ScreenModel model = new ScreenModel(20, 5);
+        String text = "before" + ENTER + "inside" + LEAVE + "after";
+
+        int entered = model.feed(text, 0, text.length());
+        assertEquals("before".length() + ENTER.length(), entered);
+        assertTrue(model.isAlternate());
+        assertEquals(1049, model.getAlternateMode());
+
+        int left = model.feed(text, entered, text.length());
+        assertEquals(text.indexOf("after"), left);
+        assertFalse(model.isAlternate());
+    }
+
+    @Test
+    public void testDeltaContainsOnlyChangedCells() {
+        ScreenModel model = alternate(20, 5);
+        feed(model, "\u001b[H\u001b[2Jload 0.10\r\nmem 512");
+        model.renderDelta(new StringBuilder());
+        assertFalse(model.isDirty());
+
+        feed(model, "\u001b[1;6H0.25");
+        StringBuilder delta = new StringBuilder();
+        model.renderDelta(delta);
+
+        assertEquals("load 0.25", model.getRowText(0));
+        assertEquals("mem 512", model.getRowText(1));
+        assertTrue(delta.indexOf("\u001b[1;8H") >= 0, delta.toString());
+        assertTrue(delta.indexOf("25") >= 0);
+        assertEquals(-1, delta.indexOf("load"));
+        assertEquals(-1, delta.indexOf("mem"));
+    }
+
+    @Test
+    public void testRepeatedRedrawOfSameContentSendsNoCells() {
+        ScreenModel model = alternate(20, 3);
+        feed(model, "\u001b[Hstatus: ok");
+        model.renderDelta(new StringBuilder());
+
+        feed(model, "\u001b[Hstatus: ok");
+
+        StringBuilder delta = new StringBuilder();
+        model.renderDelta(delta);
+        assertEquals(-1, delta.indexOf("status"));
+    }
+
+    @Test
+    public void testScrollIsSentAsScrollNotRedraw() {
+        ScreenModel model = alternate(10, 4);
+        feed(model, "\u001b[Hrow1\r\nrow2\r\nrow3\r\nrow4");
+        model.renderDelta(new StringBuilder());
+
+        feed(model, "\r\nrow5");
+        StringBuilder delta = new StringBuilder();
+        model.renderDelta(delta);
+
+        assertEquals("row2", model.getRowText(0));
+        assertEquals("row5", model.getRowText(3));
+        assertTrue(delta.indexOf("\u001b[1S") >= 0, delta.toString());
+        assertEquals(-1, delta.indexOf("row2"));
+        assertTrue(delta.indexOf("row5") >= 0);
+    }
+
+    @Test
+    public void testModesAndQueriesArePassedThrough() {
+        ScreenModel model = alternate(10, 3);
+        feed(model, "\u001b[?1h\u001b[6n");
+
+        assertTrue(model.isFlushRequested());
+        StringBuilder passthrough = new StringBuilder();
+        model.takePassthrough(passthrough);
+        assertEquals("\u001b[?1h\u001b[6n", passthrough.toString());
+    }
+
+    @Test
+    public void testWideCharactersTakeTwoCells() {
+        ScreenModel model = alternate(10, 2);
+        feed(model, "\u001b[H한글ab");
+
+        assertEquals("한글ab", model.getRowText(0));
+        assertEquals(6, model.getCursorColumn());
+    }
+
+    @Test
+    public void testSnapshotRestoresScreenAndCursor() {
+        ScreenModel model = alternate(20, 4);
+        feed(model, "\u001b[H\u001b[1mtitle\u001b[m\u001b[3;1Hbody\u001b[2;5H");
+
+        StringBuilder snapshot = new StringBuilder();
+        model.renderSnapshot(snapshot);
+        String text = snapshot.toString();
+
+        assertTrue(text.startsWith(ENTER), text);
+        assertTrue(text.contains("title"));
+        assertTrue(text.contains("body"));
+        assertTrue(text.contains("\u001b[1;"), "keeps the bold title");
+        assertTrue(text.contains("\u001b[2;5H"), "restores the cursor");
+    }
+
+    @Test
+    public void testResizeKeepsContentAndMarksScreenDirty() {
+        ScreenModel model = alternate(10, 3);
+        feed(model, "\u001b[Habc");
+        model.renderDelta(new StringBuilder());
+
+        model.resize(20, 5);
+
+        assertEquals(20, model.getColumns());
+        assertEquals(5, model.getRows());
+        assertEquals("abc", model.getRowText(0));
+        assertTrue(model.isDirty());
+    }
+
+    private static ScreenModel alternate(int cols, int rows) {
+        ScreenModel model = new ScreenModel(cols, rows);
+        feed(model, ENTER);
+        assertTrue(model.isAlternate());
+        return model;
+    }
+
+    private static void feed(ScreenModel model, String text) {
+        int position = 0;
+        while (position < text.length()) {
+            position = model.feed(text, position, text.length());
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package ut.com.atsoft.jira.plugin.logviewer.service;
+
+import com.atsoft.jira.plugin.logviewer.service.OutputCoalescer;
+import com.atsoft.jira.plugin.logviewer.service.OverflowPolicy;
+import com.atsoft.jira.plugin.logviewer.service.ScreenRelay;
+import com.atsoft.jira.plugin.logviewer.service.SessionOutput;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ScreenRelayTest {
+
+    private ScheduledExecutorService scheduler;
+    private SessionOutput output;
+    private ScreenRelay relay;
+    private RecordingSink sink;
+
+    @BeforeEach
+    public void setup() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        output = new SessionOutput(scheduler, 0, 1024, 64 * 1024);
+        relay = new ScreenRelay(output, scheduler, 0, 20, 5);
+        sink = new RecordingSink();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testNormalScreenOutputIsPassedOnUnchanged() throws Exception {
+        output.attach(sink, OverflowPolicy.PAUSE);
+
+        relay.write("ls\r\n\u001b[31mred\u001b[0m\r\n");
+
+        assertEquals("ls\r\n\u001b[31mred\u001b[0m\r\n", sink.received());
+        assertFalse(relay.isFullScreen());
+    }
+
+    @Test
+    public void testRedrawOfUnchangedScreenSendsNoCells() throws Exception {
+        output.attach(sink, OverflowPolicy.PAUSE);
+        relay.write("\u001b[?1049h\u001b[H\u001b[2Jtasks: 12\r\nload: 0.5");
+        assertTrue(relay.isFullScreen());
+        assertTrue(sink.received().contains("tasks: 12"));
+        int before = sink.received().length();
+
+        relay.write("\u001b[H\u001b[2Jtasks: 12\r\nload: 0.7");
+
+        String frame = sink.received().substring(before);
+        assertFalse(frame.contains("tasks"), frame);
+        assertTrue(frame.contains("7"), frame);
+    }
+
+    @Test
+    public void testJoinerGetsSnapshotOfFullScreenProgram() throws Exception {
+        relay.write("$ top\r\n\u001b[?1049h\u001b[H\u001b[2Jtasks: 12");
+        for (int i = 0; i < 100; i++) {
+            relay.write("\u001b[1;8H" + (10 + i % 10));
+        }
+
+        relay.attach(sink, OverflowPolicy.PAUSE, 0, offset -> "session:" + offset);
+
+        List<String> frames = sink.frames();
+        assertTrue(frames.get(0).startsWith("session:"));
+        String snapshot = frames.get(1);
+        assertTrue(snapshot.startsWith("\u001b[?1049h"), snapshot);
+        assertTrue(snapshot.contains("tasks: 19"), snapshot);
+        assertFalse(snapshot.contains("$ top"), snapshot);
+        // the offset in the greeting is where the snapshot stands in for the output so far
+        long offset = Long.parseLong(frames.get(0).substring("session:".length()));
+        assertEquals(output.getEndOffset(), offset + snapshot.getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    @Test
+    public void testLeavingFullScreenRestoresRawOutput() throws Exception {
+        output.attach(sink, OverflowPolicy.PAUSE);
+        relay.write("\u001b[?1049h\u001b[Hmenu");
+
+        relay.write("\u001b[?1049l$ ");
+
+        assertFalse(relay.isFullScreen());
+        assertTrue(sink.received().endsWith("\u001b[?1049l$ "), sink.received());
+    }
+
+    private static class RecordingSink implements OutputCoalescer.FrameSink {
+        private final List<String> frames = new ArrayList<>();
+
+        @Override
+        public void send(ByteBuffer frame, Runnable onComplete) {
+            synchronized (this) {
+                frames.add(StandardCharsets.UTF_8.decode(frame.duplicate()).toString());
+            }
+            onComplete.run();
+        }
+
+        @Override
+        public void sendText(String message, Runnable onComplete) {
+            synchronized (this) {
+                frames.add(message);
+            }
+            onComplete.run();
+        }
+
+        synchronized List<String> frames() {
+            return new ArrayList<>(frames);
+        }
+
+        synchronized String received() {
+            return String.join("", frames);
+        }
+    }
+}
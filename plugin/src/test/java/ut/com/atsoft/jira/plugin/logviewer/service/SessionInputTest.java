@@ -0,0 +1,197 @@
+package ut.com.atsoft.jira.plugin.logviewer.service;
+
+import com.atsoft.jira.plugin.logviewer.service.SessionInput;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SessionInputTest {
+
+    private ExecutorService executor;
+    private GatedStream pty;
+
+    @BeforeEach
+    public void setup() {
+        executor = Executors.newCachedThreadPool();
+        pty = new GatedStream();
+    }
+
+    @AfterEach
+    public void cleanup() {
+        pty.open();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testOfferReturnsWhileWriterIsBlocked() throws Exception {
+        SessionInput input = new SessionInput("test", pty, executor, 1024);
+
+        assertTrue(input.offer(bytes("first")));
+        assertTrue(pty.awaitBlocked());
+        assertTrue(input.offer(bytes("second")));
+
+        assertEquals(6, input.getPendingBytes());
+    }
+
+    @Test
+    public void testInputArrivingDuringWriteIsFlushedTogether() throws Exception {
+        SessionInput input = new SessionInput("test", pty, executor, 1024);
+        assertTrue(input.offer(bytes("l")));
+        assertTrue(pty.awaitBlocked());
+        assertTrue(input.offer(bytes("s")));
+        assertTrue(input.offer(bytes(" -l")));
+        assertTrue(input.offer(bytes("\r")));
+
+        pty.open();
+
+        assertTrue(pty.awaitFlushes(2));
+        assertEquals("ls -l\r", pty.written());
+        assertEquals(List.of("l", "s -l\r"), pty.flushed());
+        assertEquals(0, input.getPendingBytes());
+    }
+
+    @Test
+    public void testInputBeyondLimitIsRefusedAsAWhole() throws Exception {
+        SessionInput input = new SessionInput("test", pty, executor, 8);
+        assertTrue(input.offer(bytes("a")));
+        assertTrue(pty.awaitBlocked());
+        assertTrue(input.offer(bytes("12345")));
+
+        assertFalse(input.offer(bytes("6789")));
+        assertEquals(-1, input.offer("6789"));
+        assertEquals(5, input.getPendingBytes());
+        assertEquals(3, input.offer("678"));
+
+        pty.open();
+        assertTrue(pty.awaitFlushes(2));
+        assertEquals("a12345678", pty.written());
+    }
+
+    @Test
+    public void testTextIsEncodedAsUtf8() throws Exception {
+        SessionInput input = new SessionInput("test", pty, executor, 1024);
+        pty.open();
+
+        assertEquals(8, input.offer("echo 한"));
+
+        assertTrue(pty.awaitFlushes(1));
+        assertEquals("echo 한", pty.written());
+    }
+
+    @Test
+    public void testLargeInputIsWrittenCompletely() throws Exception {
+        SessionInput input = new SessionInput("test", pty, executor, 1024 * 1024);
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            script.append("echo line ").append(i).append('\n');
+        }
+        pty.open();
+
+        assertTrue(input.offer(script) > 0);
+
+        assertTrue(pty.awaitLength(script.length()));
+        assertEquals(script.toString(), pty.written());
+    }
+
+    @Test
+    public void testCloseDiscardsPendingInput() throws Exception {
+        SessionInput input = new SessionInput("test", pty, executor, 1024);
+        assertTrue(input.offer(bytes("first")));
+        assertTrue(pty.awaitBlocked());
+        assertTrue(input.offer(bytes("second")));
+
+        input.close();
+        pty.open();
+
+        assertTrue(pty.awaitFlushes(1));
+        Thread.sleep(50);
+        assertEquals("first", pty.written());
+        assertFalse(input.offer(bytes("third")));
+    }
+
+    private static ByteBuffer bytes(String text) {
+        return ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** Stands in for a PTY whose input buffer is full until {@link #open()} is called. */
+    private static class GatedStream extends OutputStream {
+        private final CountDownLatch gate = new CountDownLatch(1);
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream unflushed = new ByteArrayOutputStream();
+        private final List<String> flushes = new ArrayList<>();
+
+        void open() {
+            gate.countDown();
+        }
+
+        boolean awaitBlocked() throws InterruptedException {
+            return blocked.await(5, TimeUnit.SECONDS);
+        }
+
+        synchronized boolean awaitFlushes(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (flushes.size() < count && System.currentTimeMillis() < deadline) {
+                wait(10);
+            }
+            return flushes.size() >= count;
+        }
+
+        synchronized boolean awaitLength(int length) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (content.size() < length && System.currentTimeMillis() < deadline) {
+                wait(10);
+            }
+            return content.size() >= length;
+        }
+
+        synchronized String written() {
+            return content.toString(StandardCharsets.UTF_8);
+        }
+
+        synchronized List<String> flushed() {
+            return new ArrayList<>(flushes);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            blocked.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            synchronized (this) {
+                content.write(b, off, len);
+                unflushed.write(b, off, len);
+                notifyAll();
+            }
+        }
+
+        @Override
+        public synchronized void flush() {
+            flushes.add(unflushed.toString(StandardCharsets.UTF_8));
+            unflushed.reset();
+            notifyAll();
+        }
+    }
+}
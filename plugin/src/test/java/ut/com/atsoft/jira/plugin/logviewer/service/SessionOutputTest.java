@@ -0,0 +1,263 @@
+package ut.com.atsoft.jira.plugin.logviewer.service;
+
+import com.atsoft.jira.plugin.logviewer.service.OutputCoalescer;
+import com.atsoft.jira.plugin.logviewer.service.OverflowPolicy;
+import com.atsoft.jira.plugin.logviewer.service.SessionMetrics;
+import com.atsoft.jira.plugin.logviewer.service.SessionOutput;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SessionOutputTest {
+
+    private ScheduledExecutorService scheduler;
+    private RecordingSink sink;
+
+    @BeforeEach
+    public void setup() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        sink = new RecordingSink();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testFirstWriteIsSentImmediately() throws Exception {
+        SessionOutput output = new SessionOutput(scheduler, 1000, 1024, 4096);
+        output.attach(sink, OverflowPolicy.PAUSE);
+
+        output.write("a");
+
+        assertEquals(List.of("a"), sink.frames());
+    }
+
+    @Test
+    public void testBurstIsCoalescedWhileFrameInFlight() throws Exception {
+        SessionOutput output = new SessionOutput(scheduler, 1000, 1024, 4096);
+        output.attach(sink, OverflowPolicy.PAUSE);
+
+        output.write("a");
+        output.write("b");
+        output.write("c");
+        assertEquals(1, sink.frames().size());
+        assertEquals(2, output.getQueuedBytes());
+
+        sink.completeAll();
+
+        assertEquals(List.of("a", "bc"), sink.frames());
+        assertEquals(0, output.getQueuedBytes());
+    }
+
+    @Test
+    public void testMetricsCountFramesAndSends() throws Exception {
+        SessionOutput output = new SessionOutput(scheduler, 1000, 1024, 4096);
+        output.attach(sink, OverflowPolicy.PAUSE);
+
+        output.write("a");
+        output.write("bc");
+        sink.completeAll();
+        sink.completeAll();
+
+        SessionMetrics metrics = output.getMetrics();
+        assertEquals(2, metrics.getFramesSent());
+        assertEquals(3, metrics.getBytesOut());
+        assertEquals(2, metrics.getSendLatency().getCount());
+    }
+
+    @Test
+    public void testWindowFlushesPendingOutput() throws Exception {
+        SessionOutput output = new SessionOutput(scheduler, 20, 1024, 4096);
+        output.attach(sink, OverflowPolicy.PAUSE);
+
+        output.write("a");
+        sink.completeAll();
+        output.write("b");
+        output.write("c");
+        Thread.sleep(200);
+
+        assertEquals(List.of("a", "bc"), sink.frames());
+    }
+
+    @Test
+    public void testFullFrameIsSentWithoutWaitingForWindow() throws Exception {
+        sink.autoComplete = true;
+        SessionOutput output = new SessionOutput(scheduler, 60_000, 4, 4096);
+        output.attach(sink, OverflowPolicy.PAUSE);
+
+        output.write("x");
+        output.write("0123456789");
+
+        assertEquals(List.of("x", "0123", "4567"), sink.frames());
+    }
+
+    @Test
+    public void testPausePolicyBlocksProducerUntilClientCatchesUp() throws Exception {
+        SessionOutput output = new SessionOutput(scheduler, 0, 4, 8);
+        output.attach(sink, OverflowPolicy.PAUSE);
+        output.write("0123");
+
+        Thread producer = new Thread(() -> {
+            try {
+                output.write("456789abcdef");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        producer.join(200);
+        assertTrue(producer.isAlive(), "producer should be paused");
+
+        while (producer.isAlive()) {
+            sink.completeAll();
+            producer.join(10);
+        }
+        sink.completeAll();
+        sink.completeAll();
+
+        assertEquals("0123456789abcdef", String.join("", sink.frames()));
+    }
+
+    @Test
+    public void testStalledDropViewerDoesNotHoldUpOwner() throws Exception {
+        SessionOutput output = new SessionOutput(scheduler, 0, 4, 8, 64);
+        sink.autoComplete = true;
+        output.attach(sink, OverflowPolicy.PAUSE);
+        RecordingSink viewer = new RecordingSink();
+        output.attach(viewer, OverflowPolicy.DROP, 0, null);
+
+        Thread producer = new Thread(() -> {
+            try {
+                output.write("0123456789abcdef");
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        producer.join(2000);
+
+        assertFalse(producer.isAlive(), "a viewer that never reads must not pause the shell");
+        assertEquals("0123456789abcdef", String.join("", sink.frames()));
+        assertTrue(output.getDroppedBytes() > 0);
+        assertEquals(2, output.getSubscriberCount());
+    }
+
+    @Test
+    public void testDropPolicyDiscardsBacklogAndMarksTruncation() throws Exception {
+        SessionOutput output = new SessionOutput(scheduler, 0, 64, 8);
+        output.attach(sink, OverflowPolicy.DROP);
+
+        output.write("first");
+        output.write("12345678");
+        output.write("last");
+        sink.completeAll();
+        sink.completeAll();
+
+        assertEquals(List.of("first", "truncated:8", "last"), sink.frames());
+        assertEquals(8, output.getDroppedBytes());
+    }
+
+    @Test
+    public void testDisconnectPolicyDetachesSlowClient() throws Exception {
+        SessionOutput output = new SessionOutput(scheduler, 0, 64, 8);
+        output.attach(sink, OverflowPolicy.DISCONNECT);
+
+        output.write("first");
+        output.write("12345678");
+        output.write("more");
+        scheduler.submit(() -> { }).get(1, TimeUnit.SECONDS);
+
+        assertEquals(1, sink.disconnects);
+        assertEquals(0, output.getQueuedBytes());
+    }
+
+    @Test
+    public void testResumeReplaysOnlyMissedOutput() throws Exception {
+        sink.autoComplete = true;
+        SessionOutput output = new SessionOutput(scheduler, 0, 1024, 16, 64);
+        OutputCoalescer first = output.attach(sink, OverflowPolicy.PAUSE, 0, offset -> "session:" + offset);
+        output.write("hello ");
+        output.detach(first);
+        output.write("while ");
+        output.write("away");
+
+        RecordingSink resumed = new RecordingSink();
+        resumed.autoComplete = true;
+        output.attach(resumed, OverflowPolicy.PAUSE, 6, offset -> "session:" + offset);
+
+        assertEquals(List.of("session:0", "hello "), sink.frames());
+        assertEquals(List.of("session:6", "while away"), resumed.frames());
+    }
+
+    @Test
+    public void testResumeBeyondScrollbackStartsAtOldestByte() throws Exception {
+        SessionOutput output = new SessionOutput(scheduler, 0, 1024, 8, 8);
+        output.write("0123456789abcdef");
+
+        sink.autoComplete = true;
+        output.attach(sink, OverflowPolicy.DROP, 2, offset -> "session:" + offset);
+
+        assertEquals(List.of("session:8", "89abcdef"), sink.frames());
+    }
+
+    private static class RecordingSink implements OutputCoalescer.FrameSink {
+        private final List<String> frames = new ArrayList<>();
+        private final List<Runnable> completions = new ArrayList<>();
+        boolean autoComplete;
+        int disconnects;
+
+        @Override
+        public void send(ByteBuffer frame, Runnable onComplete) {
+            synchronized (this) {
+                frames.add(StandardCharsets.UTF_8.decode(frame.duplicate()).toString());
+                if (!autoComplete) {
+                    completions.add(onComplete);
+                    return;
+                }
+            }
+            onComplete.run();
+        }
+
+        @Override
+        public void sendText(String message, Runnable onComplete) {
+            synchronized (this) {
+                frames.add(message);
+                if (!autoComplete) {
+                    completions.add(onComplete);
+                    return;
+                }
+            }
+            onComplete.run();
+        }
+
+        @Override
+        public void disconnect(String reason) {
+            disconnects++;
+        }
+
+        synchronized List<String> frames() {
+            return new ArrayList<>(frames);
+        }
+
+        void completeAll() {
+            List<Runnable> pending;
+            synchronized (this) {
+                pending = new ArrayList<>(completions);
+                completions.clear();
+            }
+            pending.forEach(Runnable::run);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package ut.com.atsoft.jira.plugin.logviewer.service;
+
+import com.atsoft.jira.plugin.logviewer.service.ShellPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShellPoolTest {
+
+    private final List<Process> started = new ArrayList<>();
+    private final AtomicInteger spawned = new AtomicInteger();
+    private ShellPool<Process> pool;
+
+    @BeforeEach
+    public void setup() {
+        Assumptions.assumeFalse(System.getProperty("os.name").toLowerCase().contains("win"));
+    }
+
+    @AfterEach
+    public void cleanup() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+        synchronized (started) {
+            started.forEach(Process::destroyForcibly);
+        }
+    }
+
+    @Test
+    public void testDisabledPoolStartsNothing() throws Exception {
+        pool = new ShellPool<>(this::spawn, 0, 0);
+        pool.start();
+
+        assertNull(pool.take());
+        Thread.sleep(50);
+        assertEquals(0, spawned.get());
+        assertEquals(0, pool.getMisses());
+    }
+
+    @Test
+    public void testTakeHandsOutPrestartedShellAndRefills() throws Exception {
+        pool = new ShellPool<>(this::spawn, 2, 0);
+        pool.start();
+        assertTrue(await(() -> pool.getIdleCount() == 2));
+
+        Process shell = pool.take();
+
+        assertNotNull(shell);
+        assertTrue(shell.isAlive());
+        assertEquals(1, pool.getHits());
+        assertTrue(await(() -> pool.getIdleCount() == 2));
+        assertEquals(3, spawned.get());
+    }
+
+    @Test
+    public void testDeadShellsAreSkipped() throws Exception {
+        pool = new ShellPool<>(this::spawn, 1, 0);
+        pool.start();
+        assertTrue(await(() -> pool.getIdleCount() == 1));
+        synchronized (started) {
+            started.get(0).destroyForcibly().waitFor();
+        }
+
+        assertNull(pool.take());
+
+        assertEquals(1, pool.getMisses());
+        assertTrue(await(() -> pool.getIdleCount() == 1));
+        assertNotNull(pool.take());
+    }
+
+    @Test
+    public void testShutdownKillsIdleShells() throws Exception {
+        pool = new ShellPool<>(this::spawn, 2, 0);
+        pool.start();
+        assertTrue(await(() -> pool.getIdleCount() == 2));
+
+        pool.shutdown();
+
+        assertEquals(0, pool.getIdleCount());
+        assertNull(pool.take());
+        synchronized (started) {
+            for (Process process : started) {
+                assertTrue(await(() -> !process.isAlive()));
+            }
+        }
+    }
+
+    @Test
+    public void testExpiredShellIsKilledEvenIfItIgnoresTerm() throws Exception {
+        pool = new ShellPool<>(this::spawnIgnoringTerm, 1, 100);
+        pool.start();
+        assertTrue(await(() -> pool.getIdleCount() == 1));
+        Process first;
+        synchronized (started) {
+            first = started.get(0);
+        }
+
+        assertTrue(await(() -> spawned.get() >= 2));
+
+        assertTrue(await(() -> !first.isAlive()));
+        assertEquals(1, pool.getIdleCount());
+    }
+
+    private Process spawnIgnoringTerm() throws IOException {
+        return spawn(new ProcessBuilder("sh", "-c", "trap '' TERM; sleep 300"));
+    }
+
+    private Process spawn() throws IOException {
+        return spawn(new ProcessBuilder("sleep", "300"));
+    }
+
+    private Process spawn(ProcessBuilder builder) throws IOException {
+        Process process = builder.start();
+        synchronized (started) {
+            started.add(process);
+        }
+        spawned.incrementAndGet();
+        return process;
+    }
+
+    private static boolean await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            Thread.sleep(10);
+        }
+        return true;
+    }
+}
@@ -0,0 +1,62 @@
+package ut.com.atsoft.jira.plugin.logviewer.service;
+
+import com.atsoft.jira.plugin.logviewer.service.Utf8StreamDecoder;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class Utf8StreamDecoderTest {
+
+    private static String decodeAll(Utf8StreamDecoder decoder, InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        CharBuffer chars;
+        while ((chars = decoder.read(in)) != null) {
+            sb.append(chars);
+        }
+        return sb.toString();
+    }
+
+    /** Returns at most {@code chunk} bytes per read, like a PTY handing out partial output. */
+    private static InputStream chunked(byte[] data, int chunk) {
+        return new ByteArrayInputStream(data) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, chunk));
+            }
+        };
+    }
+
+    @Test
+    public void testMultibyteCharacterSplitAcrossReads() throws IOException {
+        String text = "ERROR 이슈 인덱스 재구성 실패 😀 done";
+        byte[] data = text.getBytes(StandardCharsets.UTF_8);
+
+        for (int chunk = 1; chunk <= 7; chunk++) {
+            assertEquals(text, decodeAll(new Utf8StreamDecoder(16), chunked(data, chunk)), "chunk " + chunk);
+        }
+    }
+
+    @Test
+    public void testBufferIsReused() throws IOException {
+        Utf8StreamDecoder decoder = new Utf8StreamDecoder(16);
+        InputStream in = chunked("가나다라".getBytes(StandardCharsets.UTF_8), 4);
+
+        CharBuffer first = decoder.read(in);
+        assertEquals("가", first.toString());
+        assertEquals(1, decoder.pendingBytes());
+        assertSame(first, decoder.read(in));
+    }
+
+    @Test
+    public void testTruncatedSequenceAtEndIsReplaced() throws IOException {
+        byte[] data = { 'a', (byte) 0xEC, (byte) 0x9D };
+
+        assertEquals("a\uFFFD", decodeAll(new Utf8StreamDecoder(16), new ByteArrayInputStream(data)));
+    }
+}
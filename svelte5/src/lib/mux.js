@@ -0,0 +1,291 @@
+// Client side of /ws/mux: several terminals and log streams over one WebSocket.
+// Frame: u16 channel | u8 type | u32 length | payload (big-endian), see MuxProtocol.java.
+
+const HEADER_BYTES = 7;
+
+export const FrameType = {
+  OPEN_TERMINAL: 1,
+  OPEN_LOG: 2,
+  INPUT: 3,
+  RESIZE: 4,
+  CLOSE: 5,
+  OPEN_VIEWER: 6,
+  OPEN_COPY_JOB: 7,
+  DATA: 16,
+  CONTROL: 17,
+  DATA_DEFLATE: 18,
+};
+
+const MAX_RECONNECT_ATTEMPTS = 10;
+const encoder = new TextEncoder();
+const decoder = new TextDecoder();
+// u32 uncompressed length ahead of the deflate data of a DATA_DEFLATE frame
+const LENGTH_BYTES = 4;
+
+function frame(channel, type, payload) {
+  const bytes = payload ?? new Uint8Array(0);
+  const buffer = new Uint8Array(HEADER_BYTES + bytes.length);
+  const view = new DataView(buffer.buffer);
+  view.setUint16(0, channel);
+  view.setUint8(2, type);
+  view.setUint32(3, bytes.length);
+  buffer.set(bytes, HEADER_BYTES);
+  return buffer;
+}
+
+/**
+ * A shared connection. Channels opened on it are reopened after a reconnect, each with the
+ * payload its `openPayload()` returns at that moment (e.g. a terminal's resume point).
+ */
+export class MuxConnection {
+  constructor(url) {
+    this.url = url;
+    this.channels = new Map();
+    this.nextChannel = 1;
+    this.reconnectAttempts = 0;
+    this.disposed = false;
+    this.socket = null;
+    // output is deflated on the server if the browser can inflate it
+    this.compress = typeof DecompressionStream !== "undefined";
+  }
+
+  /**
+   * handlers: { openPayload(): string, onOpen(reconnected), onData(Uint8Array),
+   *             onControl(string), onClose(reason), onConnectionLost() }
+   */
+  open(type, handlers) {
+    const id = this.nextChannel++;
+    const channel = new MuxChannel(this, id, type, handlers);
+    this.channels.set(id, channel);
+    if (this.isOpen()) {
+      // after the caller has the channel, as onOpen may use it
+      queueMicrotask(() => this.channels.has(id) && channel.sendOpen(false));
+    } else if (!this.socket) {
+      this.connect();
+    }
+    return channel;
+  }
+
+  openTerminal(handlers) {
+    return this.open(FrameType.OPEN_TERMINAL, handlers);
+  }
+
+  /** Watches someone else's terminal; handlers.openPayload returns `<session id>[:<offset>]`. */
+  openViewer(handlers) {
+    return this.open(FrameType.OPEN_VIEWER, handlers);
+  }
+
+  /**
+   * Follows a log file. handlers.filter, if given, returns the filter to apply as a query string
+   * such as `level=ERROR&regex=timeout&context=2`; it is asked again on reconnect. To change the
+   * filter while following, call `channel.input(query)`; the server answers with a `log:filter`
+   * control message before the newly filtered lines, or `log:invalid-filter:<reason>`.
+   */
+  openLog(fileName, handlers) {
+    const openPayload = () => {
+      const filter = handlers.filter?.();
+      return filter ? `${fileName}?${filter}` : fileName;
+    };
+    return this.open(FrameType.OPEN_LOG, { ...handlers, openPayload });
+  }
+
+  /**
+   * Follows an issue copy job started with POST /rest/log-viewer/1.0/copy-jobs. handlers.onUpdate
+   * receives `{ type: "status" | "progress" | "finished", state, total, completed, ... }`.
+   */
+  openCopyJob(jobId, handlers) {
+    return this.open(FrameType.OPEN_COPY_JOB, {
+      openPayload: () => jobId,
+      ...handlers,
+      onControl: (text) => handlers.onUpdate?.(JSON.parse(text)),
+    });
+  }
+
+  isOpen() {
+    return this.socket && this.socket.readyState === WebSocket.OPEN;
+  }
+
+  connect() {
+    const url = this.compress ? `${this.url}${this.url.includes("?") ? "&" : "?"}compress=deflate` : this.url;
+    const socket = new WebSocket(url);
+    socket.binaryType = "arraybuffer";
+    this.socket = socket;
+
+    socket.onopen = () => {
+      const reconnected = this.reconnectAttempts > 0;
+      this.reconnectAttempts = 0;
+      for (const channel of this.channels.values()) {
+        channel.sendOpen(reconnected);
+      }
+    };
+
+    socket.onmessage = (event) => this.receive(new DataView(event.data));
+
+    socket.onclose = () => {
+      this.socket = null;
+      if (this.disposed || this.channels.size === 0) {
+        return;
+      }
+      for (const channel of this.channels.values()) {
+        channel.handlers.onConnectionLost?.();
+      }
+      if (this.reconnectAttempts < MAX_RECONNECT_ATTEMPTS) {
+        const delay = Math.min(1000 * 2 ** this.reconnectAttempts, 15000);
+        this.reconnectAttempts++;
+        this.reconnectTimer = setTimeout(() => this.connect(), delay);
+      } else {
+        for (const channel of [...this.channels.values()]) {
+          channel.closed("Connection closed");
+        }
+      }
+    };
+
+    socket.onerror = (error) => {
+      console.error("WebSocket error:", error);
+    };
+  }
+
+  receive(view) {
+    let position = 0;
+    while (position + HEADER_BYTES <= view.byteLength) {
+      const id = view.getUint16(position);
+      const type = view.getUint8(position + 2);
+      const length = view.getUint32(position + 3);
+      const payload = new Uint8Array(view.buffer, view.byteOffset + position + HEADER_BYTES, length);
+      position += HEADER_BYTES + length;
+      this.channels.get(id)?.handle(type, payload);
+    }
+  }
+
+  send(buffer) {
+    if (this.isOpen()) {
+      this.socket.send(buffer);
+    }
+  }
+
+  remove(channel) {
+    this.channels.delete(channel.id);
+    if (this.channels.size === 0) {
+      this.dispose();
+    }
+  }
+
+  dispose() {
+    this.disposed = true;
+    clearTimeout(this.reconnectTimer);
+    if (this.socket) {
+      this.socket.close();
+      this.socket = null;
+    }
+  }
+}
+
+// Inflates the DATA_DEFLATE frames of one channel. They share one deflate context, so they are
+// fed in order. DecompressionStream does not delimit its output; the uncompressed length in
+// each frame tells when a frame's output is complete.
+class Inflater {
+  constructor() {
+    const stream = new DecompressionStream("deflate-raw");
+    this.writer = stream.writable.getWriter();
+    this.reader = stream.readable.getReader();
+  }
+
+  async inflate(payload) {
+    const length = new DataView(payload.buffer, payload.byteOffset, LENGTH_BYTES).getUint32(0);
+    // not awaited: the write only completes once its output has been read
+    this.writer.write(payload.slice(LENGTH_BYTES)).catch(() => {});
+    const output = new Uint8Array(length);
+    let filled = 0;
+    while (filled < length) {
+      const { value, done } = await this.reader.read();
+      if (done) {
+        throw new Error("Compressed stream ended");
+      }
+      output.set(value.subarray(0, length - filled), filled);
+      filled += value.byteLength;
+    }
+    return output;
+  }
+}
+
+class MuxChannel {
+  constructor(connection, id, type, handlers) {
+    this.connection = connection;
+    this.id = id;
+    this.type = type;
+    this.handlers = handlers;
+    this.inflater = null;
+    this.queue = Promise.resolve();
+    this.pending = 0;
+  }
+
+  // Frames are handled in the order they arrive: while a compressed one is being inflated,
+  // the ones behind it, control messages included, wait for it.
+  handle(type, payload) {
+    if (type !== FrameType.DATA_DEFLATE && this.pending === 0) {
+      this.dispatch(type, payload);
+      return;
+    }
+    const inflater = type === FrameType.DATA_DEFLATE ? (this.inflater ??= new Inflater()) : null;
+    this.pending++;
+    this.queue = this.queue
+      .then(async () => this.dispatch(type, inflater ? await inflater.inflate(payload) : payload))
+      .catch((error) => console.error(`Error on channel ${this.id}:`, error))
+      .finally(() => this.pending--);
+  }
+
+  dispatch(type, payload) {
+    if (this.connection.channels.get(this.id) !== this) {
+      return;
+    }
+    if (type === FrameType.DATA || type === FrameType.DATA_DEFLATE) {
+      this.handlers.onData?.(payload);
+    } else if (type === FrameType.CONTROL) {
+      this.handlers.onControl?.(decoder.decode(payload));
+    } else if (type === FrameType.CLOSE) {
+      this.closed(decoder.decode(payload));
+    }
+  }
+
+  sendOpen(reconnected) {
+    // the server starts a new deflate context with every open
+    this.inflater = null;
+    const payload = this.handlers.openPayload?.() ?? "";
+    this.connection.send(frame(this.id, this.type, encoder.encode(payload)));
+    this.handlers.onOpen?.(reconnected);
+  }
+
+  input(data) {
+    this.connection.send(frame(this.id, FrameType.INPUT, encoder.encode(data)));
+  }
+
+  resize(cols, rows) {
+    const payload = new Uint8Array(4);
+    const view = new DataView(payload.buffer);
+    view.setUint16(0, cols);
+    view.setUint16(2, rows);
+    this.connection.send(frame(this.id, FrameType.RESIZE, payload));
+  }
+
+  close() {
+    this.connection.send(frame(this.id, FrameType.CLOSE));
+    this.connection.remove(this);
+  }
+
+  closed(reason) {
+    this.connection.remove(this);
+    this.handlers.onClose?.(reason);
+  }
+}
+
+const connections = new Map();
+
+/** The connection all components on the page share for `url`. */
+export function sharedConnection(url) {
+  let connection = connections.get(url);
+  if (!connection || connection.disposed) {
+    connection = new MuxConnection(url);
+    connections.set(url, connection);
+  }
+  return connection;
+}